@@ -407,7 +407,6 @@ public class FloatingApplication extends Application {
 		    host.createNewMessage(m);
 		    
 		    lastMessage = curTime + (rng.nextDouble () - 0.5) * interval/2;
-		    m.setTtl ((int) (ttl));
 		}
 	    }
 	    break;
@@ -465,16 +464,14 @@ public class FloatingApplication extends Application {
 		    m.addProperty("a", a);
 		    m.addProperty("ttl", SimClock.getTime() + msgttl);
 		    m.addProperty("ttlval", msgttl);
-		    m.setTtl ((int) (msgttl));  /* need to redo this after host.createNewMessage () */
 		    m.setAppID(APP_ID);
 
 		    if (fcr.getLocationSource() == FloatingContentRouter.LOC_SRC_GPS)
 			m.addProperty("anchor", fcr.getLocation().clone());
 		    else
 			m.addProperty("anchor", fcr.getLastKnownLocation().clone());
+		    /* the router takes the message ttl from the "ttlval" property */
 		    host.createNewMessage(m);
-		    /* ttl needs to be set after message creation */
-		    m.setTtl ((int) (msgttl));
 		    
 		    if (flux)
 			FloatingApplication.msgs.add (m);
@@ -20,6 +20,10 @@ public abstract class Connection {
 	protected Message msgOnFly;
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** last message offered through this connection by the initiator */
+	private Message fromSendCursor;
+	/** last message offered through this connection by the other node */
+	private Message toSendCursor;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -75,6 +79,34 @@ public abstract class Connection {
 		this.isUp = state;
 	}
 
+	/**
+	 * Returns the send cursor of the given node, i.e. the last message of
+	 * its sending queue that was offered through this connection during the
+	 * current pass over the queue.
+	 * @param node The sending node
+	 * @return The last offered message or null if the next pass should start
+	 * from the head of the sending queue
+	 */
+	public Message getSendCursor(DTNHost node) {
+		return (node == this.fromNode ? this.fromSendCursor : 
+			this.toSendCursor);
+	}
+	
+	/**
+	 * Sets the send cursor of the given node.
+	 * @param node The sending node
+	 * @param m The last offered message or null to rewind the cursor
+	 * @see #getSendCursor(DTNHost)
+	 */
+	public void setSendCursor(DTNHost node, Message m) {
+		if (node == this.fromNode) {
+			this.fromSendCursor = m;
+		}
+		else {
+			this.toSendCursor = m;
+		}
+	}
+
 	/**
 	 * Sets a message that this connection is currently transferring. If message
 	 * passing is controlled by external events, this method is not needed
@@ -29,7 +29,18 @@ public class DTNHost implements Comparable<DTNHost> {
 	private Path path;
 	private double speed;
 	private double nextTimeToMove;
+	/** has the host moved after the last update */
+	private boolean movedSinceUpdate;
+	/** store of the movement state (or null if the host moves itself) */
+	private HostPositionStore positionStore;
+	/** index of the host in the position store */
+	private int storeIndex;
+	/** world that skips this host while it is quiescent (or null) */
+	private World world;
+	/** index of the host in the world's host list */
+	private int worldIndex;
 	private String name;
+	private String groupId;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
@@ -58,6 +69,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location = new Coord(0,0);
 		this.address = getNextAddress();
 		this.name = groupId+address;
+		this.groupId = groupId;
 		this.net = new ArrayList<NetworkInterface>();
 
 		for (NetworkInterface i : interf) {
@@ -122,6 +134,119 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.getInterface(1).isActive();
 	}
 
+	/**
+	 * Returns true if updating this host would not change anything, i.e.,
+	 * the host hasn't moved since its last update, none of its interfaces
+	 * has connections, and the router is quiescent and doesn't need a 
+	 * scheduled update yet. A quiescent host wakes up when it moves, gets a 
+	 * connection (created by some other host) or a new message, or when
+	 * its next update time ({@link #getNextUpdateTime()}) is reached. 
+	 * A host whose radio is inactive is quiescent until the radio's 
+	 * activeness changes, since the update of an inactive host does
+	 * nothing.
+	 * @return true if the host is quiescent
+	 * @see MessageRouter#isQuiescent()
+	 * @see NetworkInterface#isQuiescent()
+	 */
+	public boolean isQuiescent() {
+		if (isSleeping()) {
+			return true;
+		}
+		if (this.movedSinceUpdate) {
+			return false;
+		}
+		for (int i=0, n=net.size(); i<n; i++) {
+			if (!net.get(i).isQuiescent()) {
+				return false;
+			}
+		}
+		return this.router.isQuiescent() && 
+			SimClock.getTime() < this.router.getNextUpdateTime();
+	}
+
+	/**
+	 * Returns true if the host's radio is inactive, it has no connections and
+	 * the radio's activeness doesn't change before {@link #getWakeUpTime()}.
+	 * Updating a sleeping host does nothing.
+	 * @return true if the host is sleeping
+	 */
+	public boolean isSleeping() {
+		if (isRadioActive()) {
+			return false;
+		}
+		for (int i=0, n=net.size(); i<n; i++) {
+			if (!net.get(i).getConnections().isEmpty()) {
+				return false; /* update tears down the connections */
+			}
+		}
+		return SimClock.getTime() < getWakeUpTime();
+	}
+	
+	/**
+	 * Returns the time when the activeness of any of the host's network
+	 * interfaces changes next
+	 * @return The next activeness change time or Double.MAX_VALUE if the
+	 * activeness doesn't change anymore
+	 * @see NetworkInterface#getNextActivenessChange()
+	 */
+	public double getWakeUpTime() {
+		double wakeUpTime = Double.MAX_VALUE;
+		for (int i=0, n=net.size(); i<n; i++) {
+			wakeUpTime = Math.min(wakeUpTime, 
+					net.get(i).getNextActivenessChange());
+		}
+		return wakeUpTime;
+	}
+
+	/**
+	 * Returns the time when a quiescent host must be updated again even
+	 * if nothing wakes it up before that: the next activeness change of
+	 * the radio or, if the radio is active, the router's next update time
+	 * if that comes earlier.
+	 * @return The next update time or Double.MAX_VALUE if the host doesn't
+	 * need updates unless something wakes it up
+	 * @see MessageRouter#getNextUpdateTime()
+	 */
+	public double getNextUpdateTime() {
+		double wakeUpTime = getWakeUpTime();
+		if (!isRadioActive()) {
+			return wakeUpTime;
+		}
+		return Math.min(wakeUpTime, this.router.getNextUpdateTime());
+	}
+	
+	/**
+	 * Sets the world that leaves this host out from the updates while it
+	 * is quiescent. After this, the host tells the world when something
+	 * may have ended its quiescence.
+	 * @param world The world
+	 * @param index Index of the host in the world's host list
+	 */
+	void setWorld(World world, int index) {
+		this.world = world;
+		this.worldIndex = index;
+	}
+	
+	/**
+	 * Tells the world (if it skips quiescent hosts) that this host may no
+	 * longer be quiescent
+	 */
+	private void wakeUp() {
+		if (this.world != null) {
+			this.world.wakeUp(this.worldIndex);
+		}
+	}
+	
+	/**
+	 * Marks that the host has moved after its last update
+	 */
+	private void moved() {
+		this.movedSinceUpdate = true;
+		if (this.world != null) {
+			this.world.hostMoved(this.worldIndex);
+		}
+	}
+
 	/**
 	 * Set a router for this host
 	 * @param router The router to set
@@ -161,10 +286,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void connectionUp(Connection con) {
 		this.router.changedConnection(con);
+		wakeUp();
 	}
 
 	public void connectionDown(Connection con) {
 		this.router.changedConnection(con);
+		wakeUp();
 	}
 
 	/**ش˽ڵڵб
@@ -191,7 +318,9 @@ public class DTNHost implements Comparable<DTNHost> {
 
 	/**صǰڵʹõ·ǰûʹ·򷵻null
 	 * Returns the Path this node is currently traveling or null if no
-	 * path is in use at the moment.
+	 * path is in use at the moment. The path may be reused by the movement
+	 * model when the node has traveled it (see {@link Path#recycle()}), so
+	 * it should not be stored.
 	 * @return The path this node is traveling
 	 */
 	public Path getPath() {
@@ -204,6 +333,51 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		moved();
+		if (this.positionStore != null) {
+			storeMovementState();
+		}
+	}
+
+	/**
+	 * Sets the store that moves the host. After this, the store calls
+	 * {@link #move(double)} only when the host reaches a waypoint or its
+	 * movement state may change otherwise.
+	 * @param store The position store
+	 * @param index Index of the host in the store
+	 */
+	void setPositionStore(HostPositionStore store, int index) {
+		this.positionStore = store;
+		this.storeIndex = index;
+		storeMovementState();
+	}
+
+	/**
+	 * Marks that the host has moved (called by the position store)
+	 */
+	void setMoved() {
+		moved();
+	}
+
+	/**
+	 * Stores the current movement state to the position store: the host
+	 * is either waiting until it can move again or moving towards the
+	 * destination until the activeness of the movement model may change.
+	 */
+	private void storeMovementState() {
+		if (!isMovementActive()) {
+			this.positionStore.setWaiting(this.storeIndex, this.location,
+					this.movement.getNextActivenessChange());
+		}
+		else if (this.path == null) {
+			this.positionStore.setWaiting(this.storeIndex, this.location,
+					this.nextTimeToMove);
+		}
+		else {
+			this.positionStore.setMoving(this.storeIndex, this.location,
+					this.destination, this.speed,
+					this.movement.getNextActivenessChange());
+		}
 	}
 
 	/**
@@ -332,9 +506,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
+		this.movedSinceUpdate = false;
+		
 		if (!isRadioActive()) {
 			// Make sure inactive nodes don't have connections
 			tearDownAllConnections();
+			this.router.radioInactive();
 			return;
 		}
 		
@@ -372,7 +549,18 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * not time to move yet
 	 * @param timeIncrement How long time the node moves
 	 */
-	public void move(double timeIncrement) {		
+	public void move(double timeIncrement) {
+		moveOnPath(timeIncrement);
+		if (this.positionStore != null) {
+			storeMovementState();
+		}
+	}
+
+	/**
+	 * Moves the node along its path for the given time
+	 * @param timeIncrement How long time the node moves
+	 */
+	private void moveOnPath(double timeIncrement) {
 		double possibleMovement;
 		double distance;
 		double dx, dy;
@@ -386,6 +574,7 @@ public class DTNHost implements Comparable<DTNHost> {
 			}
 		}
 
+		moved();
 		possibleMovement = timeIncrement * speed;
 		distance = this.location.distance(this.destination);
 
@@ -420,11 +609,17 @@ public class DTNHost implements Comparable<DTNHost> {
 
 		if (path == null || !path.hasNext()) {
 			this.nextTimeToMove = movement.nextPathAvailable();
+			if (this.path != null) {
+				this.path.recycle(); // consumed -> can be reused by the model
+			}
 			this.path = null;
 			return false;
 		}
 
-		this.destination = path.getNextWaypoint();
+		if (this.destination == null) {
+			this.destination = new Coord(0,0);
+		}
+		path.getNextWaypoint(this.destination);
 		this.speed = path.getSpeed();
 
 		if (this.movListeners != null) {
@@ -443,6 +638,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void sendMessage(String id, DTNHost to) {
 		this.router.sendMessage(id, to);
+		wakeUp();
 	}
 
 	/**Ϣ
@@ -454,6 +650,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public int receiveMessage(Message m, DTNHost from) {
 		int retVal = this.router.receiveMessage(m, from); 
+		wakeUp();
 
 		if (retVal == MessageRouter.RCV_OK) {
 			m.addNodeOnPath(this);	// add this node on the messages path
@@ -479,6 +676,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void messageTransferred(String id, DTNHost from) {
 		this.router.messageTransferred(id, from);
+		wakeUp();
 	}
 
 	/**֪ڵϢת
@@ -490,6 +688,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void messageAborted(String id, DTNHost from, int bytesRemaining) {
 		this.router.messageAborted(id, from, bytesRemaining);
+		wakeUp();
 	}
 
 	/**һϢ
@@ -498,6 +697,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void createNewMessage(Message m) {
 		this.router.createNewMessage(m);
+		wakeUp();
 	}
 
 	/**ɾһϢ
@@ -510,6 +710,15 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void deleteMessage(String id, boolean drop) {
 		this.router.deleteMessage(id, drop);
+		wakeUp();
+	}
+
+	/**
+	 * Returns the group ID of the host
+	 * @return the group ID of the host
+	 */
+	public String getGroupId() {
+		return this.groupId;
 	}
 
 	/**
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+/**
+ * Structure-of-arrays store of the movement state of all hosts. The
+ * positions, velocity vectors and times to the next waypoints of the hosts
+ * are kept in primitive arrays, so that moving the hosts towards their
+ * waypoints is a tight loop over the arrays. Hosts are called (see
+ * {@link DTNHost#move(double)}) only when they reach a waypoint, when they
+ * have waited for a new path long enough, or when the activeness of their
+ * movement model may change. The hosts' location coordinates are kept up
+ * to date with the arrays.
+ * <P>
+ * Positions are advanced with a constant velocity instead of computing
+ * the remaining distance to the waypoint on every step, so the locations
+ * may differ from the ones of {@link DTNHost#move(double)} by rounding
+ * errors.</P>
+ */
+public class HostPositionStore {
+	/** Time to the waypoint of hosts that are waiting (not on a path) */
+	private static final double WAITING = -1;
+
+	private final DTNHost[] hosts;
+	/** the location coordinates of the hosts */
+	private final Coord[] locations;
+	private final double[] x;
+	private final double[] y;
+	private final double[] vx;
+	private final double[] vy;
+	/** time to the next waypoint, or {@link #WAITING} */
+	private final double[] timeLeft;
+	/** time until which the state of the host is valid */
+	private final double[] validUntil;
+
+	/**
+	 * Creates a store for hosts and moves their movement state to it
+	 * @param hosts The hosts
+	 */
+	public HostPositionStore(List<DTNHost> hosts) {
+		int n = hosts.size();
+		this.hosts = new DTNHost[n];
+		this.locations = new Coord[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.vx = new double[n];
+		this.vy = new double[n];
+		this.timeLeft = new double[n];
+		this.validUntil = new double[n];
+
+		for (int i=0; i<n; i++) {
+			this.hosts[i] = hosts.get(i);
+			this.hosts[i].setPositionStore(this, i);
+		}
+	}
+
+	/**
+	 * Moves all hosts for the given time
+	 * @param timeIncrement How long time the hosts move
+	 */
+	public void move(double timeIncrement) {
+		double now = SimClock.getTime();
+
+		for (int i=0, n=hosts.length; i<n; i++) {
+			double t = timeLeft[i];
+			if (now >= validUntil[i] || (t <= timeIncrement && t != WAITING)) {
+				/* reaches the waypoint or its state may have changed */
+				hosts[i].move(timeIncrement);
+			}
+			else if (t != WAITING) {
+				x[i] += vx[i] * timeIncrement;
+				y[i] += vy[i] * timeIncrement;
+				timeLeft[i] = t - timeIncrement;
+				locations[i].setLocation(x[i], y[i]);
+				hosts[i].setMoved();
+			}
+		}
+	}
+
+	/**
+	 * Sets the state of a host that moves towards a waypoint
+	 * @param index Index of the host
+	 * @param location Location of the host
+	 * @param destination The waypoint
+	 * @param speed Speed of the host
+	 * @param validUntil Time until which the host keeps moving (unless it
+	 * reaches the waypoint)
+	 */
+	void setMoving(int index, Coord location, Coord destination,
+			double speed, double validUntil) {
+		double distance = location.distance(destination);
+		setLocation(index, location);
+		this.validUntil[index] = validUntil;
+		if (distance == 0) {
+			/* already at the waypoint -> host takes the next one */
+			this.vx[index] = this.vy[index] = this.timeLeft[index] = 0;
+			return;
+		}
+		this.vx[index] = speed * (destination.getX() - location.getX()) /
+			distance;
+		this.vy[index] = speed * (destination.getY() - location.getY()) /
+			distance;
+		this.timeLeft[index] = distance / speed;
+	}
+
+	/**
+	 * Sets the state of a host that doesn't move
+	 * @param index Index of the host
+	 * @param location Location of the host
+	 * @param waitUntil Time until which the host doesn't move
+	 */
+	void setWaiting(int index, Coord location, double waitUntil) {
+		setLocation(index, location);
+		this.timeLeft[index] = WAITING;
+		this.validUntil[index] = waitUntil;
+	}
+
+	private void setLocation(int index, Coord location) {
+		this.locations[index] = location;
+		this.x[index] = location.getX();
+		this.y[index] = location.getY();
+	}
+}
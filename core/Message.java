@@ -185,6 +185,22 @@ public class Message implements Comparable<Message> {
 		this.initTtl = ttl;
 	}
 	
+	/**
+	 * Returns the simulation time after which the TTL of this message has
+	 * passed, i.e. after which {@link #getTtl()} returns zero or less. The
+	 * time depends only on the creation time and the initial TTL so it can
+	 * be used as a fixed key for ordering messages by expiry.
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		/* getTtl() truncates the remaining time to whole TTL units */
+		int unit = (ttlAsSeconds ? 1 : 60);
+		return this.timeCreated + (this.initTtl - 1) * (double)unit;
+	}
+	
 	/**ýմϢʱ
 	 * Sets the time when this message was received.
 	 * @param time The time to set
@@ -5,31 +5,206 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>
+ * Every key is registered once as a {@link Key} handle that has an index
+ * in the slot arrays of the buses. Numeric values are stored in primitive
+ * slots, so modules that use the handles and the typed methods (e.g.,
+ * {@link #setDouble(Key, double)} and {@link #getDouble(Key, double)})
+ * and implement {@link NumericModuleCommunicationListener} can communicate
+ * without any allocations. The string based methods work on top of the
+ * same slots; keys that haven't been registered are registered on their
+ * first use.</P>
  */
 public class ModuleCommunicationBus {
-	/** Initial capacity for the listener lists (instead of 10) */
-	private static int INIT_CAPACITY = 3;
-	/** The values in the blackboard (or null if none)*/
-	private HashMap<String, Object> values;
-	/** Subscribed listeners (or null if none)*/
-	private HashMap<String, List<ModuleCommunicationListener>> listeners;
-	
+	/** Key type of double values */
+	public static final int TYPE_DOUBLE = 0;
+	/** Key type of integer values */
+	public static final int TYPE_INT = 1;
+	/** Key type of any objects (also keys created by the string methods) */
+	public static final int TYPE_OBJECT = 2;
+
+	/** Slot kind of empty slots */
+	private static final byte NO_VALUE = 0;
+	/** Slot kind of double values */
+	private static final byte DOUBLE_VALUE = 1;
+	/** Slot kind of integer values */
+	private static final byte INT_VALUE = 2;
+	/** Slot kind of other objects */
+	private static final byte OBJECT_VALUE = 3;
+
+	/** All registered keys by name */
+	private static final Map<String, Key> keys = new HashMap<String, Key>();
+	/** Number of registered keys */
+	private static int nrofKeys = 0;
+	private static final ModuleCommunicationListener[] NO_LISTENERS =
+		new ModuleCommunicationListener[0];
+
+	/** Kinds of the values in the slots (or null if no values) */
+	private byte[] kinds;
+	/** Numeric values of the slots */
+	private double[] numbers;
+	/** Object values of the slots (or null if no object values) */
+	private Object[] objects;
+	/** Subscribed listeners of the slots (or null if none)*/
+	private ModuleCommunicationListener[][] listeners;
+
+	/**
+	 * Handle of a key of the bus. Handles are created with
+	 * {@link ModuleCommunicationBus#doubleKey(String)},
+	 * {@link ModuleCommunicationBus#intKey(String)} and
+	 * {@link ModuleCommunicationBus#objectKey(String)}, and there is only
+	 * one handle per name, so the handles can be compared by identity.
+	 */
+	public static final class Key {
+		private final String name;
+		private final int index;
+		private int type;
+
+		private Key(String name, int type, int index) {
+			this.name = name;
+			this.type = type;
+			this.index = index;
+		}
+
+		/**
+		 * Returns the name of the key
+		 * @return the name of the key
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the type of the key
+		 * @return {@link ModuleCommunicationBus#TYPE_DOUBLE},
+		 * {@link ModuleCommunicationBus#TYPE_INT} or
+		 * {@link ModuleCommunicationBus#TYPE_OBJECT}
+		 */
+		public int getType() {
+			return this.type;
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+	}
+
 	/**
 	 * Constructor.
 	 */
 	public ModuleCommunicationBus() {
-		this.values = null; /* use lazy creation  */
+		this.kinds = null; /* use lazy creation  */
 		this.listeners = null;
 	}
-	
+
+	/**
+	 * Returns the handle of a key of double values. The handle is registered
+	 * if it doesn't exist yet.
+	 * @param name Name of the key
+	 * @return The handle of the key
+	 * @throws SimError if the key is already registered with another type
+	 */
+	public static Key doubleKey(String name) throws SimError {
+		return registerKey(name, TYPE_DOUBLE);
+	}
+
+	/**
+	 * Returns the handle of a key of integer values. The handle is
+	 * registered if it doesn't exist yet.
+	 * @param name Name of the key
+	 * @return The handle of the key
+	 * @throws SimError if the key is already registered with another type
+	 */
+	public static Key intKey(String name) throws SimError {
+		return registerKey(name, TYPE_INT);
+	}
+
+	/**
+	 * Returns the handle of a key of object values. The handle is registered
+	 * if it doesn't exist yet.
+	 * @param name Name of the key
+	 * @return The handle of the key
+	 */
+	public static Key objectKey(String name) {
+		return registerKey(name, TYPE_OBJECT);
+	}
+
+	/**
+	 * Returns the handle of a registered key
+	 * @param name Name of the key
+	 * @return The handle of the key or null if there's no such key
+	 */
+	public static synchronized Key getKey(String name) {
+		return keys.get(name);
+	}
+
+	/**
+	 * Registers a key or returns the existing handle of the key. A key that
+	 * was registered as an object key (e.g., by the string methods) gets
+	 * the numeric type if it is registered again with one.
+	 */
+	private static synchronized Key registerKey(String name, int type) {
+		Key key = keys.get(name);
+		if (key == null) {
+			key = new Key(name, type, nrofKeys++);
+			keys.put(name, key);
+		}
+		else if (key.type == TYPE_OBJECT) {
+			key.type = type;
+		}
+		else if (type != TYPE_OBJECT && key.type != type) {
+			throw new SimError("Key " + name + " is already registered " +
+					"with another type");
+		}
+		return key;
+	}
+
+	/**
+	 * Returns the index of the key's slot, growing the slot arrays
+	 * if needed
+	 */
+	private int slot(Key key) {
+		int i = key.index;
+		if (this.kinds == null) {
+			/* lazy creation to prevent performance overhead for classes
+			   that don't use the property feature  */
+			int size = Math.max(nrofKeys, i + 1);
+			this.kinds = new byte[size];
+			this.numbers = new double[size];
+		}
+		else if (i >= this.kinds.length) {
+			int size = Math.max(nrofKeys, i + 1);
+			this.kinds = Arrays.copyOf(this.kinds, size);
+			this.numbers = Arrays.copyOf(this.numbers, size);
+			if (this.objects != null) {
+				this.objects = Arrays.copyOf(this.objects, size);
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the kind of the value in the key's slot
+	 */
+	private byte kind(Key key) {
+		if (this.kinds == null || key.index >= this.kinds.length) {
+			return NO_VALUE;
+		}
+		return this.kinds[key.index];
+	}
+
 	/**
 	 * Adds a new property for this node. The key can be any string but 
 	 * it should be such that no other class accidently uses the same value.
@@ -40,15 +215,26 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		addProperty(objectKey(key), value);
+	}
+
+	/**
+	 * Adds a new property for this node.
+	 * @param key The handle of the key
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 * @see #addProperty(String, Object)
+	 */
+	public void addProperty(Key key, Object value) throws SimError {
+		if (kind(key) != NO_VALUE) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("A value for the key " + key + 
 					" already exists");
 		}
-		
+
 		this.updateProperty(key, value);
 	}
-	
+
 	/**
 	 * Returns an object that was stored using the given key. If such object 
 	 * is not found, null is returned.
@@ -56,24 +242,48 @@ public class ModuleCommunicationBus {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.values == null) {
+		Key k = getKey(key);
+		return (k == null ? null : getProperty(k));
+	}
+
+	/**
+	 * Returns an object that was stored using the given key. Numeric values
+	 * are returned as Doubles or Integers.
+	 * @param key The handle of the key
+	 * @return The stored object or null if it isn't found
+	 */
+	public Object getProperty(Key key) {
+		switch (kind(key)) {
+		case DOUBLE_VALUE:
+			return this.numbers[key.index];
+		case INT_VALUE:
+			return (int)this.numbers[key.index];
+		case OBJECT_VALUE:
+			return this.objects[key.index];
+		default:
 			return null;
 		}
-		return this.values.get(key);
 	}
-	
+
 	/**
 	 * Returns true if the bus contains a value for the given key
 	 * @param key The key for which a value's existence is checked
 	 * @return true if the value exists, false if not
 	 */
 	public boolean containsProperty(String key) {
-		if (this.values == null) {
-			return false;
-		}
-		return this.values.containsKey(key);
+		Key k = getKey(key);
+		return k != null && containsProperty(k);
+	}
+
+	/**
+	 * Returns true if the bus contains a value for the given key
+	 * @param key The handle of the key
+	 * @return true if the value exists, false if not
+	 */
+	public boolean containsProperty(Key key) {
+		return kind(key) != NO_VALUE;
 	}
-	
+
 	/**
 	 * Updates a value for an existing property. For storing the value first 
 	 * time, {@link #addProperty(String, Object)} should be used which
@@ -82,14 +292,67 @@ public class ModuleCommunicationBus {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.values == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.values = new HashMap<String, Object>();
-		}		
+		updateProperty(objectKey(key), value);
+	}
+
+	/**
+	 * Updates a value for an existing property. Doubles and Integers are
+	 * stored in the numeric slots.
+	 * @param key The handle of the key
+	 * @param value The new value to store
+	 * @throws SimError if the value of a numeric key is not a number
+	 */
+	public void updateProperty(Key key, Object value) throws SimError {
+		if (value instanceof Double) {
+			setDouble(key, (Double)value);
+			return;
+		}
+		if (value instanceof Integer) {
+			setInt(key, (Integer)value);
+			return;
+		}
+		if (key.type != TYPE_OBJECT) {
+			throw new SimError("No numeric value for key " + key);
+		}
 
-		this.values.put(key, value);
-		notifyListeners(key, value);
+		int i = slot(key);
+		if (this.objects == null) {
+			this.objects = new Object[this.kinds.length];
+		}
+		this.kinds[i] = (value == null ? NO_VALUE : OBJECT_VALUE);
+		this.objects[i] = value;
+		notifyListeners(key);
+	}
+
+	/**
+	 * Sets a double value
+	 * @param key The handle of the key
+	 * @param value The new value
+	 */
+	public void setDouble(Key key, double value) {
+		setNumber(key, value, DOUBLE_VALUE);
+	}
+
+	/**
+	 * Sets an integer value
+	 * @param key The handle of the key
+	 * @param value The new value
+	 */
+	public void setInt(Key key, int value) {
+		setNumber(key, value, INT_VALUE);
+	}
+
+	/**
+	 * Stores a numeric value to the key's slot and notifies the listeners
+	 */
+	private void setNumber(Key key, double value, byte kind) {
+		int i = slot(key);
+		this.kinds[i] = kind;
+		this.numbers[i] = value;
+		if (this.objects != null) {
+			this.objects[i] = null;
+		}
+		notifyListeners(key);
 	}
 
 	/**
@@ -100,21 +363,33 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
-		double current;
-		try {
-			current = (Double)getProperty(key);
-			updateProperty(key, current + delta);
-		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
-		}
-		catch (NullPointerException npe) {
+		Key k = getKey(key);
+		if (k == null) {
 			throw new SimError("No value for key " + key);
 		}
+		return updateDouble(k, delta);
+	}
 
-		return current + delta;
+	/**
+	 * Changes the double value with given key with the value delta
+	 * @param key The handle of the key
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the value with the given key was not a double
+	 */
+	public double updateDouble(Key key, double delta) throws SimError {
+		switch (kind(key)) {
+		case DOUBLE_VALUE:
+			double value = this.numbers[key.index] + delta;
+			setDouble(key, value);
+			return value;
+		case NO_VALUE:
+			throw new SimError("No value for key " + key);
+		default:
+			throw new SimError("No Double value for key " + key);
+		}
 	}
-	
+
 	/**
 	 * Returns a double value from the communication bus.
 	 * @param key The key of the variable
@@ -123,18 +398,30 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double getDouble(String key, double naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
+		Key k = getKey(key);
+		return (k == null ? naValue : getDouble(k, naValue));
+	}
+
+	/**
+	 * Returns a double value from the communication bus. Integer values
+	 * are converted to doubles.
+	 * @param key The handle of the key
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not a number
+	 */
+	public double getDouble(Key key, double naValue) throws SimError {
+		switch (kind(key)) {
+		case DOUBLE_VALUE:
+		case INT_VALUE:
+			return this.numbers[key.index];
+		case NO_VALUE:
 			return naValue;
-		}
-		try {
-			return (Double)value;
-		}
-		catch (ClassCastException cce) {
+		default:
 			throw new SimError("No Double value for key " + key);
 		}
 	}
-	
+
 	/**
 	 * Returns an integer value from the communication bus.
 	 * @param key The key of the variable
@@ -143,87 +430,156 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not an Integer
 	 */
 	public int getInt(String key, int naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
+		Key k = getKey(key);
+		return (k == null ? naValue : getInt(k, naValue));
+	}
+
+	/**
+	 * Returns an integer value from the communication bus.
+	 * @param key The handle of the key
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not an integer
+	 */
+	public int getInt(Key key, int naValue) throws SimError {
+		switch (kind(key)) {
+		case INT_VALUE:
+			return (int)this.numbers[key.index];
+		case NO_VALUE:
 			return naValue;
-		}
-		try {
-			return (Integer)value;
-		}
-		catch (ClassCastException cce) {
+		default:
 			throw new SimError("No Integer value for key " + key);
 		}
 	}
-	
+
 	/**
 	 * Subscribes a module to changes of a certain value.
 	 * @param key The key of the value whose changes the module is interested of
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
+		subscribe(objectKey(key), module);
+	}
+
+	/**
+	 * Subscribes a module to changes of a certain value. Modules that
+	 * implement {@link NumericModuleCommunicationListener} are notified of
+	 * numeric values without boxing them.
+	 * @param key The handle of the key
+	 * @param module The module to subscribe.
+	 */
+	public void subscribe(Key key, ModuleCommunicationListener module) {
+		int i = key.index;
 		if (this.listeners == null) {
 			/* first listener for the whole node */
-			this.listeners = 
-				new HashMap<String, List<ModuleCommunicationListener>>();
+			this.listeners = new ModuleCommunicationListener[
+			                     Math.max(nrofKeys, i + 1)][];
+		}
+		else if (i >= this.listeners.length) {
+			this.listeners = Arrays.copyOf(this.listeners,
+					Math.max(nrofKeys, i + 1));
 		}
-		
-		List<ModuleCommunicationListener> list = this.listeners.get(key);
+
+		ModuleCommunicationListener[] list = this.listeners[i];
 		if (list == null) {
 			/* first listener for this key */
-			list = new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
-			this.listeners.put(key, list);
+			list = NO_LISTENERS;
 		}
-		
-		list.add(module);
+		list = Arrays.copyOf(list, list.length + 1);
+		list[list.length - 1] = module;
+		this.listeners[i] = list;
 	}
-	
+
 	/**
 	 * Removes a notification subscription
 	 * @param key The key for which the subscription should be removed
 	 * @param module The module to whose subscription is removed
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
-			return; /* no subscriptions */
+		Key k = getKey(key);
+		if (k != null) {
+			unsubscribe(k, module);
 		}
-		
-		list = this.listeners.get(key);
+	}
+
+	/**
+	 * Removes a notification subscription
+	 * @param key The handle of the key
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(Key key, ModuleCommunicationListener module) {
+		ModuleCommunicationListener[] list = getListeners(key);
 		if (list == null) {
 			return; /* no subscriptions for the key */
 		}
-		
-		list.remove(module);
+
+		for (int i = 0; i < list.length; i++) {
+			if (list[i].equals(module)) {
+				ModuleCommunicationListener[] newList =
+					new ModuleCommunicationListener[list.length - 1];
+				System.arraycopy(list, 0, newList, 0, i);
+				System.arraycopy(list, i + 1, newList, i, newList.length - i);
+				this.listeners[key.index] = newList;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the listeners of a key or null if there are none
+	 */
+	private ModuleCommunicationListener[] getListeners(Key key) {
+		if (this.listeners == null || key.index >= this.listeners.length) {
+			return null;
+		}
+		return this.listeners[key.index];
 	}
-	
-	
+
 	/**
 	 * Notifies all listeners that have subscribed to the given key 
 	 * @param key The key which got new value
-	 * @param newValue The new value for the key
 	 */
-	private void notifyListeners(String key, Object newValue) {
-		List<ModuleCommunicationListener> list;
-		
-		if (this.listeners == null) {
-			return;
-		}
-		list = this.listeners.get(key);
-		
+	private void notifyListeners(Key key) {
+		ModuleCommunicationListener[] list = getListeners(key);
 		if (list == null) {
 			return;
 		}
-		
+
+		byte kind = this.kinds[key.index];
+		boolean numeric = (kind == DOUBLE_VALUE || kind == INT_VALUE);
+		double number = this.numbers[key.index];
+		Object value = null; /* boxed only for the listeners that need it */
+
 		for (ModuleCommunicationListener mcl : list) {
-			mcl.moduleValueChanged(key, newValue);
+			if (numeric && mcl instanceof NumericModuleCommunicationListener) {
+				((NumericModuleCommunicationListener)mcl).moduleValueChanged(
+						key, number);
+			}
+			else {
+				if (value == null) {
+					value = getProperty(key);
+				}
+				mcl.moduleValueChanged(key.getName(), value);
+			}
 		}
 	}
-	
-	
+
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ? 
-				this.values.toString() : "n/a");
+		if (this.kinds == null) {
+			return "ComBus with mapping: n/a";
+		}
+
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		List<Key> all;
+		synchronized (ModuleCommunicationBus.class) {
+			all = new ArrayList<Key>(keys.values());
+		}
+		for (Key k : all) {
+			if (containsProperty(k)) {
+				values.put(k.getName(), getProperty(k));
+			}
+		}
+		return "ComBus with mapping: " + values.toString();
 	}
 }
@@ -18,7 +18,8 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface
+		implements NumericModuleCommunicationListener {
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -45,6 +46,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed" 
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
+	/** Handle of the {@link #SCAN_INTERVAL_ID} key */
+	public static final ModuleCommunicationBus.Key SCAN_INTERVAL_KEY =
+		ModuleCommunicationBus.doubleKey(SCAN_INTERVAL_ID);
+	/** Handle of the {@link #RANGE_ID} key */
+	public static final ModuleCommunicationBus.Key RANGE_KEY =
+		ModuleCommunicationBus.doubleKey(RANGE_ID);
+	/** Handle of the {@link #SPEED_ID} key */
+	public static final ModuleCommunicationBus.Key SPEED_KEY =
+		ModuleCommunicationBus.intKey(SPEED_ID);
 	
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
@@ -68,6 +78,13 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private ActivenessHandler ah;
 	/** maximum activeness jitter value for the node group */
 	private int activenessJitterMax;
+	/** is the interface in the connectivity optimizer (i.e., not sleeping) */
+	private boolean inOptimizer;
+	/** activeness by the schedule, valid from {@link #scheduleCheckTime} 
+	 * until {@link #nextScheduleChange} */
+	private boolean scheduleActive;
+	private double scheduleCheckTime;
+	private double nextScheduleChange;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
 
@@ -142,21 +159,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
 		
-		if (!comBus.containsProperty(SCAN_INTERVAL_ID)) {
+		if (!comBus.containsProperty(SCAN_INTERVAL_KEY)) {
 			/* add properties and subscriptions only for the 1st interface */
 			/* TODO: support for multiple interfaces */
-			comBus.addProperty(SCAN_INTERVAL_ID, this.scanInterval);
-			comBus.addProperty(RANGE_ID, this.transmitRange);
-			comBus.addProperty(SPEED_ID, this.transmitSpeed);
-			comBus.subscribe(SCAN_INTERVAL_ID, this);
-			comBus.subscribe(RANGE_ID, this);
-			comBus.subscribe(SPEED_ID, this);
+			comBus.addProperty(SCAN_INTERVAL_KEY, this.scanInterval);
+			comBus.addProperty(RANGE_KEY, this.transmitRange);
+			comBus.addProperty(SPEED_KEY, this.transmitSpeed);
+			comBus.subscribe(SCAN_INTERVAL_KEY, this);
+			comBus.subscribe(RANGE_KEY, this);
+			comBus.subscribe(SPEED_KEY, this);
 		}
 		
 		if (transmitRange > 0) {
 			optimizer = ConnectivityGrid.ConnectivityGridFactory(
 					this.interfacetype.hashCode(), transmitRange);
 			optimizer.addInterface(this);
+			this.inOptimizer = true;
 		} else {
 			optimizer = null;
 		}
@@ -169,6 +187,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public void setGroupSettings(Settings s) {
 		s.setSubNameSpace(NET_SUB_NS);	
 		ah = new ActivenessHandler(s);
+		this.nextScheduleChange = 0; /* check the new schedule when asked */
 		
 		if (s.contains(SCAN_INTERVAL_S)) {
 			this.scanInterval =  s.getDouble(SCAN_INTERVAL_S);
@@ -205,6 +224,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.transmitRange;
 	}
 
+	/**
+	 * Returns the scanning interval of this network layer
+	 * @return the scanning interval, or 0.0 if scanning is continuous
+	 */
+	public double getScanInterval() {
+		return this.scanInterval;
+	}
+
 	/**
 	 * Returns the transmit speed of this network layer
 	 * @return the transmit speed
@@ -222,13 +249,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 	
 	/**
-	 * Returns true if the interface is on at the moment (false if not)
+	 * Returns true if the interface is on at the moment (false if not).
+	 * An interface that goes inactive is put to sleep in the connectivity
+	 * optimizer until its next activeness change, so other interfaces don't
+	 * see it, and it is returned to the optimizer when it is active again.
 	 * @return true if the interface is on at the moment (false if not)
 	 */
 	public boolean isActive() {
-		boolean active = ah.isActive(this.activenessJitterValue);
+		boolean active = isActiveBySchedule();
 		
-		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_ID,
+		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_KEY,
 					1) <= 0) {
 			/* TODO: better way to check battery level */
 			/* no battery -> inactive */
@@ -238,15 +268,67 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		if (active == false && this.transmitRange > 0) {
 			/* not active -> make range 0 */
 			this.oldTransmitRange = this.transmitRange;
-			host.getComBus().updateProperty(RANGE_ID, 0.0);
+			host.getComBus().setDouble(RANGE_KEY, 0.0);
 		} else if (active == true && this.transmitRange == 0.0) {
 			/* active, but range == 0 -> restore range  */
-			host.getComBus().updateProperty(RANGE_ID, 
-					this.oldTransmitRange);
-		}		
+			host.getComBus().setDouble(RANGE_KEY, this.oldTransmitRange);
+		}
+		
+		if (optimizer != null && active != this.inOptimizer) {
+			if (active) {
+				optimizer.addInterface(this);
+			} else {
+				optimizer.sleepInterface(this, getNextActivenessChange());
+			}
+			this.inOptimizer = active;
+		}
 		return active;
 	}
 	
+	/**
+	 * Returns the simulation time when the activeness schedule of this
+	 * interface changes next (see 
+	 * {@link ActivenessHandler#getNextChangeTime(int)}).
+	 * @return The time of the next change or Double.MAX_VALUE if the 
+	 * schedule doesn't change anymore
+	 */
+	public double getNextActivenessChange() {
+		isActiveBySchedule(); /* make sure the cached value is up-to-date */
+		return this.nextScheduleChange;
+	}
+	
+	/**
+	 * Returns true if the interface is active by its activeness schedule.
+	 * The schedule is checked only when the previous result is no longer
+	 * valid.
+	 * @return true if the interface is active by its schedule
+	 */
+	private boolean isActiveBySchedule() {
+		double simTime = SimClock.getTime();
+		if (simTime < this.scheduleCheckTime || 
+				simTime >= this.nextScheduleChange) {
+			this.scheduleActive = ah.isActive(this.activenessJitterValue);
+			this.nextScheduleChange = 
+				ah.getNextChangeTime(this.activenessJitterValue);
+			this.scheduleCheckTime = simTime;
+		}
+		return this.scheduleActive;
+	}
+	
+	/**
+	 * Returns true if updating this interface would not change anything as
+	 * long as the host doesn't move, i.e. the interface has no connections, 
+	 * scans continuously and its activeness doesn't change before the next 
+	 * update. New connections to a quiescent interface are created by the 
+	 * interfaces that move in range.
+	 * @return true if the interface is quiescent
+	 */
+	public boolean isQuiescent() {
+		return this.connections.isEmpty() && this.scanInterval == 0 &&
+			this.ah != null && 
+			SimClock.getTime() < getNextActivenessChange();
+	}
+	
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -418,21 +500,34 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param key Identifier of the changed value
 	 * @param newValue New value for the variable
 	 */
-	public void moduleValueChanged(String key, Object newValue) {
-		if (key.equals(SCAN_INTERVAL_ID)) {
-			this.scanInterval = (Double)newValue;	
+	public void moduleValueChanged(ModuleCommunicationBus.Key key,
+			double newValue) {
+		if (key == SCAN_INTERVAL_KEY) {
+			this.scanInterval = newValue;
 		}
-		else if (key.equals(SPEED_ID)) {
-			this.transmitSpeed = (Integer)newValue;	
+		else if (key == SPEED_KEY) {
+			this.transmitSpeed = (int)newValue;
 		}
-		else if (key.equals(RANGE_ID)) {
-			this.transmitRange = (Double)newValue;	
+		else if (key == RANGE_KEY) {
+			this.transmitRange = newValue;
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
 		}
 	}
 
+	/**
+	 * Called by the {@link ModuleCommunicationBus} only if the changed
+	 * value is not numeric, which is an error for all of the values of
+	 * the interface.
+	 * @param key Identifier of the changed value
+	 * @param newValue New value for the variable
+	 */
+	public void moduleValueChanged(String key, Object newValue) {
+		throw new SimError("Non-numeric value " + newValue + " for combus ID "
+				+ key);
+	}
+
 	/** 
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active 
@@ -0,0 +1,24 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Module communication listener that is notified of changes of numeric
+ * values without boxing them. Changes of object values are still notified
+ * with {@link ModuleCommunicationListener#moduleValueChanged(String, Object)}.
+ */
+public interface NumericModuleCommunicationListener
+		extends ModuleCommunicationListener {
+
+	/**
+	 * This method is called whenever a numeric variable, whose changes the
+	 * module has registered to, changes.
+	 * @param key The handle of the variable
+	 * @param newValue New value for the variable
+	 */
+	public void moduleValueChanged(ModuleCommunicationBus.Key key,
+			double newValue);
+
+}
@@ -13,6 +13,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
@@ -56,6 +57,9 @@ public class Settings {
 	/** Stream where all read settings are written to */
 	private static PrintStream out = null;
 	private static Set<String> writtenSettings = new HashSet<String>();
+	/** Settings read since {@link #startReadRecording()} (null if the
+	 * reads are not recorded) */
+	private static List<String> readSettings = null;
 	
 	/** run index for run-specific settings */
 	private static int runIndex = 0;
@@ -309,6 +313,27 @@ public class Settings {
 		}
 	}
 	
+	/**
+	 * Starts recording the settings that are read (with any Settings object)
+	 * until {@link #stopReadRecording()} is called. Can be used to find out
+	 * which settings a module depends on.
+	 */
+	public static void startReadRecording() {
+		readSettings = new ArrayList<String>();
+	}
+	
+	/**
+	 * Stops recording the read settings
+	 * @return The settings read after {@link #startReadRecording()} as
+	 * "name = value" strings in the order they were read (or an empty list
+	 * if recording was not started)
+	 */
+	public static List<String> stopReadRecording() {
+		List<String> read = readSettings;
+		readSettings = null;
+		return (read != null ? read : new ArrayList<String>());
+	}
+	
 	/**
 	 * Returns true if a setting with defined name (in the current namespace
 	 * or secondary namespace if such is set) exists and has some value 
@@ -386,6 +411,9 @@ public class Settings {
 		}
 		
 		outputSetting(fullPropName + " = " + value);
+		if (readSettings != null) {
+			readSettings.add(fullPropName + " = " + value);
+		}
 		return value;
 	}
 	
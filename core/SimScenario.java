@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import movement.MapBasedMovement;
+import movement.MovementCache;
 import movement.MovementModel;
 import movement.map.SimMap;
 import routing.MessageRouter;
@@ -106,6 +107,8 @@ public class SimScenario implements Serializable {
 	private boolean simulateConnections;
 	/** Map used for host movement (if any) */
 	private SimMap simMap;
+	/** Cache where host movement is recorded to or replayed from (if any) */
+	private MovementCache movementCache;
 
 	/** Global connection event listeners */
 	private List<ConnectionListener> connectionListeners;
@@ -159,6 +162,10 @@ public class SimScenario implements Serializable {
 		this.worldSizeX = worldSize[0];
 		this.worldSizeY = worldSize[1];
 		
+		if (s.contains(MovementCache.CACHE_MODE_S)) {
+			this.movementCache = new MovementCache(new Settings());
+		}
+		
 		createHosts();
 		
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
@@ -308,11 +315,57 @@ public class SimScenario implements Serializable {
 		return this.appListeners;
 	}
 	
+	/**
+	 * Returns the cache where host movement is recorded to or replayed from
+	 * @return The movement cache or null if movement is not cached
+	 */
+	public MovementCache getMovementCache() {
+		return this.movementCache;
+	}
+	
+	/**
+	 * Creates the movement model prototype of a host group
+	 * @param s Settings of the group
+	 * @return The prototype (that uses the movement cache, if any)
+	 */
+	private MovementModel createMovementModel(Settings s) {
+		if (movementCache != null) {
+			movementCache.startGroup();
+		}
+
+		MovementModel mmProto = 
+			(MovementModel)s.createIntializedObject(MM_PACKAGE + 
+					s.getSetting(MOVEMENT_MODEL_S));
+		if (mmProto instanceof MapBasedMovement) {
+			this.simMap = ((MapBasedMovement)mmProto).getMap();
+		}
+
+		if (movementCache != null) {
+			mmProto = movementCache.addGroup(mmProto, s.getInt(NROF_HOSTS_S));
+		}
+		return mmProto;
+	}
+	
 	/**
 	 * Creates hosts for the scenario
 	 */
 	protected void createHosts() {
 		this.hosts = new ArrayList<DTNHost>();
+		MovementModel[] mmProtos = new MovementModel[nrofGroups + 1];
+
+		if (movementCache != null) {
+			if (movementCache.isReplay()) {
+				/* all groups' settings are needed for finding the recording
+				 * (recorded models are created in the normal order to get
+				 * the same random numbers as without recording) */
+				for (int i=1; i<=nrofGroups; i++) {
+					Settings s = new Settings(GROUP_NS+i);
+					s.setSecondaryNamespace(GROUP_NS);
+					mmProtos[i] = createMovementModel(s);
+				}
+			}
+			movementCache.open();
+		}
 
 		for (int i=1; i<=nrofGroups; i++) {
 			List<NetworkInterface> interfaces = 
@@ -325,9 +378,8 @@ public class SimScenario implements Serializable {
 			int appCount;
 
 			// creates prototypes of MessageRouter and MovementModel
-			MovementModel mmProto = 
-				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
-						s.getSetting(MOVEMENT_MODEL_S));
+			MovementModel mmProto = (mmProtos[i] != null ? mmProtos[i] :
+				createMovementModel(s));
 			MessageRouter mRouterProto = 
 				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
 						s.getSetting(ROUTER_S));
@@ -378,10 +430,6 @@ public class SimScenario implements Serializable {
 				}
 			}
 
-			if (mmProto instanceof MapBasedMovement) {
-				this.simMap = ((MapBasedMovement)mmProto).getMap();
-			}
-
 			// creates hosts of ith group
 			for (int j=0; j<nrofHosts; j++) {
 				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
@@ -5,12 +5,15 @@
 package core;
 
 import input.EventQueue;
+import input.EventQueueScheduler;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 /**
@@ -36,6 +39,47 @@ public class World {
 	 * -setting id ({@value}). Boolean (true/false) variable. 
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
+	
+	/**
+	 * Should quiescent hosts be left out from the host updates -setting id 
+	 * ({@value}). Boolean (true/false) variable. Default is false.
+	 * A host is quiescent when it has no connections and its router has 
+	 * nothing to do (see {@link DTNHost#isQuiescent()}). The world keeps a
+	 * set of the hosts that are not quiescent and updates only them. 
+	 * A quiescent host is woken up (added back to the set) when it gets a
+	 * connection or a message, when it moves (only if connections are 
+	 * simulated, since moving hosts must look for new connections), or
+	 * when its next update time (see {@link DTNHost#getNextUpdateTime()})
+	 * is reached. Skipping them doesn't lose any events, but connections
+	 * to quiescent hosts are always initiated by the other host, which may
+	 * change the order of events within an update round compared to full
+	 * updates. Sleeping hosts (see {@link DTNHost#isSleeping()}) are also
+	 * left out from the connectivity optimizer until they wake up.
+	 */
+	public static final String SKIP_QUIESCENT_S = "skipQuiescentHosts";
+	
+	/**
+	 * Should all hosts be updated after every external event -setting id 
+	 * ({@value}). Boolean (true/false) variable. Default is false, i.e., 
+	 * only the hosts touched by the event (see 
+	 * {@link ExternalEvent#addTouchedHosts(World, List)}) and their current
+	 * peers are updated after an event and all hosts are updated at the end
+	 * of every update interval. Setting this to true restores the old 
+	 * behavior of updating all hosts after every event.
+	 */
+	public static final String UPDATE_ALL_AFTER_EVENT_S = 
+		"updateAllAfterEvents";
+
+	/**
+	 * Should the hosts be moved using a structure-of-arrays position store
+	 * -setting id ({@value}). Boolean (true/false) variable. Default is 
+	 * false. With the store, hosts are moved towards their waypoints in 
+	 * a tight loop over primitive arrays and the movement models are 
+	 * called only when a waypoint is reached (see 
+	 * {@link HostPositionStore}). The locations may differ from the default
+	 * movement by rounding errors.
+	 */
+	public static final String ARRAY_MOVEMENT_S = "arrayMovement";
 
 	private int sizeX;
 	private int sizeY;
@@ -43,7 +87,8 @@ public class World {
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** picks the queue with the next event from all event queues */
+	private EventQueueScheduler eventScheduler;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -57,6 +102,29 @@ public class World {
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
 	private boolean isConSimulated;
+	/** should quiescent hosts be skipped in updates */
+	private boolean skipQuiescent;
+	/** should all hosts be updated after every external event */
+	private boolean updateAllAfterEvent;
+	/** store that moves the hosts (or null if hosts move themselves) */
+	private HostPositionStore positionStore;
+	/** hosts touched by the latest external event (reused list) */
+	private List<DTNHost> touchedHosts;
+	/** indexes (in the host list) of the hosts that are not quiescent, i.e.,
+	 * the hosts to update (if quiescent hosts are skipped) */
+	private int[] activeHosts;
+	/** number of valid values in {@link #activeHosts} */
+	private int nrofActive;
+	/** is the host with the index in the active host set */
+	private boolean[] isActive;
+	/** the wake up time in the queue for the host with the index (or -1 if
+	 * the host has no valid wake up queue entry) */
+	private double[] wakeUpTimes;
+	/** quiescent hosts in the order of their wake up times */
+	private PriorityQueue<WakeUp> wakeUpQueue;
+	/** position of the host that is being updated in the active host set, 
+	 * or -1 if no update round is in progress */
+	private int updatePosition;
 
 	/**
 	 * Constructor.
@@ -76,6 +144,13 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;
 		this.isConSimulated = false;
+		this.touchedHosts = new ArrayList<DTNHost>();
+		
+		/* scheduled updates go first if events happen at the same time */
+		List<EventQueue> allQueues = new ArrayList<EventQueue>();
+		allQueues.add(this.scheduledUpdates);
+		allQueues.addAll(eventQueues);
+		this.eventScheduler = new EventQueueScheduler(allQueues);
 
 		setNextEventQueue();
 		initSettings();
@@ -92,6 +167,11 @@ public class World {
 			randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+		skipQuiescent = s.getBoolean(SKIP_QUIESCENT_S, false);
+		updateAllAfterEvent = s.getBoolean(UPDATE_ALL_AFTER_EVENT_S, false);
+		if (s.getBoolean(ARRAY_MOVEMENT_S, false)) {
+			this.positionStore = new HostPositionStore(this.hosts);
+		}
 		
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
@@ -100,6 +180,23 @@ public class World {
 		else { // null pointer means "don't randomize"
 			this.updateOrder = null;
 		}
+		
+		if (skipQuiescent) {
+			int nrofHosts = this.hosts.size();
+			this.activeHosts = new int[nrofHosts];
+			this.isActive = new boolean[nrofHosts];
+			this.wakeUpTimes = new double[nrofHosts];
+			this.wakeUpQueue = new PriorityQueue<WakeUp>();
+			this.updatePosition = -1;
+			/* all hosts are active until their first update */
+			for (int i=0; i<nrofHosts; i++) {
+				this.activeHosts[i] = i;
+				this.isActive[i] = true;
+				this.wakeUpTimes[i] = -1;
+				this.hosts.get(i).setWorld(this, i);
+			}
+			this.nrofActive = nrofHosts;
+		}
 	}
 
 	/**
@@ -126,22 +223,12 @@ public class World {
 
 	/**
 	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * event queue that has the next event. Between the calls of this method,
+	 * the next event is tracked incrementally by the event scheduler.
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.eventScheduler.updateAll();
+		this.nextQueueEventTime = this.eventScheduler.nextEventsTime();
 	}
 
 	/** 
@@ -157,10 +244,10 @@ public class World {
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			ExternalEvent ee = this.eventScheduler.nextEvent();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
+			updateAfterEvent(ee);
+			this.nextQueueEventTime = this.eventScheduler.nextEventsTime();
 		}
 
 		moveHosts(this.updateInterval);
@@ -177,10 +264,14 @@ public class World {
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
-	 * are made in random order.
+	 * are made in random order. Only the hosts that are not quiescent are
+	 * updated if {@link #SKIP_QUIESCENT_S} is enabled.
 	 */
 	private void updateHosts() {
-		if (this.updateOrder == null) { // randomizing is off
+		if (this.skipQuiescent) {
+			updateActiveHosts();
+		}
+		else if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
@@ -205,12 +296,167 @@ public class World {
 			simulateConnections = false;
 		}
 	}
+	
+	/**
+	 * Updates the hosts in the active host set, in random order if update
+	 * order randomizing is on and in the order of the host list otherwise.
+	 * Wakes up the quiescent hosts whose wake up time has come first.
+	 * Hosts that are woken up during the round are updated in the same
+	 * round if their turn hasn't passed yet. After the round, the hosts 
+	 * that became quiescent are removed from the set.
+	 */
+	private void updateActiveHosts() {
+		double simTime = SimClock.getTime();
+		while (!wakeUpQueue.isEmpty() && 
+				wakeUpQueue.peek().wakeUpTime <= simTime) {
+			WakeUp w = wakeUpQueue.poll();
+			if (this.wakeUpTimes[w.index] == w.wakeUpTime) {
+				this.wakeUpTimes[w.index] = -1;
+				wakeUp(w.index);
+			} /* else: the entry is no longer valid */
+		}
+		
+		if (this.updateOrder != null) {
+			shuffleActiveHosts(new Random(SimClock.getIntTime()));
+		} else {
+			Arrays.sort(this.activeHosts, 0, this.nrofActive);
+		}
+		
+		for (updatePosition = 0; updatePosition < nrofActive; 
+				updatePosition++) {
+			if (this.isCancelled) {
+				break;
+			}
+			hosts.get(activeHosts[updatePosition]).update(simulateConnections);
+		}
+		this.updatePosition = -1;
+		
+		/* remove the hosts that became quiescent */
+		int nrofKept = 0;
+		for (int i=0; i < this.nrofActive; i++) {
+			int index = this.activeHosts[i];
+			DTNHost host = this.hosts.get(index);
+			if (host.isQuiescent()) {
+				this.isActive[index] = false;
+				scheduleWakeUp(index, host.getNextUpdateTime());
+			} else {
+				this.activeHosts[nrofKept++] = index;
+			}
+		}
+		this.nrofActive = nrofKept;
+	}
+	
+	/**
+	 * Shuffles the active host set like {@link Collections#shuffle(List, 
+	 * Random)} shuffles a list
+	 * @param rng The random number generator to use
+	 */
+	private void shuffleActiveHosts(Random rng) {
+		for (int i = this.nrofActive - 1; i > 0; i--) {
+			int j = rng.nextInt(i + 1);
+			int tmp = this.activeHosts[i];
+			this.activeHosts[i] = this.activeHosts[j];
+			this.activeHosts[j] = tmp;
+		}
+	}
+	
+	/**
+	 * Adds a quiescent host to the wake up queue
+	 * @param index Index of the host
+	 * @param wakeUpTime The time when the host must be woken up
+	 */
+	private void scheduleWakeUp(int index, double wakeUpTime) {
+		if (wakeUpTime == Double.MAX_VALUE || 
+				this.wakeUpTimes[index] == wakeUpTime) {
+			return; /* never or already in the queue */
+		}
+		this.wakeUpTimes[index] = wakeUpTime;
+		this.wakeUpQueue.add(new WakeUp(index, wakeUpTime));
+	}
+	
+	/**
+	 * Adds a host to the active host set, i.e., to the hosts that are 
+	 * updated on the next update round (or on the current round, if the 
+	 * host's turn hasn't passed yet). Called by the hosts when something 
+	 * may have ended their quiescence.
+	 * @param index Index of the host in the host list
+	 */
+	void wakeUp(int index) {
+		if (this.isActive[index]) {
+			return;
+		}
+		this.isActive[index] = true;
+		if (this.updatePosition < 0 || this.updateOrder != null) {
+			/* sorted or shuffled before the next round */
+			this.activeHosts[this.nrofActive++] = index;
+			return;
+		}
+		
+		/* keep the set in order during the update round */
+		int pos = -Arrays.binarySearch(this.activeHosts, 0, this.nrofActive,
+				index) - 1;
+		System.arraycopy(this.activeHosts, pos, this.activeHosts, pos + 1, 
+				this.nrofActive - pos);
+		this.activeHosts[pos] = index;
+		this.nrofActive++;
+		if (pos <= this.updatePosition) {
+			this.updatePosition++; /* the host's turn has passed */
+		}
+	}
+	
+	/**
+	 * Wakes up a host that has moved if connections are simulated (a moving
+	 * host may get new connections). Called by the hosts.
+	 * @param index Index of the host in the host list
+	 */
+	void hostMoved(int index) {
+		if (this.simulateConnections) {
+			wakeUp(index);
+		}
+	}
+
+	/**
+	 * Updates the hosts after an external event was processed. Only the
+	 * hosts the event touched and their current peers are updated, unless 
+	 * the event doesn't know the hosts it touched or all hosts should be
+	 * updated after every event (see {@link #UPDATE_ALL_AFTER_EVENT_S}).
+	 * @param ee The processed event
+	 */
+	private void updateAfterEvent(ExternalEvent ee) {
+		this.touchedHosts.clear();
+		if (this.updateAllAfterEvent || 
+				!ee.addTouchedHosts(this, this.touchedHosts)) {
+			updateHosts();
+			return;
+		}
+		
+		/* add the peers of the touched hosts */
+		for (int i=0, n=this.touchedHosts.size(); i<n; i++) {
+			for (Connection con : this.touchedHosts.get(i).getConnections()) {
+				DTNHost peer = con.getOtherNode(this.touchedHosts.get(i));
+				if (!this.touchedHosts.contains(peer)) {
+					this.touchedHosts.add(peer);
+				}
+			}
+		}
+		
+		for (int i=0, n=this.touchedHosts.size(); i<n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			this.touchedHosts.get(i).update(simulateConnections);
+		}
+	}
 
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.positionStore != null) {
+			this.positionStore.move(timeIncrement);
+			return;
+		}
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
@@ -273,5 +519,27 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		eventScheduler.updateQueue(scheduledUpdates);
+	}
+	
+	/**
+	 * A quiescent host and the time when it must be woken up
+	 */
+	private static class WakeUp implements Comparable<WakeUp> {
+		private int index;
+		private double wakeUpTime;
+		
+		private WakeUp(int index, double wakeUpTime) {
+			this.index = index;
+			this.wakeUpTime = wakeUpTime;
+		}
+		
+		/**
+		 * Orders the hosts by wake up time and index
+		 */
+		public int compareTo(WakeUp other) {
+			int c = Double.compare(this.wakeUpTime, other.wakeUpTime);
+			return (c != 0 ? c : this.index - other.index);
+		}
 	}
 }
@@ -4,36 +4,82 @@
  */
 package gui;
 
+import gui.playfield.FieldSnapshot;
 import gui.playfield.PlayField;
+import gui.playfield.SnapshotBuffer;
+import input.MovieReader;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 
 import javax.swing.JOptionPane;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import movement.Path;
 import ui.DTNSimUI;
 import core.Coord;
 import core.DTN2Manager;
 import core.DTNHost;
+import core.Settings;
 import core.SimClock;
+import core.SimError;
 
 /**
- * Graphical User Interface for simulator
+ * Graphical User Interface for simulator.
+ * <P>
+ * The simulation runs in its own thread and publishes snapshots of the
+ * node states to a {@link SnapshotBuffer}. The event dispatch thread draws
+ * the latest snapshot at most {@link #FRAME_RATE_S} times per second.
+ * Normally the simulation waits for the previous snapshot to be drawn
+ * before publishing the next one, so every GUI update interval is shown.
+ * In turbo mode the simulation doesn't wait and snapshots are only taken
+ * once per frame.
+ * </P>
+ * <P>
+ * If a movie file is set (see {@link #MOVIE_S}), the GUI replays the
+ * recorded movie instead of running the simulation. The movie can be
+ * played at any speed and the "play until" control seeks to any time of it.
+ * </P>
  */
 public class DTNSimGUI extends DTNSimUI {
+	/** Frame rate -setting id ({@value}). Defines how many times per second
+	 * (at most) the play field is redrawn. Read from the
+	 * {@link MainWindow#GUI_NS} namespace. */
+	public static final String FRAME_RATE_S = "frameRate";
+	/** Default frame rate ({@value}) */
+	public static final int DEF_FRAME_RATE = 25;
+	/** Movie -setting id ({@value}). Path of a movie file recorded with
+	 * {@link report.MovieReport} for the same scenario. If set, the movie
+	 * is replayed instead of running the simulation. Read from the
+	 * {@link MainWindow#GUI_NS} namespace. */
+	public static final String MOVIE_S = "movie";
+	
 	private MainWindow main;
 	private PlayField field;
 	private GUIControls guiControls;
 	private EventLogPanel eventLogPanel;
 	private InfoPanel infoPanel;
 	
+	/** snapshots published by the simulation thread */
+	private SnapshotBuffer snapshots;
+	/** time between frames (milliseconds) */
+	private int frameTime;
+	/** wall clock time of the latest snapshot in turbo mode */
+	private long lastSampleTime;
+	/** the replayed movie (or null if not replaying) */
+	private MovieReader movie;
+	/** time to seek the movie to (or NaN if no seek is requested) */
+	private volatile double seekTime = Double.NaN;
+	
 	private void startGUI() {
 		try {
 			SwingUtilities.invokeAndWait(new Runnable() {
@@ -92,14 +138,33 @@ public class DTNSimGUI extends DTNSimUI {
 		});
 
 		this.main.setVisible(true);
+		
+		// draw the latest snapshot (if any) once per frame
+		Settings s = new Settings(MainWindow.GUI_NS);
+		int frameRate = s.getInt(FRAME_RATE_S, DEF_FRAME_RATE);
+		s.ensurePositiveValue(frameRate, FRAME_RATE_S);
+		this.frameTime = 1000 / Math.max(frameRate, 1);
+		Timer frameTimer = new Timer(frameTime, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				showLatestSnapshot();
+			}
+		});
+		frameTimer.start();
 	}
 	
 	@Override
 	protected void runSim() {
+		if (isReplay()) {
+			runReplay();
+			return;
+		}
+		
 		double simTime = SimClock.getTime();
 		double endTime = scen.getEndTime();
 		
+		this.snapshots = new SnapshotBuffer();
 		startGUI();
+		this.update(true); // show the initial state
 		
 		// Startup DTN2Manager
 		// XXX: Would be nice if this wasn't needed..
@@ -134,6 +199,81 @@ public class DTNSimGUI extends DTNSimUI {
 		}
 	}
 	
+	/**
+	 * Replays the movie until the GUI is closed
+	 */
+	private void runReplay() {
+		Settings s = new Settings(MainWindow.GUI_NS);
+		try {
+			this.movie = new MovieReader(new File(s.getSetting(MOVIE_S)),
+					world.getHosts());
+		} catch (SimError er) {
+			System.err.println("Can't replay: " + er.getMessage());
+			System.exit(-1);
+		}
+		showMovieLocations();
+		
+		this.snapshots = new SnapshotBuffer();
+		startGUI();
+		movie.addConnectionListener(eventLogPanel);
+		movie.addMessageListener(eventLogPanel);
+		this.update(true);
+		
+		while (!simCancelled) {
+			double time = this.seekTime;
+			if (!Double.isNaN(time)) {
+				this.seekTime = Double.NaN;
+				movie.seek(time);
+				showMovieLocations();
+				this.update(true);
+				continue;
+			}
+			
+			if (guiControls.isPaused()) {
+				wait(10);
+			}
+			else if (movie.advance()) {
+				showMovieLocations();
+			}
+			else {
+				guiControls.setPaused(true); // end of the movie
+			}
+			this.update(false);
+		}
+		
+		System.exit(0);
+	}
+	
+	/**
+	 * Moves the hosts to their locations in the movie so that the node
+	 * chooser and the info panel show the replayed locations
+	 */
+	private void showMovieLocations() {
+		for (DTNHost h : world.getHosts()) {
+			int a = h.getAddress();
+			h.setLocation(new Coord(movie.getX(a), movie.getY(a)));
+		}
+	}
+	
+	/**
+	 * Returns true if the GUI replays a movie
+	 * @return true if the GUI replays a movie
+	 * @see #MOVIE_S
+	 */
+	@Override
+	public boolean isReplay() {
+		return new Settings(MainWindow.GUI_NS).contains(MOVIE_S);
+	}
+	
+	/**
+	 * Moves the replayed movie to the last frame at or before a time.
+	 * The seek is done in the replay thread.
+	 * @param time The time to move to
+	 */
+	public void seek(double time) {
+		this.seekTime = time;
+	}
+	
 	/**
 	 * Processes assertion errors by showing a warning dialog to the user
 	 * and pausing the simulation (if it's running)
@@ -183,9 +323,22 @@ public class DTNSimGUI extends DTNSimUI {
 	}
 	
     /**
-     * Updates the GUI
+     * Updates the GUI by publishing a snapshot of the node states (if it's
+     * time to do so). Called from the simulation thread.
+     * @param forcedUpdate If true, the snapshot is published right away
      */
     public void update(boolean forcedUpdate) {
+    	if (guiControls.isTurbo()) {
+    		// sample the simulation at most once per frame, never wait
+    		long now = System.currentTimeMillis();
+    		if (forcedUpdate || (now - this.lastSampleTime >= frameTime &&
+    				SimClock.getTime() != this.lastUpdate)) {
+    			this.lastSampleTime = now;
+    			publishSnapshot();
+    		}
+    		return;
+    	}
+    	
     	double guiUpdateInterval = guiControls.getUpdateInterval(); 		
     	
     	// update only if long enough simTime has passed (and not forced)
@@ -193,19 +346,13 @@ public class DTNSimGUI extends DTNSimUI {
 				- this.lastUpdate)) {
 			return;
 		}
-    	
-		try {
-			// run update in EDT, TODO: optimize threading
-			SwingUtilities.invokeAndWait(new Runnable() {
-			    public void run() {
-					updateView();
-			    }
-			});
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		} catch (InvocationTargetException e) {
-			e.printStackTrace();
+		
+		// wait until the previous snapshot has been drawn
+		while (!forcedUpdate && !snapshots.awaitTaken(frameTime) && 
+				!simCancelled && !guiControls.isTurbo()) {
+			// still waiting
 		}
+		publishSnapshot();
 		
     	// wait a while if we don't want to run simulation at full speed
     	if (guiUpdateInterval < 0) {
@@ -215,17 +362,42 @@ public class DTNSimGUI extends DTNSimUI {
     }
     
     /**
-     * Updates playfield and sim time field
-     *
+     * Publishes a snapshot of the current node states
      */
-    private void updateView() {
-    	double simTime = SimClock.getTime();
-    	this.lastUpdate = simTime;
-    	guiControls.setSimTime(simTime); //update time to control panel
-
+    private void publishSnapshot() {
+    	this.lastUpdate = SimClock.getTime();
+    	if (movie != null) {
+    		snapshots.publish(new FieldSnapshot(movie));
+    	}
+    	else {
+    		snapshots.publish(new FieldSnapshot(world.getHosts(), lastUpdate));
+    	}
+    }
+    
+    /**
+     * Shows the latest published snapshot (if there's a new one) in the
+     * playfield and its time in the control panel. Called from the event
+     * dispatch thread.
+     */
+    private void showLatestSnapshot() {
+    	if (!snapshots.hasNew()) {
+    		return;
+    	}
+    	FieldSnapshot snapshot = snapshots.take();
+    	guiControls.setSimTime(snapshot.getTime());
+    	this.field.setSnapshot(snapshot);
     	this.field.updateField();
     }
     
+    /**
+     * Returns true if the GUI is in turbo mode
+     * @return true if the GUI is in turbo mode
+     * @see GUIControls#isTurbo()
+     */
+    public boolean isTurbo() {
+    	return guiControls.isTurbo();
+    }
+    
     /**
      * Sets the pause of the simulation on/off
      * @param paused True if pause should be set on
@@ -278,7 +450,7 @@ public class DTNSimGUI extends DTNSimUI {
     	Coord gLoc = this.field.getGraphicsPosition(loc);
     	int midX, midY;
     	
-    	updateView(); // update graphics to match the values
+    	showLatestSnapshot(); // update graphics to match the values
     	
     	midX = (int)gLoc.getX() - sp.getViewport().getWidth()/2;
     	midY = (int)gLoc.getY() - sp.getViewport().getHeight()/2;
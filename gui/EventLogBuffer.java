@@ -0,0 +1,280 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import core.DTNHost;
+import core.Message;
+
+/**
+ * Ring buffer of event log entries. The entries are stored as fixed-size
+ * records in primitive arrays: event type, time, addresses of the hosts,
+ * number of the message and flags. When the buffer is full, the oldest
+ * entries are overwritten. Every entry has a sequence number that grows
+ * by one for every added entry, so the entries can be referred to
+ * even when the buffer wraps around.
+ * <P>
+ * The messages of the entries are kept in a table whose entries count the
+ * records that refer to them. A message is removed from the table when the
+ * last entry that refers to it is overwritten, so the buffer never keeps
+ * more messages than it has entries.
+ * </P>
+ * <P>
+ * Entries are added in the simulation thread and read in the event dispatch
+ * thread. Readers must synchronize on the buffer while reading entries.
+ * </P>
+ */
+public class EventLogBuffer {
+	/** Value of a missing host or message */
+	public static final int NONE = -1;
+
+	/** Flag of highlighted entries */
+	private static final byte HIGHLIGHT = 1;
+	/** Flag of entries whose description matches the filter */
+	private static final byte MATCH = 2;
+	/** Flag of entries whose description doesn't match the filter */
+	private static final byte NO_MATCH = 4;
+
+	private final int capacity;
+	private final byte[] types;
+	private final double[] times;
+	private final int[] hosts1;
+	private final int[] hosts2;
+	private final int[] msgs;
+	private final byte[] flags;
+	/** sequence number of the next entry */
+	private long end;
+
+	/** hosts of the entries by address */
+	private DTNHost[] hosts;
+	/** numbers of the messages by their id */
+	private Map<String, Integer> msgNumbers;
+	/** the latest seen copies of the messages by number */
+	private Message[] messages;
+	/** number of entries that refer to each message number */
+	private int[] msgRefCounts;
+	/** stack of the free message numbers */
+	private int[] freeMsgNumbers;
+	private int nrofFreeMsgNumbers;
+	/** the smallest message number that has never been used */
+	private int nextMsgNumber;
+
+	/**
+	 * Creates a new buffer
+	 * @param capacity Maximum number of entries in the buffer
+	 */
+	public EventLogBuffer(int capacity) {
+		this.capacity = capacity;
+		this.types = new byte[capacity];
+		this.times = new double[capacity];
+		this.hosts1 = new int[capacity];
+		this.hosts2 = new int[capacity];
+		this.msgs = new int[capacity];
+		this.flags = new byte[capacity];
+		this.end = 0;
+		this.hosts = new DTNHost[0];
+		this.msgNumbers = new HashMap<String, Integer>();
+		/* entries refer to at most capacity messages and a new entry's
+		 * message is numbered before the old entry is released */
+		this.messages = new Message[capacity + 1];
+		this.msgRefCounts = new int[capacity + 1];
+		this.freeMsgNumbers = new int[capacity + 1];
+		this.nrofFreeMsgNumbers = 0;
+		this.nextMsgNumber = 0;
+	}
+
+	/**
+	 * Adds an entry to the buffer
+	 * @param type Type of the event
+	 * @param time Time of the event
+	 * @param host1 First host of the event (or null)
+	 * @param host2 Second host of the event (or null)
+	 * @param m Message of the event (or null)
+	 * @param highlight If true, the entry is highlighted
+	 */
+	public synchronized void add(int type, double time, DTNHost host1,
+			DTNHost host2, Message m, boolean highlight) {
+		int i = (int)(end % capacity);
+		int msg = addMessage(m);
+		if (end >= capacity) {
+			releaseMessage(msgs[i]); // the overwritten entry's message
+		}
+		types[i] = (byte)type;
+		times[i] = time;
+		hosts1[i] = addHost(host1);
+		hosts2[i] = addHost(host2);
+		msgs[i] = msg;
+		flags[i] = (highlight ? HIGHLIGHT : 0);
+		end++;
+	}
+
+	/**
+	 * Stores a host for the entries
+	 * @return Address of the host or {@link #NONE} if host is null
+	 */
+	private int addHost(DTNHost host) {
+		if (host == null) {
+			return NONE;
+		}
+		int address = host.getAddress();
+		if (address >= hosts.length) {
+			hosts = Arrays.copyOf(hosts, Math.max(address + 1,
+					hosts.length * 2));
+		}
+		hosts[address] = host;
+		return address;
+	}
+
+	/**
+	 * Stores a message for a new entry
+	 * @return Number of the message or {@link #NONE} if message is null
+	 */
+	private int addMessage(Message m) {
+		if (m == null) {
+			return NONE;
+		}
+		Integer number = msgNumbers.get(m.getId());
+		if (number == null) {
+			number = (nrofFreeMsgNumbers > 0 ?
+					freeMsgNumbers[--nrofFreeMsgNumbers] : nextMsgNumber++);
+			msgNumbers.put(m.getId(), number);
+		}
+		messages[number] = m;
+		msgRefCounts[number]++;
+		return number;
+	}
+
+	/**
+	 * Releases the message of an overwritten entry. The message is removed
+	 * from the table if no other entry refers to it.
+	 * @param number Number of the message or {@link #NONE}
+	 */
+	private void releaseMessage(int number) {
+		if (number == NONE || --msgRefCounts[number] > 0) {
+			return;
+		}
+		msgNumbers.remove(messages[number].getId());
+		messages[number] = null;
+		freeMsgNumbers[nrofFreeMsgNumbers++] = number;
+	}
+
+	/**
+	 * Returns the number of messages the buffer keeps for its entries
+	 * @return The number of messages
+	 */
+	public synchronized int getNrofMessages() {
+		return msgNumbers.size();
+	}
+
+	/**
+	 * Returns the sequence number of the oldest entry in the buffer
+	 * @return the sequence number of the oldest entry
+	 */
+	public long getFirst() {
+		return Math.max(end - capacity, 0);
+	}
+
+	/**
+	 * Returns the sequence number of the next entry (i.e., the number of
+	 * entries added so far)
+	 * @return the sequence number of the next entry
+	 */
+	public long getEnd() {
+		return this.end;
+	}
+
+	/**
+	 * Returns the event type of an entry
+	 * @param seq Sequence number of the entry
+	 * @return the event type
+	 */
+	public int getType(long seq) {
+		return types[index(seq)];
+	}
+
+	/**
+	 * Returns the time of an entry
+	 * @param seq Sequence number of the entry
+	 * @return the time of the event
+	 */
+	public double getTime(long seq) {
+		return times[index(seq)];
+	}
+
+	/**
+	 * Returns the first host of an entry
+	 * @param seq Sequence number of the entry
+	 * @return the first host (or null if the event has no hosts)
+	 */
+	public DTNHost getHost1(long seq) {
+		int address = hosts1[index(seq)];
+		return (address == NONE ? null : hosts[address]);
+	}
+
+	/**
+	 * Returns the second host of an entry
+	 * @param seq Sequence number of the entry
+	 * @return the second host (or null if the event has only one host)
+	 */
+	public DTNHost getHost2(long seq) {
+		int address = hosts2[index(seq)];
+		return (address == NONE ? null : hosts[address]);
+	}
+
+	/**
+	 * Returns the message of an entry. If the message has several copies,
+	 * the latest copy that was logged is returned.
+	 * @param seq Sequence number of the entry
+	 * @return the message (or null if the event has no message)
+	 */
+	public Message getMessage(long seq) {
+		int number = msgs[index(seq)];
+		return (number == NONE ? null : messages[number]);
+	}
+
+	/**
+	 * Returns true if an entry is highlighted
+	 * @param seq Sequence number of the entry
+	 * @return true if the entry is highlighted
+	 */
+	public boolean isHighlighted(long seq) {
+		return (flags[index(seq)] & HIGHLIGHT) != 0;
+	}
+
+	/**
+	 * Returns the cached filter result of an entry
+	 * @param seq Sequence number of the entry
+	 * @return {@link Boolean#TRUE} or {@link Boolean#FALSE} if the entry
+	 * has been matched against the filter, null if not
+	 */
+	public Boolean getMatch(long seq) {
+		byte f = flags[index(seq)];
+		if ((f & MATCH) != 0) {
+			return Boolean.TRUE;
+		}
+		return ((f & NO_MATCH) != 0 ? Boolean.FALSE : null);
+	}
+
+	/**
+	 * Caches the filter result of an entry
+	 * @param seq Sequence number of the entry
+	 * @param match True if the entry matches the filter
+	 */
+	public void setMatch(long seq, boolean match) {
+		flags[index(seq)] |= (match ? MATCH : NO_MATCH);
+	}
+
+	/**
+	 * Returns the index of an entry in the arrays
+	 */
+	private int index(long seq) {
+		assert seq >= getFirst() && seq < end : "Entry " + seq +
+			" is not in the buffer";
+		return (int)(seq % capacity);
+	}
+}
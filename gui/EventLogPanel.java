@@ -4,20 +4,27 @@
  */
 package gui;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Font;
-import java.awt.GridLayout;
-import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.regex.Pattern;
 
 import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
-import javax.swing.JButton;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 
 import core.ConnectionListener;
 import core.DTNHost;
@@ -27,87 +34,121 @@ import core.Settings;
 import core.SimClock;
 
 /**
- * Event log panel where log entries are displayed.
+ * Event log panel where log entries are displayed. The events are stored
+ * in an {@link EventLogBuffer} and the panel shows only the rows that fit
+ * in it. The "show" controls and the regular expression filter are applied
+ * when the rows are shown, so changing the controls also affects the
+ * events that were logged earlier. The scroll bar scrolls through all
+ * the events in the buffer.
  */
-public class EventLogPanel extends JPanel 
-	implements ConnectionListener, MessageListener, ActionListener {
+public class EventLogPanel extends JPanel
+	implements ConnectionListener, MessageListener {
 
 	/** Event log panel settings namespace ({@value}) */
 	public static final String EL_PANEL_NS = "GUI.EventLogPanel";
-	
+
 	/** Number of events -setting id ({@value}). Defines the number of
-	 * events to show in the panel. */
+	 * events that are kept in the log. */
 	public static final String NROF_EVENTS_S = "nrofEvents";
-	
+
 	/** Regular expression filter -setting id ({@value}). Defines the regular
 	 * expression against which the event texts are matched; only matching
 	 * events are not shown */
 	public static final String EVENTS_RE_S = "REfilter";
-	
+
 	private static final String PANEL_TITLE = "Event log";
-	/** format of a single log entry */
-	private static final String ENTRY_FORMAT = "% 9.1f: %s "; 
+	/** format of the time of a log entry */
+	private static final String TIME_FORMAT = "%.1f";
 	private static final int FONT_SIZE = 12;
 	private static final String FONT_TYPE = "monospaced";
-	private static final Color LOG_BUTTON_BG = Color.WHITE;
+	private static final Color LOG_BG = Color.WHITE;
 	private static final String HOST_DELIM = "<->";
 	private static final Color HIGHLIGHT_BG_COLOR = Color.GREEN;
+	/** titles of the log view's columns */
+	private static final String[] COLUMNS = {"time", "event", "host",
+		"other host", "message"};
+	private static final int HOST1_COL = 2;
+	private static final int HOST2_COL = 3;
+	private static final int MSG_COL = 4;
+	/** how many entries one mouse wheel step scrolls */
+	private static final int WHEEL_STEP = 3;
+	/** how many entries are checked at most while the buffer is locked
+	 * when the shown rows are searched */
+	private static final int SCAN_CHUNK = 1024;
 
-	// constants used for button property  
-	private static final String HOST_PROP = "host";
-	private static final String MSG_PROP = "message";
+	/* types of the events */
+	private static final int CONN_UP = 0;
+	private static final int CONN_DOWN = 1;
+	private static final int MSG_CREATED = 2;
+	private static final int MSG_TRANSFER_STARTED = 3;
+	private static final int MSG_RELAYED = 4;
+	private static final int MSG_DELIVERED = 5;
+	private static final int MSG_DELIVERED_AGAIN = 6;
+	private static final int MSG_REMOVED = 7;
+	private static final int MSG_DROPPED = 8;
+	private static final int MSG_ABORTED = 9;
+	/** descriptions of the event types */
+	private static final String[] EVENT_NAMES = {"Connection UP",
+		"Connection DOWN", "Message created", "Message relay started",
+		"Message relayed", "Message delivered", "Message delivered again",
+		"Message removed", "Message dropped", "Message relay aborted"};
 
 	/** How often the log is updated (milliseconds) */
 	public static final int LOG_UP_INTERVAL = 500;
-	
-	/** Regular expression to filter log entries (changed trough Settings) */ 
-	private String regExp = null;
-	public static final int DEFAULT_MAX_NROF_EVENTS = 30;
-	/** how many events to show in log (changed trough Settings) */
-	private int maxNrofEvents;
-	
+
+	/** Regular expression to filter log entries (changed trough Settings) */
+	private Pattern regExp = null;
+	public static final int DEFAULT_MAX_NROF_EVENTS = 100000;
+
 	private Font font;	// font used in log entries
 	private DTNSimGUI gui;
-	private Vector<JPanel> eventPanes;
-	private GridLayout layout;
-	
+	private EventLogBuffer buffer;
+
+	private JTable table;
+	private EventTableModel model;
+	private JScrollBar scrollBar;
+	/** sequence number of the last entry to show or -1 to follow the log */
+	private long viewEnd;
+	/** log state when the view was updated */
+	private long lastEnd;
+	private long lastViewEnd;
+	private int lastShowMask;
+	private int lastNrofRows;
+	/** true while the scroll bar is updated to match the view */
+	private boolean adjustingScrollBar;
+
 	private EventLogControlPanel controls;
-	private EventLogControl conUpCheck;
-	private EventLogControl conDownCheck;
-	private EventLogControl msgCreateCheck;
-	private EventLogControl msgTransferStartCheck;
-	private EventLogControl msgRelayCheck;
-	private EventLogControl msgRemoveCheck;
-	private EventLogControl msgDeliveredCheck;
-	private EventLogControl msgDropCheck;
-	private EventLogControl msgAbortCheck;
-	
+	/** controls of the event types */
+	private EventLogControl[] checks;
+
 	/**
 	 * Creates a new log panel
-	 * @param gui The where this log belongs to (for callbacks) 
+	 * @param gui The where this log belongs to (for callbacks)
 	 */
 	public EventLogPanel(DTNSimGUI gui) {
 		this.gui = gui;
 		String title = PANEL_TITLE;
 		Settings s = new Settings(EL_PANEL_NS);
-		
-		this.maxNrofEvents = s.getInt(NROF_EVENTS_S,
+
+		int maxNrofEvents = s.getInt(NROF_EVENTS_S,
 				DEFAULT_MAX_NROF_EVENTS);
-		this.regExp = s.getSetting(EVENTS_RE_S, null);
-		
-		layout = new GridLayout(maxNrofEvents,1);
+		s.ensurePositiveValue(maxNrofEvents, NROF_EVENTS_S);
+		this.buffer = new EventLogBuffer(Math.max(maxNrofEvents, 1));
+		String re = s.getSetting(EVENTS_RE_S, null);
 
-		this.setLayout(layout);
-		if (this.regExp != null) {
-			title += " - RE-filter: " + regExp;
+		if (re != null) {
+			this.regExp = Pattern.compile(re);
+			title += " - RE-filter: " + re;
 		}
 		this.setBorder(BorderFactory.createTitledBorder(
 				getBorder(), title));
-		
-		this.eventPanes = new Vector<JPanel>(maxNrofEvents);
+
 		this.font = new Font(FONT_TYPE,Font.PLAIN, FONT_SIZE);
 		this.controls = createControls();
-		
+		this.viewEnd = -1;
+		this.lastEnd = -1;
+		initView();
+
 		// set log view to update every LOG_UP_INTERVAL milliseconds
 		// also ensures that the update is done in Swing's EDT
 		ActionListener taskPerformer = new ActionListener() {
@@ -125,20 +166,65 @@ public class EventLogPanel extends JPanel
 	 */
 	private EventLogControlPanel createControls() {
 		EventLogControlPanel c = new EventLogControlPanel();
+		checks = new EventLogControl[EVENT_NAMES.length];
 		c.addHeading("connections");
-		conUpCheck = c.addControl("up");
-		conDownCheck = c.addControl("down");
+		checks[CONN_UP] = c.addControl("up");
+		checks[CONN_DOWN] = c.addControl("down");
 		c.addHeading("messages");
-		msgCreateCheck = c.addControl("created");
-		msgTransferStartCheck = c.addControl("started relay");
-		msgRelayCheck = c.addControl("relayed");
-		msgDeliveredCheck = c.addControl("delivered");
-		msgRemoveCheck = c.addControl("removed");
-		msgDropCheck = c.addControl("dropped");
-		msgAbortCheck = c.addControl("aborted");
+		checks[MSG_CREATED] = c.addControl("created");
+		checks[MSG_TRANSFER_STARTED] = c.addControl("started relay");
+		checks[MSG_RELAYED] = c.addControl("relayed");
+		checks[MSG_DELIVERED] = c.addControl("delivered");
+		checks[MSG_DELIVERED_AGAIN] = checks[MSG_DELIVERED];
+		checks[MSG_REMOVED] = c.addControl("removed");
+		checks[MSG_DROPPED] = c.addControl("dropped");
+		checks[MSG_ABORTED] = c.addControl("aborted");
 		return c;
 	}
-	
+
+	/**
+	 * Creates the log view: a table that has as many rows as fit in the
+	 * panel and a scroll bar for scrolling through the log
+	 */
+	private void initView() {
+		this.model = new EventTableModel();
+		this.table = new JTable(model);
+		table.setFont(font);
+		table.setRowHeight(table.getFontMetrics(font).getHeight() + 2);
+		table.setBackground(LOG_BG);
+		table.setFillsViewportHeight(true);
+		table.setDefaultRenderer(Object.class, new EntryRenderer());
+		table.getColumnModel().getColumn(0).setPreferredWidth(60);
+		table.getColumnModel().getColumn(1).setPreferredWidth(160);
+
+		table.addMouseListener(new MouseAdapter() {
+			public void mouseClicked(MouseEvent e) {
+				entryClicked(table.rowAtPoint(e.getPoint()),
+						table.columnAtPoint(e.getPoint()));
+			}
+		});
+		table.addMouseWheelListener(new MouseAdapter() {
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				scrollBar.setValue(scrollBar.getValue() +
+						e.getWheelRotation() * WHEEL_STEP);
+			}
+		});
+
+		this.scrollBar = new JScrollBar(JScrollBar.VERTICAL);
+		scrollBar.addAdjustmentListener(new AdjustmentListener() {
+			public void adjustmentValueChanged(AdjustmentEvent e) {
+				if (!adjustingScrollBar) {
+					scrolled();
+				}
+			}
+		});
+
+		this.setLayout(new BorderLayout());
+		this.add(table.getTableHeader(), BorderLayout.NORTH);
+		this.add(table, BorderLayout.CENTER);
+		this.add(scrollBar, BorderLayout.EAST);
+	}
+
 	/**
 	 * Returns the control panel that this log uses
 	 * @return The control panel
@@ -146,187 +232,332 @@ public class EventLogPanel extends JPanel
 	public EventLogControlPanel getControls() {
 		return this.controls;
 	}
-	
+
 	/**
-	 * Adds a new event to the event log panel
-	 * @param description Textual description of the event
-	 * @param host1 Host that caused the event or null if there was not any
-	 * @param host2 Another host that was involved in the event (or null)
-	 * @param message Message that was involved in the event (or null)
-	 * @param highlight If true, the log entry is highlighted
+	 * Updates the log view if something has changed since the last update.
+	 * Called from the event dispatch thread.
 	 */
-	private void addEvent(String description, DTNHost host1,
-			DTNHost host2, Message message, boolean highlight) {
-		JPanel eventPane = new JPanel();
-		eventPane.setLayout(new BoxLayout(eventPane,BoxLayout.LINE_AXIS));
-		
-		String text = String.format(ENTRY_FORMAT, 
-				SimClock.getTime(),description);
-		JLabel label = new JLabel(text);
-		label.setFont(font);
-		eventPane.add(label);
-		
-		if (host1 != null) {
-			addInfoButton(eventPane,host1,HOST_PROP);
-		}
-		if (host2 != null) {
-			JLabel betweenLabel = new JLabel(HOST_DELIM);
-			betweenLabel.setFont(font);
-			eventPane.add(betweenLabel);
-			addInfoButton(eventPane,host2,HOST_PROP);
+	private void updateLogView() {
+		int showMask = 0;
+		for (int i=0; i<checks.length; i++) {
+			showMask |= (checks[i].showEvent() ? 1 << i : 0);
 		}
-		if (message != null) {
-			addInfoButton(eventPane, message, MSG_PROP);
+		int nrofRows = Math.max(table.getHeight() / table.getRowHeight(), 1);
+		long end;
+		synchronized (buffer) {
+			end = buffer.getEnd();
 		}
 
-		if (highlight) {
-			eventPane.setBackground(HIGHLIGHT_BG_COLOR);
+		if (end == lastEnd && viewEnd == lastViewEnd &&
+				showMask == lastShowMask && nrofRows == lastNrofRows) {
+			return; // nothing has changed
 		}
-		
-		eventPanes.add(eventPane);
-		
-		// if the log is full, remove oldest entries first
-		if (this.eventPanes.size() > maxNrofEvents) {
-			eventPanes.remove(0);
+		this.lastEnd = end;
+		this.lastViewEnd = viewEnd;
+		this.lastShowMask = showMask;
+		this.lastNrofRows = nrofRows;
+
+		long first;
+		long last;
+		synchronized (buffer) {
+			first = buffer.getFirst();
+			end = buffer.getEnd();
+			last = (viewEnd < 0 ? end - 1 : Math.max(viewEnd, first));
 		}
+		model.setRows(last, nrofRows, showMask);
+
+		adjustingScrollBar = true;
+		scrollBar.setValues((int)(last - first), 1, 0, (int)(end - first));
+		scrollBar.setBlockIncrement(nrofRows);
+		adjustingScrollBar = false;
 	}
-	
+
 	/**
-	 * Updates the log view
+	 * Moves the view to the position of the scroll bar
 	 */
-	private void updateLogView() {
-		//TODO Optimization: Check if update is really necessary
-		this.removeAll();
-		for (int i=0; i< this.eventPanes.size(); i++) {
-			this.add(eventPanes.get(i));
+	private void scrolled() {
+		if (scrollBar.getValue() + scrollBar.getVisibleAmount() >=
+				scrollBar.getMaximum()) {
+			viewEnd = -1; // at the end -> follow the log
 		}
-		revalidate();
+		else {
+			synchronized (buffer) {
+				viewEnd = buffer.getFirst() + scrollBar.getValue();
+			}
+		}
+		updateLogView();
 	}
-	
-	
+
 	/**
-	 * Adds a new button to a log entry panel and attaches a client 
-	 * property into it
-	 * @param panel Panel where to add the button
-	 * @param o Client property object to add
-	 * @param clientProp Client property key to use for the object
+	 * Returns true if an entry should be shown, i.e., its type is shown and
+	 * its description matches the filter. The filter result is cached in
+	 * the buffer. Must be called while synchronized on the buffer.
+	 * @param seq Sequence number of the entry
+	 * @param showMask Bit mask of the shown event types
+	 * @return true if the entry should be shown
 	 */
-	private void addInfoButton(JPanel panel, Object o, String clientProp) {
-		JButton hButton;
-		hButton = new JButton(o.toString());
-		hButton.putClientProperty(clientProp, o);
-		hButton.addActionListener(this);
-		hButton.setFont(font);
-		hButton.setMargin(new Insets(0,0,0,0));
-		hButton.setBackground(LOG_BUTTON_BG);
-		panel.add(hButton);
+	private boolean isShown(long seq, int showMask) {
+		if ((showMask & (1 << buffer.getType(seq))) == 0) {
+			return false;
+		}
+		if (regExp == null) {
+			return true;
+		}
+		Boolean match = buffer.getMatch(seq);
+		if (match == null) {
+			match = matches(buffer.getType(seq), buffer.getHost1(seq),
+					buffer.getHost2(seq), buffer.getMessage(seq));
+			buffer.setMatch(seq, match);
+		}
+		return match;
 	}
-	
+
 	/**
-	 * Processes a log event
-	 * @param check EventLogControls used to check if this entry type should
-	 * be shown and/or paused upon
-	 * @param name Text description of the event
+	 * Returns true if the description of an event matches the filter
+	 * @param type Type of the event
 	 * @param host1 First host involved in the event (if any, can be null)
 	 * @param host2 Second host involved in the event (if any, can be null)
-	 * @param message The message involved in the event (if any, can be null) 
+	 * @param message The message involved in the event (if any, can be null)
+	 * @return true if there's no filter or the description matches it
 	 */
-	private void processEvent(EventLogControl check, final String name,
-			final DTNHost host1, final DTNHost host2, final Message message) {
-		String descString;	// String format description of the event
-		
-		if (!check.showEvent()) {
-			return; // if event's "show" is not checked, won't pause either 
+	private boolean matches(int type, DTNHost host1, DTNHost host2,
+			Message message) {
+		if (regExp == null) {
+			return true;
 		}
-		
-		descString = name + " " + 
-			(host1!=null ? host1 : "") + 
-			(host2!= null ? (HOST_DELIM + host2) : "") + 
+		String descString = EVENT_NAMES[type] + " " +
+			(host1!=null ? host1 : "") +
+			(host2!= null ? (HOST_DELIM + host2) : "") +
 			(message!=null ? " " + message : "");
-		
-		if (regExp != null && !descString.matches(regExp)){
-			return;	// description doesn't match defined regular expression
+		return regExp.matcher(descString).matches();
+	}
+
+	/**
+	 * Processes a click on a log entry: shows the clicked host or message
+	 * @param row Row of the clicked entry
+	 * @param col Column of the clicked entry
+	 */
+	private void entryClicked(int row, int col) {
+		Object o = model.getObjectAt(row, col);
+		if (o instanceof DTNHost) {
+			gui.setFocus((DTNHost)o);
 		}
-		
-		if (check.pauseOnEvent()) {
+		else if (o instanceof Message) {
+			gui.getInfoPanel().showInfo((Message)o);
+		}
+	}
+
+	/**
+	 * Processes a log event. All events are logged and the "show" controls
+	 * and the filter are applied when the log is viewed.
+	 * @param type Type of the event
+	 * @param host1 First host involved in the event (if any, can be null)
+	 * @param host2 Second host involved in the event (if any, can be null)
+	 * @param message The message involved in the event (if any, can be null)
+	 */
+	private void processEvent(int type, final DTNHost host1,
+			final DTNHost host2, final Message message) {
+		EventLogControl check = checks[type];
+		boolean pause = check.showEvent() && check.pauseOnEvent() &&
+			matches(type, host1, host2, message);
+
+		buffer.add(type, SimClock.getTime(), host1, host2, message, pause);
+
+		if (pause) {
 			gui.setPaused(true);
 			if (host1 != null) {
-				gui.setFocus(host1);
+				/* called from the simulation thread -> focus in the EDT */
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						gui.setFocus(host1);
+					}
+				});
 			}
 		}
-		
-      	addEvent(name, host1, host2, message, check.pauseOnEvent());	
 	}
-	
+
 	// Implementations of ConnectionListener and MessageListener interfaces
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		processEvent(conUpCheck, "Connection UP", host1, host2, null);
+		processEvent(CONN_UP, host1, host2, null);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		processEvent(conDownCheck, "Connection DOWN", host1, host2, null);
+		processEvent(CONN_DOWN, host1, host2, null);
 	}
 
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		if (!dropped) {
-			processEvent(msgRemoveCheck, "Message removed", where, null, m);
-		}
-		else {
-			processEvent(msgDropCheck, "Message dropped", where, null, m);
-		}
+		processEvent(dropped ? MSG_DROPPED : MSG_REMOVED, where, null, m);
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
 		if (firstDelivery) {
-			processEvent(msgDeliveredCheck, "Message delivered", from, to, m); 
+			processEvent(MSG_DELIVERED, from, to, m);
 		}
 		else if (to == m.getTo()) {
-			processEvent(msgDeliveredCheck, "Message delivered again", 
-					from, to, m);
+			processEvent(MSG_DELIVERED_AGAIN, from, to, m);
 		}
 		else {
-			processEvent(msgRelayCheck, "Message relayed", from, to, m);
+			processEvent(MSG_RELAYED, from, to, m);
 		}
 	}
 
 	public void newMessage(Message m) {
-		processEvent(msgCreateCheck, "Message created", m.getFrom(), null, m);
+		processEvent(MSG_CREATED, m.getFrom(), null, m);
 	}
-	
+
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgAbortCheck, "Message relay aborted", from, to, m);
+		processEvent(MSG_ABORTED, from, to, m);
 	}
-	
+
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		processEvent(msgTransferStartCheck,"Message relay started", from,
-				to,m);
-		
+		processEvent(MSG_TRANSFER_STARTED, from, to, m);
 	}
-	
+
 	// end of message interface implementations
-	
-	
+
+	public String toString() {
+		long nrofEvents;
+		synchronized (buffer) {
+			nrofEvents = buffer.getEnd() - buffer.getFirst();
+		}
+		return this.getClass().getSimpleName() + " with " +
+			nrofEvents + " events";
+	}
+
 	/**
-	 * Action listener for log entry (host & message) buttons
+	 * Table model of the shown log entries. The model has only the rows that
+	 * are visible; the values of the rows are read from the buffer when
+	 * the table asks for them.
 	 */
-	public void actionPerformed(ActionEvent e) {
-		JButton source = (JButton)e.getSource();
-		
-		if (source.getClientProperty(HOST_PROP) != null) {
-			// button was a host button -> focus it on GUI
-			gui.setFocus((DTNHost)source.getClientProperty(HOST_PROP));
+	private class EventTableModel extends AbstractTableModel {
+		private static final long serialVersionUID = 42L;
+		/** sequence numbers of the shown entries (oldest first) */
+		private long[] rows = new long[0];
+		private int nrofRows;
+
+		/**
+		 * Sets the shown rows. The entries are searched backwards from the
+		 * last entry in chunks of at most {@link #SCAN_CHUNK} entries, and
+		 * the buffer is locked only for one chunk at a time. This way the
+		 * simulation thread doesn't need to wait for the whole search when
+		 * most of the entries are hidden. Entries that are overwritten
+		 * during the search are not shown.
+		 * @param last Sequence number of the last entry that can be shown
+		 * @param maxRows Maximum number of rows to show
+		 * @param showMask Bit mask of the shown event types
+		 */
+		public void setRows(long last, int maxRows, int showMask) {
+			if (rows.length < maxRows) {
+				rows = new long[maxRows];
+			}
+			int n = 0;
+			long seq = last;
+			while (n < maxRows) {
+				synchronized (buffer) {
+					long first = buffer.getFirst();
+					long stop = Math.max(first, seq - SCAN_CHUNK + 1);
+					for (; seq >= stop && n < maxRows; seq--) {
+						if (isShown(seq, showMask)) {
+							rows[maxRows - 1 - n] = seq;
+							n++;
+						}
+					}
+					if (seq < first) {
+						break; // reached the oldest entry
+					}
+				}
+			}
+			// move the found rows to the beginning (oldest first)
+			System.arraycopy(rows, maxRows - n, rows, 0, n);
+			this.nrofRows = n;
+			fireTableDataChanged();
 		}
-		else if (source.getClientProperty(MSG_PROP) != null) {
-			// was a message button -> show information about the message
-			Message m = (Message)source.getClientProperty(MSG_PROP);
-			gui.getInfoPanel().showInfo(m);
+
+		/**
+		 * Returns the host or message shown in a cell
+		 * @param row Row of the cell
+		 * @param col Column of the cell
+		 * @return The host, the message or null if the cell has neither
+		 */
+		public Object getObjectAt(int row, int col) {
+			if (row < 0 || row >= nrofRows) {
+				return null;
+			}
+			synchronized (buffer) {
+				long seq = rows[row];
+				if (seq < buffer.getFirst()) {
+					return null; // already overwritten
+				}
+				switch (col) {
+				case HOST1_COL: return buffer.getHost1(seq);
+				case HOST2_COL: return buffer.getHost2(seq);
+				case MSG_COL: return buffer.getMessage(seq);
+				default: return null;
+				}
+			}
+		}
+
+		/**
+		 * Returns true if the entry on a row is highlighted
+		 * @param row The row
+		 * @return true if the entry is highlighted
+		 */
+		public boolean isHighlighted(int row) {
+			synchronized (buffer) {
+				return row < nrofRows && rows[row] >= buffer.getFirst() &&
+					buffer.isHighlighted(rows[row]);
+			}
+		}
+
+		public int getRowCount() {
+			return nrofRows;
+		}
+
+		public int getColumnCount() {
+			return COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName(int col) {
+			return COLUMNS[col];
+		}
+
+		public Object getValueAt(int row, int col) {
+			synchronized (buffer) {
+				long seq = rows[row];
+				if (seq < buffer.getFirst()) {
+					return ""; // already overwritten
+				}
+				switch (col) {
+				case 0:
+					return String.format(TIME_FORMAT, buffer.getTime(seq));
+				case 1:
+					return EVENT_NAMES[buffer.getType(seq)];
+				default:
+					Object o = getObjectAt(row, col);
+					return (o != null ? o.toString() : "");
+				}
+			}
 		}
 	}
-	
-	public String toString() {
-		return this.getClass().getSimpleName() + " with " + 
-			this.eventPanes.size() + " events";
+
+	/**
+	 * Renderer of the log entries that highlights the highlighted entries
+	 */
+	private class EntryRenderer extends DefaultTableCellRenderer {
+		private static final long serialVersionUID = 42L;
+		@Override
+		public Component getTableCellRendererComponent(JTable table,
+				Object value, boolean isSelected, boolean hasFocus, int row,
+				int col) {
+			Component c = super.getTableCellRendererComponent(table, value,
+					isSelected, hasFocus, row, col);
+			if (!isSelected) {
+				c.setBackground(model.isHighlighted(row) ?
+						HIGHLIGHT_BG_COLOR : LOG_BG);
+			}
+			return c;
+		}
 	}
-	
 }
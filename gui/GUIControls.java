@@ -19,6 +19,7 @@ import java.io.File;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
@@ -46,8 +47,12 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 	private static final String TEXT_PAUSE = "pause simulation";
 	private static final String TEXT_PLAY = "play simulation";
 	private static final String TEXT_PLAY_UNTIL = "play simulation until sim time...";
+	private static final String TEXT_SEEK = "seek movie to sim time...";
 	private static final String TEXT_STEP = "step forward one interval";
 	private static final String TEXT_FFW = "enable/disable fast forward";
+	private static final String TEXT_TURBO = "turbo";
+	private static final String TEXT_TURBO_TIP = "run the simulation at " + 
+		"full speed and show only samples of it";
 	private static final String TEXT_UP_CHOOSER = "GUI update:";
 	private static final String TEXT_SCREEN_SHOT = "screen shot";
 	private static final String TEXT_SIMTIME = "Simulation time - "+ 
@@ -69,6 +74,8 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 	private JButton ffwButton;
 	private boolean isFfw;
 	private int oldSpeedIndex; // what speed was selected before FFW
+	private JCheckBox turboCheck;
+	private volatile boolean turbo;
 	
 	private JButton screenShotButton;
 	private JComboBox guiUpdateChooser;
@@ -148,8 +155,13 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 				paused ? TEXT_PLAY : TEXT_PAUSE);
 		stepButton = addButton(ICON_STEP, TEXT_STEP);
 		ffwButton = addButton(ICON_FFW, TEXT_FFW);
-		playUntilButton = addButton(ICON_PLAY, TEXT_PLAY_UNTIL);
+		playUntilButton = addButton(ICON_PLAY, 
+				gui.isReplay() ? TEXT_SEEK : TEXT_PLAY_UNTIL);
 		playUntilButton.setText("...");
+		turboCheck = new JCheckBox(TEXT_TURBO);
+		turboCheck.setToolTipText(TEXT_TURBO_TIP);
+		turboCheck.addActionListener(this);
+		this.add(turboCheck);
 
 		this.add(new JLabel(TEXT_UP_CHOOSER));
 		this.add(this.guiUpdateChooser);
@@ -270,6 +282,16 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 		return this.isFfw;
 	}
 	
+	/**
+	 * Is turbo mode turned on. In turbo mode the simulation doesn't wait
+	 * for the GUI and the GUI shows samples of the simulation at its frame
+	 * rate.
+	 * @return True if turbo mode is on, false if not
+	 */
+	public boolean isTurbo() {
+		return this.turbo;
+	}
+	
 	/**
 	 * Returns the selected update interval of GUI 
 	 * @return The update interval (seconds)
@@ -315,6 +337,9 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 		else if (e.getSource() == this.playUntilButton) {
 			setPlayUntil();
 		}
+		else if (e.getSource() == this.turboCheck) {
+			this.turbo = turboCheck.isSelected();
+		}
 		else if (e.getSource() == this.guiUpdateChooser) {
 			updateUpdateInterval();
 		}
@@ -331,11 +356,16 @@ public class GUIControls extends JPanel implements ActionListener, ChangeListene
 	
 	private void setPlayUntil() {
 		setPaused(true);
-		String value = JOptionPane.showInputDialog(TEXT_PLAY_UNTIL);
+		String value = JOptionPane.showInputDialog(
+				gui.isReplay() ? TEXT_SEEK : TEXT_PLAY_UNTIL);
 		if (value == null) {
 			return;
 		}
 		try {
+			if (gui.isReplay()) {
+				gui.seek(Double.parseDouble(value));
+				return;
+			}
 			this.playUntilTime = Double.parseDouble(value);
 			setPaused(false);
 		} catch (NumberFormatException e) {
@@ -56,7 +56,6 @@ public class MainWindow extends JFrame {
 
         JPanel leftPane = new JPanel();
         leftPane.setLayout(new BoxLayout(leftPane,BoxLayout.Y_AXIS));
-    	JScrollPane hostListScroll;
         JSplitPane fieldLogSplit;
         JSplitPane logControlSplit;
         JSplitPane mainSplit;
@@ -70,12 +69,8 @@ public class MainWindow extends JFrame {
         playFieldScroll.setMaximumSize(new Dimension(Integer.MAX_VALUE, 
         		Integer.MAX_VALUE));
         
-        hostListScroll = new JScrollPane(chooser);
-        hostListScroll.setHorizontalScrollBarPolicy(
-        		JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
-
         logControlSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT,
-        		new JScrollPane(elp.getControls()),new JScrollPane(elp));
+        		new JScrollPane(elp.getControls()), elp);
         logControlSplit.setResizeWeight(0.1);
         logControlSplit.setOneTouchExpandable(true);
         
@@ -93,7 +88,7 @@ public class MainWindow extends JFrame {
         leftPane.add(infoPanel);
         
         mainSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, 
-        		fieldLogSplit, hostListScroll);
+        		fieldLogSplit, chooser);
         mainSplit.setOneTouchExpandable(true);
         mainSplit.setResizeWeight(0.8);    
         this.getContentPane().add(mainSplit);
@@ -4,21 +4,29 @@
  */
 package gui;
 
-import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
+import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
-import javax.swing.BoxLayout;
-import javax.swing.JButton;
-import javax.swing.JComboBox;
+import javax.swing.JCheckBox;
+import javax.swing.JList;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import gui.nodefilter.*;
 import gui.playfield.NodeGraphic;
@@ -26,38 +34,47 @@ import core.DTNHost;
 import core.Settings;
 
 /**
- * Node chooser panel
+ * Node chooser panel. The nodes are shown in a list that creates graphics
+ * only for the visible rows, so any number of nodes can be shown. The list
+ * can be searched by the names, addresses and group IDs of the nodes
+ * either by prefix or by regular expression.
  */
 public class NodeChooser extends JPanel implements ActionListener {
+	private static final long serialVersionUID = 42L;
 	private DTNSimGUI gui;
-	/** the maximum number of allNodes to show in the list per page */
-	public static final int MAX_NODE_COUNT = 500;
 	private Timer refreshTimer;
 	/** how often auto refresh is performed */
 	private static final int AUTO_REFRESH_DELAY = 100;
-	
+	/** text of the regular expression search check box */
+	private static final String TEXT_REGEX = "RE";
+	private static final String TEXT_REGEX_TIP = "search with a regular " +
+		"expression instead of a prefix";
+	private static final String TEXT_SEARCH_TIP = "search nodes by name, " +
+		"address or group ID";
+
 	/** Default message node filters -setting id ({@value}). Comma separate
 	 * list of message IDs from which the default filter set is created. */
 	public static final String NODE_MESSAGE_FILTERS_S = "nodeMessageFilters";
-	
-	private static final String HOST_KEY = "host";
+
 	private List<DTNHost> allNodes;
-	private List<DTNHost> shownNodes;
+	/** nodes that pass the node filters */
+	private List<DTNHost> filteredNodes;
 
-	private JComboBox groupChooser;
-	private JPanel nodesPanel;
-	private JPanel chooserPanel;
+	private JTextField searchField;
+	private JCheckBox regexCheck;
+	private JList<DTNHost> nodeList;
+	private NodeListModel listModel;
 	private Vector<NodeFilter> filters;
 
-	
+
 	public NodeChooser(List<DTNHost> nodes,	DTNSimGUI gui) {
 		Settings s = new Settings(MainWindow.GUI_NS);
 		// create a replicate to not interfere with original's ordering
 		this.allNodes = new ArrayList<DTNHost>(nodes);
-		this.shownNodes = allNodes;
+		this.filteredNodes = allNodes;
 		this.gui = gui;
 		this.filters = new Vector<NodeFilter>();
-		
+
 		if (s.contains(NODE_MESSAGE_FILTERS_S)) {
 			String[] filterIds = s.getCsvSetting(NODE_MESSAGE_FILTERS_S);
 			for (String id : filterIds) {
@@ -66,12 +83,12 @@ public class NodeChooser extends JPanel implements ActionListener {
 				this.refreshTimer.start();
 			}
 		}
-		
+
 		Collections.sort(this.allNodes);
-		
+
 		init();
 	}
-	
+
 	/**
 	 * Adds a new node filter to the node chooser
 	 * @param f The filter to add
@@ -84,35 +101,77 @@ public class NodeChooser extends JPanel implements ActionListener {
 			this.refreshTimer.start();
 		}
 	}
-	
+
 	/**
 	 * Clears all node filters
 	 */
 	public void clearFilters() {
 		this.filters = new Vector<NodeFilter>();
-		this.shownNodes = allNodes;
+		this.filteredNodes = allNodes;
 		if (this.refreshTimer != null) {
 			this.refreshTimer.stop();
 		}
 		this.refreshTimer = null;
-		
+
 		NodeGraphic.setHighlightedNodes(null);
 		updateList();
 	}
-	
+
+	/**
+	 * Updates the list to show the filtered nodes that match the search
+	 */
 	private void updateList() {
-		setNodes(0);
-		if (this.groupChooser != null) {
-			this.groupChooser.setSelectedIndex(0);
+		List<DTNHost> nodes = new ArrayList<DTNHost>();
+		String text = searchField.getText();
+		Pattern re = null;
+
+		if (regexCheck.isSelected() && text.length() > 0) {
+			try {
+				re = Pattern.compile(text);
+			} catch (PatternSyntaxException e) {
+				return; // incomplete expression -> keep the old list
+			}
+		}
+
+		for (DTNHost node : filteredNodes) {
+			if (re != null ? matches(node, re) : matches(node, text)) {
+				nodes.add(node);
+			}
 		}
+		listModel.setNodes(nodes);
+	}
+
+	/**
+	 * Returns true if a node's name, address or group ID starts with a prefix
+	 * @param node The node
+	 * @param prefix The prefix
+	 * @return true if the node matches the prefix
+	 */
+	private boolean matches(DTNHost node, String prefix) {
+		return node.toString().startsWith(prefix) ||
+			Integer.toString(node.getAddress()).startsWith(prefix) ||
+			(node.getGroupId() != null &&
+					node.getGroupId().startsWith(prefix));
+	}
+
+	/**
+	 * Returns true if a node's name, address or group ID contains a match
+	 * of a regular expression
+	 * @param node The node
+	 * @param re The regular expression
+	 * @return true if the node matches the regular expression
+	 */
+	private boolean matches(DTNHost node, Pattern re) {
+		return re.matcher(node.toString()).find() ||
+			re.matcher(Integer.toString(node.getAddress())).find() ||
+			(node.getGroupId() != null &&
+					re.matcher(node.getGroupId()).find());
 	}
-	
-	
+
 	private void updateShownNodes() {
-		List<DTNHost> oldShownNodes = shownNodes;
-		List<DTNHost>nodes = new Vector<DTNHost>();
-		
-		for (DTNHost node : allNodes) {	
+		List<DTNHost>nodes = new ArrayList<DTNHost>();
+
+		for (DTNHost node : allNodes) {
 			for (NodeFilter f : this.filters) {
 				if (f.filterNode(node)) {
 					nodes.add(node);
@@ -120,93 +179,140 @@ public class NodeChooser extends JPanel implements ActionListener {
 				}
 			}
 		}
-		
-		if (nodes.size() == oldShownNodes.size() &&
-			oldShownNodes.containsAll(shownNodes)) {
+
+		if (nodes.equals(filteredNodes)) {
 			return; /* nothing to update */
 		} else {
-			this.shownNodes = nodes;
+			this.filteredNodes = nodes;
 			updateList();
 			NodeGraphic.setHighlightedNodes(nodes);
 		}
-		
+
 	}
-	
+
 	/**
 	 * Initializes the node chooser panels
 	 */
 	private void init() {
-		nodesPanel = new JPanel();
-		chooserPanel = new JPanel();
-		
-		this.setLayout(new GridBagLayout());
-		GridBagConstraints c = new GridBagConstraints();
-		c.anchor = GridBagConstraints.FIRST_LINE_START;
-		
-		nodesPanel.setLayout(new BoxLayout(nodesPanel,BoxLayout.Y_AXIS));
-		nodesPanel.setBorder(BorderFactory.createTitledBorder(getBorder(),
-				"Nodes"));
-		
-		if (shownNodes.size() > MAX_NODE_COUNT) {
-			String[] groupNames = new String[(shownNodes.size()-1)
-			                                 / MAX_NODE_COUNT+1];
-			int last = 0;
-			for (int i=0, n=shownNodes.size(); 
-				i <= (n-1) / MAX_NODE_COUNT; i++) {
-				int next = MAX_NODE_COUNT * (i+1) - 1;
-				if (next > n) {
-					next = n-1;
-				}
-				groupNames[i] = (last + "..." + next);
-				last = next + 1;
+		JPanel searchPanel = new JPanel(new BorderLayout());
+		searchField = new JTextField();
+		searchField.setToolTipText(TEXT_SEARCH_TIP);
+		searchField.getDocument().addDocumentListener(new DocumentListener() {
+			public void insertUpdate(DocumentEvent e) {
+				updateList();
+			}
+			public void removeUpdate(DocumentEvent e) {
+				updateList();
+			}
+			public void changedUpdate(DocumentEvent e) {
+				updateList();
+			}
+		});
+		regexCheck = new JCheckBox(TEXT_REGEX);
+		regexCheck.setToolTipText(TEXT_REGEX_TIP);
+		regexCheck.addActionListener(this);
+		searchPanel.add(searchField, BorderLayout.CENTER);
+		searchPanel.add(regexCheck, BorderLayout.EAST);
+
+		listModel = new NodeListModel();
+		nodeList = new JList<DTNHost>(listModel);
+		nodeList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		// size all cells like the longest name -> no need to measure them all
+		DTNHost longest = null;
+		for (DTNHost node : allNodes) {
+			if (longest == null ||
+					node.toString().length() > longest.toString().length()) {
+				longest = node;
 			}
-			groupChooser = new JComboBox(groupNames);
-			groupChooser.addActionListener(this);
-			chooserPanel.add(groupChooser);
 		}
-		
-		setNodes(0);
-		c.gridy = 0;
-		this.add(chooserPanel, c);
-		c.gridy = 1;
-		this.add(nodesPanel, c);
+		if (longest != null) {
+			nodeList.setPrototypeCellValue(longest);
+		}
+		nodeList.addMouseListener(new MouseAdapter() {
+			public void mouseClicked(MouseEvent e) {
+				int i = nodeList.locationToIndex(e.getPoint());
+				if (i >= 0 && nodeList.getCellBounds(i, i).contains(
+						e.getPoint())) {
+					gui.setFocus(listModel.getElementAt(i));
+				}
+			}
+		});
+
+		this.setLayout(new BorderLayout());
+		this.setBorder(BorderFactory.createTitledBorder(getBorder(),
+				"Nodes"));
+		this.add(searchPanel, BorderLayout.NORTH);
+		this.add(new JScrollPane(nodeList), BorderLayout.CENTER);
+
+		updateList();
 	}
 
 	/**
-	 * Sets the right set of allNodes to display
-	 * @param offset Index of the first node to show
+	 * Action listener method for the search mode and the refresh timer
 	 */
-	private void setNodes(int offset) {
-		nodesPanel.removeAll();
-
-		for (int i=offset; i< shownNodes.size() && 
-			i < offset + MAX_NODE_COUNT; i++) {
-			DTNHost h = shownNodes.get(i);
-			JButton jb = new JButton(h.toString());
-			jb.putClientProperty(HOST_KEY, h);
-			jb.addActionListener(this);
-			nodesPanel.add(jb);
+	public void actionPerformed(ActionEvent e) {
+		if (e.getSource() == this.regexCheck) {
+			updateList();
+		}
+		else if (e.getSource() == this.refreshTimer) {
+			updateShownNodes();
 		}
-		
-		revalidate();
-		repaint();
 	}
-	
+
 	/**
-	 * Action listener method for buttons and node set chooser
+	 * List model of the shown nodes. When the nodes change, only the
+	 * changed range of the list is updated.
 	 */
-	public void actionPerformed(ActionEvent e) {
-		if (e.getSource() instanceof JButton) {
-			JButton source = (JButton)e.getSource();
-			DTNHost host = (DTNHost)source.getClientProperty(HOST_KEY);
-			gui.setFocus(host);
+	private class NodeListModel extends AbstractListModel<DTNHost> {
+		private static final long serialVersionUID = 42L;
+		private List<DTNHost> nodes = new ArrayList<DTNHost>();
+
+		/**
+		 * Sets the shown nodes
+		 * @param newNodes The nodes to show
+		 */
+		public void setNodes(List<DTNHost> newNodes) {
+			List<DTNHost> old = this.nodes;
+			int oldSize = old.size();
+			int newSize = newNodes.size();
+
+			/* find the range that changed */
+			int start = 0;
+			while (start < oldSize && start < newSize &&
+					old.get(start) == newNodes.get(start)) {
+				start++;
+			}
+			int oldEnd = oldSize;
+			int newEnd = newSize;
+			while (oldEnd > start && newEnd > start &&
+					old.get(oldEnd-1) == newNodes.get(newEnd-1)) {
+				oldEnd--;
+				newEnd--;
+			}
+
+			this.nodes = newNodes;
+			if (oldEnd == start && newEnd == start) {
+				return; // nothing changed
+			}
+
+			int common = Math.min(oldEnd, newEnd);
+			if (common > start) {
+				fireContentsChanged(this, start, common - 1);
+			}
+			if (oldEnd > common) {
+				fireIntervalRemoved(this, common, oldEnd - 1);
+			}
+			else if (newEnd > common) {
+				fireIntervalAdded(this, common, newEnd - 1);
+			}
 		}
-		else if (e.getSource() == this.groupChooser) {
-			setNodes(groupChooser.getSelectedIndex() * MAX_NODE_COUNT);
+
+		public DTNHost getElementAt(int index) {
+			return nodes.get(index);
 		}
-		else if (e.getSource() == this.refreshTimer) {
-			updateShownNodes();
+
+		public int getSize() {
+			return nodes.size();
 		}
 	}
-	
 }
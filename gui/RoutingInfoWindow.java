@@ -8,7 +8,7 @@ import java.awt.BorderLayout;
 import java.awt.Container;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Vector;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -17,21 +17,30 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTree;
 import javax.swing.Timer;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 
 import routing.util.RoutingInfo;
 import core.DTNHost;
 import core.SimClock;
 
 /**
- * A window for displaying routing information
+ * A window for displaying routing information. The children of a tree node
+ * are created only when the node is expanded and refreshing updates only 
+ * the nodes that are visible, so the expanded state of the tree is kept.
  */
 public class RoutingInfoWindow extends JFrame implements ActionListener {
+	private static final long serialVersionUID = 42L;
 	private DTNHost host;
 	private JButton refreshButton;
 	private JCheckBox autoRefresh;
 	private JScrollPane treePane;
 	private JTree tree;
+	private DefaultTreeModel treeModel;
+	private InfoNode root;
 	private Timer refreshTimer;
 	/** how often auto refresh is performed */
 	private static final int AUTO_REFRESH_DELAY = 1000;
@@ -45,8 +54,8 @@ public class RoutingInfoWindow extends JFrame implements ActionListener {
 		refreshPanel.setLayout(new BorderLayout());
 		this.autoRefresh = new JCheckBox("Auto refresh");
 		this.autoRefresh.addActionListener(this);
-		this.treePane = new JScrollPane();
-		updateTree();
+		initTree();
+		this.treePane = new JScrollPane(this.tree);
 		
 		cp.add(treePane, BorderLayout.CENTER);
 		cp.add(refreshPanel, BorderLayout.SOUTH);
@@ -60,44 +69,124 @@ public class RoutingInfoWindow extends JFrame implements ActionListener {
 		this.setVisible(true);
 	}
 
+	/**
+	 * Creates the tree with the top level routing info expanded
+	 */
+	private void initTree() {
+		setInfoTitle();
+		this.root = new InfoNode(host.getRoutingInfo());
+		this.treeModel = new DefaultTreeModel(root);
+		this.tree = new JTree(treeModel);
+		this.tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+			public void treeWillExpand(TreeExpansionEvent e) {
+				loadChildren((InfoNode)e.getPath().getLastPathComponent());
+			}
+			public void treeWillCollapse(TreeExpansionEvent e) {}
+		});
+		this.tree.expandRow(0);
+	}
 	
-	private void updateTree() {	
+	private void setInfoTitle() {
 		super.setTitle("Routing Info of " + host + " at " + 
 				SimClock.getFormattedTime(2));
-		RoutingInfo ri = host.getRoutingInfo();
-		DefaultMutableTreeNode top = new DefaultMutableTreeNode(ri);
-		Vector<Integer> expanded = new Vector<Integer>();
+	}
+	
+	/**
+	 * Creates the child nodes of a node if they haven't been created yet
+	 * @param node The node whose children are created
+	 */
+	private void loadChildren(InfoNode node) {
+		if (node.loaded) {
+			return;
+		}
+		node.loaded = true;
+		List<RoutingInfo> infos = node.info.getMoreInfo();
+		if (infos.size() == 0) {
+			return;
+		}
 		
-		addChildren(top, ri);
-
-		if (this.tree != null) { /* store expanded state */
-			for (int i=0; i < this.tree.getRowCount(); i++) {
-				if (this.tree.isExpanded(i)) {
-					expanded.add(i);
-				}
-			}
+		int[] indices = new int[infos.size()];
+		for (int i=0; i < indices.length; i++) {
+			node.add(new InfoNode(infos.get(i)));
+			indices[i] = i;
 		}
+		treeModel.nodesWereInserted(node, indices);
+	}
+	
+	/**
+	 * Drops the children of a node so that they're created again (from 
+	 * up-to-date info) if the node is expanded
+	 * @param node The node whose children are dropped
+	 */
+	private void unloadChildren(InfoNode node) {
+		node.loaded = false;
+		if (node.getChildCount() > 0) {
+			node.removeAllChildren();
+			treeModel.nodeStructureChanged(node);
+		}
+	}
+	
+	/**
+	 * Refreshes the tree with new routing info of the host
+	 */
+	private void updateTree() {	
+		setInfoTitle();
+		update(this.root, host.getRoutingInfo());
+	}
+	
+	/**
+	 * Updates a node and its expanded descendants with new info. Only
+	 * the nodes whose text or children have changed are updated in the tree
+	 * model. Children of collapsed nodes are dropped.
+	 * @param node The node to update
+	 * @param info The new info of the node
+	 */
+	private void update(InfoNode node, RoutingInfo info) {
+		boolean wasLeaf = node.isLeaf();
+		String oldText = node.toString();
+		node.setInfo(info);
 		
-		this.tree = new JTree(top);
+		if (!oldText.equals(node.toString())) {
+			treeModel.nodeChanged(node);
+		}
 		
-		for (int i=0; i < this.tree.getRowCount(); i++) { /* restore expanded */
-			if (expanded.size() > 0 && expanded.firstElement() == i) {
-				this.tree.expandRow(i);
-				expanded.remove(0);
+		if (!node.loaded) {
+			if (wasLeaf != node.isLeaf()) {
+				treeModel.nodeStructureChanged(node);
 			}
+			return;
+		}
+		if (!tree.isExpanded(new TreePath(node.getPath()))) {
+			unloadChildren(node);
+			return;
 		}
 		
-		this.treePane.setViewportView(this.tree);
-		this.treePane.revalidate();
-	}
-	
-	
-	private void addChildren(DefaultMutableTreeNode node, RoutingInfo info) {
-		for (RoutingInfo ri : info.getMoreInfo()) {
-			DefaultMutableTreeNode child = new DefaultMutableTreeNode(ri);
-			node.add(child);
-			// recursively add children of this info
-			addChildren(child, ri);
+		List<RoutingInfo> infos = info.getMoreInfo();
+		int oldCount = node.getChildCount();
+		int newCount = infos.size();
+		int common = Math.min(oldCount, newCount);
+		
+		for (int i=0; i < common; i++) {
+			update((InfoNode)node.getChildAt(i), infos.get(i));
+		}
+		
+		if (newCount > oldCount) {
+			int[] indices = new int[newCount - oldCount];
+			for (int i=common; i < newCount; i++) {
+				node.add(new InfoNode(infos.get(i)));
+				indices[i - common] = i;
+			}
+			treeModel.nodesWereInserted(node, indices);
+		}
+		else if (oldCount > newCount) {
+			int[] indices = new int[oldCount - newCount];
+			Object[] removed = new Object[indices.length];
+			for (int i=oldCount-1; i >= common; i--) {
+				indices[i - common] = i;
+				removed[i - common] = node.getChildAt(i);
+				node.remove(i);
+			}
+			treeModel.nodesWereRemoved(node, indices, removed);
 		}
 	}
 
@@ -116,4 +205,31 @@ public class RoutingInfoWindow extends JFrame implements ActionListener {
 		}
 	}
 	
-}
\ No newline at end of file
+	/**
+	 * Tree node of a routing info. The node's children are created by
+	 * {@link RoutingInfoWindow#loadChildren(InfoNode)}.
+	 */
+	private static class InfoNode extends DefaultMutableTreeNode {
+		private static final long serialVersionUID = 42L;
+		private RoutingInfo info;
+		/** true if the child nodes have been created */
+		private boolean loaded;
+		
+		public InfoNode(RoutingInfo info) {
+			super(info);
+			this.info = info;
+			this.loaded = false;
+		}
+		
+		public void setInfo(RoutingInfo info) {
+			this.info = info;
+			setUserObject(info);
+		}
+		
+		@Override
+		public boolean isLeaf() {
+			return !info.hasMoreInfo();
+		}
+	}
+	
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+/**
+ * Aggregated visualization of node locations. The visible area is divided
+ * into square cells and every cell that has nodes in it is filled with a
+ * color whose intensity tells how many nodes the cell has. Used instead of
+ * drawing every node when there are too many of them to tell apart.
+ */
+public class DensityGraphic extends PlayFieldGraphic {
+	/** Width and height of the cells (pixels) */
+	private static final int CELL_SIZE = 6;
+	/** Number of different color intensities */
+	private static final int NROF_SHADES = 16;
+
+	private static Color densityColor = Color.BLUE;
+	/** the shades of the density color from lightest to darkest */
+	private static Color[] shades;
+
+	/** the area the cells cover */
+	private Rectangle area;
+	private int nrofCols;
+	private int nrofRows;
+	/** node counts of the cells (row by row) */
+	private int[] counts;
+	/** largest node count of a cell */
+	private int maxCount;
+
+	static {
+		shades = new Color[NROF_SHADES];
+		for (int i=0; i<NROF_SHADES; i++) {
+			int alpha = 255 * (i + 1) / NROF_SHADES;
+			shades[i] = new Color(densityColor.getRed(),
+					densityColor.getGreen(), densityColor.getBlue(), alpha);
+		}
+	}
+
+	/**
+	 * Creates a new density graphic
+	 */
+	public DensityGraphic() {
+		this.counts = new int[0];
+		this.area = new Rectangle();
+	}
+
+	/**
+	 * Clears the node counts and sets the area for the cells
+	 * @param area The area (in scaled graphics coordinates)
+	 */
+	public void reset(Rectangle area) {
+		this.area.setBounds(area);
+		this.nrofCols = area.width / CELL_SIZE + 1;
+		this.nrofRows = area.height / CELL_SIZE + 1;
+		int size = nrofCols * nrofRows;
+		if (counts.length < size) {
+			counts = new int[size];
+		}
+		else {
+			Arrays.fill(counts, 0, size, 0);
+		}
+		this.maxCount = 0;
+	}
+
+	/**
+	 * Adds a node location to the counts. Locations outside the area are
+	 * ignored.
+	 * @param worldX X coordinate of the node's location (world coordinates)
+	 * @param worldY Y coordinate of the node's location (world coordinates)
+	 */
+	public void add(double worldX, double worldY) {
+		int x = scale(worldX) - area.x;
+		int y = scale(worldY) - area.y;
+		if (x < 0 || y < 0 || x > area.width || y > area.height) {
+			return;
+		}
+
+		int cell = (y / CELL_SIZE) * nrofCols + x / CELL_SIZE;
+		counts[cell]++;
+		maxCount = Math.max(maxCount, counts[cell]);
+	}
+
+	@Override
+	public void draw(Graphics2D g2) {
+		for (int row=0; row<nrofRows; row++) {
+			for (int col=0; col<nrofCols; col++) {
+				int count = counts[row * nrofCols + col];
+				if (count == 0) {
+					continue;
+				}
+				g2.setColor(shades[(count * NROF_SHADES - 1) / maxCount]);
+				g2.fillRect(area.x + col * CELL_SIZE, area.y + row * CELL_SIZE,
+						CELL_SIZE, CELL_SIZE);
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+import input.MovieReader;
+
+import java.util.Arrays;
+import java.util.List;
+
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+
+/**
+ * Immutable snapshot of the node states that the play field shows:
+ * locations, number of buffered messages, radio activeness and connections.
+ * A snapshot is taken in the simulation thread and drawn in the event
+ * dispatch thread, so drawing doesn't need to access the hosts while
+ * the simulation modifies them. The states are indexed by host address.
+ */
+public class FieldSnapshot {
+	private final double time;
+	private final double[] xs;
+	private final double[] ys;
+	private final int[] nrofMessages;
+	private final boolean[] radioActive;
+	/** index of the first peer of the hosts in the peers array */
+	private final int[] firstPeer;
+	/** number of connections of the hosts */
+	private final int[] nrofPeers;
+	/** addresses of the connected peers, grouped by host */
+	private final int[] peers;
+
+	/**
+	 * Takes a snapshot of the hosts
+	 * @param hosts The hosts
+	 * @param time The simulation time of the snapshot
+	 */
+	public FieldSnapshot(List<DTNHost> hosts, double time) {
+		int size = 0;
+		int nrofConnections = 0;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			size = Math.max(size, h.getAddress() + 1);
+			nrofConnections += h.getConnections().size();
+		}
+
+		this.time = time;
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.nrofMessages = new int[size];
+		this.radioActive = new boolean[size];
+		this.firstPeer = new int[size];
+		this.nrofPeers = new int[size];
+		int[] connected = new int[nrofConnections];
+		int nrofPeerValues = 0;
+
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			int a = h.getAddress();
+			Coord loc = h.getLocation();
+			xs[a] = loc.getX();
+			ys[a] = loc.getY();
+			nrofMessages[a] = h.getNrofMessages();
+			radioActive[a] = h.isRadioActive();
+
+			firstPeer[a] = nrofPeerValues;
+			List<Connection> cons = h.getConnections();
+			for (int j=0, m=cons.size(); j<m &&
+					nrofPeerValues < connected.length; j++) {
+				DTNHost other = cons.get(j).getOtherNode(h);
+				if (other != null) {
+					connected[nrofPeerValues++] = other.getAddress();
+				}
+			}
+			nrofPeers[a] = nrofPeerValues - firstPeer[a];
+		}
+
+		this.peers = Arrays.copyOf(connected, nrofPeerValues);
+	}
+
+	/**
+	 * Takes a snapshot of a movie's current state
+	 * @param movie The movie
+	 */
+	public FieldSnapshot(MovieReader movie) {
+		int size = movie.getNrofHosts();
+		int nrofConnections = 0;
+		for (int a=0; a<size; a++) {
+			nrofConnections += movie.getNrofConnections(a);
+		}
+
+		this.time = movie.getTime();
+		this.xs = new double[size];
+		this.ys = new double[size];
+		this.nrofMessages = new int[size];
+		this.radioActive = new boolean[size];
+		this.firstPeer = new int[size];
+		this.nrofPeers = new int[size];
+		this.peers = new int[nrofConnections];
+		int nrofPeerValues = 0;
+
+		for (int a=0; a<size; a++) {
+			xs[a] = movie.getX(a);
+			ys[a] = movie.getY(a);
+			nrofMessages[a] = movie.getNrofMessages(a);
+			radioActive[a] = movie.isRadioActive(a);
+
+			firstPeer[a] = nrofPeerValues;
+			nrofPeers[a] = movie.getNrofConnections(a);
+			for (int i=0; i<nrofPeers[a]; i++) {
+				peers[nrofPeerValues++] = movie.getPeer(a, i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the simulation time of the snapshot
+	 * @return the simulation time of the snapshot
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Returns true if the snapshot has the state of a host
+	 * @param h The host
+	 * @return true if the snapshot has the state of the host
+	 */
+	public boolean contains(DTNHost h) {
+		return h.getAddress() < xs.length;
+	}
+
+	/**
+	 * Returns the X coordinate of a host's location
+	 * @param h The host
+	 * @return The X coordinate
+	 */
+	public double getX(DTNHost h) {
+		return xs[h.getAddress()];
+	}
+
+	/**
+	 * Returns the Y coordinate of a host's location
+	 * @param h The host
+	 * @return The Y coordinate
+	 */
+	public double getY(DTNHost h) {
+		return ys[h.getAddress()];
+	}
+
+	/**
+	 * Returns the number of messages in a host's buffer
+	 * @param h The host
+	 * @return The number of messages
+	 */
+	public int getNrofMessages(DTNHost h) {
+		return nrofMessages[h.getAddress()];
+	}
+
+	/**
+	 * Returns true if a host's radio was active
+	 * @param h The host
+	 * @return true if the radio was active
+	 */
+	public boolean isRadioActive(DTNHost h) {
+		return radioActive[h.getAddress()];
+	}
+
+	/**
+	 * Returns the number of connections of a host
+	 * @param h The host
+	 * @return The number of connections
+	 */
+	public int getNrofConnections(DTNHost h) {
+		return nrofPeers[h.getAddress()];
+	}
+
+	/**
+	 * Returns the X coordinate of a host's connected peer
+	 * @param h The host
+	 * @param i Index of the connection
+	 * @return The X coordinate of the peer
+	 */
+	public double getPeerX(DTNHost h, int i) {
+		return xs[peers[firstPeer[h.getAddress()] + i]];
+	}
+
+	/**
+	 * Returns the Y coordinate of a host's connected peer
+	 * @param h The host
+	 * @param i Index of the connection
+	 * @return The Y coordinate of the peer
+	 */
+	public double getPeerY(DTNHost h, int i) {
+		return ys[peers[firstPeer[h.getAddress()] + i]];
+	}
+}
@@ -7,6 +7,7 @@ package gui.playfield;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 
 import core.DTNHost;
 
@@ -29,10 +30,10 @@ public class MessageGraphic extends PlayFieldGraphic {
 	public void draw(Graphics2D g2) {
 		g2.setColor(msgColor);
 		
-		int fromX = scale(from.getLocation().getX());
-		int fromY = scale(from.getLocation().getY());
-		int toX = scale(to.getLocation().getX());
-		int toY = scale(to.getLocation().getY());
+		int fromX = scale(snapshot.getX(from));
+		int fromY = scale(snapshot.getY(from));
+		int toX = scale(snapshot.getX(to));
+		int toY = scale(snapshot.getY(to));
 
 		// line from "from host" to "to host"
 		Polygon p = new Polygon(new int[] {fromX, toX}, 
@@ -40,4 +41,15 @@ public class MessageGraphic extends PlayFieldGraphic {
 		
 		g2.draw(p);
 	}
+	
+	@Override
+	public boolean isVisible(Rectangle area) {
+		int fromX = scale(snapshot.getX(from));
+		int fromY = scale(snapshot.getY(from));
+		int toX = scale(snapshot.getX(to));
+		int toY = scale(snapshot.getY(to));
+		
+		return area.intersects(Math.min(fromX, toX), Math.min(fromY, toY), 
+				Math.abs(toX - fromX) + 1, Math.abs(toY - fromY) + 1);
+	}
 }
@@ -6,11 +6,11 @@ package gui.playfield;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.geom.Ellipse2D;
 import java.util.ArrayList;
 import java.util.List;
 
-import core.Connection;
 import core.Coord;
 import core.DTNHost;
 import core.NetworkInterface;
@@ -35,6 +35,11 @@ public class NodeGraphic extends PlayFieldGraphic {
 	private static Color msgColor3 = Color.RED;
 	
 	private static Color highlightedNodeColor = Color.MAGENTA;
+	
+	/** How far from the node's location its name may be drawn (pixels) */
+	private static final int NAME_MARGIN = 100;
+	/** How far from the node's location the message bars may be drawn */
+	private static final int BUFFER_MARGIN = 50;
 
 	private DTNHost node;
 
@@ -50,10 +55,38 @@ public class NodeGraphic extends PlayFieldGraphic {
 		}
 	}
 
+	/**
+	 * Returns true if any part of the node graphic (including the radio 
+	 * range circles, name and buffer if they are drawn) may be visible in
+	 * the area. Connection lines are drawn by both nodes of a connection, so
+	 * they are drawn if either one of the nodes is visible.
+	 */
+	@Override
+	public boolean isVisible(Rectangle area) {
+		int margin = 2;
+
+		if (drawNodeName) {
+			margin = Math.max(margin, NAME_MARGIN);
+		}
+		if (drawBuffer) {
+			margin = Math.max(margin, scale(BUFFER_MARGIN));
+		}
+		if (drawCoverage) {
+			for (NetworkInterface ni : node.getInterfaces()) {
+				margin = Math.max(margin, scale(ni.getTransmitRange()) + 1);
+			}
+		}
+		
+		int x = scale(snapshot.getX(node));
+		int y = scale(snapshot.getY(node));
+		return x + margin >= area.x && x - margin <= area.x + area.width &&
+			y + margin >= area.y && y - margin <= area.y + area.height;
+	}
+
 	/**
 	 * @return true if the node this graphic represents should be highlighted
 	 */
-	private boolean isHighlighted() {
+	boolean isHighlighted() {
 		if (highlightedNodes == null) {
 			return false;
 		} else {
@@ -66,9 +99,9 @@ public class NodeGraphic extends PlayFieldGraphic {
 	 * @param g2 The graphic context to draw to
 	 */
 	private void drawHost(Graphics2D g2) {
-		Coord loc = node.getLocation();
+		Coord loc = new Coord(snapshot.getX(node), snapshot.getY(node));
 
-		if (drawCoverage && node.isRadioActive()) {
+		if (drawCoverage && snapshot.isRadioActive(node)) {
 			ArrayList<NetworkInterface> interfaces = 
 				new ArrayList<NetworkInterface>();
 			interfaces.addAll(node.getInterfaces());
@@ -88,20 +121,10 @@ public class NodeGraphic extends PlayFieldGraphic {
 
 		if (drawConnections) {
 			g2.setColor(conColor);
-			Coord c1 = node.getLocation();
-			ArrayList<Connection> conList = new ArrayList<Connection>();
-			// create a copy to prevent concurrent modification exceptions
-			conList.addAll(node.getConnections());
-			for (Connection c : conList) {
-				DTNHost otherNode = c.getOtherNode(node);
-				Coord c2;
-				
-				if (otherNode == null) {
-					continue; /* disconnected before drawn */
-				}
-				c2 = otherNode.getLocation();				
-				g2.drawLine(scale(c1.getX()), scale(c1.getY()),
-						scale(c2.getX()), scale(c2.getY()));
+			for (int i=0, n=snapshot.getNrofConnections(node); i<n; i++) {
+				g2.drawLine(scale(loc.getX()), scale(loc.getY()),
+						scale(snapshot.getPeerX(node, i)), 
+						scale(snapshot.getPeerY(node, i)));
 			}
 		}
 
@@ -165,8 +188,8 @@ public class NodeGraphic extends PlayFieldGraphic {
 	 * @param g2 The graphic context to draw to
 	 */
 	private void drawMessages(Graphics2D g2) {
-		int nrofMessages = node.getNrofMessages();
-		Coord loc = node.getLocation();
+		int nrofMessages = snapshot.getNrofMessages(node);
+		Coord loc = new Coord(snapshot.getX(node), snapshot.getY(node));
 
 		drawBar(g2,loc, nrofMessages % 10, 1);
 		drawBar(g2,loc, nrofMessages / 10, 2);
@@ -10,6 +10,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
@@ -24,14 +25,32 @@ import movement.Path;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNHost;
+import core.SimClock;
 import core.World;
 
 /**
  * The canvas where node graphics and message visualizations are drawn.
- *
+ * <P>
+ * The underlay image and the map are rendered into a background image
+ * that is reused until the zoom level, the image or the map changes or
+ * the field is scrolled out of the rendered area. Only the nodes and
+ * overlay graphics in the visible (clip) area are drawn, and if there are
+ * more than {@link #DENSITY_MODE_NODES} visible nodes, they are drawn as
+ * a density map instead of one by one.
+ * </P>
+ * <P>
+ * Node related graphics are drawn from a {@link FieldSnapshot} of the node
+ * states (see {@link #setSnapshot(FieldSnapshot)}), so the simulation can
+ * run in another thread while the field is drawn.
+ * </P>
  */
 public class PlayField extends JPanel {
 	public static final int PLAYFIELD_OFFSET = 10;
+	/** Number of visible nodes above which the nodes are drawn as a density
+	 * map ({@value}) */
+	public static final int DENSITY_MODE_NODES = 2000;
+	/** Maximum size of the background image (pixels) */
+	private static final int MAX_BACKGROUND_PIXELS = 8 * 1024 * 1024;
 
 	private World w;
 	private DTNSimGUI gui;
@@ -51,6 +70,18 @@ public class PlayField extends JPanel {
 	private double underlayImgDx;
 	private double underlayImgDy;
 	
+	/** rendered underlay image and map (null if not rendered) */
+	private BufferedImage background;
+	/** the area the background image covers */
+	private Rectangle backgroundArea;
+	/** graphics of the nodes (reused between repaints) */
+	private List<NodeGraphic> nodeGraphics;
+	/** nodes that are visible in the latest repaint */
+	private List<NodeGraphic> visibleNodes;
+	private DensityGraphic densityGraphic;
+	/** snapshot of the node states to draw (null = take one when drawing) */
+	private FieldSnapshot snapshot;
+	
 	/**
 	 * Creates a playfield
 	 * @param w The world that contains the actors to be drawn
@@ -68,6 +99,9 @@ public class PlayField extends JPanel {
         this.underlayImage = null;
         this.imageTransform = null;
         this.autoClearOverlay = true;
+        this.nodeGraphics = new ArrayList<NodeGraphic>();
+        this.visibleNodes = new ArrayList<NodeGraphic>();
+        this.densityGraphic = new DensityGraphic();
         
         this.addMouseListener(new MouseAdapter() {        	
 			@Override
@@ -86,6 +120,16 @@ public class PlayField extends JPanel {
 		this.repaint();
 	}
 	
+	/**
+	 * Sets the snapshot of node states that is drawn. Should be called from
+	 * the event dispatch thread.
+	 * @param snapshot The snapshot or null to take a snapshot of the current
+	 * states every time the field is drawn
+	 */
+	public void setSnapshot(FieldSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+	
 	/**
 	 * Sets an image to show under the host graphics
 	 * @param image The image to set or null to remove the image
@@ -96,6 +140,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setUnderlayImage(BufferedImage image, 
 			double dx, double dy, double scale, double rotation) {
+		this.background = null;
 		if (image == null) { 
 			this.underlayImage = null;
 			this.imageTransform = null;
@@ -121,6 +166,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setScale(double scale) {
 		PlayFieldGraphic.setScale(scale);
+		this.background = null;
 		this.updateFieldSize();
 		if (this.imageTransform != null) {
 			this.curTransform = new AffineTransform(imageTransform);
@@ -136,6 +182,7 @@ public class PlayField extends JPanel {
 	public void setMap(SimMap simMap) {
 		this.mapGraphic = new MapGraphic(simMap);
 		this.showMapGraphic = true;
+		this.background = null;
 	}
 	
 	/**
@@ -144,6 +191,7 @@ public class PlayField extends JPanel {
 	 */
 	public void setShowMapGraphic(boolean show) {
 		this.showMapGraphic = show;
+		this.background = null;
 	}
 	
 	/**
@@ -175,33 +223,148 @@ public class PlayField extends JPanel {
 		Graphics2D g2 = (Graphics2D)g;
 		g2.setBackground(bgColor);
 		
+		Rectangle area = g2.getClipBounds();
+		if (area == null) {
+			area = new Rectangle(0, 0, this.getWidth(), this.getHeight());
+		}
 		g2.translate(PLAYFIELD_OFFSET, PLAYFIELD_OFFSET);
+		area.translate(-PLAYFIELD_OFFSET, -PLAYFIELD_OFFSET);
+		
+		if (snapshot != null) {
+			PlayFieldGraphic.setSnapshot(snapshot);
+		}
+		else {
+			PlayFieldGraphic.setSnapshot(new FieldSnapshot(w.getHosts(),
+					SimClock.getTime()));
+		}
 		
 		// clear old playfield graphics
-		g2.clearRect(-PLAYFIELD_OFFSET, -PLAYFIELD_OFFSET, 
+		g2.clearRect(area.x, area.y, area.width, area.height);
+		drawBackground(g2, area);
+		
+		// draw hosts
+		drawNodes(g2, area);
+		
+		// draw overlay graphics
+		for (int i=0, n=overlayGraphics.size(); i<n; i++) {
+			PlayFieldGraphic pfg = overlayGraphics.get(i);
+			if (pfg.isVisible(area)) {
+				pfg.draw(g2);
+			}
+		}
+		
+		// draw reference scale
+		this.refGraphic.draw(g2);
+	}
+	
+	/**
+	 * Draws the underlay image and the map (if any) using the background 
+	 * image. The background image is rendered again if it doesn't cover 
+	 * the area.
+	 * @param g2 The graphics context to draw to
+	 * @param area The area to draw (in scaled graphics coordinates)
+	 */
+	private void drawBackground(Graphics2D g2, Rectangle area) {
+		boolean drawMap = (mapGraphic != null && showMapGraphic);
+		if (underlayImage == null && !drawMap) {
+			return;
+		}
+		
+		if (background == null || !backgroundArea.contains(area)) {
+			renderBackground(area);
+		}
+		
+		if (background != null) {
+			g2.drawImage(background, backgroundArea.x, backgroundArea.y, null);
+			return;
+		}
+		
+		// too large area for the background image; draw directly
+		if (underlayImage != null) {
+			g2.drawImage(underlayImage, curTransform, null);
+		}
+		if (drawMap) {
+			mapGraphic.draw(g2);
+		}
+	}
+	
+	/**
+	 * Renders the underlay image and the map to the background image. The
+	 * image covers the area and a margin around it (for scrolling), unless
+	 * that would be too many pixels.
+	 * @param area The area that must be covered
+	 */
+	private void renderBackground(Rectangle area) {
+		Rectangle field = new Rectangle(-PLAYFIELD_OFFSET, -PLAYFIELD_OFFSET,
 				this.getWidth() + PLAYFIELD_OFFSET, 
 				this.getHeight() + PLAYFIELD_OFFSET);
+		Rectangle bgArea = new Rectangle(area);
+		bgArea.grow(area.width / 2, area.height / 2);
+		bgArea = bgArea.intersection(field);
+		if (!bgArea.contains(area) || bgArea.isEmpty() || 
+				(long)bgArea.width * bgArea.height > MAX_BACKGROUND_PIXELS) {
+			this.background = null;
+			return;
+		}
+		
+		BufferedImage image = new BufferedImage(bgArea.width, bgArea.height, 
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D bg = image.createGraphics();
+		bg.setBackground(bgColor);
+		bg.clearRect(0, 0, bgArea.width, bgArea.height);
+		bg.translate(-bgArea.x, -bgArea.y);
 		if (underlayImage != null) {
-			g2.drawImage(underlayImage,curTransform, null);
+			bg.drawImage(underlayImage, curTransform, null);
 		}
-
-		// draw map (is exists and drawing requested)
 		if (mapGraphic != null && showMapGraphic) {
-			mapGraphic.draw(g2);
+			mapGraphic.draw(bg);
 		}
+		bg.dispose();
 		
-		// draw hosts
-		for (DTNHost h : w.getHosts()) {
-			new NodeGraphic(h).draw(g2); 
+		this.background = image;
+		this.backgroundArea = bgArea;
+	}
+	
+	/**
+	 * Draws the nodes that are visible in the area. If there are more than
+	 * {@link #DENSITY_MODE_NODES} visible nodes, a density map of the nodes
+	 * and the highlighted nodes are drawn instead.
+	 * @param g2 The graphics context to draw to
+	 * @param area The visible area (in scaled graphics coordinates)
+	 */
+	private void drawNodes(Graphics2D g2, Rectangle area) {
+		List<DTNHost> hosts = w.getHosts();
+		for (int i=nodeGraphics.size(), n=hosts.size(); i<n; i++) {
+			nodeGraphics.add(new NodeGraphic(hosts.get(i)));
 		}
 		
-		// draw overlay graphics
-		for (int i=0, n=overlayGraphics.size(); i<n; i++) {
-			overlayGraphics.get(i).draw(g2);
+		visibleNodes.clear();
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			NodeGraphic ng = nodeGraphics.get(i);
+			if (ng.isVisible(area)) {
+				visibleNodes.add(ng);
+			}
 		}
 		
-		// draw reference scale
-		this.refGraphic.draw(g2);
+		if (visibleNodes.size() <= DENSITY_MODE_NODES) {
+			for (NodeGraphic ng : visibleNodes) {
+				ng.draw(g2);
+			}
+			return;
+		}
+		
+		densityGraphic.reset(area);
+		FieldSnapshot s = PlayFieldGraphic.snapshot;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			densityGraphic.add(s.getX(hosts.get(i)), s.getY(hosts.get(i)));
+		}
+		densityGraphic.draw(g2);
+		
+		for (NodeGraphic ng : visibleNodes) {
+			if (ng.isHighlighted()) {
+				ng.draw(g2);
+			}
+		}
 	}
 
 	
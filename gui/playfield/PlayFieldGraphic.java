@@ -5,6 +5,7 @@
 package gui.playfield;
 
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 
 /**
  * Superclass for all graphics to be drawn on the "play field".
@@ -14,6 +15,9 @@ public abstract class PlayFieldGraphic {
 	 * @see #setScale(double)
 	 */
 	protected static double scale = 1;
+	/** Snapshot of the node states that the graphics are drawn from
+	 * @see #setSnapshot(FieldSnapshot) */
+	protected static FieldSnapshot snapshot;
 		
 	/**
 	 * Set the zooming factor of the graphics to be drawn
@@ -23,6 +27,15 @@ public abstract class PlayFieldGraphic {
 		scale = newScale;
 	}
 
+	/**
+	 * Sets the snapshot of node states that node related graphics are drawn
+	 * from
+	 * @param newSnapshot The snapshot
+	 */
+	public static void setSnapshot(FieldSnapshot newSnapshot) {
+		snapshot = newSnapshot;
+	}
+
 	/**
 	 * Returns the currently used scaling factor
 	 * @return The scaling factor
@@ -37,6 +50,16 @@ public abstract class PlayFieldGraphic {
 	 */
 	public abstract void draw(Graphics2D g2);
 
+	/**
+	 * Returns true if the graphic may be visible in the given area. Graphics
+	 * that are not visible are not drawn. This implementation always
+	 * returns true.
+	 * @param area The visible area (in scaled graphics coordinates)
+	 * @return true if the graphic may be visible in the area
+	 */
+	public boolean isVisible(Rectangle area) {
+		return true;
+	}
 	
 	/**
 	 * Scales the value according to current zoom level
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package gui.playfield;
+
+/**
+ * Double buffer of {@link FieldSnapshot}s between the simulation thread and
+ * the event dispatch thread. The simulation thread publishes snapshots to
+ * the back buffer and the event dispatch thread takes the latest one to
+ * the front buffer for drawing. A published snapshot that hasn't been taken
+ * yet is replaced by the next one.
+ */
+public class SnapshotBuffer {
+	/** the latest published snapshot that hasn't been taken (or null) */
+	private FieldSnapshot back;
+	/** the latest taken snapshot */
+	private FieldSnapshot front;
+
+	/**
+	 * Publishes a new snapshot
+	 * @param snapshot The snapshot
+	 */
+	public synchronized void publish(FieldSnapshot snapshot) {
+		this.back = snapshot;
+	}
+
+	/**
+	 * Returns true if there is a published snapshot that hasn't been taken
+	 * @return true if there is a new snapshot
+	 */
+	public synchronized boolean hasNew() {
+		return back != null;
+	}
+
+	/**
+	 * Takes the latest published snapshot to the front buffer
+	 * @return The new front snapshot or the previous front snapshot if no
+	 * new snapshot has been published (null if nothing has been published)
+	 */
+	public synchronized FieldSnapshot take() {
+		if (back != null) {
+			front = back;
+			back = null;
+			notifyAll();
+		}
+		return front;
+	}
+
+	/**
+	 * Waits until the latest published snapshot has been taken
+	 * @param timeout Maximum time to wait (milliseconds)
+	 * @return true if the back buffer is free, false if the wait timed out
+	 */
+	public synchronized boolean awaitTaken(long timeout) {
+		if (back != null) {
+			try {
+				wait(timeout);
+			} catch (InterruptedException e) {
+				// nothing to do here
+			}
+		}
+		return back == null;
+	}
+}
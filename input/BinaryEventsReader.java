@@ -4,75 +4,303 @@
  */
 package input;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import core.SimError;
 
 /**
  * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * from a list of external events or from another external events reader.
+ * <P>
+ * The binary format is columnar: after a header (magic number and format
+ * version) the events are stored in blocks. Each block starts with the
+ * number of events and the length of the block in bytes, followed by the
+ * message (and interface) identifiers used in the block, and then one
+ * column per event field: event type, time, from and to addresses,
+ * identifier index, size and response size. A block with zero events ends
+ * the file. Identifiers are stored once per block and referred to by their
+ * index in the block, so only one block's identifiers are kept in memory
+ * when reading or writing.
+ * </P>
+ * <P>
+ * Files created with the older versions (a stream of serialized
+ * events, or blocks with identifiers numbered per file) can still be
+ * read.
+ * </P>
+ * <P>
+ * The class can also be run as a program to convert a standard external
+ * events file to a binary one:<BR>
+ * <TT>java input.BinaryEventsReader &lt;input file&gt; &lt;output file&gt;
+ * </TT>
+ * </P>
+ * @see StandardEventsReader
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
 	public static final String BINARY_EXT = ".binee";
-	
-	private ObjectInputStream in;
-	private int eventsLeft;
-	
+	/** Magic number in the beginning of the binary files ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the binary format that is written */
+	public static final int VERSION = 2;
+	/** Version of the format where identifiers are numbered per file */
+	private static final int FILE_IDS_VERSION = 1;
+	/** Maximum number of events in a block when storing events */
+	public static final int BLOCK_SIZE = 4096;
+
+	/** Event type of a dummy event (only time) */
+	private static final byte T_NONE = 0;
+	/** Event type of a message creation event */
+	private static final byte T_CREATE = 1;
+	/** Event type of a message transfer start event */
+	private static final byte T_SEND = 2;
+	/** Event type of a message delivered event */
+	private static final byte T_DELIVERED = 3;
+	/** Event type of a message transfer aborted event */
+	private static final byte T_ABORT = 4;
+	/** Event type of a message dropped event */
+	private static final byte T_DROP = 5;
+	/** Event type of a message removed event */
+	private static final byte T_REMOVE = 6;
+	/** Event type of a connection up event */
+	private static final byte T_CONN_UP = 7;
+	/** Event type of a connection down event */
+	private static final byte T_CONN_DOWN = 8;
+	/** Identifier index for a null identifier */
+	private static final int NO_ID = -1;
+
+	private DataInputStream in;
+	/** identifiers of the current block (or of the whole file in the
+	 * older format), indexed by their id index */
+	private List<String> ids;
+	/** true if the identifiers are numbered per file (older format) */
+	private boolean fileIds;
+
+	/* columns of the current block */
+	private byte[] types;
+	private double[] times;
+	private int[] froms;
+	private int[] tos;
+	private int[] idIndices;
+	private int[] sizes;
+	private int[] respSizes;
+	/** number of events in the current block */
+	private int blockSize;
+	/** index of the next event in the current block */
+	private int blockIndex;
+	/** true after the end-of-file block has been read */
+	private boolean endReached;
+
+	/** input stream for the old (serialized events) format or null */
+	private ObjectInputStream legacyIn;
+	/** events left in the old format file */
+	private int legacyEventsLeft;
+
 	/**
 	 * Constructor.
 	 * @param eventsFile The file where the events are read
 	 */
-	public BinaryEventsReader(File eventsFile) {	
+	public BinaryEventsReader(File eventsFile) {
 		try {
-			FileInputStream fis = new FileInputStream(eventsFile);
-			in = new ObjectInputStream(fis);
-			// first object should tell the amount of events
-			eventsLeft = (Integer)in.readObject(); 
+			BufferedInputStream bis = new BufferedInputStream(
+					new FileInputStream(eventsFile));
+			bis.mark(8);
+			DataInputStream dis = new DataInputStream(bis);
+			int magic = dis.readInt();
+
+			if (magic == MAGIC) {
+				int version = dis.readInt();
+				if (version != VERSION && version != FILE_IDS_VERSION) {
+					dis.close();
+					throw new SimError("Unsupported version " + version +
+							" of binary external events file " +
+							eventsFile.getAbsolutePath());
+				}
+				this.in = dis;
+				this.ids = new ArrayList<String>();
+				this.fileIds = (version == FILE_IDS_VERSION);
+			}
+			else { // not the columnar format, try the old format
+				bis.reset();
+				legacyIn = new ObjectInputStream(bis);
+				// first object should tell the amount of events
+				legacyEventsLeft = (Integer)legacyIn.readObject();
+			}
 		} catch (IOException e) {
 			throw new SimError(e);
 		} catch (ClassNotFoundException e) {
 			throw new SimError("Invalid binary input file for external " +
 					"events:" + eventsFile.getAbsolutePath(), e);
 		}
-		
 	}
-	
+
 	/**
 	 * Read events from a binary file created with storeBinaryFile method
 	 * @param nrof Maximum number of events to read
 	 * @return Events in an ArrayList (empty list if didn't read any)
 	 * @see #storeToBinaryFile(String, List)
 	 */
-	@SuppressWarnings("unchecked") // suppress cast warnings
 	public List<ExternalEvent> readEvents(int nrof) {
+		if (legacyIn != null) {
+			return readLegacyEvents(nrof);
+		}
+
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 
-		if (eventsLeft == 0) {
+		try {
+			while (events.size() < nrof) {
+				if (blockIndex >= blockSize) {
+					if (endReached || !readBlock()) {
+						break;
+					}
+				}
+				events.add(createEvent(blockIndex++));
+			}
+		} catch (IOException e) {
+			throw new SimError("Reading from binary external events file " +
+					"failed", e);
+		}
+
+		return events;
+	}
+
+	/**
+	 * Reads the next block of events to the columns
+	 * @return True if a block was read, false if the end of file was reached
+	 * @throws IOException if reading failed
+	 */
+	private boolean readBlock() throws IOException {
+		int nrof = in.readInt();
+		int length = in.readInt();
+
+		if (nrof == 0) {
+			endReached = true;
+			in.close();
+			return false;
+		}
+
+		byte[] data = new byte[length];
+		in.readFully(data);
+		DataInputStream block = new DataInputStream(
+				new ByteArrayInputStream(data));
+
+		if (!fileIds) {
+			ids.clear();
+		}
+		int nrofIds = block.readInt();
+		for (int i=0; i < nrofIds; i++) {
+			ids.add(block.readUTF());
+		}
+
+		if (types == null || types.length < nrof) {
+			types = new byte[nrof];
+			times = new double[nrof];
+			froms = new int[nrof];
+			tos = new int[nrof];
+			idIndices = new int[nrof];
+			sizes = new int[nrof];
+			respSizes = new int[nrof];
+		}
+
+		block.readFully(types, 0, nrof);
+		for (int i=0; i < nrof; i++) {
+			times[i] = block.readDouble();
+		}
+		readColumn(block, froms, nrof);
+		readColumn(block, tos, nrof);
+		readColumn(block, idIndices, nrof);
+		readColumn(block, sizes, nrof);
+		readColumn(block, respSizes, nrof);
+
+		this.blockSize = nrof;
+		this.blockIndex = 0;
+		return true;
+	}
+
+	private void readColumn(DataInputStream block, int[] column, int nrof)
+		throws IOException {
+		for (int i=0; i < nrof; i++) {
+			column[i] = block.readInt();
+		}
+	}
+
+	/**
+	 * Creates an event from the values of the current block's columns
+	 * @param i Index of the event in the block
+	 * @return The event
+	 */
+	private ExternalEvent createEvent(int i) {
+		double time = times[i];
+		String id = (idIndices[i] == NO_ID ? null : ids.get(idIndices[i]));
+
+		switch (types[i]) {
+		case T_NONE:
+			return new ExternalEvent(time);
+		case T_CREATE:
+			return new MessageCreateEvent(froms[i], tos[i], id, sizes[i],
+					respSizes[i], time);
+		case T_SEND:
+			return new MessageRelayEvent(froms[i], tos[i], id, time,
+					MessageRelayEvent.SENDING);
+		case T_DELIVERED:
+			return new MessageRelayEvent(froms[i], tos[i], id, time,
+					MessageRelayEvent.TRANSFERRED);
+		case T_ABORT:
+			return new MessageRelayEvent(froms[i], tos[i], id, time,
+					MessageRelayEvent.ABORTED);
+		case T_DROP:
+			return new MessageDeleteEvent(froms[i], id, time, true);
+		case T_REMOVE:
+			return new MessageDeleteEvent(froms[i], id, time, false);
+		case T_CONN_UP:
+			return new ConnectionEvent(froms[i], tos[i], id, true, time);
+		case T_CONN_DOWN:
+			return new ConnectionEvent(froms[i], tos[i], id, false, time);
+		default:
+			throw new SimError("Invalid event type " + types[i] +
+					" in binary external events file");
+		}
+	}
+
+	/**
+	 * Reads events from a file that uses the old (serialized events) format
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	private List<ExternalEvent> readLegacyEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		if (legacyEventsLeft == 0) {
 			return events;
 		}
-		
+
 		try {
-			for (int i=0; i < nrof && eventsLeft > 0; i++) {
-				events.add((ExternalEvent)in.readObject());
-				eventsLeft--;
+			for (int i=0; i < nrof && legacyEventsLeft > 0; i++) {
+				events.add((ExternalEvent)legacyIn.readObject());
+				legacyEventsLeft--;
 			}
-			if (eventsLeft == 0) {
-				in.close();
+			if (legacyEventsLeft == 0) {
+				legacyIn.close();
 			}
 		} catch (Exception e) { // FIXME: quick 'n' dirty exception handling
 			throw new SimError(e);
 		}
-		return events;	
+		return events;
 	}
-	
+
 	/**
 	 * Checks if the given file is a binary external events file
 	 * @param file The file to check
@@ -82,8 +310,8 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		if (!file.getName().endsWith(BINARY_EXT)) {
 			return false;
 		}
-		
-		// extension matches, try to read an event 
+
+		// extension matches, try to read an event
 		try {
 			BinaryEventsReader r = new BinaryEventsReader(file);
 			r.readEvents(1);
@@ -92,10 +320,10 @@ public class BinaryEventsReader implements ExternalEventsReader {
 		catch (SimError e) {
 			return false; // read failed -> not a valid file
 		}
-		
+
 		return true; // seems to be a valid binary ee file
 	}
-	
+
 	/**
 	 * Stores the events to a binary file
 	 * @param fileName Path to the file where the events are stored
@@ -104,34 +332,258 @@ public class BinaryEventsReader implements ExternalEventsReader {
 	 */
 	public static void storeToBinaryFile(String fileName,
 			List<ExternalEvent> events) throws IOException {
+		BinaryEventsWriter out = new BinaryEventsWriter(fileName);
 
-		// make sure the file name ends with binary extension
-		if (!fileName.endsWith(BINARY_EXT)) {
-			fileName += "BINARY_EXT";
+		for (ExternalEvent ee : events) {
+			out.write(ee);
 		}
-		
-		ObjectOutputStream out;
-		FileOutputStream fos = new FileOutputStream(fileName);
-		out = new ObjectOutputStream(fos);
 
-		// store the number of events
-		out.writeObject(new Integer(events.size()));
-		
-		// store events
-		for (ExternalEvent ee : events) {
-			out.writeObject(ee);
+		out.close();
+	}
+
+	/**
+	 * Stores all events of an external events reader to a binary file.
+	 * The events are read and stored one block at a time so the whole
+	 * event file is never in memory.
+	 * @param fileName Path to the file where the events are stored
+	 * @param reader The reader whose events are stored. The reader is closed
+	 * after all events are read.
+	 * @return Number of events that were stored
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static int storeToBinaryFile(String fileName,
+			ExternalEventsReader reader) throws IOException {
+		BinaryEventsWriter out = new BinaryEventsWriter(fileName);
+		int nrof = 0;
+
+		List<ExternalEvent> events = reader.readEvents(BLOCK_SIZE);
+		while (events.size() > 0) {
+			for (ExternalEvent ee : events) {
+				out.write(ee);
+			}
+			nrof += events.size();
+			events = reader.readEvents(BLOCK_SIZE);
 		}
 
+		reader.close();
 		out.close();
+		return nrof;
 	}
 
 	public void close() {
 		try {
-			this.in.close();
+			if (legacyIn != null) {
+				this.legacyIn.close();
+			}
+			else {
+				this.in.close();
+			}
 		}
 		catch (IOException ioe) {
 			throw new SimError(ioe);
 		}
 	}
-		
+
+	/**
+	 * Converts a standard external events file to a binary file.
+	 * @param args The input (standard events) file and the output file
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: java " +
+					BinaryEventsReader.class.getName() +
+					" <standard events file> <binary events file>");
+			System.exit(1);
+		}
+
+		try {
+			int nrof = storeToBinaryFile(args[1],
+					new StandardEventsReader(new File(args[0])));
+			System.out.println("Stored " + nrof + " events");
+		} catch (IOException e) {
+			throw new SimError("Can't store binary events file", e);
+		}
+	}
+
+	/**
+	 * Writer that stores events in the binary format block by block
+	 */
+	private static class BinaryEventsWriter {
+		private DataOutputStream out;
+		/** identifier -> id index mapping of the current block */
+		private Map<String, Integer> idIndex;
+		/** identifiers of the current block in the id index order */
+		private List<String> blockIds;
+
+		private byte[] types;
+		private double[] times;
+		private int[] froms;
+		private int[] tos;
+		private int[] idIndices;
+		private int[] sizes;
+		private int[] respSizes;
+		private int nrof;
+
+		/**
+		 * Creates a writer and writes the header
+		 * @param fileName Path to the file to write
+		 * @throws IOException if the writing fails
+		 */
+		public BinaryEventsWriter(String fileName) throws IOException {
+			// make sure the file name ends with binary extension
+			if (!fileName.endsWith(BINARY_EXT)) {
+				fileName += BINARY_EXT;
+			}
+
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName)));
+			this.idIndex = new HashMap<String, Integer>();
+			this.blockIds = new ArrayList<String>();
+			this.types = new byte[BLOCK_SIZE];
+			this.times = new double[BLOCK_SIZE];
+			this.froms = new int[BLOCK_SIZE];
+			this.tos = new int[BLOCK_SIZE];
+			this.idIndices = new int[BLOCK_SIZE];
+			this.sizes = new int[BLOCK_SIZE];
+			this.respSizes = new int[BLOCK_SIZE];
+			this.nrof = 0;
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		}
+
+		/**
+		 * Adds an event to the current block (and writes the block if
+		 * it is full)
+		 * @param ee The event to write
+		 * @throws IOException if the writing fails
+		 */
+		public void write(ExternalEvent ee) throws IOException {
+			int i = nrof;
+			String id = null;
+			froms[i] = 0;
+			tos[i] = 0;
+			sizes[i] = 0;
+			respSizes[i] = 0;
+			times[i] = ee.getTime();
+
+			if (ee instanceof MessageCreateEvent) {
+				MessageCreateEvent mce = (MessageCreateEvent)ee;
+				types[i] = T_CREATE;
+				sizes[i] = mce.getSize();
+				respSizes[i] = mce.getResponseSize();
+			}
+			else if (ee instanceof MessageRelayEvent) {
+				switch (((MessageRelayEvent)ee).getStage()) {
+				case MessageRelayEvent.SENDING:
+					types[i] = T_SEND;
+					break;
+				case MessageRelayEvent.TRANSFERRED:
+					types[i] = T_DELIVERED;
+					break;
+				default:
+					types[i] = T_ABORT;
+				}
+			}
+			else if (ee instanceof MessageDeleteEvent) {
+				types[i] = (((MessageDeleteEvent)ee).isDrop() ?
+						T_DROP : T_REMOVE);
+			}
+			else if (ee instanceof ConnectionEvent) {
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				types[i] = (ce.isUp ? T_CONN_UP : T_CONN_DOWN);
+				froms[i] = ce.fromAddr;
+				tos[i] = ce.toAddr;
+				id = ce.interfaceId;
+			}
+			else if (ee.getClass() == ExternalEvent.class) {
+				types[i] = T_NONE;
+			}
+			else {
+				throw new SimError("Can't store event " + ee + " of type " +
+						ee.getClass().getName() + " to a binary file");
+			}
+
+			if (ee instanceof MessageEvent) {
+				MessageEvent me = (MessageEvent)ee;
+				froms[i] = me.fromAddr;
+				tos[i] = me.toAddr;
+				id = me.id;
+			}
+
+			idIndices[i] = getIdIndex(id);
+			nrof++;
+
+			if (nrof == BLOCK_SIZE) {
+				writeBlock();
+			}
+		}
+
+		private int getIdIndex(String id) {
+			if (id == null) {
+				return NO_ID;
+			}
+
+			Integer index = idIndex.get(id);
+			if (index == null) {
+				index = idIndex.size();
+				idIndex.put(id, index);
+				blockIds.add(id);
+			}
+			return index;
+		}
+
+		/**
+		 * Writes the current block of events
+		 * @throws IOException if the writing fails
+		 */
+		private void writeBlock() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream block = new DataOutputStream(bytes);
+
+			block.writeInt(blockIds.size());
+			for (String id : blockIds) {
+				block.writeUTF(id);
+			}
+			block.write(types, 0, nrof);
+			for (int i=0; i < nrof; i++) {
+				block.writeDouble(times[i]);
+			}
+			writeColumn(block, froms);
+			writeColumn(block, tos);
+			writeColumn(block, idIndices);
+			writeColumn(block, sizes);
+			writeColumn(block, respSizes);
+			block.close();
+
+			out.writeInt(nrof);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+
+			idIndex.clear();
+			blockIds.clear();
+			nrof = 0;
+		}
+
+		private void writeColumn(DataOutputStream block, int[] column)
+			throws IOException {
+			for (int i=0; i < nrof; i++) {
+				block.writeInt(column[i]);
+			}
+		}
+
+		/**
+		 * Writes the last block and the end-of-file marker and closes
+		 * the file
+		 * @throws IOException if the writing fails
+		 */
+		public void close() throws IOException {
+			if (nrof > 0) {
+				writeBlock();
+			}
+			out.writeInt(0); // end of file: block without events
+			out.writeInt(0);
+			out.close();
+		}
+	}
 }
@@ -4,6 +4,8 @@
  */
 package input;
 
+import java.util.List;
+
 import core.DTNHost;
 import core.World;
 
@@ -46,6 +48,13 @@ public class ConnectionEvent extends ExternalEvent {
 		from.forceConnection(to, interfaceId, this.isUp);
 	}
 	
+	@Override
+	public boolean addTouchedHosts(World world, List<DTNHost> hosts) {
+		hosts.add(world.getNodeByAddress(this.fromAddr));
+		hosts.add(world.getNodeByAddress(this.toAddr));
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return "CONN " + (isUp ? "up" : "down") + " @" + this.time + " " + 
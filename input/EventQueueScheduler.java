@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.List;
+
+/**
+ * Scheduler that picks the event queue with the next event from a set of
+ * event queues. The queues are kept in an indexed binary heap ordered by
+ * their next event's time, so finding the next event is O(1) and popping
+ * an event or re-keying a queue is O(log n). Queues whose next event's time
+ * is the same are ordered by their position in the list given to the
+ * constructor (the earlier queue first).
+ * <P>
+ * The scheduler must be told (see {@link #updateQueue(EventQueue)}) when
+ * the next event's time of some queue changes because of something else
+ * than a call to {@link #nextEvent()}.
+ */
+public class EventQueueScheduler {
+	/** the scheduled queues in the order given to the constructor */
+	private EventQueue[] queues;
+	/** next event's time of each queue (indexed like queues) */
+	private double[] times;
+	/** the heap of queue indices */
+	private int[] heap;
+	/** position of each queue in the heap (indexed like queues) */
+	private int[] pos;
+
+	/**
+	 * Constructor.
+	 * @param queues The event queues to schedule. Order of the list defines
+	 * the order of queues that have events at the same time.
+	 */
+	public EventQueueScheduler(List<EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.pos = new int[n];
+
+		for (int i=0; i<n; i++) {
+			heap[i] = i;
+			pos[i] = i;
+		}
+		updateAll();
+	}
+
+	/**
+	 * Re-reads the next event's time of all queues and rebuilds the heap.
+	 */
+	public void updateAll() {
+		for (int i=0; i<queues.length; i++) {
+			times[i] = queues[i].nextEventsTime();
+		}
+		for (int i=queues.length/2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Re-reads the next event's time of the given queue and moves it to the
+	 * right place in the heap.
+	 * @param queue The queue whose next event's time has changed
+	 */
+	public void updateQueue(EventQueue queue) {
+		for (int i=0; i<queues.length; i++) {
+			if (queues[i] == queue) {
+				update(i);
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Queue " + queue +
+				" is not scheduled");
+	}
+
+	/**
+	 * Returns the queue that has the next event.
+	 * @return The queue with the next event or null if there are no queues
+	 */
+	public EventQueue nextEventQueue() {
+		return (queues.length == 0 ? null : queues[heap[0]]);
+	}
+
+	/**
+	 * Returns the time of the next event of all queues.
+	 * @return The next event's time or Double.MAX_VALUE if there are no
+	 * events left
+	 */
+	public double nextEventsTime() {
+		return (queues.length == 0 ? Double.MAX_VALUE : times[heap[0]]);
+	}
+
+	/**
+	 * Returns the next event of all queues and removes it from its queue.
+	 * @return The next event or an event with time Double.MAX_VALUE if there
+	 * are no events left
+	 */
+	public ExternalEvent nextEvent() {
+		if (queues.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		int index = heap[0];
+		ExternalEvent ee = queues[index].nextEvent();
+		update(index);
+		return ee;
+	}
+
+	/**
+	 * Re-reads the time of a queue and restores the heap order.
+	 * @param index Index of the queue
+	 */
+	private void update(int index) {
+		double old = times[index];
+		times[index] = queues[index].nextEventsTime();
+		if (times[index] < old) {
+			siftUp(pos[index]);
+		}
+		else {
+			siftDown(pos[index]);
+		}
+	}
+
+	/**
+	 * Returns true if the queue at heap position a should come before the
+	 * queue at heap position b
+	 */
+	private boolean isBefore(int a, int b) {
+		int qa = heap[a];
+		int qb = heap[b];
+		if (times[qa] != times[qb]) {
+			return times[qa] < times[qb];
+		}
+		return qa < qb;
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!isBefore(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		int n = heap.length;
+		while (true) {
+			int smallest = i;
+			int left = 2*i + 1;
+			int right = left + 1;
+			if (left < n && isBefore(left, smallest)) {
+				smallest = left;
+			}
+			if (right < n && isBefore(right, smallest)) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				break;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int tmp = heap[a];
+		heap[a] = heap[b];
+		heap[b] = tmp;
+		pos[heap[a]] = a;
+		pos[heap[b]] = b;
+	}
+
+	public String toString() {
+		return "EventQueueScheduler of " + queues.length + " queues, next " +
+			"event @ " + nextEventsTime();
+	}
+}
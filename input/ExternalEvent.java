@@ -5,7 +5,9 @@
 package input;
 
 import java.io.Serializable;
+import java.util.List;
 
+import core.DTNHost;
 import core.World;
 
 /**
@@ -28,6 +30,21 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 	public void processEvent(World world) {
 		// this is just a dummy event
 	}
+	
+	/**
+	 * Adds the hosts whose state processing this event changes to the given
+	 * list. The world uses this to update only the touched hosts (and their
+	 * peers) after the event instead of all hosts. Events that don't know
+	 * which hosts they touch (like this dummy event that is used for 
+	 * scheduled updates) return false and cause an update of all hosts.
+	 * @param world World where the actors of the event are
+	 * @param hosts The list where the touched hosts are added to
+	 * @return true if the touched hosts were added, false if all hosts
+	 * should be updated
+	 */
+	public boolean addTouchedHosts(World world, List<DTNHost> hosts) {
+		return false;
+	}
 
 	/**
 	 * Returns the time when this event should happen.
@@ -21,6 +21,10 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** read events in a background thread -setting id ({@value}). Boolean.
+	 * If true, the next {@link #PRELOAD_SETTING} events are read while the
+	 * simulation processes the current ones. Default = false. */
+	public static final String PREFETCH_SETTING = "prefetch";
 	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -31,6 +35,7 @@ public class ExternalEventsQueue implements EventQueue {
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	private boolean prefetch = false;
 	
 	/**
 	 * Creates a new Queue from a file
@@ -58,6 +63,7 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		this.prefetch = s.getBoolean(PREFETCH_SETTING, false);
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -84,6 +90,10 @@ public class ExternalEventsQueue implements EventQueue {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 		
+		if (prefetch) {
+			this.reader = new PrefetchingEventsReader(reader, nrofPreload);
+		}
+		
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
@@ -4,6 +4,8 @@
  */
 package input;
 
+import java.util.List;
+
 import core.DTNHost;
 import core.Message;
 import core.World;
@@ -46,6 +48,29 @@ public class MessageCreateEvent extends MessageEvent {
 		from.createNewMessage(m);
 	}
 	
+	/**
+	 * Returns the size of the message to create
+	 * @return the size of the message to create
+	 */
+	int getSize() {
+		return this.size;
+	}
+	
+	/**
+	 * Returns the size of the requested response
+	 * @return the size of the requested response or 0 if no response is
+	 * requested
+	 */
+	int getResponseSize() {
+		return this.responseSize;
+	}
+	
+	@Override
+	public boolean addTouchedHosts(World world, List<DTNHost> hosts) {
+		hosts.add(world.getNodeByAddress(this.fromAddr));
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
@@ -50,6 +50,20 @@ public class MessageDeleteEvent extends MessageEvent {
 			host.deleteMessage(id, drop);
 		}
 	}
+	
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return true for a drop, false for "normal" removing
+	 */
+	boolean isDrop() {
+		return this.drop;
+	}
+	
+	@Override
+	public boolean addTouchedHosts(World world, List<DTNHost> hosts) {
+		hosts.add(world.getNodeByAddress(this.fromAddr));
+		return true;
+	}
 
 	@Override
 	public String toString() {
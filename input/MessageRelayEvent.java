@@ -4,6 +4,8 @@
  */
 package input;
 
+import java.util.List;
+
 import core.DTNHost;
 import core.World;
 
@@ -61,6 +63,21 @@ public class MessageRelayEvent extends MessageEvent {
 		}
 	}
 	
+	/**
+	 * Returns the stage of the event
+	 * @return the stage (SENDING, TRANSFERRED, or ABORTED)
+	 */
+	int getStage() {
+		return this.stage;
+	}
+	
+	@Override
+	public boolean addTouchedHosts(World world, List<DTNHost> hosts) {
+		hosts.add(world.getNodeByAddress(this.fromAddr));
+		hosts.add(world.getNodeByAddress(this.toAddr));
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " + 
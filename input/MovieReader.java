@@ -0,0 +1,775 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Reads simulation "movies" recorded with {@link report.MovieReport}.
+ * The file is memory-mapped (in segments, so files larger than 2 GB work
+ * too) and the reader keeps the state of all the hosts
+ * (location, number of buffered messages, radio activeness and connections)
+ * at the current time of the movie. The movie can be played forward one
+ * frame at a time with {@link #advance()}, which also passes the recorded
+ * connection and message events to the listeners, or moved to any time
+ * with {@link #seek(double)}.
+ * <P>
+ * The file starts with a header (magic number, format version, number of
+ * hosts and the location resolution) that is followed by frame and keyframe
+ * records. A frame has the time of the frame, the events since the previous
+ * frame, the location changes of the hosts that moved (as quantized
+ * deltas) and the hosts whose buffer or radio state changed. A keyframe has
+ * the complete state of all hosts and their connections. The footer has
+ * the times and offsets of the keyframes and the messages that the events
+ * refer to. The file ends with the offset of the footer and the magic
+ * number. Integer values and the keyframe offsets are stored as variable
+ * length integers.
+ * </P>
+ */
+public class MovieReader {
+	/** Extension of movie files */
+	public static final String MOVIE_EXT = ".onemovie";
+	/** Magic number in the beginning and end of movie files ("ONEM") */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the movie format */
+	public static final int VERSION = 2;
+
+	/** Record type of a frame */
+	public static final int FRAME = 1;
+	/** Record type of a keyframe */
+	public static final int KEYFRAME = 2;
+	/** Record type of the end of records */
+	public static final int END = 3;
+
+	/** Event type of connection up event */
+	public static final int CONN_UP = 1;
+	/** Event type of connection down event */
+	public static final int CONN_DOWN = 2;
+	/** Event type of message creation event */
+	public static final int MSG_CREATED = 3;
+	/** Event type of message transfer start event */
+	public static final int MSG_TRANSFER_STARTED = 4;
+	/** Event type of message transferred event (relayed) */
+	public static final int MSG_RELAYED = 5;
+	/** Event type of message transferred event (first delivery) */
+	public static final int MSG_DELIVERED = 6;
+	/** Event type of message transfer abort event */
+	public static final int MSG_ABORTED = 7;
+	/** Event type of message removal event */
+	public static final int MSG_REMOVED = 8;
+	/** Event type of message drop event */
+	public static final int MSG_DROPPED = 9;
+
+	/** Size of the trailer (footer offset and magic number) */
+	public static final int TRAILER_SIZE = 12;
+	/** Size of the memory-mapped segments of the file */
+	public static final int DEF_SEGMENT_SIZE = 1 << 30;
+	/** Initial size of the connected peer arrays */
+	private static final int INITIAL_NROF_PEERS = 4;
+
+	/** the file mapped in segments of {@link #segmentSize} bytes */
+	private MappedByteBuffer[] segments;
+	private int segmentSize;
+	/** the segment of the current position and its index */
+	private MappedByteBuffer buffer;
+	private int segmentIndex;
+	/** size of the file */
+	private long fileSize;
+	/** offset of the first record */
+	private long firstRecord;
+	/** offset of the footer (end of records) */
+	private long footer;
+
+	private int nrofHosts;
+	private double resolution;
+	/** times and offsets of the keyframes */
+	private double[] keyframeTimes;
+	private long[] keyframeOffsets;
+	/** time of the last frame */
+	private double endTime;
+
+	/** recorded messages' ids, sources, destinations and sizes */
+	private String[] msgIds;
+	private int[] msgFrom;
+	private int[] msgTo;
+	private int[] msgSizes;
+	/** messages created for the listeners (or null if not yet created) */
+	private Message[] messages;
+
+	/** hosts indexed by their address (for the listeners) */
+	private DTNHost[] hosts;
+	private List<ConnectionListener> conListeners;
+	private List<MessageListener> msgListeners;
+
+	/** the state at the current time */
+	private double time;
+	private int[] xs;
+	private int[] ys;
+	private int[] nrofMessages;
+	private boolean[] radioActive;
+	private int[][] peers;
+	private int[] nrofPeers;
+
+	/**
+	 * Opens a movie file and moves to the beginning of the movie
+	 * @param movieFile The movie file
+	 * @param hosts The hosts of the simulation whose movie this is. These
+	 * are passed to the listeners in the events.
+	 * @throws SimError if the file can't be read or it's not a complete
+	 * movie file of the hosts
+	 */
+	public MovieReader(File movieFile, List<DTNHost> hosts) {
+		this(movieFile, hosts, DEF_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens a movie file, mapping it in segments of the given size, and
+	 * moves to the beginning of the movie. Other segment sizes than the
+	 * default are only useful for testing.
+	 * @param movieFile The movie file
+	 * @param hosts The hosts of the simulation whose movie this is
+	 * @param segmentSize Size of the memory-mapped segments (bytes)
+	 * @throws SimError if the file can't be read or it's not a complete
+	 * movie file of the hosts
+	 */
+	public MovieReader(File movieFile, List<DTNHost> hosts, int segmentSize) {
+		this.conListeners = new ArrayList<ConnectionListener>();
+		this.msgListeners = new ArrayList<MessageListener>();
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(movieFile, "r");
+			FileChannel channel = raf.getChannel();
+			this.fileSize = channel.size();
+			this.segmentSize = segmentSize;
+			int nrofSegments = (int)((fileSize - 1) / segmentSize) + 1;
+			this.segments = new MappedByteBuffer[Math.max(nrofSegments, 1)];
+			for (int i=0; i<segments.length; i++) {
+				long start = (long)i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, Math.min(segmentSize, fileSize - start));
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read movie file " + movieFile +
+					": " + e.getMessage(), e);
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close(); // the mapping stays valid
+				} catch (IOException e) {
+					// nothing to do here
+				}
+			}
+		}
+
+		try {
+			readHeader(movieFile);
+			readFooter(movieFile);
+		} catch (BufferUnderflowException e) {
+			throw new SimError("Movie file " + movieFile + " is truncated");
+		}
+
+		if (hosts.size() != nrofHosts) {
+			throw new SimError("Movie file " + movieFile + " has " +
+					nrofHosts + " hosts but the scenario has " + hosts.size());
+		}
+		this.hosts = new DTNHost[nrofHosts];
+		for (DTNHost h : hosts) {
+			if (h.getAddress() < nrofHosts) {
+				this.hosts[h.getAddress()] = h;
+			}
+		}
+
+		this.xs = new int[nrofHosts];
+		this.ys = new int[nrofHosts];
+		this.nrofMessages = new int[nrofHosts];
+		this.radioActive = new boolean[nrofHosts];
+		this.peers = new int[nrofHosts][];
+		this.nrofPeers = new int[nrofHosts];
+
+		seek(getStartTime());
+	}
+
+	/**
+	 * Reads the header
+	 */
+	private void readHeader(File movieFile) {
+		position(0);
+		if (getInt() != MAGIC) {
+			throw new SimError(movieFile + " is not a movie file");
+		}
+		int version = getInt();
+		if (version != VERSION) {
+			throw new SimError("Unsupported movie file version " + version);
+		}
+		this.nrofHosts = getInt();
+		this.resolution = getDouble();
+		this.firstRecord = position();
+	}
+
+	/**
+	 * Reads the keyframe index and the message table from the footer
+	 */
+	private void readFooter(File movieFile) {
+		if (fileSize < firstRecord + TRAILER_SIZE) {
+			throw new SimError("Movie file " + movieFile + " is incomplete");
+		}
+		position(fileSize - TRAILER_SIZE);
+		this.footer = getLong();
+		if (getInt() != MAGIC || footer < firstRecord ||
+				footer > fileSize - TRAILER_SIZE) {
+			throw new SimError("Movie file " + movieFile + " is incomplete");
+		}
+		position(footer);
+
+		this.endTime = getDouble();
+		int nrofKeyframes = readInt();
+		if (nrofKeyframes == 0) {
+			throw new SimError("Movie file " + movieFile + " has no frames");
+		}
+		this.keyframeTimes = new double[nrofKeyframes];
+		this.keyframeOffsets = new long[nrofKeyframes];
+		for (int i=0; i<nrofKeyframes; i++) {
+			keyframeTimes[i] = getDouble();
+			keyframeOffsets[i] = readLong();
+		}
+
+		int nrofMsgs = readInt();
+		this.msgIds = new String[nrofMsgs];
+		this.msgFrom = new int[nrofMsgs];
+		this.msgTo = new int[nrofMsgs];
+		this.msgSizes = new int[nrofMsgs];
+		this.messages = new Message[nrofMsgs];
+		for (int i=0; i<nrofMsgs; i++) {
+			msgIds[i] = readString();
+			msgFrom[i] = readInt();
+			msgTo[i] = readInt();
+			msgSizes[i] = readInt();
+		}
+	}
+
+	/**
+	 * Adds a listener for the recorded connection events
+	 * @param cl The listener
+	 */
+	public void addConnectionListener(ConnectionListener cl) {
+		this.conListeners.add(cl);
+	}
+
+	/**
+	 * Adds a listener for the recorded message events
+	 * @param ml The listener
+	 */
+	public void addMessageListener(MessageListener ml) {
+		this.msgListeners.add(ml);
+	}
+
+	/**
+	 * Returns the number of hosts in the movie
+	 * @return the number of hosts in the movie
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Returns the time of the first keyframe
+	 * @return the time of the first keyframe
+	 */
+	public double getStartTime() {
+		return this.keyframeTimes[0];
+	}
+
+	/**
+	 * Returns the time of the last frame
+	 * @return the time of the last frame
+	 */
+	public double getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * Returns the current time of the movie
+	 * @return the current time of the movie
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	/**
+	 * Returns true if there are frames after the current one
+	 * @return true if there are frames after the current one
+	 */
+	public boolean hasNext() {
+		return position() < footer && peek() != END;
+	}
+
+	/**
+	 * Moves to the last frame at or before the given time (or to the first
+	 * frame if the time is before it). No events are passed to the
+	 * listeners.
+	 * @param seekTime The time to move to
+	 */
+	public void seek(double seekTime) {
+		int i = Arrays.binarySearch(keyframeTimes, seekTime);
+		if (i < 0) {
+			i = Math.max(-i - 2, 0); // the last keyframe before the time
+		}
+		else {
+			while (i + 1 < keyframeTimes.length &&
+					keyframeTimes[i + 1] == seekTime) {
+				i++;
+			}
+		}
+
+		position(keyframeOffsets[i]);
+		readRecord(false);
+		while (hasNext() && nextRecordTime() <= seekTime) {
+			readRecord(false);
+		}
+		SimClock.getInstance().setTime(this.time);
+	}
+
+	/**
+	 * Moves to the next frame, passing the events since the current frame to
+	 * the listeners. The simulation clock is set to the time of each event
+	 * before it's passed on and to the time of the frame in the end.
+	 * @return true if the movie moved to the next frame, false if there are
+	 * no more frames
+	 */
+	public boolean advance() {
+		if (!hasNext()) {
+			return false;
+		}
+		readRecord(true);
+		/* skip the keyframe after the frame (it has the same state) */
+		if (hasNext() && peek() == KEYFRAME) {
+			readRecord(false);
+		}
+		SimClock.getInstance().setTime(this.time);
+		return true;
+	}
+
+	/**
+	 * Returns the time of the next record
+	 * @return the time of the next record
+	 */
+	private double nextRecordTime() {
+		long recordStart = position();
+		position(recordStart + 1);
+		double recordTime = getDouble();
+		position(recordStart);
+		return recordTime;
+	}
+
+	/**
+	 * Reads the next frame or keyframe record and updates the state
+	 * @param emit If true, the events in a frame are passed to the
+	 * listeners
+	 */
+	private void readRecord(boolean emit) {
+		int type = get();
+		double previousTime = this.time;
+		this.time = getDouble();
+
+		if (type == KEYFRAME) {
+			getInt(); // length of the keyframe
+			readKeyframe();
+		}
+		else if (type == FRAME) {
+			readEvents(previousTime, emit);
+			readFrame();
+		}
+		else {
+			throw new SimError("Invalid record type " + type +
+					" in movie file at offset " + (position() - 9));
+		}
+	}
+
+	/**
+	 * Reads the state of all hosts from a keyframe
+	 */
+	private void readKeyframe() {
+		for (int i=0; i<nrofHosts; i++) {
+			xs[i] = readSignedInt();
+			ys[i] = readSignedInt();
+			setState(i, readInt());
+			nrofPeers[i] = 0;
+		}
+		for (int i=0, n=readInt(); i<n; i++) {
+			int a = readInt();
+			int b = readInt();
+			addPeer(a, b);
+			addPeer(b, a);
+		}
+	}
+
+	/**
+	 * Reads the location and state changes of a frame
+	 */
+	private void readFrame() {
+		int host = -1;
+		for (int i=0, n=readInt(); i<n; i++) {
+			host += readInt() + 1;
+			xs[host] += readSignedInt();
+			ys[host] += readSignedInt();
+		}
+		host = -1;
+		for (int i=0, n=readInt(); i<n; i++) {
+			host += readInt() + 1;
+			setState(host, readInt());
+		}
+	}
+
+	/**
+	 * Reads the events of a frame and applies their connection changes
+	 * @param previousTime Time of the previous frame (the event times are
+	 * relative to it)
+	 * @param emit If true, the events are passed to the listeners
+	 */
+	private void readEvents(double previousTime, boolean emit) {
+		for (int i=0, n=readInt(); i<n; i++) {
+			int type = get();
+			double eventTime = previousTime + Float.intBitsToFloat(getInt());
+			int a = readInt();
+			int b = (type == MSG_CREATED || type == MSG_REMOVED ||
+					type == MSG_DROPPED ? -1 : readInt());
+			int msg = (type == CONN_UP || type == CONN_DOWN ? -1 : readInt());
+
+			if (type == CONN_UP) {
+				addPeer(a, b);
+				addPeer(b, a);
+			}
+			else if (type == CONN_DOWN) {
+				removePeer(a, b);
+				removePeer(b, a);
+			}
+
+			if (emit) {
+				SimClock.getInstance().setTime(eventTime);
+				emitEvent(type, a, b, msg);
+			}
+		}
+	}
+
+	/**
+	 * Passes an event to the listeners
+	 * @param type Type of the event
+	 * @param a Address of the first host of the event
+	 * @param b Address of the second host of the event (or -1 if none)
+	 * @param msg Number of the message of the event (or -1 if none)
+	 */
+	private void emitEvent(int type, int a, int b, int msg) {
+		DTNHost h1 = hosts[a];
+		DTNHost h2 = (b >= 0 ? hosts[b] : null);
+		Message m = (msg >= 0 ? getMessage(msg) : null);
+
+		switch (type) {
+		case CONN_UP:
+			for (ConnectionListener cl : conListeners) {
+				cl.hostsConnected(h1, h2);
+			}
+			break;
+		case CONN_DOWN:
+			for (ConnectionListener cl : conListeners) {
+				cl.hostsDisconnected(h1, h2);
+			}
+			break;
+		case MSG_CREATED:
+			for (MessageListener ml : msgListeners) {
+				ml.newMessage(m);
+			}
+			break;
+		case MSG_TRANSFER_STARTED:
+			for (MessageListener ml : msgListeners) {
+				ml.messageTransferStarted(m, h1, h2);
+			}
+			break;
+		case MSG_RELAYED:
+		case MSG_DELIVERED:
+			for (MessageListener ml : msgListeners) {
+				ml.messageTransferred(m, h1, h2, type == MSG_DELIVERED);
+			}
+			break;
+		case MSG_ABORTED:
+			for (MessageListener ml : msgListeners) {
+				ml.messageTransferAborted(m, h1, h2);
+			}
+			break;
+		case MSG_REMOVED:
+		case MSG_DROPPED:
+			for (MessageListener ml : msgListeners) {
+				ml.messageDeleted(m, h1, type == MSG_DROPPED);
+			}
+			break;
+		default:
+			throw new SimError("Invalid event type " + type + " in movie");
+		}
+	}
+
+	/**
+	 * Returns a message of the message table. The message is created when
+	 * it's needed for the first time.
+	 * @param msg Number of the message
+	 * @return The message
+	 */
+	private Message getMessage(int msg) {
+		if (messages[msg] == null) {
+			messages[msg] = new Message(hosts[msgFrom[msg]], hosts[msgTo[msg]],
+					msgIds[msg], msgSizes[msg]);
+		}
+		return messages[msg];
+	}
+
+	/**
+	 * Sets the buffer and radio state of a host
+	 * @param host Address of the host
+	 * @param state The state (number of messages shifted left by one and the
+	 * radio activeness in the lowest bit)
+	 */
+	private void setState(int host, int state) {
+		nrofMessages[host] = state >>> 1;
+		radioActive[host] = (state & 1) != 0;
+	}
+
+	/**
+	 * Adds a peer to a host's connected peers
+	 */
+	private void addPeer(int host, int peer) {
+		int[] p = peers[host];
+		if (p == null) {
+			p = peers[host] = new int[INITIAL_NROF_PEERS];
+		}
+		else if (nrofPeers[host] == p.length) {
+			p = peers[host] = Arrays.copyOf(p, p.length * 2);
+		}
+		p[nrofPeers[host]++] = peer;
+	}
+
+	/**
+	 * Removes a peer from a host's connected peers
+	 */
+	private void removePeer(int host, int peer) {
+		int[] p = peers[host];
+		for (int i=0, n=nrofPeers[host]; i<n; i++) {
+			if (p[i] == peer) {
+				p[i] = p[n - 1];
+				nrofPeers[host]--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the X coordinate of a host's location
+	 * @param host Address of the host
+	 * @return The X coordinate
+	 */
+	public double getX(int host) {
+		return xs[host] * resolution;
+	}
+
+	/**
+	 * Returns the Y coordinate of a host's location
+	 * @param host Address of the host
+	 * @return The Y coordinate
+	 */
+	public double getY(int host) {
+		return ys[host] * resolution;
+	}
+
+	/**
+	 * Returns the number of messages in a host's buffer
+	 * @param host Address of the host
+	 * @return The number of messages
+	 */
+	public int getNrofMessages(int host) {
+		return nrofMessages[host];
+	}
+
+	/**
+	 * Returns true if a host's radio is active
+	 * @param host Address of the host
+	 * @return true if the radio is active
+	 */
+	public boolean isRadioActive(int host) {
+		return radioActive[host];
+	}
+
+	/**
+	 * Returns the number of connections of a host
+	 * @param host Address of the host
+	 * @return The number of connections
+	 */
+	public int getNrofConnections(int host) {
+		return nrofPeers[host];
+	}
+
+	/**
+	 * Returns the address of a host's connected peer
+	 * @param host Address of the host
+	 * @param i Index of the connection
+	 * @return Address of the peer
+	 */
+	public int getPeer(int host, int i) {
+		return peers[host][i];
+	}
+
+	/**
+	 * Reads a variable length unsigned integer
+	 * @return The value
+	 */
+	private int readInt() {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Reads a variable length unsigned long integer
+	 * @return The value
+	 */
+	private long readLong() {
+		long value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Reads a variable length signed (zigzag encoded) integer
+	 * @return The value
+	 */
+	private int readSignedInt() {
+		int value = readInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads a string (length and UTF-8 bytes)
+	 * @return The string
+	 */
+	private String readString() {
+		byte[] bytes = new byte[readInt()];
+		for (int i=0; i<bytes.length; i++) {
+			bytes[i] = get();
+		}
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the current position in the file
+	 * @return The offset of the next byte to read
+	 */
+	private long position() {
+		return (long)segmentIndex * segmentSize + buffer.position();
+	}
+
+	/**
+	 * Moves to a position in the file
+	 * @param position The offset of the next byte to read
+	 */
+	private void position(long position) {
+		segmentIndex = (int)Math.min(position / segmentSize,
+				segments.length - 1);
+		buffer = segments[segmentIndex];
+		buffer.position((int)(position - (long)segmentIndex * segmentSize));
+	}
+
+	/**
+	 * Reads a byte, moving to the next segment when the current one ends
+	 * @return The byte
+	 * @throws BufferUnderflowException if the file ends
+	 */
+	private byte get() {
+		if (!buffer.hasRemaining()) {
+			if (segmentIndex + 1 == segments.length) {
+				throw new BufferUnderflowException();
+			}
+			buffer = segments[++segmentIndex];
+			buffer.position(0);
+		}
+		return buffer.get();
+	}
+
+	/**
+	 * Returns the byte at the current position without moving
+	 * @return The byte
+	 */
+	private byte peek() {
+		if (buffer.hasRemaining()) {
+			return buffer.get(buffer.position());
+		}
+		return segments[segmentIndex + 1].get(0);
+	}
+
+	/**
+	 * Reads a (fixed length) integer
+	 * @return The value
+	 */
+	private int getInt() {
+		if (buffer.remaining() >= 4) {
+			return buffer.getInt();
+		}
+		int value = 0;
+		for (int i=0; i<4; i++) {
+			value = (value << 8) | (get() & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a (fixed length) long integer
+	 * @return The value
+	 */
+	private long getLong() {
+		if (buffer.remaining() >= 8) {
+			return buffer.getLong();
+		}
+		long value = 0;
+		for (int i=0; i<8; i++) {
+			value = (value << 8) | (get() & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a double
+	 * @return The value
+	 */
+	private double getDouble() {
+		return Double.longBitsToDouble(getLong());
+	}
+}
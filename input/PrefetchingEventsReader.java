@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * External events reader that reads the events of another reader in a
+ * background thread. The events are read in batches; while the simulation
+ * consumes one batch, the next one is read and waiting, so reading (and
+ * parsing) the event file doesn't stall the simulation unless the
+ * simulation consumes the events faster than they can be read. The order
+ * and contents of the events are the same as with the wrapped reader.
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	/** the wrapped reader; used only by the prefetch thread after start */
+	private ExternalEventsReader reader;
+	/** batches that are read and waiting; an empty batch ends the events */
+	private BlockingQueue<List<ExternalEvent>> batches;
+	/** the batch that is being consumed */
+	private List<ExternalEvent> batch;
+	/** index of the next event in the current batch */
+	private int batchIndex;
+	/** true after the last batch has been consumed */
+	private boolean endReached;
+	/** exception that stopped the prefetch thread (or null) */
+	private volatile RuntimeException error;
+	private Thread prefetcher;
+
+	/**
+	 * Creates a new prefetching reader and starts reading the events
+	 * @param reader The reader whose events are read. The reader is closed
+	 * by this reader when all events are read or this reader is closed.
+	 * @param batchSize How many events are read at once
+	 */
+	public PrefetchingEventsReader(ExternalEventsReader reader,
+			final int batchSize) {
+		this.reader = reader;
+		this.batches = new ArrayBlockingQueue<List<ExternalEvent>>(1);
+		this.batch = new ArrayList<ExternalEvent>(0);
+		this.batchIndex = 0;
+		this.endReached = false;
+
+		this.prefetcher = new Thread("ExternalEventsPrefetcher") {
+			public void run() {
+				prefetch(batchSize);
+			}
+		};
+		this.prefetcher.setDaemon(true);
+		this.prefetcher.start();
+	}
+
+	/**
+	 * Reads batches from the wrapped reader until all events are read or
+	 * the thread is interrupted. Run in the prefetch thread.
+	 * @param batchSize How many events are read at once
+	 */
+	private void prefetch(int batchSize) {
+		try {
+			List<ExternalEvent> events;
+			do {
+				events = reader.readEvents(batchSize);
+				batches.put(events);
+			} while (events.size() > 0);
+		} catch (InterruptedException e) {
+			// reader was closed -> stop reading
+		} catch (RuntimeException e) {
+			this.error = e;
+			batches.clear();
+			batches.offer(new ArrayList<ExternalEvent>(0));
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read events from the reader. Blocks only if the next batch is not
+	 * read yet.
+	 * @param nrof Maximum number of events to read
+	 * @return Events in a List (empty list if there are no events left)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		if (batchIndex >= batch.size()) {
+			batch = takeBatch();
+		}
+		if (batchIndex == 0 && batch.size() == nrof) {
+			/* a whole unread batch was requested (usual case) */
+			List<ExternalEvent> events = batch;
+			batch = new ArrayList<ExternalEvent>(0);
+			return events;
+		}
+
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		while (events.size() < nrof) {
+			if (batchIndex >= batch.size()) {
+				batch = takeBatch();
+				if (batch.size() == 0) {
+					break;
+				}
+			}
+			int n = Math.min(nrof - events.size(), batch.size() - batchIndex);
+			events.addAll(batch.subList(batchIndex, batchIndex + n));
+			batchIndex += n;
+		}
+
+		return events;
+	}
+
+	/**
+	 * Takes the next batch from the prefetch thread and resets the batch
+	 * index.
+	 * @return The next batch or an empty list if all events are read
+	 */
+	private List<ExternalEvent> takeBatch() {
+		batchIndex = 0;
+		if (endReached) {
+			return new ArrayList<ExternalEvent>(0);
+		}
+
+		List<ExternalEvent> next;
+		try {
+			next = batches.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while waiting for external " +
+					"events", e);
+		}
+
+		if (next.size() == 0) {
+			endReached = true;
+			if (error != null) {
+				throw new SimError("Reading external events failed", error);
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Stops the prefetch thread, which closes the wrapped reader.
+	 */
+	public void close() {
+		this.endReached = true;
+		this.prefetcher.interrupt();
+	}
+}
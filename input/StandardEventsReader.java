@@ -66,6 +66,8 @@ public class StandardEventsReader implements ExternalEventsReader {
 	
 	//private Scanner scanner;
 	private BufferedReader reader;
+	/** line that was read but not parsed yet (or null) */
+	private String nextLine;
 	
 	public StandardEventsReader(File eventsFile){
 		try {
@@ -83,9 +85,12 @@ public class StandardEventsReader implements ExternalEventsReader {
 		// skip empty and comment lines
 		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 		
-		String line;
+		String line = this.nextLine;
+		this.nextLine = null;
 		try {
-			line = this.reader.readLine();
+			if (line == null) {
+				line = this.reader.readLine();
+			}
 		} catch (IOException e1) {
 			throw new SimError("Reading from external event file failed.");
 		}
@@ -198,6 +203,7 @@ public class StandardEventsReader implements ExternalEventsReader {
 			}
 		}
 		
+		this.nextLine = line; // read ahead, parsed on the next call
 		return events;
 	}
 
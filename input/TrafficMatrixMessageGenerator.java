@@ -0,0 +1,394 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.AliasTable;
+import core.Settings;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * Message creation -external events generator where the sources and
+ * destinations of the messages follow a configurable traffic pattern.
+ * The pattern is given with exactly one of these settings:
+ * <UL>
+ * <LI>{@link #TRAFFIC_MATRIX_S}: a file with the relative traffic of
+ * each source-destination pair</LI>
+ * <LI>{@link #HOTSPOTS_S}: destination hosts that receive more traffic
+ * than the other hosts (see {@link #HOTSPOT_WEIGHT_S})</LI>
+ * <LI>{@link #GROUP_MATRIX_S}: relative traffic between host groups
+ * (see {@link #GROUP_IDS_S})</LI>
+ * </UL>
+ * Only hosts in the {@link MessageEventGenerator#HOST_RANGE_S} range are
+ * used as sources (and in the matrix and group modes also as destinations).
+ * In the hotspot mode, destinations are drawn from the
+ * {@link MessageEventGenerator#TO_HOST_RANGE_S} range if it is defined.
+ * The message size, interval and creation time range can be configured
+ * like with {@link MessageEventGenerator}.
+ * <P>
+ * Source-destination pairs are drawn in constant time using alias tables
+ * and the events are generated in batches of {@link #BATCH_SIZE_S} events.
+ * </P>
+ * @see MessageEventGenerator
+ */
+public class TrafficMatrixMessageGenerator extends MessageEventGenerator {
+	/** Traffic matrix file -setting id ({@value}). Each (non-empty and
+	 * non-comment) line of the file defines the relative traffic from one
+	 * host to another: <CODE>fromAddress toAddress weight</CODE>. The path
+	 * supports value filling. */
+	public static final String TRAFFIC_MATRIX_S = "trafficMatrix";
+	/** Hotspot destination addresses -setting id ({@value}). Comma
+	 * separated list of host addresses. */
+	public static final String HOTSPOTS_S = "hotspots";
+	/** Weight of hotspot destinations -setting id ({@value}). How many
+	 * times more messages a hotspot receives than any other destination.
+	 * Default = {@value #DEF_HOTSPOT_WEIGHT} */
+	public static final String HOTSPOT_WEIGHT_S = "hotspotWeight";
+	/** Group traffic matrix -setting id ({@value}). Comma separated list
+	 * of g*g weights where the value at (i*g + j) is the relative traffic
+	 * from group i to group j of the {@link #GROUP_IDS_S} setting. Sources
+	 * and destinations are drawn uniformly from the hosts of the groups. */
+	public static final String GROUP_MATRIX_S = "groupMatrix";
+	/** Group IDs of the group matrix -setting id ({@value}). Comma separated
+	 * list of host group IDs ({@link SimScenario#GROUP_ID_S}). All host
+	 * groups with the same ID belong to the same traffic group.
+	 * By default every host group is a traffic group of its own. */
+	public static final String GROUP_IDS_S = "groupIds";
+	/** Number of events to generate at once -setting id ({@value}).
+	 * Default = {@value #DEF_BATCH_SIZE} */
+	public static final String BATCH_SIZE_S = "batchSize";
+
+	/** Default value for the {@link #HOTSPOT_WEIGHT_S} setting */
+	public static final double DEF_HOTSPOT_WEIGHT = 10;
+	/** Default value for the {@link #BATCH_SIZE_S} setting */
+	public static final int DEF_BATCH_SIZE = 1024;
+
+	/** Alias table for drawing a pair (matrix and group modes) or a
+	 * destination (hotspot mode) */
+	private AliasTable table;
+	/** sources of the drawable pairs (matrix mode) */
+	private int[] pairFroms;
+	/** destinations of the drawable pairs (matrix mode) */
+	private int[] pairTos;
+	/** candidate destination addresses (hotspot mode) */
+	private int[] destinations;
+	/** hosts of each traffic group (group mode) */
+	private int[][] groupHosts;
+	/** number of traffic groups (group mode) */
+	private int nrofTrafficGroups;
+
+	/* the pre-generated events */
+	private int[] froms;
+	private int[] tos;
+	private int[] sizes;
+	private double[] times;
+	/** number of events in the current batch */
+	private int batchLength;
+	/** index of the next event in the current batch */
+	private int batchIndex;
+	/** creation time of the first event of the next batch */
+	private double nextBatchTime;
+
+	public TrafficMatrixMessageGenerator(Settings s) {
+		super(s);
+		int nrofModes = (s.contains(TRAFFIC_MATRIX_S) ? 1 : 0) +
+			(s.contains(HOTSPOTS_S) ? 1 : 0) +
+			(s.contains(GROUP_MATRIX_S) ? 1 : 0);
+		if (nrofModes != 1) {
+			throw new SettingsError("Exactly one of settings " +
+					TRAFFIC_MATRIX_S + ", " + HOTSPOTS_S + " and " +
+					GROUP_MATRIX_S + " must be defined");
+		}
+
+		if (s.contains(TRAFFIC_MATRIX_S)) {
+			readTrafficMatrix(s.valueFillString(
+					s.getSetting(TRAFFIC_MATRIX_S)));
+		}
+		else if (s.contains(HOTSPOTS_S)) {
+			initHotspots(s.getCsvInts(HOTSPOTS_S),
+					s.getDouble(HOTSPOT_WEIGHT_S, DEF_HOTSPOT_WEIGHT));
+		}
+		else {
+			initGroups(s);
+		}
+
+		int batchSize = s.getInt(BATCH_SIZE_S, DEF_BATCH_SIZE);
+		s.ensurePositiveValue(batchSize, BATCH_SIZE_S);
+		this.froms = new int[batchSize];
+		this.tos = new int[batchSize];
+		this.sizes = new int[batchSize];
+		this.times = new double[batchSize];
+
+		this.nextBatchTime = this.nextEventsTime;
+		fillBatch();
+	}
+
+	/**
+	 * Reads the sparse host-to-host traffic matrix
+	 * @param fileName Path of the matrix file
+	 */
+	private void readTrafficMatrix(String fileName) {
+		List<int[]> pairs = new ArrayList<int[]>();
+		List<Double> weights = new ArrayList<Double>();
+		int lineNr = 0;
+		String line = null;
+
+		try {
+			BufferedReader reader = new BufferedReader(
+					new FileReader(fileName));
+			while ((line = reader.readLine()) != null) {
+				lineNr++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue; // skip empty and comment lines
+				}
+				String[] parts = line.split("\\s+");
+				int from = Integer.parseInt(parts[0]);
+				int to = Integer.parseInt(parts[1]);
+				double weight = Double.parseDouble(parts[2]);
+
+				if (from == to || !isInRange(from, hostRange) ||
+						!isInRange(to, hostRange) || weight < 0) {
+					reader.close();
+					throw new SettingsError("Invalid traffic matrix entry '" +
+							line + "' (line " + lineNr + ") in " + fileName);
+				}
+				if (weight > 0) {
+					pairs.add(new int[] {from, to});
+					weights.add(weight);
+				}
+			}
+			reader.close();
+		} catch (IOException e) {
+			throw new SettingsError("Can't read traffic matrix file " +
+					fileName, e);
+		} catch (RuntimeException e) { // missing or invalid values
+			throw new SettingsError("Can't parse traffic matrix entry '" +
+					line + "' (line " + lineNr + ") in " + fileName, e);
+		}
+
+		if (pairs.size() == 0) {
+			throw new SettingsError("No traffic in traffic matrix " + fileName);
+		}
+
+		this.pairFroms = new int[pairs.size()];
+		this.pairTos = new int[pairs.size()];
+		double[] w = new double[pairs.size()];
+		for (int i=0; i<w.length; i++) {
+			pairFroms[i] = pairs.get(i)[0];
+			pairTos[i] = pairs.get(i)[1];
+			w[i] = weights.get(i);
+		}
+		this.table = new AliasTable(w);
+	}
+
+	/**
+	 * Initializes the hotspot destination distribution
+	 * @param hotspots Addresses of the hotspot hosts
+	 * @param hotspotWeight Weight of the hotspots relative to other hosts
+	 */
+	private void initHotspots(int[] hotspots, double hotspotWeight) {
+		int[] range = (toHostRange != null ? toHostRange : hostRange);
+		int nrof = Math.max(range[1] - range[0], 1);
+
+		if (hotspotWeight < 0) {
+			throw new SettingsError("Negative " + HOTSPOT_WEIGHT_S);
+		}
+
+		this.destinations = new int[nrof];
+		double[] w = new double[nrof];
+		for (int i=0; i<nrof; i++) {
+			destinations[i] = range[0] + i;
+			w[i] = 1;
+		}
+		for (int hotspot : hotspots) {
+			if (!isInRange(hotspot, range)) {
+				throw new SettingsError("Hotspot " + hotspot + " is not in " +
+						"the destination host range");
+			}
+			w[hotspot - range[0]] = hotspotWeight;
+		}
+		if (hostRange[1] - hostRange[0] <= 1 && isInRange(hostRange[0], range)) {
+			/* the only source can't send to itself */
+			w[hostRange[0] - range[0]] = 0;
+		}
+		try {
+			this.table = new AliasTable(w);
+		} catch (IllegalArgumentException e) {
+			throw new SettingsError("No possible destinations for hotspot " +
+					"traffic", e);
+		}
+	}
+
+	/**
+	 * Initializes the group-to-group traffic distribution
+	 * @param s Settings of this generator
+	 */
+	private void initGroups(Settings s) {
+		Settings scen = new Settings(SimScenario.SCENARIO_NS);
+		int nrofGroups = scen.getInt(SimScenario.NROF_GROUPS_S);
+		String[] ids = null;
+		if (s.contains(GROUP_IDS_S)) {
+			ids = s.getCsvSetting(GROUP_IDS_S);
+		}
+
+		this.nrofTrafficGroups = (ids != null ? ids.length : nrofGroups);
+		Map<String, Integer> idIndex = new HashMap<String, Integer>();
+		List<List<Integer>> members = new ArrayList<List<Integer>>();
+		for (int i=0; i<nrofTrafficGroups; i++) {
+			members.add(new ArrayList<Integer>());
+			if (ids != null) {
+				idIndex.put(ids[i], i);
+			}
+		}
+
+		/* host addresses are given in the order of the host groups */
+		int address = 0;
+		for (int i=1; i<=nrofGroups; i++) {
+			Settings gs = new Settings(SimScenario.GROUP_NS + i);
+			gs.setSecondaryNamespace(SimScenario.GROUP_NS);
+			int nrofHosts = gs.getInt(SimScenario.NROF_HOSTS_S);
+			Integer group = i-1;
+			if (ids != null) {
+				group = idIndex.get(gs.getSetting(SimScenario.GROUP_ID_S));
+			}
+
+			for (int j=0; j<nrofHosts; j++, address++) {
+				if (group != null && isInRange(address, hostRange)) {
+					members.get(group).add(address);
+				}
+			}
+		}
+
+		this.groupHosts = new int[nrofTrafficGroups][];
+		for (int i=0; i<nrofTrafficGroups; i++) {
+			List<Integer> m = members.get(i);
+			groupHosts[i] = new int[m.size()];
+			for (int j=0; j<m.size(); j++) {
+				groupHosts[i][j] = m.get(j);
+			}
+		}
+
+		double[] w = s.getCsvDoubles(GROUP_MATRIX_S,
+				nrofTrafficGroups * nrofTrafficGroups);
+		for (int i=0; i<w.length; i++) {
+			int fromGroup = i / nrofTrafficGroups;
+			int toGroup = i % nrofTrafficGroups;
+			int nrofTo = groupHosts[toGroup].length -
+				(fromGroup == toGroup ? 1 : 0);
+			if (w[i] > 0 && (groupHosts[fromGroup].length == 0 ||
+					nrofTo < 1)) {
+				throw new SettingsError("No hosts for traffic from group " +
+						fromGroup + " to group " + toGroup + " in " +
+						GROUP_MATRIX_S);
+			}
+		}
+		try {
+			this.table = new AliasTable(w);
+		} catch (IllegalArgumentException e) {
+			throw new SettingsError("Invalid " + GROUP_MATRIX_S, e);
+		}
+	}
+
+	private boolean isInRange(int address, int[] range) {
+		return address >= range[0] && address < range[1];
+	}
+
+	/**
+	 * Draws a random index in [0, n) that is different from the given index
+	 * @param n The size of the range
+	 * @param excluded The index not to draw or -1 if any index can be drawn
+	 * @return The drawn index
+	 */
+	private int drawIndex(int n, int excluded) {
+		if (excluded < 0) {
+			return rng.nextInt(n);
+		}
+		int index = rng.nextInt(n - 1);
+		return (index >= excluded ? index + 1 : index);
+	}
+
+	/**
+	 * Draws a source and a destination for the event at the given index
+	 * of the batch
+	 * @param i Index of the event in the batch
+	 */
+	private void drawPair(int i) {
+		if (pairFroms != null) { // matrix mode
+			int pair = table.draw(rng);
+			froms[i] = pairFroms[pair];
+			tos[i] = pairTos[pair];
+		}
+		else if (destinations != null) { // hotspot mode
+			int to = destinations[table.draw(rng)];
+			int n = Math.max(hostRange[1] - hostRange[0], 1);
+			int excluded = (isInRange(to, hostRange) ? to - hostRange[0] : -1);
+			tos[i] = to;
+			froms[i] = hostRange[0] + drawIndex(n, excluded);
+		}
+		else { // group mode
+			int cell = table.draw(rng);
+			int[] fromHosts = groupHosts[cell / nrofTrafficGroups];
+			int[] toHosts = groupHosts[cell % nrofTrafficGroups];
+			int from = rng.nextInt(fromHosts.length);
+			froms[i] = fromHosts[from];
+			tos[i] = toHosts[drawIndex(toHosts.length,
+					fromHosts == toHosts ? from : -1)];
+		}
+	}
+
+	/**
+	 * Generates the next batch of events
+	 */
+	private void fillBatch() {
+		int n = 0;
+		while (n < times.length && nextBatchTime != Double.MAX_VALUE) {
+			drawPair(n);
+			sizes[n] = drawMessageSize();
+			times[n] = nextBatchTime;
+			nextBatchTime += drawNextEventTimeDiff();
+			if (this.msgTime != null && nextBatchTime > this.msgTime[1]) {
+				/* next event would be later than the end time */
+				nextBatchTime = Double.MAX_VALUE;
+			}
+			n++;
+		}
+
+		this.batchLength = n;
+		this.batchIndex = 0;
+		this.nextEventsTime = (n > 0 ? times[0] : Double.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the next message creation event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		if (batchIndex >= batchLength) { // no more events
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		int i = batchIndex++;
+		MessageCreateEvent mce = new MessageCreateEvent(froms[i], tos[i],
+				getID(), sizes[i], 0, times[i]);
+
+		if (batchIndex < batchLength) {
+			this.nextEventsTime = times[batchIndex];
+		}
+		else {
+			fillBatch();
+		}
+
+		return mce;
+	}
+}
@@ -7,6 +7,7 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.PriorityQueue;
 
 import movement.MovementModel;
 
@@ -15,6 +16,7 @@ import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
+import core.SimClock;
 import core.World;
 
 /**
@@ -56,12 +58,18 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	
 	private GridCell[][] cells;
 	private HashMap<NetworkInterface, GridCell> ginterfaces;
+	/** wake up times of the sleeping interfaces */
+	private HashMap<NetworkInterface, Double> sleepers;
+	/** sleeping interfaces in the order of their wake up times */
+	private PriorityQueue<Sleeper> wakeUpQueue;
 	private int cellSize;
 	private int rows;
 	private int cols;
 	private static int worldSizeX;
 	private static int worldSizeY;
 	private static int cellSizeMultiplier;
+	/** are inactive interfaces removed from the grid while they sleep */
+	private static boolean sleepInactive;
 	
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
@@ -90,6 +98,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 					") for " + World.OPTIMIZATION_SETTINGS_NS + 
 					"." + CELL_SIZE_MULT_S);
 		}
+		/* returning interfaces are put last in their cells, which changes
+		   the order of connections like skipping quiescent hosts does */
+		sleepInactive = s.getBoolean(World.SKIP_QUIESCENT_S, false);
 	}
 
 	/**
@@ -110,6 +121,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			}
 		}
 		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		sleepers = new HashMap<NetworkInterface, Double>();
+		wakeUpQueue = new PriorityQueue<Sleeper>();
 	}
 
 	/**
@@ -137,9 +150,13 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
+		if (ginterfaces.containsKey(ni)) {
+			return; /* already present */
+		}
 		GridCell c = cellFromCoord(ni.getLocation());
 		c.addInterface(ni);
 		ginterfaces.put(ni,c);
+		sleepers.remove(ni);
 	}
 
 	/** 
@@ -154,6 +171,50 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		ginterfaces.remove(ni);
 	}
 
+	/**
+	 * Removes a network interface from the grid until the wake up time.
+	 * Does nothing unless skipping of quiescent hosts 
+	 * ({@link World#SKIP_QUIESCENT_S}) is enabled.
+	 * @param ni The interface to put to sleep
+	 * @param wakeUpTime The time when the interface is checked again
+	 */
+	public void sleepInterface(NetworkInterface ni, double wakeUpTime) {
+		if (!sleepInactive) {
+			return;
+		}
+		removeInterface(ni);
+		if (wakeUpTime == Double.MAX_VALUE) {
+			sleepers.remove(ni);
+			return; /* the interface's activeness never changes */
+		}
+		sleepers.put(ni, wakeUpTime);
+		wakeUpQueue.add(new Sleeper(ni, wakeUpTime));
+	}
+	
+	/**
+	 * Checks the activeness of the sleeping interfaces whose wake up time
+	 * has come. Active interfaces return to the grid, the others are put 
+	 * back to sleep until their next activeness change.
+	 */
+	private void wakeUpInterfaces() {
+		double simTime = SimClock.getTime();
+		while (!wakeUpQueue.isEmpty() && 
+				wakeUpQueue.peek().wakeUpTime <= simTime) {
+			Sleeper s = wakeUpQueue.poll();
+			Double wakeUpTime = sleepers.get(s.ni);
+			if (wakeUpTime == null || wakeUpTime != s.wakeUpTime) {
+				continue; /* already woken up or rescheduled */
+			}
+			sleepers.remove(s.ni);
+			if (!s.ni.isActive()) {
+				double next = s.ni.getNextActivenessChange();
+				if (next > simTime) {
+					sleepInterface(s.ni, next);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Adds interfaces to overlay grid
 	 * @param interfaces Collection of interfaces to add
@@ -170,6 +231,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public void updateLocation(NetworkInterface ni) {
 		GridCell oldCell = (GridCell)ginterfaces.get(ni);
+		if (oldCell == null) {
+			return; /* sleeping interface */
+		}
 		GridCell newCell = cellFromCoord(ni.getLocation());
 
 		if (newCell != oldCell) {
@@ -237,6 +301,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
 		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		wakeUpInterfaces();
 		GridCell loc = (GridCell)ginterfaces.get(ni);
 		
 		if (loc != null) {	
@@ -320,4 +385,21 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 	
+	/**
+	 * A sleeping interface and the time when it should be checked again
+	 */
+	private static class Sleeper implements Comparable<Sleeper> {
+		private NetworkInterface ni;
+		private double wakeUpTime;
+		
+		private Sleeper(NetworkInterface ni, double wakeUpTime) {
+			this.ni = ni;
+			this.wakeUpTime = wakeUpTime;
+		}
+		
+		public int compareTo(Sleeper other) {
+			return Double.compare(this.wakeUpTime, other.wakeUpTime);
+		}
+	}
+	
 }
\ No newline at end of file
@@ -25,6 +25,19 @@ abstract public class ConnectivityOptimizer {
 	 */
 	abstract public void addInterfaces(Collection<NetworkInterface> interfaces);
 
+	/**
+	 * Removes a network interface from the optimizer until the given time.
+	 * At that time the optimizer checks if the interface is active again 
+	 * (which returns it to the optimizer). If it isn't, the interface
+	 * is checked again at its next activeness change. Optimizers may also
+	 * keep the interface.
+	 * @param ni The interface to put to sleep
+	 * @param wakeUpTime The time when the interface is checked again
+	 * @see NetworkInterface#isActive()
+	 */
+	abstract public void sleepInterface(NetworkInterface ni, 
+			double wakeUpTime);
+
 	/**
 	 * Updates a network interface's location
 	 */
@@ -135,7 +135,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			MapNode destinationNode = map.getNodeByCoord(latestBusStop);
 			List<MapNode> nodes = pathFinder.getShortestPath(thisNode, 
 					destinationNode);
-			Path path = new Path(generateSpeed());
+			Path path = newPath(generateSpeed());
 			for (MapNode node : nodes) {
 				path.addWaypoint(node.getLocation());
 			}
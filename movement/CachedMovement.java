@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+
+/**
+ * Movement model wrapper that records the movement of another movement model
+ * to a {@link MovementCache} or replays the movement from the cache. When
+ * replaying, the wrapped model is not replicated for the hosts, so no
+ * movement is generated at all. Activeness and the other settings of the
+ * {@link MovementModel} superclass are copied from the wrapped model.
+ */
+public class CachedMovement extends MovementModel {
+	/** The cache where the movement is recorded to or replayed from */
+	private MovementCache cache;
+	/** The wrapped model (prototype's model when replaying) */
+	private MovementModel model;
+
+	/**
+	 * Creates a prototype for a group's hosts
+	 * @param model The movement model prototype of the group
+	 * @param cache The movement cache
+	 */
+	public CachedMovement(MovementModel model, MovementCache cache) {
+		super(model);
+		this.model = model;
+		this.cache = cache;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param cm The prototype
+	 */
+	protected CachedMovement(CachedMovement cm) {
+		super(cm);
+		this.cache = cm.cache;
+		this.model = (cache.isReplay() ? cm.model : cm.model.replicate());
+	}
+
+	/**
+	 * Returns the wrapped movement model
+	 * @return The wrapped movement model
+	 */
+	public MovementModel getModel() {
+		return this.model;
+	}
+
+	@Override
+	public Coord getInitialLocation() {
+		if (cache.isReplay()) {
+			return cache.replayInitialLocation(host);
+		}
+		Coord c = model.getInitialLocation();
+		cache.recordInitialLocation(host, c);
+		return c;
+	}
+
+	@Override
+	public Path getPath() {
+		if (cache.isReplay()) {
+			return cache.replayPath(host);
+		}
+		Path p = model.getPath();
+		cache.recordPath(host, p);
+		return p;
+	}
+
+	@Override
+	public double nextPathAvailable() {
+		if (cache.isReplay()) {
+			return cache.replayNextPathTime(host);
+		}
+		double time = model.nextPathAvailable();
+		cache.recordNextPathTime(host, time);
+		return time;
+	}
+
+	@Override
+	public boolean isActive() {
+		if (cache.isReplay()) {
+			return super.isActive();
+		}
+		return model.isActive();
+	}
+
+	@Override
+	public double getNextActivenessChange() {
+		if (cache.isReplay()) {
+			return super.getNextActivenessChange();
+		}
+		return model.getNextActivenessChange();
+	}
+
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (!cache.isReplay()) {
+			model.setHost(host);
+		}
+	}
+
+	@Override
+	public void setComBus(ModuleCommunicationBus comBus) {
+		super.setComBus(comBus);
+		if (!cache.isReplay()) {
+			model.setComBus(comBus);
+		}
+	}
+
+	@Override
+	public CachedMovement replicate() {
+		return new CachedMovement(this);
+	}
+
+	@Override
+	public String toString() {
+		return model.toString();
+	}
+}
@@ -155,6 +155,11 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	@Override
+	public double getNextActivenessChange() {
+		return Double.MAX_VALUE; /* activeness is set only at the start */
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
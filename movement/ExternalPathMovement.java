@@ -81,6 +81,11 @@ public class ExternalPathMovement extends MovementModel {
 		return false;
 	}
 
+	@Override
+	public double getNextActivenessChange() {
+		return SimClock.getTime(); /* may change at any time */
+	}
+
 	@Override
 	public Path getPath() {
 		// Make sure to not give out paths when the node is not active
@@ -179,7 +179,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
+		Path p = newPath(generateSpeed());
 		MapNode curNode = lastMapNode;
 		MapNode prevNode = lastMapNode;
 		MapNode nextNode = null;	
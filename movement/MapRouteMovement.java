@@ -4,7 +4,9 @@
  */
 package movement;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import core.SettingsError;
 import movement.map.DijkstraPathFinder;
@@ -17,7 +19,8 @@ import core.Settings;
  * Map based movement model that uses predetermined paths within the map area.
  * Nodes using this model (can) stop on every route waypoint and find their
  * way to next waypoint using {@link DijkstraPathFinder}. There can be
- * different type of routes; see {@link #ROUTE_TYPE_S}.
+ * different type of routes; see {@link #ROUTE_TYPE_S}. The paths between
+ * the stops are computed once and shared by all nodes of the group.
  */
 public class MapRouteMovement extends MapBasedMovement implements 
 	SwitchableMovement {
@@ -39,6 +42,8 @@ public class MapRouteMovement extends MapBasedMovement implements
 	
 	/** the Dijkstra shortest path finder */
 	private DijkstraPathFinder pathFinder;
+	/** paths between stops (from, to), shared by all nodes of the group */
+	private Map<MapNode, Map<MapNode, Path>> legs;
 
 	/** Prototype's reference to all routes read for the group */
 	private List<MapRoute> allRoutes = null;
@@ -61,6 +66,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 		allRoutes = MapRoute.readRoutes(fileName, type, getMap());
 		nextRouteIndex = 0;
 		pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+		legs = new HashMap<MapNode, Map<MapNode, Path>>();
 		this.route = this.allRoutes.get(this.nextRouteIndex).replicate();
 		if (this.nextRouteIndex >= this.allRoutes.size()) {
 			this.nextRouteIndex = 0;
@@ -95,6 +101,7 @@ public class MapRouteMovement extends MapBasedMovement implements
 		}
 		
 		this.pathFinder = proto.pathFinder;
+		this.legs = proto.legs;
 		
 		proto.nextRouteIndex++; // give routes in order
 		if (proto.nextRouteIndex >= proto.allRoutes.size()) {
@@ -104,22 +111,46 @@ public class MapRouteMovement extends MapBasedMovement implements
 
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
+		Path p = newPath(generateSpeed());
 		MapNode to = route.nextStop();
 		
-		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
+		p.shareWaypoints(getLeg(lastMapNode, to));
+		lastMapNode = to;
 		
-		// this assertion should never fire if the map is checked in read phase
-		assert nodePath.size() > 0 : "No path from " + lastMapNode + " to " +
-			to + ". The simulation map isn't fully connected";
-				
-		for (MapNode node : nodePath) { // create a Path from the shortest path
-			p.addWaypoint(node.getLocation());
+		return p;
+	}
+	
+	/**
+	 * Returns the shared path between two stops, finding the shortest path
+	 * if it hasn't been asked before
+	 * @param from The stop where the path starts
+	 * @param to The stop where the path ends
+	 * @return The path (without speed) that must not be modified
+	 */
+	private Path getLeg(MapNode from, MapNode to) {
+		Map<MapNode, Path> fromLegs = legs.get(from);
+		if (fromLegs == null) {
+			fromLegs = new HashMap<MapNode, Path>();
+			legs.put(from, fromLegs);
 		}
 		
-		lastMapNode = to;
+		Path leg = fromLegs.get(to);
+		if (leg == null) {
+			List<MapNode> nodePath = pathFinder.getShortestPath(from, to);
+			
+			// this assertion should never fire if the map is checked in read 
+			// phase
+			assert nodePath.size() > 0 : "No path from " + from + " to " +
+				to + ". The simulation map isn't fully connected";
+			
+			leg = new Path();
+			for (MapNode node : nodePath) { // create a Path from the path
+				leg.addWaypoint(node.getLocation());
+			}
+			fromLegs.put(to, leg);
+		}
 		
-		return p;
+		return leg;
 	}	
 	
 	/**
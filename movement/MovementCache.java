@@ -0,0 +1,462 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import core.Coord;
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * Cache of pre-recorded host movement. In the record mode the movement of
+ * all hosts (initial locations, paths with speeds and the times when new
+ * paths are requested) is written to a file while the simulation runs. In
+ * the replay mode the movement is read back from the file instead of
+ * generating it again, which gives exactly the same movement with
+ * practically no cost. This is useful when only e.g. routing settings vary
+ * between the runs.
+ * <P>
+ * The cache file is named by a hash of the movement settings: the settings
+ * read while the groups' movement models are created, the number of hosts
+ * in the groups, the movement model rng seed, the update interval and the
+ * warmup time. Only settings read while the groups' prototypes are created
+ * are part of the hash: settings that a model reads later (when it is
+ * replicated for the hosts or while the hosts move) or that an earlier
+ * group already read into static state (e.g. a shared map) are not, and
+ * neither are the contents of the files (e.g. maps) that the settings refer
+ * to. The models of this simulator read their settings in the prototype
+ * constructors, but when some other setting or file that affects the
+ * movement changes, the old recordings must be removed from the cache
+ * directory by hand. The simulation end time is not part of the hash either,
+ * so a recording can be replayed in runs that are at most as long as the
+ * recorded run.
+ * </P>
+ * <P>
+ * Activeness of the hosts is not recorded; the replayed hosts use the
+ * activeness settings of the groups. Hence movement models whose activeness
+ * depends on the generated paths (external movement models) should not be
+ * cached.
+ * </P>
+ * @see CachedMovement
+ */
+public class MovementCache {
+	/** Movement cache mode -setting id ({@value}). Valid values are
+	 * {@link #RECORD_MODE} and {@link #REPLAY_MODE}. The setting is read from
+	 * the {@link MovementModel#MOVEMENT_MODEL_NS} namespace. If the setting
+	 * is not defined, movement is not cached. */
+	public static final String CACHE_MODE_S = "cacheMode";
+	/** Directory of the movement cache files -setting id ({@value}) */
+	public static final String CACHE_DIR_S = "cacheDir";
+	/** Value of the cache mode setting for recording movement ({@value}) */
+	public static final String RECORD_MODE = "record";
+	/** Value of the cache mode setting for replaying movement ({@value}) */
+	public static final String REPLAY_MODE = "replay";
+	/** Default directory of the cache files ({@value}) */
+	public static final String DEF_CACHE_DIR = "movementcache";
+
+	/** Prefix of the cache file names */
+	private static final String FILE_PREFIX = "movement-";
+	/** Suffix of the cache file names */
+	private static final String FILE_SUFFIX = ".bin.gz";
+
+	/** Record type of initial locations */
+	private static final byte INITIAL_LOCATION = 1;
+	/** Record type of paths */
+	private static final byte PATH = 2;
+	/** Record type of "no path available" answers */
+	private static final byte NO_PATH = 3;
+	/** Record type of next path available times */
+	private static final byte NEXT_PATH_TIME = 4;
+	/** Value of "no path available" records */
+	private static final Object NO_PATH_VALUE = new Object();
+
+	/** Is the movement replayed (or recorded) */
+	private boolean replay;
+	/** Directory of the cache files */
+	private File dir;
+	/** Data the cache file name is derived from */
+	private StringBuilder keyData;
+
+	/** Stream where the movement is recorded to (in the record mode) */
+	private DataOutputStream out;
+	/** Temporary file where the movement is recorded to before renaming */
+	private File recordFile;
+	/** Stream where the movement is replayed from (in the replay mode) */
+	private DataInputStream in;
+	/** Read records waiting for their hosts, mapped by host address */
+	private Map<Integer, Queue<Object>> pending;
+	/** The file that is replayed or (after closing) recorded to */
+	private File cacheFile;
+
+	/**
+	 * Creates a new movement cache
+	 * @param s Settings where the cache mode and directory are read from
+	 * (the namespace is set to {@link MovementModel#MOVEMENT_MODEL_NS})
+	 */
+	public MovementCache(Settings s) {
+		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
+		String mode = s.getSetting(CACHE_MODE_S);
+		if (mode.equals(REPLAY_MODE)) {
+			this.replay = true;
+		}
+		else if (mode.equals(RECORD_MODE)) {
+			this.replay = false;
+		}
+		else {
+			throw new SettingsError("Unknown movement cache mode '" + mode +
+					"' (use " + RECORD_MODE + " or " + REPLAY_MODE + ")");
+		}
+		this.dir = new File(s.getSetting(CACHE_DIR_S, DEF_CACHE_DIR));
+
+		this.keyData = new StringBuilder();
+		keyData.append(MovementModel.RNG_SEED).append(" = ");
+		keyData.append(s.getSetting(MovementModel.RNG_SEED, "0")).append('\n');
+		keyData.append("warmup = ");
+		keyData.append(s.getSetting("warmup", "0")).append('\n');
+		s.restoreNameSpace();
+
+		s.setNameSpace(SimScenario.SCENARIO_NS);
+		keyData.append(SimScenario.UP_INT_S).append(" = ");
+		keyData.append(s.getSetting(SimScenario.UP_INT_S)).append('\n');
+		s.restoreNameSpace();
+
+		this.pending = new HashMap<Integer, Queue<Object>>();
+	}
+
+	/**
+	 * Returns true if the movement is replayed from the cache
+	 * @return true in the replay mode, false in the record mode
+	 */
+	public boolean isReplay() {
+		return this.replay;
+	}
+
+	/**
+	 * Starts creating the movement model of a host group. All settings read
+	 * until {@link #addGroup(MovementModel, int)} is called become part of
+	 * the cache key.
+	 */
+	public void startGroup() {
+		Settings.startReadRecording();
+	}
+
+	/**
+	 * Adds the movement model of a host group to the cache
+	 * @param mmProto The movement model prototype of the group
+	 * @param nrofHosts Number of hosts in the group
+	 * @return A movement model prototype that records or replays the
+	 * movement of the group
+	 */
+	public MovementModel addGroup(MovementModel mmProto, int nrofHosts) {
+		List<String> read = Settings.stopReadRecording();
+		keyData.append("group ").append(nrofHosts).append('\n');
+		for (String setting : read) {
+			keyData.append(setting).append('\n');
+		}
+		return new CachedMovement(mmProto, this);
+	}
+
+	/**
+	 * Opens the cache file for replaying, or a temporary file for
+	 * recording. When replaying, all groups must have been added before
+	 * this is called.
+	 */
+	public void open() {
+		try {
+			if (replay) {
+				cacheFile = new File(dir, getFileName());
+				if (!cacheFile.exists()) {
+					throw new SimError("No recorded movement for these " +
+							"settings (" + cacheFile + "). Run once with " +
+							MovementModel.MOVEMENT_MODEL_NS + "." +
+							CACHE_MODE_S + " = " + RECORD_MODE);
+				}
+				in = new DataInputStream(new BufferedInputStream(
+						new GZIPInputStream(new FileInputStream(cacheFile))));
+			}
+			else {
+				if (!dir.exists() && !dir.mkdirs()) {
+					throw new SimError("Couldn't create movement cache " +
+							"directory " + dir);
+				}
+				recordFile = File.createTempFile(FILE_PREFIX, ".tmp", dir);
+				out = new DataOutputStream(new BufferedOutputStream(
+						new GZIPOutputStream(
+								new FileOutputStream(recordFile))));
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Closes the cache. A recording is moved to its final name, so it
+	 * replaces any earlier recording with the same settings.
+	 */
+	public void close() {
+		try {
+			if (in != null) {
+				in.close();
+				in = null;
+			}
+			if (out != null) {
+				out.close();
+				out = null;
+				cacheFile = new File(dir, getFileName());
+				if (cacheFile.exists() && !cacheFile.delete() ||
+						!recordFile.renameTo(cacheFile)) {
+					throw new SimError("Couldn't rename movement recording " +
+							recordFile + " to " + cacheFile);
+				}
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the name of the cache file for the current settings
+	 * @return The file name
+	 */
+	private String getFileName() {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		StringBuilder name = new StringBuilder(FILE_PREFIX);
+		for (byte b : md.digest(keyData.toString().getBytes())) {
+			name.append(String.format("%02x", b));
+		}
+		return name.append(FILE_SUFFIX).toString();
+	}
+
+	/**
+	 * Records the initial location of a host
+	 * @param host The host
+	 * @param c The initial location
+	 */
+	public void recordInitialLocation(DTNHost host, Coord c) {
+		try {
+			writeHeader(INITIAL_LOCATION, host);
+			out.writeDouble(c.getX());
+			out.writeDouble(c.getY());
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Records a path of a host
+	 * @param host The host
+	 * @param p The path or null if no path was available
+	 */
+	public void recordPath(DTNHost host, Path p) {
+		try {
+			if (p == null) {
+				writeHeader(NO_PATH, host);
+				return;
+			}
+
+			int nrofCoords = p.getNrofWaypoints();
+			int nrofSpeeds = (p.getNrofSpeeds() > 1 ?
+					Math.min(p.getNrofSpeeds(), nrofCoords) :
+					p.getNrofSpeeds());
+
+			writeHeader(PATH, host);
+			out.writeInt(nrofCoords);
+			for (int i=0; i<nrofCoords; i++) {
+				out.writeDouble(p.getX(i));
+				out.writeDouble(p.getY(i));
+			}
+			out.writeInt(nrofSpeeds);
+			for (int i=0; i<nrofSpeeds; i++) {
+				out.writeDouble(p.getSpeed(i));
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Records the time when a host's next path is available
+	 * @param host The host
+	 * @param time The time
+	 */
+	public void recordNextPathTime(DTNHost host, double time) {
+		try {
+			writeHeader(NEXT_PATH_TIME, host);
+			out.writeDouble(time);
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	private void writeHeader(byte type, DTNHost host) throws IOException {
+		out.writeByte(type);
+		out.writeInt(host.getAddress());
+	}
+
+	/**
+	 * Returns the next recorded initial location of a host
+	 * @param host The host
+	 * @return The initial location
+	 */
+	public Coord replayInitialLocation(DTNHost host) {
+		return (Coord)next(host, INITIAL_LOCATION);
+	}
+
+	/**
+	 * Returns the next recorded path of a host
+	 * @param host The host
+	 * @return The path or null if no path was available
+	 */
+	public Path replayPath(DTNHost host) {
+		Object path = next(host, PATH);
+		return (path == NO_PATH_VALUE ? null : (Path)path);
+	}
+
+	/**
+	 * Returns the next recorded next path available time of a host
+	 * @param host The host
+	 * @return The time
+	 */
+	public double replayNextPathTime(DTNHost host) {
+		return (Double)next(host, NEXT_PATH_TIME);
+	}
+
+	/**
+	 * Returns the value of the next record of a host. Records of other hosts
+	 * that are read before the host's record are queued for them (normally
+	 * the hosts move in the same order as when recording, so the next
+	 * record in the file is the host's).
+	 * @param host The host
+	 * @param type Type of the expected record
+	 * @return The value of the record
+	 */
+	private Object next(DTNHost host, byte type) {
+		int address = host.getAddress();
+		Queue<Object> queue = pending.get(address);
+		Object value;
+
+		if (queue != null && !queue.isEmpty()) {
+			value = queue.poll();
+		}
+		else {
+			value = null;
+			try {
+				while (value == null) {
+					byte readType = in.readByte();
+					int readAddress = in.readInt();
+					Object readValue = readValue(readType);
+					if (readAddress == address) {
+						value = readValue;
+					}
+					else {
+						queue = pending.get(readAddress);
+						if (queue == null) {
+							queue = new LinkedList<Object>();
+							pending.put(readAddress, queue);
+						}
+						queue.add(readValue);
+					}
+				}
+			} catch (EOFException e) {
+				throw new SimError("Recorded movement in " + cacheFile +
+						" ended. The recorded run was shorter than this one.");
+			} catch (IOException e) {
+				throw new SimError(e);
+			}
+		}
+
+		if (!isType(value, type)) {
+			throw new SimError("Recorded movement in " + cacheFile +
+					" doesn't match the movement of host " + host);
+		}
+		return value;
+	}
+
+	private static boolean isType(Object value, byte type) {
+		switch (type) {
+		case INITIAL_LOCATION:
+			return value instanceof Coord;
+		case PATH:
+			return value instanceof Path || value == NO_PATH_VALUE;
+		default:
+			return value instanceof Double;
+		}
+	}
+
+	/**
+	 * Reads the value of a record
+	 * @param type Type of the record
+	 * @return The value
+	 * @throws IOException if reading fails
+	 */
+	private Object readValue(byte type) throws IOException {
+		switch (type) {
+		case INITIAL_LOCATION:
+			return new Coord(in.readDouble(), in.readDouble());
+		case NO_PATH:
+			return NO_PATH_VALUE;
+		case NEXT_PATH_TIME:
+			return in.readDouble();
+		case PATH:
+			break;
+		default:
+			throw new SimError("Invalid record type " + type + " in " +
+					cacheFile);
+		}
+
+		int nrofCoords = in.readInt();
+		Coord[] coords = new Coord[nrofCoords];
+		for (int i=0; i<nrofCoords; i++) {
+			coords[i] = new Coord(in.readDouble(), in.readDouble());
+		}
+		double[] speeds = new double[in.readInt()];
+		for (int i=0; i<speeds.length; i++) {
+			speeds[i] = in.readDouble();
+		}
+
+		Path p;
+		if (speeds.length > 1) { // own speed for every waypoint
+			p = new Path();
+			for (int i=0; i<nrofCoords; i++) {
+				p.addWaypoint(coords[i],
+						speeds[Math.min(i, speeds.length - 1)]);
+			}
+			return p;
+		}
+
+		p = (speeds.length == 1 ? new Path(speeds[0]) : new Path());
+		for (Coord c : coords) {
+			p.addWaypoint(c);
+		}
+		return p;
+	}
+}
@@ -62,6 +62,12 @@ public abstract class MovementModel {
 	private int maxY;
 	
 	protected ModuleCommunicationBus comBus;
+	
+	/** Maximum number of recycled paths kept in the pool */
+	private static final int MAX_FREE_PATHS = 4;
+	/** recycled paths of this model (linked with {@link Path#nextFree}) */
+	private Path freePaths;
+	private int nrofFreePaths;
 
 	// static initialization of all movement models' random number generator
 	static {
@@ -203,6 +209,51 @@ public abstract class MovementModel {
 	 */
 	public abstract Path getPath();
 	
+	/**
+	 * Returns an empty path with a constant speed from the pool of this 
+	 * model. The path is returned to the pool when its user calls 
+	 * {@link Path#recycle()}, so the model must not keep a reference to
+	 * a path it has given out.
+	 * @param speed The speed on the path
+	 * @return An empty path
+	 */
+	protected Path newPath(double speed) {
+		Path p = newPath();
+		p.setSpeed(speed);
+		return p;
+	}
+	
+	/**
+	 * Returns an empty path without speed from the pool of this model
+	 * @return An empty path
+	 * @see #newPath(double)
+	 */
+	protected Path newPath() {
+		Path p = this.freePaths;
+		if (p == null) {
+			p = new Path();
+		}
+		else {
+			this.freePaths = p.nextFree;
+			this.nrofFreePaths--;
+			p.nextFree = null;
+		}
+		p.reset(this);
+		return p;
+	}
+	
+	/**
+	 * Puts a path to the pool of this model (called by {@link Path#recycle()})
+	 * @param p The path
+	 */
+	void recyclePath(Path p) {
+		if (this.nrofFreePaths < MAX_FREE_PATHS) {
+			p.nextFree = this.freePaths;
+			this.freePaths = p;
+			this.nrofFreePaths++;
+		}
+	}
+	
 	/**
 	 * Returns a new initial placement for a node
 	 * @return The initial coordinates for a node
@@ -231,6 +282,20 @@ public abstract class MovementModel {
 		/* TODO: add offset support */
 		return ah.isActive();
 	}
+
+	/**
+	 * Returns the time when the result of {@link #isActive()} may change
+	 * next. Models that override {@link #isActive()} should override this 
+	 * too; if the time is not known, the current time should be returned.
+	 * @return The time of the next activeness change or Double.MAX_VALUE
+	 * if the activeness doesn't change anymore
+	 */
+	public double getNextActivenessChange() {
+		if (ah == null) {
+			return SimClock.getTime(); /* not created from settings */
+		}
+		return ah.getNextChangeTime(0);
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -5,38 +5,63 @@
 package movement;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import core.Coord;
 
 /**
- * A Path between multiple Coordinates.
+ * A Path between multiple Coordinates. The coordinates of the waypoints 
+ * are packed to a primitive array (x and y interleaved) and the speeds to
+ * another one. A path with a single speed has a constant speed.
+ * <P>
+ * Paths can share their waypoints (see {@link #Path(Path)} and 
+ * {@link #shareWaypoints(Path)}); the shared waypoints are copied only if 
+ * waypoints are added to a path that shares them. Paths created with
+ * {@link MovementModel#newPath(double)} are returned to the movement 
+ * model's pool with {@link #recycle()} when they are not needed anymore.
+ * </P>
  */
 public class Path  {
-	/** coordinates of the path */
-	private List<Coord> coords;
+	/** Initial capacity of the arrays (in waypoints) */
+	private static final int INIT_CAPACITY = 8;
+	private static final double[] NO_POINTS = new double[0];
+	
+	/** coordinates of the path (x and y interleaved) */
+	private double[] points;
+	/** number of waypoints */
+	private int size;
 	/** speeds in the path legs */
-	private List<Double> speeds;
+	private double[] speeds;
+	/** number of speeds */
+	private int nrofSpeeds;
+	/** is the points array shared with another path */
+	private boolean shared;
 	private int nextWpIndex;
+	/** the model whose pool the path is returned to (or null) */
+	private MovementModel pool;
+	/** next path in the pool */
+	Path nextFree;
 	
 	/**
 	 * Creates a path with zero speed.
 	 */
 	public Path() {
 		this.nextWpIndex = 0;
-		this.coords = new ArrayList<Coord>();
-		this.speeds = new ArrayList<Double>(1);
+		this.points = new double[2 * INIT_CAPACITY];
+		this.speeds = new double[1];
 	}
 
 	/**
-	 * Copy constructor. Creates a copy of this path with a shallow copy of
-	 * the coordinates and speeds.
+	 * Copy constructor. Creates a copy of this path that shares the 
+	 * coordinates with the original until either is modified.
 	 * @param path The path to create the copy from
 	 */
 	public Path(Path path) {
 		this.nextWpIndex = path.nextWpIndex;
-		this.coords = new ArrayList<Coord>((ArrayList<Coord>)path.coords);
-		this.speeds = new ArrayList<Double>((ArrayList<Double>)path.speeds);
+		this.speeds = Arrays.copyOf(path.speeds, path.speeds.length);
+		this.nrofSpeeds = path.nrofSpeeds;
+		share(path);
 	}
 	
 	/**
@@ -53,16 +78,60 @@ public class Path  {
 	 * is discarded.
 	 */
 	public void setSpeed(double speed) {
-		this.speeds = new ArrayList<Double>(1);
-		speeds.add(speed);
+		this.speeds[0] = speed;
+		this.nrofSpeeds = 1;
 	}
 	
 	/**
-	 * Returns a reference to the coordinates of this path 
+	 * Sets the waypoints of this path to the ones of another path and 
+	 * restarts the path. The speed of this path is kept, so this should be
+	 * used only for paths with a constant speed. The waypoints are shared,
+	 * i.e., they are copied only if either path is modified. Useful for
+	 * paths that are given out many times, e.g., the legs of bus routes.
+	 * @param path The path whose waypoints are used
+	 */
+	public void shareWaypoints(Path path) {
+		this.nextWpIndex = 0;
+		share(path);
+	}
+	
+	/**
+	 * Returns the coordinates of this path. The list is a copy; changing it
+	 * doesn't change the path.
 	 * @return coordinates of the path
 	 */
 	public List<Coord> getCoords() {
-		return this.coords;
+		List<Coord> coords = new ArrayList<Coord>(this.size);
+		for (int i=0; i<this.size; i++) {
+			coords.add(new Coord(points[2*i], points[2*i + 1]));
+		}
+		return coords;
+	}
+	
+	/**
+	 * Returns the number of waypoints on this path
+	 * @return the number of waypoints
+	 */
+	public int getNrofWaypoints() {
+		return this.size;
+	}
+	
+	/**
+	 * Returns the X coordinate of a waypoint
+	 * @param index Index of the waypoint
+	 * @return the X coordinate of the waypoint
+	 */
+	public double getX(int index) {
+		return this.points[2 * index];
+	}
+	
+	/**
+	 * Returns the Y coordinate of a waypoint
+	 * @param index Index of the waypoint
+	 * @return the Y coordinate of the waypoint
+	 */
+	public double getY(int index) {
+		return this.points[2 * index + 1];
 	}
 	
 	/**
@@ -70,9 +139,18 @@ public class Path  {
 	 * @param wp The waypoint to add
 	 */
 	public void addWaypoint(Coord wp) {
-		assert this.speeds.size() <= 1 : "This method should be used only for" +
+		addWaypoint(wp.getX(), wp.getY());
+	}
+	
+	/**
+	 * Adds a new waypoint to the end of the path.
+	 * @param x The X coordinate of the waypoint
+	 * @param y The Y coordinate of the waypoint
+	 */
+	public void addWaypoint(double x, double y) {
+		assert this.nrofSpeeds <= 1 : "This method should be used only for" +
 			" paths with constant speed";
-		this.coords.add(wp);
+		addPoint(x, y);
 	}
 	
 	/**
@@ -81,8 +159,12 @@ public class Path  {
 	 * @param speed The speed towards that waypoint
 	 */
 	public void addWaypoint(Coord wp, double speed) {
-		this.coords.add(wp);
-		this.speeds.add(speed);
+		addPoint(wp.getX(), wp.getY());
+		if (this.nrofSpeeds == this.speeds.length) {
+			this.speeds = Arrays.copyOf(this.speeds, 
+					Math.max(2 * this.nrofSpeeds, this.points.length / 2));
+		}
+		this.speeds[this.nrofSpeeds++] = speed;
 	}
 	
 	/**
@@ -90,8 +172,20 @@ public class Path  {
 	 * @return the next waypoint
 	 */
 	public Coord getNextWaypoint() {
+		return getNextWaypoint(new Coord(0, 0));
+	}
+	
+	/**
+	 * Sets the next waypoint on this path to the given coordinate, so no
+	 * new coordinates need to be created
+	 * @param wp The coordinate to set
+	 * @return The given coordinate
+	 */
+	public Coord getNextWaypoint(Coord wp) {
 		assert hasNext() : "Path didn't have " + (nextWpIndex+1) + ". waypoint";
-		return coords.get(nextWpIndex++);
+		wp.setLocation(points[2 * nextWpIndex], points[2 * nextWpIndex + 1]);
+		nextWpIndex++;
+		return wp;
 	}
 	
 	/**
@@ -99,7 +193,7 @@ public class Path  {
 	 * @return true if the path has more waypoints, false if not
 	 */
 	public boolean hasNext() {
-		return nextWpIndex < this.coords.size();
+		return nextWpIndex < this.size;
 	}
 	
 	/**
@@ -108,14 +202,14 @@ public class Path  {
 	 * @return the speed towards the next waypoint
 	 */
 	public double getSpeed() {
-		assert speeds.size() != 0 : "No speed set"; 
+		assert nrofSpeeds != 0 : "No speed set"; 
 		assert nextWpIndex != 0 : "No waypoint asked";
 		
-		if (speeds.size() == 1) {
-			return speeds.get(0);
+		if (nrofSpeeds == 1) {
+			return speeds[0];
 		}
 		else {
-			return speeds.get(nextWpIndex-1);
+			return speeds[nextWpIndex-1];
 		}
 	}
 	
@@ -124,18 +218,108 @@ public class Path  {
 	 * @return Path as a string
 	 */
 	public String toString() {
-		String s ="";
-		for (int i=0, n=coords.size(); i<n; i++) {
-			Coord c = coords.get(i);
-			s+= "->" + c;
-			if (speeds.size() > 1) {
-				s += String.format("@%.2f ",speeds.get(i));
+		StringBuilder s = new StringBuilder();
+		for (int i=0; i<size; i++) {
+			s.append("->").append(new Coord(getX(i), getY(i)));
+			if (nrofSpeeds > 1 && i < nrofSpeeds) {
+				s.append(String.format("@%.2f ",speeds[i]));
 			}
 		}
-		return s;
+		return s.toString();
 	}
 	
+	/**
+	 * Returns the speeds of the path. The list is a copy; changing it 
+	 * doesn't change the path.
+	 * @return the speeds of the path
+	 */
 	public List<Double> getSpeeds() {
-		return this.speeds;
+		List<Double> list = new ArrayList<Double>(this.nrofSpeeds);
+		for (int i=0; i<this.nrofSpeeds; i++) {
+			list.add(this.speeds[i]);
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the number of speeds of the path. A path with a constant 
+	 * speed has one speed.
+	 * @return the number of speeds
+	 */
+	public int getNrofSpeeds() {
+		return this.nrofSpeeds;
+	}
+	
+	/**
+	 * Returns a speed of the path
+	 * @param index Index of the speed
+	 * @return the speed
+	 */
+	public double getSpeed(int index) {
+		return this.speeds[index];
+	}
+	
+	/**
+	 * Returns this path to the pool of the movement model that created it
+	 * (see {@link MovementModel#newPath(double)}). The path must not be 
+	 * used after this. Does nothing if the path isn't from a pool.
+	 */
+	public void recycle() {
+		MovementModel model = this.pool;
+		if (model == null) {
+			return;
+		}
+		this.pool = null;
+		model.recyclePath(this);
+	}
+	
+	/**
+	 * Clears the path for reuse and sets the pool it belongs to
+	 * @param pool The movement model whose pool the path is returned to
+	 */
+	void reset(MovementModel pool) {
+		if (this.shared) {
+			this.points = NO_POINTS; /* allocated when waypoints are added */
+			this.shared = false;
+		}
+		this.size = 0;
+		this.nrofSpeeds = 0;
+		this.nextWpIndex = 0;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Starts to share the points array of another path
+	 */
+	private void share(Path path) {
+		this.points = path.points;
+		this.size = path.size;
+		this.shared = true;
+		path.shared = true;
+	}
+	
+	/**
+	 * Copies the shared points array so that it can be modified
+	 */
+	private void unshare() {
+		this.points = Arrays.copyOf(this.points, 
+				Math.max(2 * this.size, 2 * INIT_CAPACITY));
+		this.shared = false;
+	}
+	
+	/**
+	 * Adds the coordinates of a waypoint to the end of the points array
+	 */
+	private void addPoint(double x, double y) {
+		if (this.shared) {
+			unshare();
+		}
+		if (2 * this.size == this.points.length) {
+			this.points = Arrays.copyOf(this.points, 
+					Math.max(2 * this.points.length, 2 * INIT_CAPACITY));
+		}
+		this.points[2 * this.size] = x;
+		this.points[2 * this.size + 1] = y;
+		this.size++;
 	}
 }
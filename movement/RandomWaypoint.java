@@ -40,8 +40,8 @@ public class RandomWaypoint extends MovementModel {
 	@Override
 	public Path getPath() {
 		Path p;
-		p = new Path(generateSpeed());
-		p.addWaypoint(lastWaypoint.clone());
+		p = newPath(generateSpeed());
+		p.addWaypoint(lastWaypoint);
 		Coord c = lastWaypoint;
 		
 		for (int i=0; i<PATH_LENGTH; i++) {
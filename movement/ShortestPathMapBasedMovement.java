@@ -47,7 +47,7 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	
 	@Override
 	public Path getPath() {
-		Path p = new Path(generateSpeed());
+		Path p = newPath(generateSpeed());
 		MapNode to = pois.selectDestination();
 		
 		List<MapNode> nodePath = pathFinder.getShortestPath(lastMapNode, to);
@@ -7,6 +7,7 @@ package report;
 import java.util.HashSet;
 import java.util.List;
 
+import routing.util.EnergyModel;
 import core.DTNHost;
 import core.Settings;
 import core.SimError;
@@ -81,14 +82,14 @@ public class EnergyLevelReport extends Report implements UpdateListener {
 				!this.reportedNodes.contains(h.getAddress())) {
 				continue; /* node not in the list */
 			}
-			Double value = (Double)h.getComBus().
-				getProperty(routing.util.EnergyModel.ENERGY_VALUE_ID);
-			if (value == null) {
+			EnergyModel model = (EnergyModel)h.getComBus().
+				getProperty(EnergyModel.ENERGY_MODEL_KEY);
+			if (model == null) {
 				throw new SimError("Host " + h + 
 						" is not using energy model");
 			}
 			
-			write(h.toString() + " " +  format(value));
+			write(h.toString() + " " +  format(model.getEnergy()));
 		}
 	
 	}
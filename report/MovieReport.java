@@ -0,0 +1,451 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.MovieReader;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Connection;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+import core.UpdateListener;
+
+/**
+ * Records a "movie" of the simulation: host locations, buffer and radio
+ * states, connections and message events in a compact binary file that
+ * can be replayed in the GUI (see {@link gui.DTNSimGUI#MOVIE_S}) and read
+ * with {@link MovieReader}, which also describes the file format. The
+ * simulation is recorded once per frame interval and the complete state
+ * of all hosts once per keyframe interval; seeking starts from the
+ * closest keyframe. The locations are quantized to the resolution.
+ * The file is written to the report's output file name with the
+ * {@link MovieReader#MOVIE_EXT} extension (unless an output name is set)
+ * and it's complete only after the simulation is done.
+ * This report ignores the warm up settings.
+ */
+public class MovieReport extends Report implements UpdateListener,
+	ConnectionListener, MessageListener {
+	/** Frame interval -setting id ({@value}). Simulated seconds between
+	 * frames. Default is {@value #DEF_FRAME_INTERVAL}. */
+	public static final String FRAME_INTERVAL_S = "frameInterval";
+	/** Keyframe interval -setting id ({@value}). Simulated seconds between
+	 * keyframes. Default is {@value #DEF_KEYFRAME_INTERVAL}. */
+	public static final String KEYFRAME_INTERVAL_S = "keyframeInterval";
+	/** Location resolution -setting id ({@value}). Size of the location
+	 * quantization step (meters). Default is {@value #DEF_RESOLUTION}. */
+	public static final String RESOLUTION_S = "resolution";
+
+	/** Default frame interval ({@value}) */
+	public static final double DEF_FRAME_INTERVAL = 1;
+	/** Default keyframe interval ({@value}) */
+	public static final double DEF_KEYFRAME_INTERVAL = 300;
+	/** Default location resolution ({@value}) */
+	public static final double DEF_RESOLUTION = 0.1;
+	/** Tolerance for the rounding errors of the simulation time ({@value}) */
+	private static final double TIME_EPSILON = 0.000001;
+
+	private double frameInterval;
+	private double keyframeInterval;
+	private double resolution;
+
+	private File movieFile;
+	private File tmpFile;
+	private DataOutputStream movie;
+	/** counts the bytes written to the movie file */
+	private ByteCounter movieBytes;
+
+	private double lastFrameTime;
+	private double lastKeyframeTime;
+	private List<Double> keyframeTimes;
+	private List<Long> keyframeOffsets;
+
+	/** quantized locations and states of the hosts in the previous frame */
+	private int[] xs;
+	private int[] ys;
+	private int[] states;
+
+	/** events since the previous frame */
+	private ByteArrayOutputStream eventBytes;
+	private DataOutputStream events;
+	private int nrofEvents;
+
+	/** numbers of the messages by their id */
+	private Map<String, Integer> msgNumbers;
+	/** message table of the footer (ids, sources, destinations and sizes
+	 * of the messages by their number) */
+	private ByteArrayOutputStream msgTableBytes;
+	private DataOutputStream msgTable;
+
+	/**
+	 * Constructor. Reads the settings.
+	 */
+	public MovieReport() {
+		Settings s = getSettings();
+		this.frameInterval = s.getDouble(FRAME_INTERVAL_S, DEF_FRAME_INTERVAL);
+		this.keyframeInterval = s.getDouble(KEYFRAME_INTERVAL_S,
+				DEF_KEYFRAME_INTERVAL);
+		this.resolution = s.getDouble(RESOLUTION_S, DEF_RESOLUTION);
+		s.ensurePositiveValue(keyframeInterval, KEYFRAME_INTERVAL_S);
+		s.ensurePositiveValue(resolution, RESOLUTION_S);
+
+		String name = getOutputFileName();
+		if (!s.contains(OUTPUT_SETTING)) {
+			if (name.endsWith(OUT_SUFFIX)) {
+				name = name.substring(0, name.length() - OUT_SUFFIX.length());
+			}
+			name += MovieReader.MOVIE_EXT;
+		}
+		this.movieFile = new File(name);
+
+		this.keyframeTimes = new ArrayList<Double>();
+		this.keyframeOffsets = new ArrayList<Long>();
+		this.eventBytes = new ByteArrayOutputStream();
+		this.events = new DataOutputStream(eventBytes);
+		this.msgNumbers = new HashMap<String, Integer>();
+		this.msgTableBytes = new ByteArrayOutputStream();
+		this.msgTable = new DataOutputStream(msgTableBytes);
+	}
+
+	/**
+	 * Opens the movie file (a temporary file until the movie is done) and
+	 * writes the header
+	 * @param nrofHosts Number of hosts in the simulation
+	 */
+	private void openMovie(int nrofHosts) {
+		this.tmpFile = new File(movieFile.getPath() + ".tmp");
+		try {
+			this.movieBytes = new ByteCounter(new BufferedOutputStream(
+					new FileOutputStream(tmpFile)));
+			this.movie = new DataOutputStream(movieBytes);
+			movie.writeInt(MovieReader.MAGIC);
+			movie.writeInt(MovieReader.VERSION);
+			movie.writeInt(nrofHosts);
+			movie.writeDouble(resolution);
+		} catch (IOException e) {
+			throw new SimError("Couldn't create movie file " + tmpFile, e);
+		}
+
+		this.xs = new int[nrofHosts];
+		this.ys = new int[nrofHosts];
+		this.states = new int[nrofHosts];
+		this.lastFrameTime = 0;
+	}
+
+	public void updated(List<DTNHost> hosts) {
+		double time = SimClock.getTime();
+		boolean first = (movie == null);
+		if (first) {
+			openMovie(hosts.size());
+		}
+		else if (time - lastFrameTime < frameInterval - TIME_EPSILON) {
+			return;
+		}
+
+		try {
+			writeFrame(hosts, time);
+			if (first || time - lastKeyframeTime >=
+					keyframeInterval - TIME_EPSILON) {
+				writeKeyframe(hosts, time);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movie file " + tmpFile, e);
+		}
+	}
+
+	/**
+	 * Writes a frame: the buffered events and the changes since the
+	 * previous frame
+	 */
+	private void writeFrame(List<DTNHost> hosts, double time)
+			throws IOException {
+		movie.writeByte(MovieReader.FRAME);
+		movie.writeDouble(time);
+		writeInt(movie, nrofEvents);
+		eventBytes.writeTo(movie);
+		eventBytes.reset();
+		nrofEvents = 0;
+
+		/* location changes */
+		ByteArrayOutputStream changes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(changes);
+		int nrofChanges = 0;
+		int previous = -1;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			Coord c = hosts.get(i).getLocation();
+			int x = quantize(c.getX());
+			int y = quantize(c.getY());
+			if (x != xs[i] || y != ys[i]) {
+				writeInt(out, i - previous - 1);
+				writeSignedInt(out, x - xs[i]);
+				writeSignedInt(out, y - ys[i]);
+				xs[i] = x;
+				ys[i] = y;
+				previous = i;
+				nrofChanges++;
+			}
+		}
+		writeInt(movie, nrofChanges);
+		changes.writeTo(movie);
+
+		/* buffer and radio state changes */
+		changes.reset();
+		nrofChanges = 0;
+		previous = -1;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			int state = getState(hosts.get(i));
+			if (state != states[i]) {
+				writeInt(out, i - previous - 1);
+				writeInt(out, state);
+				states[i] = state;
+				previous = i;
+				nrofChanges++;
+			}
+		}
+		writeInt(movie, nrofChanges);
+		changes.writeTo(movie);
+
+		this.lastFrameTime = time;
+	}
+
+	/**
+	 * Writes a keyframe: the state of all hosts and the connections
+	 */
+	private void writeKeyframe(List<DTNHost> hosts, double time)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		List<Integer> connected = new ArrayList<Integer>();
+
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			writeSignedInt(out, xs[i]);
+			writeSignedInt(out, ys[i]);
+			writeInt(out, states[i]);
+			for (Connection con : h.getConnections()) {
+				DTNHost other = con.getOtherNode(h);
+				if (other != null && other.getAddress() > h.getAddress()) {
+					connected.add(h.getAddress());
+					connected.add(other.getAddress());
+				}
+			}
+		}
+		writeInt(out, connected.size() / 2);
+		for (int address : connected) {
+			writeInt(out, address);
+		}
+
+		keyframeTimes.add(time);
+		keyframeOffsets.add(movieBytes.count);
+		movie.writeByte(MovieReader.KEYFRAME);
+		movie.writeDouble(time);
+		movie.writeInt(bytes.size());
+		bytes.writeTo(movie);
+
+		this.lastKeyframeTime = time;
+	}
+
+	/**
+	 * Returns the quantized value of a coordinate
+	 */
+	private int quantize(double value) {
+		return (int)Math.round(value / resolution);
+	}
+
+	/**
+	 * Returns the buffer and radio state of a host (number of messages
+	 * shifted left by one and the radio activeness in the lowest bit)
+	 */
+	private int getState(DTNHost host) {
+		return (host.getNrofMessages() << 1) | (host.isRadioActive() ? 1 : 0);
+	}
+
+	/**
+	 * Buffers an event to be written in the next frame
+	 * @param type Type of the event
+	 * @param a Address of the first host
+	 * @param b Second host (or null if the event type has none)
+	 * @param m Message of the event (or null if the event type has none)
+	 */
+	private void addEvent(int type, DTNHost a, DTNHost b, Message m) {
+		try {
+			events.writeByte(type);
+			events.writeFloat((float)(SimClock.getTime() - lastFrameTime));
+			writeInt(events, a.getAddress());
+			if (b != null) {
+				writeInt(events, b.getAddress());
+			}
+			if (m != null) {
+				writeInt(events, getMessageNumber(m));
+			}
+		} catch (IOException e) {
+			throw new SimError(e); // writing to memory shouldn't fail
+		}
+		nrofEvents++;
+	}
+
+	/**
+	 * Returns the number of a message in the message table. Adds the
+	 * message to the table if it's not there yet (only the fields that the
+	 * footer needs are stored, not the message).
+	 */
+	private int getMessageNumber(Message m) throws IOException {
+		Integer number = msgNumbers.get(m.getId());
+		if (number == null) {
+			number = msgNumbers.size();
+			msgNumbers.put(m.getId(), number);
+			byte[] id = m.getId().getBytes("UTF-8");
+			writeInt(msgTable, id.length);
+			msgTable.write(id);
+			writeInt(msgTable, m.getFrom().getAddress());
+			writeInt(msgTable, m.getTo().getAddress());
+			writeInt(msgTable, m.getSize());
+		}
+		return number;
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		addEvent(MovieReader.CONN_UP, host1, host2, null);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		addEvent(MovieReader.CONN_DOWN, host1, host2, null);
+	}
+
+	public void newMessage(Message m) {
+		addEvent(MovieReader.MSG_CREATED, m.getFrom(), null, m);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		addEvent(MovieReader.MSG_TRANSFER_STARTED, from, to, m);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		addEvent(firstDelivery ? MovieReader.MSG_DELIVERED :
+			MovieReader.MSG_RELAYED, from, to, m);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		addEvent(MovieReader.MSG_ABORTED, from, to, m);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		addEvent(dropped ? MovieReader.MSG_DROPPED : MovieReader.MSG_REMOVED,
+				where, null, m);
+	}
+
+	/**
+	 * Writes the footer (keyframe index and message table) and renames the
+	 * temporary file to the movie file
+	 */
+	@Override
+	public void done() {
+		if (movie == null) {
+			return; // nothing was recorded
+		}
+
+		try {
+			movie.writeByte(MovieReader.END);
+			long footer = movieBytes.count;
+			movie.writeDouble(lastFrameTime);
+			writeInt(movie, keyframeTimes.size());
+			for (int i=0, n=keyframeTimes.size(); i<n; i++) {
+				movie.writeDouble(keyframeTimes.get(i));
+				writeLong(movie, keyframeOffsets.get(i));
+			}
+
+			writeInt(movie, msgNumbers.size());
+			msgTableBytes.writeTo(movie);
+
+			movie.writeLong(footer);
+			movie.writeInt(MovieReader.MAGIC);
+			movie.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movie file " + tmpFile, e);
+		}
+		movie = null;
+
+		movieFile.delete();
+		if (!tmpFile.renameTo(movieFile)) {
+			throw new SimError("Couldn't rename " + tmpFile + " to " +
+					movieFile);
+		}
+	}
+
+	/**
+	 * Writes a variable length unsigned integer
+	 */
+	private static void writeInt(DataOutputStream out, int value)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Writes a variable length unsigned long integer
+	 */
+	private static void writeLong(DataOutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * Writes a variable length signed (zigzag encoded) integer
+	 */
+	private static void writeSignedInt(DataOutputStream out, int value)
+			throws IOException {
+		writeInt(out, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Output stream that counts the bytes written through it. Unlike
+	 * {@link DataOutputStream#size()}, the count doesn't stop at
+	 * Integer.MAX_VALUE, so movies larger than 2 GB get valid offsets.
+	 */
+	private static class ByteCounter extends FilterOutputStream {
+		private long count;
+
+		public ByteCounter(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -130,6 +130,14 @@ public abstract class Report {
 		checkDirExistence(outFileName);
 	}
 
+	/**
+	 * Returns the name of the output file (without the interval suffix)
+	 * @return the name of the output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
+
 	/**
 	 * Checks that a directory for a file exists or creates the directory
 	 * if it didn't exist.
@@ -40,12 +40,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	
-	/** how often TTL check (discarding old messages) is performed */
-	private static int ttlCheckInterval = 60;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
 	
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;	//ģʽ
@@ -67,10 +63,6 @@ public abstract class ActiveRouter extends MessageRouter {
 		} else {
 			this.energy = null; /* no energy model */
 		}
-		
-		ttlCheckInterval = 
-				(new Settings().getBoolean(Message.TTL_SECONDS_S, false) 
-						? 1 : 60);
 	}
 	
 	/**
@@ -88,7 +80,6 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
 	}
 	
 	/**״̬仯ʱáģʽҴ˵˽ڵ
@@ -112,15 +103,17 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 		
 		DTNHost other = con.getOtherNode(getHost());
-		/* do a copy to avoid concurrent modification exceptions 
-		 * (startTransfer may remove messages) */
-		ArrayList<Message> temp = 
-			new ArrayList<Message>(this.getMessageCollection());
-		for (Message m : temp) {
-			if (other == m.getTo()) {
-				if (startTransfer(m, con) == RCV_OK) {
-					return true;
-				}
+		Collection<Message> forOther = getMessagesFor(other);
+		if (forOther.isEmpty()) {
+			return false;
+		}
+		/* startTransfer may remove messages from the buffer */
+		for (Message m : forOther.toArray(new Message[forOther.size()])) {
+			if (getMessage(m.getId()) != m) {
+				continue; // removed by an earlier try
+			}
+			if (startTransfer(m, con) == RCV_OK) {
+				return true;
 			}
 		}
 		return false;
@@ -294,15 +287,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**ɾTTLС0Ϣ
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL is less than zero. The messages are taken
+	 * from the expiry queue (see {@link #pollExpiredMessage()}) so only
+	 * the expired messages are touched.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		Message m;
+		while ((m = pollExpiredMessage()) != null) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 	
@@ -354,25 +346,55 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
-		if (getNrofMessages() == 0 || getConnections().size() == 0) {
+		return getMessagesForConnected(getConnections());
+	}
+	
+	/**
+	 * Returns a list of message-connections tuples of the messages whose
+	 * recipient is the other end of some of the given connections. The 
+	 * messages are looked up from the final recipient index so the cost 
+	 * depends only on the number of connections and matching messages.
+	 * @param connections The connections whose other ends are of interest
+	 * @return a list of message-connections tuples
+	 */
+	protected List<Tuple<Message, Connection>> getMessagesForConnected(
+			List<Connection> connections) {
+		if (getNrofMessages() == 0 || connections.size() == 0) {
 			/* no messages -> empty list */
 			return new ArrayList<Tuple<Message, Connection>>(0); 
 		}
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			for (Message m : getMessagesFor(con.getOtherNode(getHost()))) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 		
 		return forTuples;
 	}
 	
+	/**
+	 * Returns true if some of the buffered messages is destined to the other
+	 * end of some of the given connections. Doesn't allocate anything.
+	 * @param connections The connections to check
+	 * @return true if there are deliverable messages for the connections
+	 */
+	protected boolean hasMessagesForConnected(List<Connection> connections) {
+		if (getNrofMessages() == 0) {
+			return false;
+		}
+		for (int i=0, n=connections.size(); i<n; i++) {
+			DTNHost other = connections.get(i).getOtherNode(getHost());
+			if (!getMessagesFor(other).isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**԰Ԫбе˳ԪᵽӵϢ
 	 * ֱһӿʼԪ顣
 	 * Tries to send messages for the connections that are mentioned
@@ -447,11 +469,44 @@ public abstract class ActiveRouter extends MessageRouter {
 		return null;
 	}
 	
+	/**
+	 * Tries to send messages from the persistent sending queue through a
+	 * connection. The walk resumes after the connection's send cursor (see
+	 * {@link Connection#getSendCursor(DTNHost)}) so messages that were
+	 * already offered to the other node during the current pass are not 
+	 * offered again. The cursor is rewound once the end of the queue is
+	 * reached.
+	 * @param con Connection trough which the messages are sent
+	 * @return The message whose transfer was started or null if no 
+	 * transfer was started. 
+	 */
+	protected Message tryQueuedMessages(Connection con) {
+		Message m = getNextQueuedMessage(con.getSendCursor(getHost()));
+		
+		while (m != null) {
+			int retVal = startTransfer(m, con);
+			if (retVal > 0) {
+				return null; // should try later -> keep the cursor here
+			}
+			con.setSendCursor(getHost(), m);
+			if (retVal == RCV_OK) {
+				return m;
+			}
+			m = getNextQueuedMessage(m);
+		}
+		
+		con.setSendCursor(getHost(), null); // next pass starts from the head
+		return null;
+	}
+
 	/**
 	 * Tries to send all messages that this router is carrying to all
 	 * connections this node has. Messages are ordered using the 
 	 * {@link MessageRouter#sortByQueueMode(List)}. See 
 	 * {@link #tryMessagesToConnections(List, List)} for sending details.
+	 * If the queue mode defines a persistent order (FIFO), the router's
+	 * sending queue is walked from every connection's send cursor instead 
+	 * (see {@link #tryQueuedMessages(Connection)}).
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
@@ -460,6 +515,16 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (connections.size() == 0 || this.getNrofMessages() == 0) {
 			return null;
 		}
+		
+		if (hasSendQueue()) {
+			for (int i=0, n=connections.size(); i<n; i++) {
+				Connection con = connections.get(i);
+				if (tryQueuedMessages(con) != null) {
+					return con;
+				}
+			}
+			return null;
+		}
 
 		List<Message> messages = 
 			new ArrayList<Message>(this.getMessageCollection());
@@ -483,12 +548,14 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 		
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
-
-		if (t != null) {
-			return t.getValue(); // started transfer
+		if (hasMessagesForConnected(connections)) {
+			@SuppressWarnings(value = "unchecked")
+			Tuple<Message, Connection> t = tryMessagesForConnected(
+					sortByQueueMode(getMessagesForConnected(connections)));
+	
+			if (t != null) {
+				return t.getValue(); // started transfer
+			}
 		}
 		
 		// didn't start transfer to any node -> ask messages from connected
@@ -570,6 +637,26 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;
 	}
 	
+	/**
+	 * Returns true if the router is not sending anything. 
+	 */
+	@Override
+	public boolean isQuiescent() {
+		return super.isQuiescent() && this.sendingConnections.isEmpty();
+	}
+	
+	/**
+	 * Returns the time when the next buffered message expires or the 
+	 * energy runs out, whichever comes first.
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		if (energy != null) {
+			return Math.min(getNextExpiryTime(), energy.getDepletionTime());
+		}
+		return getNextExpiryTime();
+	}
+	
 	/**
 	 * Returns true if the node has energy left (i.e., energy modeling is
 	 * enabled OR (is enabled and model has energy left))
@@ -582,7 +669,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Checks out all sending connections to finalize the ready ones 
 	 * and abort those whose connection went down. Also drops messages
-	 * whose TTL <= 0 (checking every one simulated minute).
+	 * whose TTL <= 0 as soon as nothing is being sent.
 	 * @see #addToSendingConnections(Connection)
 	 */
 	@Override
@@ -625,11 +712,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 		}
 		
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval && 
-				sendingConnections.size() == 0) {
+		/* drop messages whose TTL has passed, but only if not sending */
+		if (sendingConnections.size() == 0) {
 			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
 		}
 		
 		if (energy != null) {
@@ -639,6 +724,17 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	/**
+	 * Stops the continuous energy use (if energy is modeled) while the 
+	 * radio is inactive
+	 */
+	@Override
+	public void radioInactive() {
+		if (energy != null) {
+			energy.radioInactive();
+		}
+	}
+	
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -8,13 +8,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.sun.org.apache.xml.internal.security.keys.keyresolver.implementations.PrivateKeyResolver;
 
+import routing.util.DeliveryPredictabilities;
 import routing.util.EnergyModel;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -58,7 +58,7 @@ public class EnergyProphetRouter extends ActiveRouter {
 	private double beta;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
 	
@@ -111,7 +111,7 @@ public class EnergyProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
 	}
 	
 	@Override
@@ -138,7 +138,7 @@ public class EnergyProphetRouter extends ActiveRouter {
 		double oldValue = getPredFor(host);
 		double energyValue = currentEnergy / initialEnergy;
 		double newValue = oldValue + (1 - oldValue) * energyValue * P_INIT;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 	
 	/**
@@ -149,12 +149,7 @@ public class EnergyProphetRouter extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 	
 	
@@ -170,50 +165,49 @@ public class EnergyProphetRouter extends ActiveRouter {
 			" with other routers of same type";
 		
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 			((EnergyProphetRouter)otherRouter).getDeliveryPreds();
 		
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int i=0, n=othersPreds.size(); i<n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == getHost()) {
 				continue; // don't add yourself
 			}			
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
+			double pOld = getPredFor(c); // P(a,c)_old
+			double pNew = pOld + ( 1 - pOld) * pForHost * 
+				othersPreds.getValue(i) * beta;
 			currentEnergy = energy.getEnergy();
 			double energyValue = currentEnergy / initialEnergy;
 			pNew = pNew * energyValue;
-			preds.put(e.getKey(), pNew);
+			preds.set(c, pNew);
 		}
 	}
 
 	/**
 	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
+	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k) * E</CODE>, where k is number
+	 * of time units that have elapsed since the last time the metric was aged
+	 * and E is the used share of the initial energy. Both parts are applied
+	 * lazily by the predictability table when the values are read, so an
+	 * aging step doesn't touch the entries.
 	 * @see #SECONDS_IN_UNIT_S
 	 */
 	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / 
-			secondsInTimeUnit;
-		
-		if (timeDiff == 0) {
+		if (SimClock.getTime() == this.lastAgeUpdate) {
 			return;
 		}
 		currentEnergy = energy.getEnergy();
 		double energyValue = 1 - currentEnergy / initialEnergy;
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult*energyValue);
-		}
+		preds.scaleAll(energyValue);
 		
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 	
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private DeliveryPredictabilities getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -311,16 +305,15 @@ public class EnergyProphetRouter extends ActiveRouter {
 	public RoutingInfo getRoutingInfo() {
 		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(preds.size() + 
-				" delivery prediction(s)");
-		
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
-			
-			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", 
-					host, value)));
-		}
+		List<Tuple<DTNHost, Double>> all = preds.getAll();
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<DTNHost, Double>>(
+				all.size() + " delivery prediction(s)", all) {
+			@Override
+			protected RoutingInfo createInfo(Tuple<DTNHost, Double> pred) {
+				return new RoutingInfo(String.format("%s : %.6f", 
+						pred.getKey(), pred.getValue()));
+			}
+		};
 		
 		top.addMoreInfo(ri);
 		return top;
@@ -5,8 +5,11 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import routing.util.MessageHolderRegistry;
+
 import core.*;
 
 /**
@@ -15,12 +18,20 @@ import core.*;
  * and that message is then removed from all nodes that use this routing module.
  * This router also <B>ignores message size and all messages are delivered 
  * immediately</B>.</P><P>
+ * The routers share a registry of which router has which message, so
+ * delivery notifications go only to the routers that have the message and
+ * the new messages of a peer are found with a set difference.</P><P>
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 	
 	/** List of all routers in this node group */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** Registry of the messages of all routers in the list */
+	private static MessageHolderRegistry registry;
+	
+	/** Index of this router in the list and the registry */
+	private int index = -1;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -42,6 +53,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
+		this.index = registry.addHolder();
 		allRouters.add(this);
 	}
 	
@@ -53,10 +65,13 @@ public class EpidemicOracleRouter extends ActiveRouter {
 			DTNHost peer = con.getOtherNode(getHost());
 			List<Message> newMessages = new ArrayList<Message>();
 			
-			for (Message m : peer.getMessageCollection()) {
-				if (!this.hasMessage(m.getId())) {
-					newMessages.add(m);
-				}
+			assert peer.getRouter() instanceof EpidemicOracleRouter : "Epidemic"
+				+ "OracleRouter only works with other routers of same type";
+			EpidemicOracleRouter peerRouter = 
+				(EpidemicOracleRouter)peer.getRouter();
+			
+			for (String id : registry.getDifference(peerRouter.index, index)) {
+				newMessages.add(peerRouter.getMessage(id));
 			}
 			for (Message m : newMessages) {
 				/* try to start transfer from peer */
@@ -112,7 +127,10 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
+			BitSet holders = registry.getHolders(id);
+			for (int i = holders.nextSetBit(0); i >= 0; 
+					i = holders.nextSetBit(i + 1)) {
+				EpidemicOracleRouter r = allRouters.get(i);
 				if (r != this && r != from.getRouter()) {
 					r.removeDeliveredMessage(id);
 				}
@@ -158,6 +176,23 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		}
 	}
 	
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		if (index >= 0) {
+			registry.add(m.getId(), index);
+		}
+	}
+	
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && index >= 0) {
+			registry.remove(id, index);
+		}
+		return m;
+	}
+	
 	@Override
 	public void update() {
 		/* nothing to do; all transfers are started only when new connections
@@ -172,10 +207,11 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 	
 	/**
-	 * Resets the static router list
+	 * Resets the static router list and message registry
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		registry = new MessageHolderRegistry();
 	}
 
 }
\ No newline at end of file
@@ -256,6 +256,22 @@ public class FloatingContentRouter extends ActiveRouter {
 		return true;
 	}
 
+	/* Floating messages carry their own TTL (set by the application) */
+	@Override
+	protected int getTtlForNewMessage (Message msg) {
+		Object ttl = msg.getProperty (FC_TTL_VAL);
+
+		if (ttl == null)
+			return super.getTtlForNewMessage (msg);
+		return (int) ((Double) ttl).doubleValue ();
+	}
+
+	/* Messages are deleted based on the location also without contacts */
+	@Override
+	public boolean isQuiescent () {
+		return false;
+	}
+
 	/* Some functions should be carried out only once per encounter.
 	 * Record the new encounters here for later use in update()
 	 */
@@ -13,9 +13,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.MessageIdSet;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 import util.Tuple;
 import core.Connection;
@@ -45,6 +48,17 @@ public class MaxPropRouter extends ActiveRouter {
     /** Default value for the meeting probability set maximum size ({@value}).*/
     public static final int DEFAULT_PROB_SET_MAX_SIZE = 50;
     private static int probSetMaxSize;
+	/**
+	 * Exchanged top probability sets -setting id ({@value}). If set (and
+	 * bigger than zero), only the most recently updated k probability sets
+	 * and the sets updated since the previous meeting are read from a met
+	 * host. Default is to read all sets. */
+	public static final String EXCHANGE_TOP_K_S = "exchangeTopK";
+	/**
+	 * Maximum number of probability sets -setting id ({@value}). If set (and
+	 * bigger than zero), the least recently updated sets of other hosts are
+	 * dropped when there are more sets. Default is no limit. */
+	public static final String MAX_PROB_SETS_S = "maxProbSets";
 
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
@@ -55,15 +69,29 @@ public class MaxPropRouter extends ActiveRouter {
 	private MaxPropDijkstra dijkstra;	
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
+	/** mapping of the current costs for all messages from each "from" host.
+	 * This should be set to null always when the costs should be updated
+	 * (a host is met). Costs to new destinations (e.g. when a new message is
+	 * received) are calculated when they are needed. */
+	private Map<DTNHost, Map<Integer, Double>> costsForMessages;
+
+	/** value of exchanged top probability sets setting */
+	private int exchangeTopK;
+	/** value of maximum number of probability sets setting */
+	private int maxProbSets;
+	/** version of the latest change in allProbs */
+	private long version;
+	/** versions of the allProbs changes mapped to the changed host's address
+	 * (only if exchange or size is limited) */
+	private TreeMap<Long, Integer> changes;
+	/** versions of the latest changes of the allProbs entries */
+	private Map<Integer, Long> changeVersions;
+	/** versions of the met hosts' allProbs at the previous meeting (only
+	 * for the hosts whose set is stored) */
+	private Map<Integer, Long> peerVersions;
 	
 	/** Map of which messages have been sent to which hosts from this host */
-	private Map<DTNHost, Set<String>> sentMessages;
+	private Map<DTNHost, MessageIdSet> sentMessages;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -103,6 +131,13 @@ public class MaxPropRouter extends ActiveRouter {
         } else {
             probSetMaxSize = DEFAULT_PROB_SET_MAX_SIZE;
         }
+
+		if (maxPropSettings.contains(EXCHANGE_TOP_K_S)) {
+			exchangeTopK = maxPropSettings.getInt(EXCHANGE_TOP_K_S);
+		}
+		if (maxPropSettings.contains(MAX_PROB_SETS_S)) {
+			maxProbSets = maxPropSettings.getInt(MAX_PROB_SETS_S);
+		}
 	}
 	
 	/**
@@ -117,7 +152,14 @@ public class MaxPropRouter extends ActiveRouter {
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
 		this.ackedMessageIds = new HashSet<String>();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-		this.sentMessages = new HashMap<DTNHost, Set<String>>();
+		this.sentMessages = new HashMap<DTNHost, MessageIdSet>();
+		this.exchangeTopK = r.exchangeTopK;
+		this.maxProbSets = r.maxProbSets;
+		if (exchangeTopK > 0 || maxProbSets > 0) {
+			this.changes = new TreeMap<Long, Integer>();
+			this.changeVersions = new HashMap<Integer, Long>();
+			this.peerVersions = new HashMap<Integer, Long>();
+		}
 	}	
 
 	/**连接状态发生变化时调用。*/
@@ -150,11 +192,11 @@ public class MaxPropRouter extends ActiveRouter {
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
 				
 				/* exchange the transitive probabilities */
-				this.updateTransitiveProbs(otherRouter.allProbs);
-				otherRouter.updateTransitiveProbs(this.allProbs);
-				this.allProbs.put(otherHost.getAddress(),
+				this.updateTransitiveProbs(otherRouter);
+				otherRouter.updateTransitiveProbs(this);
+				this.putProbs(otherHost.getAddress(),
 						otherRouter.probs.replicate());
-				otherRouter.allProbs.put(getHost().getAddress(),
+				otherRouter.putProbs(getHost().getAddress(),
 						this.probs.replicate());
 			}
 		}
@@ -166,18 +208,80 @@ public class MaxPropRouter extends ActiveRouter {
 
 	/**
 	 * Updates transitive probability values by replacing the current 
-	 * MeetingProbabilitySets with the values from the given mapping
-	 * if the given sets have more recent updates.
-	 * @param p Mapping of the values of the other host
+	 * MeetingProbabilitySets with the values from the other host
+	 * if the other host's sets have more recent updates. If the other host
+	 * limits the exchange, only its most recently updated sets and the sets
+	 * it has updated since the previous meeting are read.
+	 * @param other The router of the other host
 	 */
-	private void updateTransitiveProbs(Map<Integer, MeetingProbabilitySet> p) {
-		for (Map.Entry<Integer, MeetingProbabilitySet> e : p.entrySet()) {
-			MeetingProbabilitySet myMps = this.allProbs.get(e.getKey()); 
-			if (myMps == null || 
-				e.getValue().getLastUpdateTime() > myMps.getLastUpdateTime() ) {
-				this.allProbs.put(e.getKey(), e.getValue().replicate());
+	private void updateTransitiveProbs(MaxPropRouter other) {
+		if (other.exchangeTopK <= 0 || this.peerVersions == null) {
+			for (Map.Entry<Integer, MeetingProbabilitySet> e : 
+					other.allProbs.entrySet()) {
+				updateTransitiveProb(e.getKey(), e.getValue());
+			}
+			return;
+		}
+
+		Integer otherAddress = other.getHost().getAddress();
+		Long seen = this.peerVersions.get(otherAddress);
+
+		int count = 0;
+		for (Integer address : other.changes.descendingMap().values()) {
+			if (count++ >= other.exchangeTopK) {
+				break;
+			}
+			updateTransitiveProb(address, other.allProbs.get(address));
+		}
+		if (seen != null) { // sets updated since the previous meeting
+			for (Integer address : other.changes.tailMap(seen, false).values()) {
+				updateTransitiveProb(address, other.allProbs.get(address));
 			}
 		}
+		/* stored after the reads so that dropping sets can't forget it */
+		this.peerVersions.put(otherAddress, other.version);
+	}
+
+	/**
+	 * Replaces the MeetingProbabilitySet of a host with a copy of the given
+	 * set if the given set has more recent updates.
+	 * @param address Address of the host whose set it is
+	 * @param mps The other host's set
+	 */
+	private void updateTransitiveProb(Integer address, 
+			MeetingProbabilitySet mps) {
+		MeetingProbabilitySet myMps = this.allProbs.get(address); 
+		if (myMps == null || 
+			mps.getLastUpdateTime() > myMps.getLastUpdateTime() ) {
+			putProbs(address, mps.replicate());
+		}
+	}
+
+	/**
+	 * Stores a MeetingProbabilitySet of a host. If the number of sets is
+	 * limited, the least recently updated sets are dropped when needed
+	 * together with the versions of the dropped hosts' previous meetings.
+	 * @param address Address of the host whose set it is
+	 * @param mps The set
+	 */
+	private void putProbs(Integer address, MeetingProbabilitySet mps) {
+		this.allProbs.put(address, mps);
+		if (this.changes == null) {
+			return;
+		}
+
+		Long oldVersion = this.changeVersions.put(address, ++this.version);
+		if (oldVersion != null) {
+			this.changes.remove(oldVersion);
+		}
+		this.changes.put(this.version, address);
+
+		while (maxProbSets > 0 && this.changes.size() > maxProbSets) {
+			Integer dropped = this.changes.pollFirstEntry().getValue();
+			this.changeVersions.remove(dropped);
+			this.allProbs.remove(dropped);
+			this.peerVersions.remove(dropped);
+		}
 	}
 	
 	/**从消息缓冲区中删除那些已经被确认的消息
@@ -196,7 +300,6 @@ public class MaxPropRouter extends ActiveRouter {
 	 * */
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -217,7 +320,7 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = con.getMessage();
 		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
-		Set<String> sentMsgIds = this.sentMessages.get(recipient);
+		MessageIdSet sentMsgIds = this.sentMessages.get(recipient);
 		
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) { 
@@ -227,10 +330,10 @@ public class MaxPropRouter extends ActiveRouter {
 		
 		/* update the map of where each message is already sent */
 		if (sentMsgIds == null) {
-			sentMsgIds = new HashSet<String>();
+			sentMsgIds = createMessageIdSet();
 			this.sentMessages.put(recipient, sentMsgIds);
 		}		
-		sentMsgIds.add(id);
+		sentMsgIds.add(m);
 	}
 	
 	/**更新每个传输机会所传输字节数的平均估计值
@@ -318,9 +421,15 @@ public class MaxPropRouter extends ActiveRouter {
 	 * 从此主机的角度返回两台主机之间的传递开销。
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
+		if (this.costsForMessages == null) {
+			this.costsForMessages = new HashMap<DTNHost, Map<Integer, Double>>();
+		}
+		Map<Integer, Double> costs = this.costsForMessages.get(from);
+		Integer toIndex = to.getAddress();
+		
 		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
+		if (costs == null || !costs.containsKey(toIndex)) {
+			/* calculate costs to the destinations that are not cached yet */
 			this.allProbs.put(getHost().getAddress(), this.probs);
 			int fromIndex = from.getAddress();
 			
@@ -330,18 +439,26 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : getMessageCollection()) {
 				toSet.add(m.getTo().getAddress());
 			}
-						
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
+			
+			if (costs == null) {
+				costs = new HashMap<Integer, Double>();
+				this.costsForMessages.put(from, costs);
+			}
+			else {
+				toSet.removeAll(costs.keySet());
+			}
+			
+			costs.putAll(dijkstra.getCosts(fromIndex, toSet));
+			toSet.add(toIndex);
+			for (Integer i : toSet) {
+				if (!costs.containsKey(i)) {
+					/* there's no known path to the given host */
+					costs.put(i, Double.MAX_VALUE);
+				}
+			}
 		}
 		
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		return costs.get(toIndex);
 	}
 	
 	/**
@@ -360,7 +477,7 @@ public class MaxPropRouter extends ActiveRouter {
 		for (Connection con : getConnections()) {
 			DTNHost other = con.getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
+			MessageIdSet sentMsgIds = this.sentMessages.get(other);
 			
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
@@ -582,16 +699,16 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(probs.getAllProbs().size() + 
-				" meeting probabilities");
-		
-		/* show meeting probabilities for this host */
-		for (Map.Entry<Integer, Double> e : probs.getAllProbs().entrySet()) {
-			Integer host = e.getKey();
-			Double value = e.getValue();			
-			ri.addMoreInfo(new RoutingInfo(String.format("host %d : %.6f", 
-					host, value)));
-		}
+		List<Tuple<Integer, Double>> all = copyProbs();
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<Integer, Double>>(
+				all.size() + " meeting probabilities", all) {
+			/* show meeting probabilities for this host */
+			@Override
+			protected RoutingInfo createInfo(Tuple<Integer, Double> prob) {
+				return new RoutingInfo(String.format("host %d : %.6f",
+						prob.getKey(), prob.getValue()));
+			}
+		};
 			
 		top.addMoreInfo(ri);
 		top.addMoreInfo(new RoutingInfo("Avg transferred bytes: " + 
@@ -600,6 +717,20 @@ public class MaxPropRouter extends ActiveRouter {
 		return top;
 	}
 	
+	/**
+	 * Returns a copy of this host's meeting probabilities (for the routing
+	 * info)
+	 * @return (host address, probability) tuples
+	 */
+	private List<Tuple<Integer, Double>> copyProbs() {
+		List<Tuple<Integer, Double>> all =
+			new ArrayList<Tuple<Integer, Double>>();
+		for (Map.Entry<Integer, Double> e : probs.getAllProbs().entrySet()) {
+			all.add(new Tuple<Integer, Double>(e.getKey(), e.getValue()));
+		}
+		return all;
+	}
+	
 	/**创建此路由器的复制。*/
 	@Override
 	public MessageRouter replicate() {
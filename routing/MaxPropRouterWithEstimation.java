@@ -16,6 +16,7 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 import util.Tuple;
 import core.Connection;
@@ -53,12 +54,11 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	private MaxPropDijkstra dijkstra;	
 	/** IDs of the messages that are known to have reached the final dst */
 	private Set<String> ackedMessageIds;
-	/** mapping of the current costs for all messages. This should be set to
-	 * null always when the costs should be updated (a host is met or a new
-	 * message is received) */
-	private Map<Integer, Double> costsForMessages;
-	/** From host of the last cost calculation */
-	private DTNHost lastCostFrom;
+	/** mapping of the current costs for all messages from each "from" host.
+	 * This should be set to null always when the costs should be updated
+	 * (a host is met). Costs to new destinations (e.g. when a new message is
+	 * received) are calculated when they are needed. */
+	private Map<DTNHost, Map<Integer, Double>> costsForMessages;
 		
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -332,7 +332,6 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-		this.costsForMessages = null; // new message -> invalidate costs
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
@@ -439,9 +438,15 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
 	public double getCost(DTNHost from, DTNHost to) {
+		if (this.costsForMessages == null) {
+			this.costsForMessages = new HashMap<DTNHost, Map<Integer, Double>>();
+		}
+		Map<Integer, Double> costs = this.costsForMessages.get(from);
+		Integer toIndex = to.getAddress();
+		
 		/* check if the cached values are OK */
-		if (this.costsForMessages == null || lastCostFrom != from) {
-			/* cached costs are invalid -> calculate new costs */
+		if (costs == null || !costs.containsKey(toIndex)) {
+			/* calculate costs to the destinations that are not cached yet */
 			this.allProbs.put(getHost().getAddress(), this.probs);
 			int fromIndex = from.getAddress();
 			
@@ -451,18 +456,26 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 			for (Message m : getMessageCollection()) {
 				toSet.add(m.getTo().getAddress());
 			}
-						
-			this.costsForMessages = dijkstra.getCosts(fromIndex, toSet);
-			this.lastCostFrom = from; // store source host for caching checks
+			
+			if (costs == null) {
+				costs = new HashMap<Integer, Double>();
+				this.costsForMessages.put(from, costs);
+			}
+			else {
+				toSet.removeAll(costs.keySet());
+			}
+			
+			costs.putAll(dijkstra.getCosts(fromIndex, toSet));
+			toSet.add(toIndex);
+			for (Integer i : toSet) {
+				if (!costs.containsKey(i)) {
+					/* there's no known path to the given host */
+					costs.put(i, Double.MAX_VALUE);
+				}
+			}
 		}
 		
-		if (costsForMessages.containsKey(to.getAddress())) {
-			return costsForMessages.get(to.getAddress());
-		}
-		else {
-			/* there's no known path to the given host */
-			return Double.MAX_VALUE;
-		}
+		return costs.get(toIndex);
 	}
 	
 	/**
@@ -692,20 +705,38 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(probs.getAllProbs().size() + 
-				" meeting probabilities");
-		
-		/* show meeting probabilities for this host */
+		List<Tuple<Integer, Double>> all =
+			new ArrayList<Tuple<Integer, Double>>();
 		for (Map.Entry<Integer, Double> e : probs.getAllProbs().entrySet()) {
-			Integer host = e.getKey();
-			Double value = e.getValue();			
-			ri.addMoreInfo(new RoutingInfo(String.format("host %d : %.6f", 
-					host, value)));
+			all.add(new Tuple<Integer, Double>(e.getKey(), e.getValue()));
 		}
+		final String ietInfo = String.format("meanIET: %f\t from %d samples",
+				meanIET, nrofSamplesIET);
+		final String encInfo = String.format("meanENC: %f\t from %d samples",
+				meanENC, nrofSamplesENC);
+		final String alphaInfo = String.format("current alpha: %f", alpha);
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<Integer, Double>>(
+				all.size() + " meeting probabilities", all) {
+			/* show meeting probabilities for this host */
+			@Override
+			protected RoutingInfo createInfo(Tuple<Integer, Double> prob) {
+				return new RoutingInfo(String.format("host %d : %.6f",
+						prob.getKey(), prob.getValue()));
+			}
 			
-		ri.addMoreInfo(new RoutingInfo(String.format("meanIET: %f\t from %d samples",meanIET,nrofSamplesIET)));
-		ri.addMoreInfo(new RoutingInfo(String.format("meanENC: %f\t from %d samples",meanENC,nrofSamplesENC)));
-		ri.addMoreInfo(new RoutingInfo(String.format("current alpha: %f",alpha)));
+			@Override
+			protected void createMoreInfo() {
+				super.createMoreInfo();
+				addMoreInfo(new RoutingInfo(ietInfo));
+				addMoreInfo(new RoutingInfo(encInfo));
+				addMoreInfo(new RoutingInfo(alphaInfo));
+			}
+			
+			@Override
+			public boolean hasMoreInfo() {
+				return true;
+			}
+		};
 		
 		top.addMoreInfo(ri);
 		top.addMoreInfo(new RoutingInfo("Avg transferred bytes: " + 
@@ -4,14 +4,20 @@
  */
 package routing;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.TreeSet;
 
+import routing.util.MessageIdSet;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -49,6 +55,12 @@ public abstract class MessageRouter {
 	 * </UL>
 	 */ 
 	public static final String SEND_QUEUE_MODE_S = "sendQueue";
+	/**
+	 * Forget expired message IDs -setting id ({@value}). Boolean value.
+	 * If true, the IDs of delivered and blacklisted messages are forgotten
+	 * after the messages' TTL has passed. Default is false.
+	 */
+	public static final String FORGET_EXPIRED_S = "forgetExpiredIds";
 	
 	/** Setting value for random queue mode */
 	public static final int Q_MODE_RANDOM = 1;
@@ -85,10 +97,21 @@ public abstract class MessageRouter {
 	private HashMap<String, Message> incomingMessages;
 	/** The messages this router is carrying */
 	private HashMap<String, Message> messages; 
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	/** The messages this router is carrying indexed by final recipient. 
+	 * The messages of a recipient are keyed by ID in the order they were
+	 * added; recipients without messages are removed. */
+	private HashMap<DTNHost, LinkedHashMap<String, Message>> 
+		messagesByDestination;
+	/** The buffered messages with finite TTL in expiry order. Removed 
+	 * messages are discarded lazily when they come up. */
+	private PriorityQueue<Message> expiryQueue;
+	/** IDs of the messages this router has received as the final recipient*/
+	private MessageIdSet deliveredMessages;
+	/** IDs of the messages that Applications on this router have 
+	 * blacklisted */
+	private MessageIdSet blacklistedMessages;
+	/** are the IDs of expired messages forgotten */
+	private boolean forgetExpiredIds;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -97,6 +120,9 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** The buffered messages in FIFO sending order (null if the queue mode
+	 * doesn't define a persistent order) */
+	private TreeSet<Message> sendQueue;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -128,7 +154,7 @@ public abstract class MessageRouter {
 		else {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
-		
+		this.forgetExpiredIds = s.getBoolean(FORGET_EXPIRED_S, false);
 	}
 	
 	/**
@@ -141,10 +167,41 @@ public abstract class MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		this.incomingMessages = new HashMap<String, Message>();
 		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.messagesByDestination = 
+			new HashMap<DTNHost, LinkedHashMap<String, Message>>();
+		this.expiryQueue = new PriorityQueue<Message>(11, 
+				new Comparator<Message>() {
+			/** Compares messages by expiry time and then creation order */
+			public int compare(Message m1, Message m2) {
+				int diff = Double.compare(m1.getExpiryTime(), 
+						m2.getExpiryTime());
+				if (diff != 0) {
+					return diff;
+				}
+				return m1.getUniqueId() - m2.getUniqueId();
+			}
+		});
+		this.deliveredMessages = createMessageIdSet();
+		this.blacklistedMessages = createMessageIdSet();
 		this.mListeners = mListeners;
 		this.host = host;
+		
+		if (sendQueueMode == Q_MODE_FIFO) {
+			this.sendQueue = new TreeSet<Message>(new Comparator<Message>() {
+				/** Compares messages by receive time and then creation order */
+				public int compare(Message m1, Message m2) {
+					int diff = Double.compare(m1.getReceiveTime(), 
+							m2.getReceiveTime());
+					if (diff != 0) {
+						return diff;
+					}
+					return m1.getUniqueId() - m2.getUniqueId();
+				}
+			});
+		}
+		else {
+			this.sendQueue = null; /* order is re-drawn on every send attempt */
+		}
 	}
 	
 	/**
@@ -155,6 +212,7 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.forgetExpiredIds = r.forgetExpiredIds;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -164,6 +222,15 @@ public abstract class MessageRouter {
 		}
 	}
 	
+	/**
+	 * Creates a new, empty, message ID set that forgets the IDs of expired
+	 * messages if {@link #FORGET_EXPIRED_S} setting is true.
+	 * @return The new set
+	 */
+	protected MessageIdSet createMessageIdSet() {
+		return new MessageIdSet(this.forgetExpiredIds);
+	}
+	
 	/**
 	 * Updates router.
 	 * This method should be called (at least once) on every simulation
@@ -177,12 +244,45 @@ public abstract class MessageRouter {
 		}
 	}
 	
+	/**
+	 * Called by the host instead of {@link #update()} when the host's radio
+	 * is inactive. Routers that model something that goes on only while the
+	 * radio is active (e.g., energy use) can stop it here. The default 
+	 * implementation does nothing.
+	 */
+	public void radioInactive() { }
+	
 	/**֪ͨ·״̬ĸ
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
 	 */
 	public abstract void changedConnection(Connection con);	
 	
+	/**
+	 * Returns true if updating this router would not change anything at the
+	 * current simulation time, given that the host has no connections. A
+	 * quiescent router wakes up by a new connection or a new message, or
+	 * when the simulation time reaches {@link #getNextUpdateTime()}.
+	 * Routers that do time or location based work in their update (or have
+	 * applications attached) are never quiescent. Subclasses that do 
+	 * something else in {@link #update()} than what their superclass does 
+	 * when there are no connections must override this.
+	 * @return true if the router is quiescent
+	 */
+	public boolean isQuiescent() {
+		return this.applications.isEmpty() && this.incomingMessages.isEmpty();
+	}
+	
+	/**
+	 * Returns the simulation time when this router needs to be updated even
+	 * if it is quiescent (see {@link #isQuiescent()}).
+	 * @return The next update time or Double.MAX_VALUE if the router doesn't
+	 * need updates unless something wakes it up
+	 */
+	public double getNextUpdateTime() {
+		return Double.MAX_VALUE;
+	}
+	
 	/**ͨIDһϢ
 	 * Returns a message by ID.
 	 * @param id ID of the message
@@ -210,7 +310,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.contains(m.getId()));
 	}
 	
 	/** Ϣ򷵻trueڽڵϵӦóҪɾϢʱ
@@ -225,7 +325,7 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return this.blacklistedMessages.contains(id);
 	}
 	
 	/**ؼд·ɵϢ
@@ -253,6 +353,107 @@ public abstract class MessageRouter {
 		return this.messages.size();
 	}
 	
+	/**
+	 * Returns the buffered messages whose final recipient is the given host,
+	 * in the order they were added to the buffer. The returned collection 
+	 * is a live view to the index and must not be modified; if messages can 
+	 * be added or deleted while iterating, iterate over a copy.
+	 * @param to The final recipient
+	 * @return The messages for the host (empty if there are none)
+	 */
+	protected Collection<Message> getMessagesFor(DTNHost to) {
+		LinkedHashMap<String, Message> forDest = 
+			this.messagesByDestination.get(to);
+		if (forDest == null) {
+			return Collections.emptyList();
+		}
+		return forDest.values();
+	}
+	
+	/**
+	 * Returns the buffered message whose TTL has passed first and forgets
+	 * it from the expiry queue. The message is not removed from the buffer.
+	 * Messages are registered to the expiry queue when they are added to the
+	 * buffer so no scanning of the buffer is needed.
+	 * @return A message whose TTL has passed or null if there are no such
+	 * messages in the buffer
+	 */
+	protected Message pollExpiredMessage() {
+		while (!this.expiryQueue.isEmpty()) {
+			Message m = this.expiryQueue.peek();
+			if (this.messages.get(m.getId()) != m) {
+				this.expiryQueue.poll(); // not in the buffer anymore
+				continue;
+			}
+			if (m.getExpiryTime() > SimClock.getTime() || m.getTtl() > 0) {
+				return null; // the first message to expire hasn't expired yet
+			}
+			return this.expiryQueue.poll();
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the time after which the first message in the expiry queue 
+	 * expires. The message may have been removed from the buffer already.
+	 * @return The expiry time or Double.MAX_VALUE if no buffered message has
+	 * a finite TTL
+	 */
+	protected double getNextExpiryTime() {
+		Message m = this.expiryQueue.peek();
+		return (m == null ? Double.MAX_VALUE : m.getExpiryTime());
+	}
+	
+	/**
+	 * Drops the messages that are not in the buffer anymore from the expiry
+	 * queue if they make up most of the queue.
+	 */
+	private void compactExpiryQueue() {
+		if (this.expiryQueue.size() <= 2 * this.messages.size() + 64) {
+			return;
+		}
+		
+		PriorityQueue<Message> compacted = new PriorityQueue<Message>(
+				this.messages.size() + 11, this.expiryQueue.comparator());
+		for (Message m : this.expiryQueue) {
+			if (this.messages.get(m.getId()) == m) {
+				compacted.add(m);
+			}
+		}
+		this.expiryQueue = compacted;
+	}
+	
+	/**
+	 * Returns true if this router keeps its messages in a persistent sending
+	 * order (i.e. the queue mode is FIFO) that can be walked with 
+	 * {@link #getNextQueuedMessage(Message)}.
+	 * @return true if a persistent sending queue is available
+	 */
+	protected boolean hasSendQueue() {
+		return this.sendQueue != null;
+	}
+	
+	/**
+	 * Returns the message that follows the given message in the persistent 
+	 * sending queue. The given message doesn't have to be in the buffer 
+	 * anymore; the position is resolved by its sending order.
+	 * @param previous The message to continue after or null to start from 
+	 * the head of the queue
+	 * @return The next message in sending order or null if there are no more
+	 * messages
+	 * @throws SimError if the queue mode doesn't define a persistent order
+	 */
+	protected Message getNextQueuedMessage(Message previous) {
+		if (this.sendQueue == null) {
+			throw new SimError("Queue mode " + sendQueueMode + " has no " +
+					"persistent sending queue");
+		}
+		if (previous == null) {
+			return this.sendQueue.isEmpty() ? null : this.sendQueue.first();
+		}
+		return this.sendQueue.higher(previous);
+	}
+	
 	/**ϢС
 	 * Returns the size of the message buffer.
 	 * @return The size or Integer.MAX_VALUE if the size isn't defined.
@@ -378,11 +579,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.add(id, aMessage.getExpiryTime());
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.add(id, aMessage.getExpiryTime());
 		}
 		
 		for (MessageListener ml : this.mListeners) {
@@ -432,7 +633,30 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getId(), m);
+		
+		if (this.sendQueue != null) {
+			if (old != null) {
+				this.sendQueue.remove(old);
+			}
+			this.sendQueue.add(m);
+		}
+		
+		if (old != null) {
+			removeFromDestinationIndex(old);
+		}
+		LinkedHashMap<String, Message> forDest = 
+			this.messagesByDestination.get(m.getTo());
+		if (forDest == null) {
+			forDest = new LinkedHashMap<String, Message>(4);
+			this.messagesByDestination.put(m.getTo(), forDest);
+		}
+		forDest.put(m.getId(), m);
+		
+		if (m.getExpiryTime() != Double.MAX_VALUE) {
+			this.expiryQueue.add(m);
+			compactExpiryQueue();
+		}
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -448,9 +672,31 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		if (m != null) {
+			if (this.sendQueue != null) {
+				this.sendQueue.remove(m);
+			}
+			removeFromDestinationIndex(m);
+		}
 		return m;
 	}
 	
+	/**
+	 * Removes a message from the final recipient index
+	 * @param m The message to remove
+	 */
+	private void removeFromDestinationIndex(Message m) {
+		LinkedHashMap<String, Message> forDest = 
+			this.messagesByDestination.get(m.getTo());
+		if (forDest == null || forDest.get(m.getId()) != m) {
+			return;
+		}
+		forDest.remove(m.getId());
+		if (forDest.isEmpty()) {
+			this.messagesByDestination.remove(m.getTo());
+		}
+	}
+	
 	/**Ϣ䱻жʱӦ(ڽսڵ)ô˷
 	 * This method should be called (on the receiving host) when a message 
 	 * transfer was aborted.
@@ -478,11 +724,23 @@ public abstract class MessageRouter {
 	 * the message was too big for the buffer)
 	 */
 	public boolean createNewMessage(Message m) {
-		m.setTtl(this.msgTtl);
+		m.setTtl(getTtlForNewMessage(m));
 		addToMessages(m, true);		
 		return true;
 	}
 	
+	/**
+	 * Returns the initial TTL that is given to a message created to this
+	 * router. By default all messages get the TTL of the {@link #MSG_TTL_S}
+	 * setting, but subclasses may let e.g. applications define the TTL. 
+	 * The TTL must not be changed after the message is in the buffer.
+	 * @param m The new message
+	 * @return The TTL for the message
+	 */
+	protected int getTtlForNewMessage(Message m) {
+		return this.msgTtl;
+	}
+	
 	/**ӻɾһϢ¼֪ͨϢ
 	 * Deletes a message from the buffer and informs message listeners
 	 * about the event
@@ -582,29 +840,27 @@ public abstract class MessageRouter {
 	 */
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo ri = new RoutingInfo(this);
-		RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size() + 
-				" incoming message(s)");
-		RoutingInfo delivered = new RoutingInfo(this.deliveredMessages.size() +
-				" delivered message(s)");
+		/* the lists are copied now but their infos are created only when
+		 * they're viewed (connections change state, so their texts are
+		 * copied) */
+		List<Message> incomingList =
+			new ArrayList<Message>(this.incomingMessages.values());
+		List<String> deliveredList = this.deliveredMessages.getIds();
+		List<String> consList = new ArrayList<String>();
+		for (Connection c : host.getConnections()) {
+			consList.add(c.toString());
+		}
 		
-		RoutingInfo cons = new RoutingInfo(host.getConnections().size() + 
-			" connection(s)");
+		RoutingInfo incoming = new LazyRoutingInfo<Message>(
+				incomingList.size() + " incoming message(s)", incomingList);
+		RoutingInfo delivered = new LazyRoutingInfo<String>(
+				deliveredList.size() + " delivered message(s)", deliveredList);
+		RoutingInfo cons = new LazyRoutingInfo<String>(
+				consList.size() + " connection(s)", consList);
 				
 		ri.addMoreInfo(incoming);
 		ri.addMoreInfo(delivered);
 		ri.addMoreInfo(cons);
-		
-		for (Message m : this.incomingMessages.values()) {
-			incoming.addMoreInfo(new RoutingInfo(m));
-		}
-		
-		for (Message m : this.deliveredMessages.values()) {
-			delivered.addMoreInfo(new RoutingInfo(m + " path:" + m.getHops()));
-		}
-		
-		for (Connection c : host.getConnections()) {
-			cons.addMoreInfo(new RoutingInfo(c));
-		}
 
 		return ri;
 	}
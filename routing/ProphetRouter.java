@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.DeliveryPredictabilities;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -20,7 +22,6 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
-import core.SimClock;
 
 /**
  * Implementation of PRoPHET router as described in 
@@ -49,15 +50,33 @@ public class ProphetRouter extends ActiveRouter {
 	 */
 	public static final String BETA_S = "beta";
 
+	/**
+	 * Exchanged top predictions -setting id ({@value}). If set (and bigger
+	 * than zero), a met host's predictions are read only for the hosts with
+	 * the biggest predictions (top-k) and for the hosts whose predictions
+	 * the met host has changed since the previous meeting.
+	 * Default is to read all predictions.
+	 */
+	public static final String EXCHANGE_TOP_K_S = "exchangeTopK";
+
+	/**
+	 * Maximum number of predictions -setting id ({@value}). If set (and
+	 * bigger than zero), the smallest predictions are dropped when there are
+	 * more predictions. Default is no limit.
+	 */
+	public static final String MAX_PREDS_S = "maxPredictions";
+
 	/** the value of nrof seconds in time unit -setting */
 	private int secondsInTimeUnit;
 	/** value of beta setting */
 	private double beta;
+	/** value of exchanged top predictions setting */
+	private int exchangeTopK;
+	/** value of maximum number of predictions setting */
+	private int maxPreds;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
+	private DeliveryPredictabilities preds;
 	
 	/**ڵ㻺бȵļ㹫ʽΪ
 	 * cacheRatio= (m_i * S_i) / B_total, i in nodeNumber
@@ -90,6 +109,12 @@ public class ProphetRouter extends ActiveRouter {
 		else {
 			beta = DEFAULT_BETA;
 		}
+		if (prophetSettings.contains(EXCHANGE_TOP_K_S)) {
+			exchangeTopK = prophetSettings.getInt(EXCHANGE_TOP_K_S);
+		}
+		if (prophetSettings.contains(MAX_PREDS_S)) {
+			maxPreds = prophetSettings.getInt(MAX_PREDS_S);
+		}
 
 		initPreds();
 		initCachRatio();
@@ -103,6 +128,8 @@ public class ProphetRouter extends ActiveRouter {
 		super(r);
 		this.secondsInTimeUnit = r.secondsInTimeUnit;
 		this.beta = r.beta;
+		this.exchangeTopK = r.exchangeTopK;
+		this.maxPreds = r.maxPreds;
 		initPreds();
 		initCachRatio();
 	}
@@ -111,7 +138,8 @@ public class ProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
+		this.preds.setLimits(exchangeTopK, maxPreds);
 	}
 	
 	/**ʼб*/
@@ -136,9 +164,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @param host The host we just met
 	 */
 	private void updateDeliveryPredFor(DTNHost host) {
-		double oldValue = getPredFor(host);
-		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.encounter(host, P_INIT);
 		
 		/**2019-07-01**/
 		int nrofMessage = host.getNrofMessages();	//ȡڵЯϢ
@@ -155,13 +181,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host); // values are aged when read
 	}
 	
 	/**ؽڵ㻺бR*/
@@ -186,48 +206,17 @@ public class ProphetRouter extends ActiveRouter {
 			" with other routers of same type";
 		
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 			((ProphetRouter)otherRouter).getDeliveryPreds();
 		
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-			
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
-		}
+		preds.updateTransitive(getHost(), host, pForHost, othersPreds, beta);
 	}
 
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
-	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / 
-			secondsInTimeUnit;
-		
-		if (timeDiff == 0) {
-			return;
-		}
-		
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-		
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-	
 	/**ش·ɵĴmap
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions (aged when read)
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
+	private DeliveryPredictabilities getDeliveryPreds() {
 		return this.preds;
 	}
 	
@@ -330,18 +319,16 @@ public class ProphetRouter extends ActiveRouter {
 	
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(preds.size() + 
-				" delivery prediction(s)");
-		
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
-			
-			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", 
-					host, value)));
-		}
+		List<Tuple<DTNHost, Double>> all = preds.getAll();
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<DTNHost, Double>>(
+				all.size() + " delivery prediction(s)", all) {
+			@Override
+			protected RoutingInfo createInfo(Tuple<DTNHost, Double> pred) {
+				return new RoutingInfo(String.format("%s : %.6f", 
+						pred.getKey(), pred.getValue()));
+			}
+		};
 		
 		top.addMoreInfo(ri);
 		return top;
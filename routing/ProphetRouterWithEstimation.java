@@ -12,6 +12,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.DeliveryPredictabilities;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -72,16 +74,13 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	private double ptavg;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 
 	/** last meeting time with a node */
 	private Map<DTNHost, Double> meetings;
 	private int nrofSamples;
 	private double meanIET;
 
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
-
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -126,7 +125,8 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		/* aging is done per second (the time scale affects gamma) */
+		this.preds = new DeliveryPredictabilities(gamma, 1);
 	}
 
 	/**
@@ -317,6 +317,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		}
 		gamma = Math.exp(-b);
 		pinit = 1-zeta;
+		preds.setGamma(gamma);
 	}
 
 	/**
@@ -325,9 +326,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * @param host The host we just met
 	 */
 	private void updateDeliveryPredFor(DTNHost host) {
-		double oldValue = getPredFor(host);
-		double newValue = oldValue + (1 - oldValue) * pinit;
-		preds.put(host, newValue);
+		preds.encounter(host, pinit);
 	}
 
 	/**
@@ -337,13 +336,7 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host); // values are aged when read
 	}
 
 	/**
@@ -358,47 +351,17 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		" with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 			((ProphetRouterWithEstimation)otherRouter).getDeliveryPreds();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
-		}
+		preds.updateTransitive(getHost(), pForHost, othersPreds, beta);
 	}
 
 	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
+	 * Returns this router's delivery predictions (aged when read)
+	 * @return this router's delivery predictions
 	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate);
-
-		if (timeDiff == 0) {
-			return;
-		}
-
-		double mult = Math.pow(gamma, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
+	private DeliveryPredictabilities getDeliveryPreds() {
 		return this.preds;
 	}
 
@@ -493,22 +456,33 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(preds.size() + 
-		" delivery prediction(s)");
-
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
-
-			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", 
-					host, value)));
-		}
-
-		ri.addMoreInfo(new RoutingInfo(String.format("meanIET: %f\t from %d samples",meanIET,nrofSamples)));
-		ri.addMoreInfo(new RoutingInfo(String.format("current gamma: %f",gamma)));
-		ri.addMoreInfo(new RoutingInfo(String.format("current Pinit: %f",pinit)));
+		List<Tuple<DTNHost, Double>> all = preds.getAll();
+		final String ietInfo = String.format("meanIET: %f\t from %d samples",
+				meanIET, nrofSamples);
+		final String gammaInfo = String.format("current gamma: %f", gamma);
+		final String pinitInfo = String.format("current Pinit: %f", pinit);
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<DTNHost, Double>>(
+				all.size() + " delivery prediction(s)", all) {
+			@Override
+			protected RoutingInfo createInfo(Tuple<DTNHost, Double> pred) {
+				return new RoutingInfo(String.format("%s : %.6f", 
+						pred.getKey(), pred.getValue()));
+			}
+			
+			@Override
+			protected void createMoreInfo() {
+				super.createMoreInfo();
+				addMoreInfo(new RoutingInfo(ietInfo));
+				addMoreInfo(new RoutingInfo(gammaInfo));
+				addMoreInfo(new RoutingInfo(pinitInfo));
+			}
+			
+			@Override
+			public boolean hasMoreInfo() {
+				return true;
+			}
+		};
 
 		top.addMoreInfo(ri);
 		return top;
@@ -16,6 +16,8 @@ import java.util.Map;
 
 import java.util.Random;
 
+import routing.util.DeliveryPredictabilities;
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
 
 
@@ -61,14 +63,11 @@ public class ProphetV2Router extends ActiveRouter {
 	private double beta;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private DeliveryPredictabilities preds;
 
 	/** last encouter timestamp (sim)time */
 	private Map<DTNHost, Double> lastEncouterTime;
 	
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
-	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
 	 * the given Settings object.
@@ -113,7 +112,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
 	}
 	
 	@Override
@@ -147,9 +146,7 @@ public class ProphetV2Router extends ActiveRouter {
 			else
 				PEnc=PEncMax;
 
-		double oldValue = getPredFor(host);
-		double newValue = oldValue + (1 - oldValue) * PEnc;
-		preds.put(host, newValue);
+		preds.encounter(host, PEnc);
 		lastEncouterTime.put(host, simTime);
 	}
 	
@@ -175,13 +172,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * @return the current P value
 	 */
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host); // values are aged when read
 	}
 	
 	/**
@@ -196,51 +187,18 @@ public class ProphetV2Router extends ActiveRouter {
 			"PRoPHETv2 only works with other routers of same type";
 		
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 			((ProphetV2Router)otherRouter).getDeliveryPreds();
 		
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-
-//ProphetV2 max(old,new)
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pForHost * e.getValue() * beta;
-			if(pNew>pOld)
-				preds.put(e.getKey(), pNew);
-		
-		}
+		//ProphetV2 max(old,new)
+		preds.updateTransitiveMax(getHost(), pForHost, othersPreds, beta);
 	}
 
 	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
+	 * Returns this router's delivery predictions (aged when read)
+	 * @return this router's delivery predictions
 	 */
-	private void ageDeliveryPreds() {
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / 
-			secondsInTimeUnit;
-		
-		if (timeDiff == 0) {
-			return;
-		}
-		
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
-		
-		this.lastAgeUpdate = SimClock.getTime();
-	}
-	
-	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
-	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
+	private DeliveryPredictabilities getDeliveryPreds() {
 		return this.preds;
 	}
 	
@@ -336,18 +294,16 @@ public class ProphetV2Router extends ActiveRouter {
 	
 	@Override
 	public RoutingInfo getRoutingInfo() {
-		ageDeliveryPreds();
 		RoutingInfo top = super.getRoutingInfo();
-		RoutingInfo ri = new RoutingInfo(preds.size() + 
-				" delivery prediction(s)");
-		
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
-			
-			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f", 
-					host, value)));
-		}
+		List<Tuple<DTNHost, Double>> all = preds.getAll();
+		RoutingInfo ri = new LazyRoutingInfo<Tuple<DTNHost, Double>>(
+				all.size() + " delivery prediction(s)", all) {
+			@Override
+			protected RoutingInfo createInfo(Tuple<DTNHost, Double> pred) {
+				return new RoutingInfo(String.format("%s : %.6f", 
+						pred.getKey(), pred.getValue()));
+			}
+		};
 		
 		top.addMoreInfo(ri);
 		return top;
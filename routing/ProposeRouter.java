@@ -5,9 +5,9 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+
+import routing.util.DeliveryPredictabilities;
 
 import core.Connection;
 import core.DTNHost;
@@ -51,9 +51,7 @@ public class ProposeRouter extends ActiveRouter {
 	private double beta;
 	
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
-	/** last delivery predictability update (sim)time */
-	private double lastAgeUpdate;
+	private DeliveryPredictabilities preds;
 	
 	/*********************2019-03-25 08:32޸*******************/
 	/** identifier for the initial number of copies setting ({@value})*/ 
@@ -121,7 +119,7 @@ public class ProposeRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new DeliveryPredictabilities(GAMMA, secondsInTimeUnit);
 	}
 	
 	/**********************2019-03-25 09:09 ޸***************/
@@ -258,16 +256,17 @@ public class ProposeRouter extends ActiveRouter {
 				" with other routers of same type";
 		
 		double pForHost = newValue; 	//		P(a,b)_new
-		Map<DTNHost,Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 				((ProposeRouter)otherRouter).getDeliveryPreds();
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int i=0, n=othersPreds.size(); i<n; i++) {
+			DTNHost c = othersPreds.getHost(i);
+			if (c == getHost()) {
 				continue;
 			}
 			
-			double pOld = getPredFor(e.getKey());	//P(a,c)_old
+			double pOld = getPredFor(c);	//P(a,c)_old
 			//e.getValue() -> P(b,c)ĸֵ
-			double pNew = pOld + (1 - pOld) * pForHost * e.getValue() * beta; //P(a,c)_new
+			double pNew = pOld + (1 - pOld) * pForHost * othersPreds.getValue(i) * beta; //P(a,c)_new
 			laNew = (newValue / (newValue + pNew)) * (laOld + lbOld);
 			lbNew = laOld + lbOld - laNew;
 		}
@@ -304,19 +303,11 @@ public class ProposeRouter extends ActiveRouter {
 	 */
 	private void updateDeliveryPredFor(DTNHost host) {
 		//½ڵͶԤֵ
-		double oldValue = getPredFor(host);
-		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.encounter(host, P_INIT);
 	}
 	
 	public double getPredFor(DTNHost host) {
-		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host); // values are aged when read
 	}
 	
 	/**
@@ -332,52 +323,20 @@ public class ProposeRouter extends ActiveRouter {
 			" with other routers of same type";
 		
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds = 
+		DeliveryPredictabilities othersPreds = 
 			((ProposeRouter)otherRouter).getDeliveryPreds();
 		
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
-				continue; // don't add yourself
-			}
-			
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;	//P(a,c)
-			preds.put(e.getKey(), pNew);
-		}
+		preds.updateTransitive(getHost(), pForHost, othersPreds, beta);
 	}
 	
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions (aged when read)
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
-		ageDeliveryPreds(); // make sure the aging is done
+	private DeliveryPredictabilities getDeliveryPreds() {
 		return this.preds;
 	}
 	
-	/**
-	 * Ages all entries in the delivery predictions.
-	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
-	 * time units that have elapsed since the last time the metric was aged.
-	 * @see #SECONDS_IN_UNIT_S
-	 */
-	private void ageDeliveryPreds() {
-		// ͶԤֵ˥
-		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) / 
-				secondsInTimeUnit;
-			
-			if (timeDiff == 0) {
-				return;
-			}
-			
-			double mult = Math.pow(GAMMA, timeDiff);
-			for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-				e.setValue(e.getValue()*mult);
-			}
-			
-			this.lastAgeUpdate = SimClock.getTime();
-	}
-
 	/**************************2019-03-25 09:06޸*****************/
 	@Override 
 	public boolean createNewMessage(Message msg) {
@@ -4,11 +4,15 @@
  */
 package routing;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import routing.util.LazyRoutingInfo;
 import routing.util.RoutingInfo;
+import util.Tuple;
 
 import core.Connection;
 import core.DTNHost;
@@ -147,15 +151,20 @@ public class WaveRouter extends ActiveRouter {
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo ri = super.getRoutingInfo();
-		RoutingInfo immunity = new RoutingInfo("Immune to " + 
-				this.recentMessages.size() + " messages");
-		
-		for (String id : recentMessages.keySet()) {
-			RoutingInfo m = new RoutingInfo(id + " until " + 
-					String.format("%.2f", 
-							recentMessages.get(id) + this.immunityTime));
-			immunity.addMoreInfo(m);
-		}		
+		List<Tuple<String, Double>> immuneUntil =
+			new ArrayList<Tuple<String, Double>>();
+		for (Map.Entry<String, Double> e : recentMessages.entrySet()) {
+			immuneUntil.add(new Tuple<String, Double>(e.getKey(),
+					e.getValue() + immunityTime));
+		}
+		RoutingInfo immunity = new LazyRoutingInfo<Tuple<String, Double>>(
+				"Immune to " + immuneUntil.size() + " messages", immuneUntil) {
+			@Override
+			protected RoutingInfo createInfo(Tuple<String, Double> id) {
+				return new RoutingInfo(id.getKey() + " until " + 
+						String.format("%.2f", id.getValue()));
+			}
+		};
 		ri.addMoreInfo(immunity);
 		
 		return ri;
@@ -1,39 +1,68 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 package routing.maxprop;
 
-import java.util.Collection;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 
+import util.IndexedHeap;
+
 /**
  * Dijkstra's shortest path implementation for MaxProp Router module.
+ * <P>
+ * The graph is read from the meeting probability sets into primitive
+ * arrays indexed by node address. The arrays of a node are rebuilt only
+ * when the node's probability set has been replaced or updated.
+ * </P>
+ * <P>
+ * The state of the latest search is kept. If costs are requested again
+ * from the same node and none of the probability sets that the search has
+ * used so far have changed, the costs of already found nodes are returned
+ * directly and the search is only continued until the rest of the requested
+ * nodes are found.
+ * </P>
  */
 public class MaxPropDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous nodes on the shortest path(s) -- only used for
-	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Initial size of the node indexed arrays */
+	private static final int INIT_CAPACITY = 16;
+	/** Neighbors of a node that doesn't have a probability set */
+	private static final int[] NO_NEIGHBORS = new int[0];
+	private static final double[] NO_DISTANCES = new double[0];
+
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
-	
+
+	/** The probability sets where the nodes' neighbors were read from */
+	private MeetingProbabilitySet[] edgeSources;
+	/** Versions of the sets when the neighbors were read */
+	private int[] edgeVersions;
+	/** Neighbor addresses of the nodes */
+	private int[][] neighbors;
+	/** Distances to the neighbors of the nodes */
+	private double[][] neighborDistances;
+
+	/** Source node of the latest search (-1 = no search) */
+	private int source;
+	/** Number of the latest search */
+	private int search;
+	/** Node distances from the source node (valid if reachedIn == search) */
+	private double[] distancesFromStart;
+	/** Numbers of the searches where the nodes' distances were set */
+	private int[] reachedIn;
+	/** Numbers of the searches where the nodes were visited */
+	private int[] visitedIn;
+	/** Nodes visited in the latest search (where the shortest path is known)*/
+	private int[] visited;
+	private int nrofVisited;
+	/** Priority queue of unvisited nodes discovered so far */
+	private IndexedHeap unvisited;
+
 	/**
 	 * Constructor.
 	 * @param probs A reference to the mapping of the known hosts meeting
@@ -41,184 +70,221 @@ public class MaxPropDijkstra {
 	 */
 	public MaxPropDijkstra(Map<Integer, MeetingProbabilitySet> probs) {
 		this.probs = probs;
+		this.edgeSources = new MeetingProbabilitySet[INIT_CAPACITY];
+		this.edgeVersions = new int[INIT_CAPACITY];
+		this.neighbors = new int[INIT_CAPACITY][];
+		this.neighborDistances = new double[INIT_CAPACITY][];
+		this.distancesFromStart = new double[INIT_CAPACITY];
+		this.reachedIn = new int[INIT_CAPACITY];
+		this.visitedIn = new int[INIT_CAPACITY];
+		this.visited = new int[INIT_CAPACITY];
+		this.unvisited = new IndexedHeap();
+		this.source = -1;
+		this.search = 0;
 	}
 
 	/**
 	 * Initializes a new search with the first hop router node
 	 * @param firstHop The first hop router node
 	 */
-	private void initWith(Integer firstHop) {
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE, 
-				new DistanceComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevNodes = new HashMap<Integer, Integer>();
-		this.distancesFromStart = new DistanceMap();
-		
+	private void initWith(int firstHop) {
+		this.search++;
+		this.source = firstHop;
+		this.nrofVisited = 0;
+		this.unvisited.clear();
+
 		// set distance to source 0 and initialize unvisited queue
-		this.distancesFromStart.put(firstHop, 0);
-		this.unvisited.add(firstHop);
+		setDistance(firstHop, 0);
 	}
-	
+
 	/**
-	 * Calculates total costs to the given set of target nodes. The cost to 
+	 * Calculates total costs to the given set of target nodes. The cost to
 	 * a node is the sum of complements of probabilities that all the links
-	 * come up as the next contact of the nodes. 
+	 * come up as the next contact of the nodes.
 	 * @param from The index (address) of the start node
 	 * @param to The address set of destination nodes
 	 * @return A map of (destination node, cost) tuples
 	 */
 	public Map<Integer, Double> getCosts(Integer from, Set<Integer> to) {
 		Map<Integer, Double> distMap = new HashMap<Integer, Double>();
-		int nrofNodesToFind = to.size();
-		
-		initWith(from);
-		Integer node = null;
-		
+		int nrofNodesToFind = 0;
+
+		if (from != source || inputsChanged()) {
+			initWith(from);
+		}
+
+		for (Integer node : to) {
+			if (isVisited(node)) { // found already in the previous call
+				distMap.put(node, distancesFromStart[node]);
+			}
+			else {
+				nrofNodesToFind++;
+			}
+		}
+
 		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
+		while (nrofNodesToFind > 0 && !unvisited.isEmpty()) {
+			int node = unvisited.poll();
+			visit(node); // mark the node as visited
+			relax(node); // add/update neighbor nodes' distances
+
 			if (to.contains(node)) {
 				// found one of the requested nodes
-				distMap.put(node, distancesFromStart.get(node));
+				distMap.put(node, distancesFromStart[node]);
 				nrofNodesToFind--;
-				if (nrofNodesToFind == 0) {
-					break; // all requested nodes found
-				}
-			} 
-			
-			visited.add(node); // mark the node as visited
-			relax(node);       // add/update neighbor nodes' distances
+			}
 		}
-			
+
 		return distMap;
 	}
-	
+
+	/**
+	 * Returns true if any of the probability sets that the latest search has
+	 * read have been replaced or updated since
+	 * @return true if the latest search can't be continued
+	 */
+	private boolean inputsChanged() {
+		for (int i=0; i<nrofVisited; i++) {
+			if (edgesChanged(visited[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if the neighbors of a node must be (re)read from the
+	 * node's probability set
+	 * @param node The node
+	 * @return true if the read neighbors are not up to date
+	 */
+	private boolean edgesChanged(int node) {
+		MeetingProbabilitySet mps = probs.get(node);
+		return neighbors[node] == null || mps != edgeSources[node] ||
+			(mps != null && mps.getVersion() != edgeVersions[node]);
+	}
+
+	/**
+	 * Reads the neighbors of a node and the distances to them from the
+	 * node's probability set
+	 * @param node The node
+	 */
+	private void readEdges(int node) {
+		MeetingProbabilitySet mps = probs.get(node);
+		edgeSources[node] = mps;
+
+		if (mps == null) { // node's neighbors are not known
+			neighbors[node] = NO_NEIGHBORS;
+			neighborDistances[node] = NO_DISTANCES;
+			return;
+		}
+
+		Map<Integer, Double> nodeProbs = mps.getAllProbs();
+		int[] ns = new int[nodeProbs.size()];
+		double[] ds = new double[ns.length];
+		int i = 0;
+		for (Map.Entry<Integer, Double> e : nodeProbs.entrySet()) {
+			ns[i] = e.getKey();
+			ds[i] = getDistance(e.getValue());
+			i++;
+		}
+
+		edgeVersions[node] = mps.getVersion();
+		neighbors[node] = ns;
+		neighborDistances[node] = ds;
+	}
+
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
 	 * @param node The node whose neighbors are relaxed
 	 */
-	private void relax(Integer node) {
-		double nodeDist = distancesFromStart.get(node);
-		Collection<Integer> neighbors;
-		
-		if (!this.probs.containsKey(node)) {
-			return; // node's neighbors are not known
+	private void relax(int node) {
+		if (edgesChanged(node)) {
+			readEdges(node);
 		}
-		
-		neighbors =	this.probs.get(node).getAllProbs().keySet();
-		
-		for (Integer n : neighbors) {
-			if (visited.contains(n)) {
+
+		double nodeDist = distancesFromStart[node];
+		int[] ns = neighbors[node];
+		double[] ds = neighborDistances[node];
+
+		for (int i=0; i<ns.length; i++) {
+			int n = ns[i];
+			if (isVisited(n)) {
 				continue; // skip visited nodes
 			}
-						
+
 			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
-			
-			if (distancesFromStart.get(n) > nDist) { 
+			double nDist = nodeDist + ds[i];
+
+			if (getDistanceFromStart(n) > nDist) {
 				// stored distance > found dist -> update
-				prevNodes.put(n, node); // for debugging
 				setDistance(n, nDist);
 			}
 		}
 	}
-	
+
+	/**
+	 * Returns the distance of a node from the source node
+	 * @param n The node
+	 * @return The distance or {@link #INFINITY} if the node is not reached
+	 */
+	private double getDistanceFromStart(int n) {
+		if (n < reachedIn.length && reachedIn[n] == search) {
+			return distancesFromStart[n];
+		}
+		return INFINITY;
+	}
+
 	/**
 	 * Sets the distance from source node to a node
 	 * @param n The node whose distance is set
 	 * @param distance The distance of the node from the source node
 	 */
-	private void setDistance(Integer n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distancesFromStart.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private void setDistance(int n, double distance) {
+		ensureCapacity(n);
+		distancesFromStart[n] = distance; // update distance
+		reachedIn[n] = search;
+		unvisited.put(n, distance); // move node to its place in the queue
 	}
-	
-	/**
-	 * Returns the "distance" between two nodes, i.e., the complement of the 
-	 * probability that the next node "from" meets is "to". Works only if there
-	 * exist a probability value for "from" meeting "to". 
-	 * @param from The first node
-	 * @param to The second node
-	 * @return The distance between the two nodes
-	 */
-	private double getDistance(Integer from, Integer to) {
-		assert probs.containsKey(from) : "Node " + from + " has not met " + to +
-			" (it has met nodes " + probs.keySet() + ")";
-		return ( 1 - probs.get(from).getProbFor(to) );
+
+	private boolean isVisited(int n) {
+		return n < visitedIn.length && visitedIn[n] == search;
 	}
-	
+
+	private void visit(int n) {
+		visitedIn[n] = search;
+		if (nrofVisited == visited.length) {
+			visited = Arrays.copyOf(visited, nrofVisited * 2);
+		}
+		visited[nrofVisited++] = n;
+	}
+
 	/**
-	 * Comparator that compares two nodes by their distance from
-	 * the source node.
+	 * Makes sure that the node indexed arrays can hold the given node
+	 * @param n The node
 	 */
-	private class DistanceComparator implements 
-		Comparator<Integer> {
-		
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(Integer node1, Integer node2) {
-			double dist1 = distancesFromStart.get(node1);
-			double dist2 = distancesFromStart.get(node2);
-			
-			if (dist1 > dist2) {
-				return 1;
-			}
-			else if (dist1 < dist2) {
-				return -1;
-			}
-			else {
-				return node1.compareTo(node2);
-			}
+	private void ensureCapacity(int n) {
+		if (n < reachedIn.length) {
+			return;
 		}
+
+		int capacity = Math.max(n + 1, reachedIn.length * 2);
+		edgeSources = Arrays.copyOf(edgeSources, capacity);
+		edgeVersions = Arrays.copyOf(edgeVersions, capacity);
+		neighbors = Arrays.copyOf(neighbors, capacity);
+		neighborDistances = Arrays.copyOf(neighborDistances, capacity);
+		distancesFromStart = Arrays.copyOf(distancesFromStart, capacity);
+		reachedIn = Arrays.copyOf(reachedIn, capacity);
+		visitedIn = Arrays.copyOf(visitedIn, capacity);
 	}
-	
+
 	/**
-	 * Simple Map implementation for storing distances. 
+	 * Returns the "distance" between two nodes, i.e., the complement of the
+	 * probability that the next node "from" meets is "to".
+	 * @param prob The probability that "from" meets "to" next
+	 * @return The distance between the two nodes
 	 */
-	private class DistanceMap {
-		private HashMap<Integer, Double> map;
-		
-		/**
-		 * Constructor. Creates an empty distance map
-		 */
-		public DistanceMap() {
-			this.map = new HashMap<Integer, Double>(); 
-		}
-		
-		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link MaxPropDijkstra#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
-		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
-			}
-			else {
-				return INFINITY;
-			}
-		}
-		
-		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
-		 */
-		public void  put(Integer node, double distance) {
-			map.put(node, distance);
-		}
-		
-		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
-		 */
-		public String toString() {
-			return map.toString();
-		}
+	private double getDistance(double prob) {
+		return ( 1 - prob );
 	}
-}
\ No newline at end of file
+}
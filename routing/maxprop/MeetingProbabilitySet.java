@@ -22,6 +22,8 @@ public class MeetingProbabilitySet {
 	private double lastUpdateTime;
 	/** the alpha parameter */
 	private double alpha;
+	/** number of updates made to the probabilities */
+	private int version;
     private int maxSetSize;
 	
 	/**
@@ -77,6 +79,7 @@ public class MeetingProbabilitySet {
         double smallestValue = Double.MAX_VALUE;
 
 		this.lastUpdateTime = SimClock.getTime();
+		this.version++;
 		
 		if (probs.size() == 0) { // first entry
 			probs.put(index, 1.0);
@@ -105,6 +108,7 @@ public class MeetingProbabilitySet {
 	
 	public void updateMeetingProbFor(Integer index, double iet)	{
 		probs.put(index, iet);
+		this.version++;
 	}
 	
 	/**
@@ -138,6 +142,16 @@ public class MeetingProbabilitySet {
 		return this.lastUpdateTime;
 	}
 	
+	/**
+	 * Returns the number of updates made to the probabilities using the
+	 * update methods. Can be used for checking if the probabilities have
+	 * changed.
+	 * @return the number of updates made to the probabilities
+	 */
+	public int getVersion() {
+		return this.version;
+	}
+	
 	/**
 	 * Enables changing the alpha parameter dynamically
 	 */
@@ -159,6 +173,7 @@ public class MeetingProbabilitySet {
 		}
 		
 		replica.lastUpdateTime = this.lastUpdateTime;
+		replica.version = this.version;
 		return replica;
 	}
 	
@@ -1,48 +1,105 @@
-/* 
+/*
  * Copyright 2010 Aalto University, ComNet
- * Released under GPLv3. See LICENSE.txt for details. 
+ * Released under GPLv3. See LICENSE.txt for details.
  */
 
 package routing.schedule;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+
+import util.IndexedHeap;
 
 /**
- * Dijkstra's shortest path implementation for schedule data
+ * Dijkstra's shortest path (earliest arrival) implementation for schedule
+ * data. Only the fastest connection to each neighbor is considered when
+ * a node is expanded; these are looked up from the search index of the
+ * {@link ScheduleOracle}.
+ * <P>
+ * Optionally the earliest-arrival profiles (the whole search trees) are
+ * cached per source node and departure time bucket. A cached profile that
+ * was calculated for an earlier departure time of the same bucket is used
+ * if its path to the destination departs late enough for the new departure
+ * time (then the path is also the fastest one for the new time).
+ * </P>
  */
 /* TODO: combine this with movement.map.DijkstraPathFinder? */
 public class ScheduleDijkstra {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of the times when one could be at certain node */
-	private TimeMap times;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** Initial size of the node indexed arrays */
+	private static final int INIT_CAPACITY = 16;
+	/** Maximum number of cached profiles */
+	public static final int PROFILE_CACHE_SIZE = 256;
+
+	/** The times when one could be at certain node
+	 * (valid if reachedIn == search) */
+	private double[] times;
+	/** Numbers of the searches where the nodes' times were set */
+	private int[] reachedIn;
+	/** Numbers of the searches where the nodes were visited */
+	private int[] visitedIn;
+	/** Number of the latest search */
+	private int search;
+	/** Nodes visited in the latest search (where the shortest path is known)*/
+	private int[] visited;
+	private int nrofVisited;
 	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
-	/** Map of previous schedule on the shortest path(s) */
-	private Map<Integer, ScheduleEntry> prevHops;
+	private IndexedHeap unvisited;
+	/** Previous schedule on the shortest path(s) */
+	private ScheduleEntry[] prevHops;
 	/** Oracle that know all schedules */
 	private ScheduleOracle oracle;
-	
+
+	/** Size of the profile cache's departure time buckets (0 = no cache) */
+	private double bucketSize;
+	/** Cached profiles mapped by source node and departure time bucket */
+	private Map<Long, Profile> profiles;
+	/** Oracle's modification count when the cached profiles were created */
+	private int profilesModCount;
+	/** Number of paths that were read from the cached profiles */
+	private int nrofCacheHits;
+
 	/**
 	 * Constructor.
 	 * @param oracle The schedule oracle
 	 * all nodes are OK
 	 */
 	public ScheduleDijkstra(ScheduleOracle oracle) {
+		this(oracle, 0);
+	}
+
+	/**
+	 * Constructor for a path finder that caches earliest-arrival profiles
+	 * @param oracle The schedule oracle
+	 * @param bucketSize Length of the departure time buckets of the profile
+	 * cache. Zero disables caching. The cache is cleared when entries are
+	 * added to the oracle or their times are changed (with
+	 * {@link ScheduleEntry#setDelta(double)}).
+	 */
+	@SuppressWarnings("serial")
+	public ScheduleDijkstra(ScheduleOracle oracle, double bucketSize) {
 		this.oracle = oracle;
+		this.bucketSize = bucketSize;
+		this.times = new double[INIT_CAPACITY];
+		this.reachedIn = new int[INIT_CAPACITY];
+		this.visitedIn = new int[INIT_CAPACITY];
+		this.visited = new int[INIT_CAPACITY];
+		this.prevHops = new ScheduleEntry[INIT_CAPACITY];
+		this.unvisited = new IndexedHeap();
+		this.search = 0;
+
+		if (bucketSize > 0) {
+			this.profiles = new LinkedHashMap<Long, Profile>(16, 0.75f, true) {
+				protected boolean removeEldestEntry(
+						Map.Entry<Long, Profile> eldest) {
+					return size() > PROFILE_CACHE_SIZE;
+				}
+			};
+		}
 	}
 
 	/**
@@ -50,17 +107,14 @@ public class ScheduleDijkstra {
 	 * @param node The path's source node
 	 * @param time The time when the path starts
 	 */
-	private void initWith(Integer node, double time) {	
-		this.unvisited = new PriorityQueue<Integer>(PQ_INIT_SIZE, 
-				new DurationComparator());
-		this.visited = new HashSet<Integer>();
-		this.prevHops = new HashMap<Integer, ScheduleEntry>();
-		this.times = new TimeMap();
-		
-		this.times.put(node, time);
-		this.unvisited.add(node);
-	}
-	
+	private void initWith(int node, double time) {
+		this.search++;
+		this.nrofVisited = 0;
+		this.unvisited.clear();
+
+		setTime(node, time);
+	}
+
 	/**
 	 * Finds and returns the fastest path between two destinations
 	 * @param from The source of the path
@@ -69,143 +123,239 @@ public class ScheduleDijkstra {
 	 * @return a shortest path between the source and destination nodes in
 	 * a list of Integers or an empty list if such path is not available
 	 */
-	public List<ScheduleEntry> getShortestPath(Integer from, Integer to, 
+	public List<ScheduleEntry> getShortestPath(Integer from, Integer to,
 			double time){
-		List<ScheduleEntry> path = new ArrayList<ScheduleEntry>();		
 		assert time >= 0.0 : "Can't use negative start time";
-		
-		if (from.compareTo(to) == 0) { 
-			return path;
+
+		if (from.compareTo(to) == 0) {
+			return new ArrayList<ScheduleEntry>();
 		}
-		
-		initWith(from, time);
-		Integer node = null;
-		
-		while ((node = unvisited.poll()) != null) {
-			if (node.equals(to)) {
-				break; 
+
+		if (profiles != null) {
+			return getCachedPath(from, to, time);
+		}
+
+		search(from, time, to);
+		if (!isReached(to)) {
+			return new ArrayList<ScheduleEntry>();
+		}
+		return buildPath(from, to, prevHops);
+	}
+
+	/**
+	 * Returns the fastest path using the profile cache. If the cached
+	 * profile of the source and departure time bucket can't be used, a new
+	 * profile is calculated and cached.
+	 * @param from The source of the path
+	 * @param to The destination of the path
+	 * @param time The time when the path starts
+	 * @return The fastest path or an empty list if there is no path
+	 */
+	private List<ScheduleEntry> getCachedPath(int from, int to, double time) {
+		if (profilesModCount != oracle.getModCount()) {
+			profiles.clear(); // schedules have changed
+			profilesModCount = oracle.getModCount();
+		}
+
+		long bucket = (long)Math.floor(time / bucketSize);
+		Long key = (((long)from) << 32) | (bucket & 0xFFFFFFFFL);
+		Profile p = profiles.get(key);
+		if (p != null && p.departure <= time) {
+			List<ScheduleEntry> path = p.getPath(to);
+			/* no path for an earlier departure -> no path now either;
+			 * a path departing late enough is still the fastest one */
+			if (path.size() == 0 || path.get(0).getTime() >= time) {
+				nrofCacheHits++;
+				return path;
 			}
-			
-			visited.add(node); 
-			relax(node); 
-		}		
-
-		if (node != null) { // found a path
-			ScheduleEntry prev = prevHops.get(to); 
-			while (prev.getFrom() != from) { 
-				path.add(0, prev);
-				prev = prevHops.get(prev.getFrom());
+		}
+
+		p = new Profile(from, time);
+		profiles.put(key, p);
+		return p.getPath(to);
+	}
+
+	/**
+	 * Returns the number of paths that were read from the cached
+	 * earliest-arrival profiles
+	 * @return The number of profile cache hits
+	 */
+	public int getNrofCacheHits() {
+		return nrofCacheHits;
+	}
+
+	/**
+	 * Runs a search
+	 * @param from The source node
+	 * @param time The time when the path starts
+	 * @param to The destination node or -1 to find paths to all nodes
+	 */
+	private void search(int from, double time, int to) {
+		initWith(from, time);
+
+		while (!unvisited.isEmpty()) {
+			int node = unvisited.poll();
+			if (node == to) {
+				break;
 			}
-			
+
+			visit(node);
+			relax(node);
+		}
+	}
+
+	/**
+	 * Builds the path from the previous hops of the nodes
+	 * @param from The source node
+	 * @param to The destination node
+	 * @param hops The previous hops of the nodes
+	 * @return The path or an empty list if the destination wasn't reached
+	 */
+	private List<ScheduleEntry> buildPath(int from, int to,
+			ScheduleEntry[] hops) {
+		List<ScheduleEntry> path = new ArrayList<ScheduleEntry>();
+		if (to >= hops.length || hops[to] == null) {
+			return path;
+		}
+
+		ScheduleEntry prev = hops[to];
+		while (prev.getFrom() != from) {
 			path.add(0, prev);
+			prev = hops[prev.getFrom()];
 		}
-		
+		path.add(0, prev);
+
 		return path;
 	}
-	
+
 	/**
 	 * Relaxes the neighbors of a node (updates the shortest distances).
 	 * @param node The node whose neighbors are relaxed
 	 */
-	private void relax(Integer node) {
-		double timeNow = times.get(node);
-		int to;
-		double timeTo;
-		
-		for (ScheduleEntry se : oracle.getConnected(node, timeNow)) {
-			to = se.getTo();
-			if (visited.contains(to)) {
+	private void relax(int node) {
+		ScheduleOracle.HostIndex index = oracle.getIndex(node);
+		if (index == null) {
+			return; // no connections from the node
+		}
+
+		double timeNow = times[node];
+
+		for (int i=0, n=index.getNrofDestinations(); i<n; i++) {
+			int to = index.getDestination(i);
+			if (isVisited(to)) {
 				continue; // skip visited nodes
 			}
-			
-			timeTo = se.getTime() +  se.getDuration();
-			
-			if (timeTo < times.get(to)) {
-				prevHops.put(to, se);
+
+			ScheduleEntry se = index.getFastest(i, timeNow);
+			if (se == null) {
+				continue; // no connection after current time
+			}
+
+			double timeTo = se.getTime() +  se.getDuration();
+
+			if (timeTo < getTime(to)) {
 				setTime(to, timeTo);
+				prevHops[to] = se;
 			}
 		}
 	}
-	
+
+	/**
+	 * Returns the currently known smallest time one has a path for to the
+	 * given node
+	 * @param n The node
+	 * @return The time or {@link #INFINITY} if the node is not reached yet
+	 */
+	private double getTime(int n) {
+		return isReached(n) ? times[n] : INFINITY;
+	}
+
 	/**
 	 * Sets the time when at a node
 	 * @param n The node whose time is set
 	 * @param time The time when at given node
 	 */
-	private void setTime(Integer n, double time) {
-		unvisited.remove(n);
-		times.put(n, time); 
-		unvisited.add(n);
+	private void setTime(int n, double time) {
+		ensureCapacity(n);
+		times[n] = time;
+		reachedIn[n] = search;
+		unvisited.put(n, time);
+	}
+
+	private boolean isReached(int n) {
+		return n < reachedIn.length && reachedIn[n] == search;
+	}
+
+	private boolean isVisited(int n) {
+		return n < visitedIn.length && visitedIn[n] == search;
+	}
+
+	private void visit(int n) {
+		visitedIn[n] = search;
+		if (nrofVisited == visited.length) {
+			visited = Arrays.copyOf(visited, nrofVisited * 2);
+		}
+		visited[nrofVisited++] = n;
 	}
-	
+
 	/**
-	 * Comparator that compares two nodes by their journey duration
+	 * Makes sure that the node indexed arrays can hold the given node
+	 * @param n The node
 	 */
-	private class DurationComparator implements Comparator<Integer> {
-		
-		/**
-		 * Compares two nodes by their time to get there 
-		 * @return -1, 0 or 1 if node1's time is smaller, equal to, or
-		 * bigger than node2's
-		 */
-		public int compare(Integer node1, Integer node2) {
-			double time1 = times.get(node1);
-			double time2 = times.get(node2);
-			
-			if (time1 > time2) {
-				return 1;
-			}
-			else if (time1 < time2) {
-				return -1;
-			}
-			else {
-				return 0;
-			}
+	private void ensureCapacity(int n) {
+		if (n < reachedIn.length) {
+			return;
 		}
+
+		int capacity = Math.max(n + 1, reachedIn.length * 2);
+		times = Arrays.copyOf(times, capacity);
+		reachedIn = Arrays.copyOf(reachedIn, capacity);
+		visitedIn = Arrays.copyOf(visitedIn, capacity);
+		prevHops = Arrays.copyOf(prevHops, capacity);
 	}
-	
-	private class TimeMap {
-		private HashMap<Integer, Double> map;
-		
-		/**
-		 * Constructor. Creates an empty map
-		 */
-		public TimeMap() {
-			this.map = new HashMap<Integer, Double>(); 
-		}
-		
+
+	/**
+	 * Earliest-arrival profile: the fastest paths from a source node to all
+	 * reachable nodes for a departure time
+	 */
+	private class Profile {
+		/** the departure time the profile was calculated for */
+		private double departure;
+		/** the source node */
+		private int source;
+		/** the previous hops of the reachable nodes' paths */
+		private ScheduleEntry[] hops;
+
 		/**
-		 * Returns the currently known smallest time one has a path for to the
-		 * given node. If no time value is found, returns 
-		 * {@link ScheduleDijkstra#INFINITY} as the value.
-		 * @param node The node whose time is requested
-		 * @return The time when one could be at that node
+		 * Calculates a new profile
+		 * @param from The source node
+		 * @param time The departure time
 		 */
-		public double get(Integer node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+		private Profile(int from, double time) {
+			this.source = from;
+			this.departure = time;
+			search(from, time, -1);
+
+			int size = 0;
+			for (int i=0; i<nrofVisited; i++) {
+				size = Math.max(size, visited[i] + 1);
 			}
-			else {
-				return INFINITY;
+			this.hops = new ScheduleEntry[size];
+			for (int i=0; i<nrofVisited; i++) {
+				int node = visited[i];
+				if (node != from) {
+					hops[node] = prevHops[node];
+				}
 			}
 		}
-		
-		/**
-		 * Puts a new time value for a node
-		 * @param node The node
-		 * @param time Time at that node
-		 */
-		public void put(Integer node, double time) {
-			map.put(node, time);
-		}
-		
+
 		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
+		 * Returns the path to a destination
+		 * @param to The destination node
+		 * @return The path or an empty list if there's no path
 		 */
-		public String toString() {
-			return map.toString();
+		private List<ScheduleEntry> getPath(int to) {
+			return buildPath(source, to, hops);
 		}
 	}
-}
\ No newline at end of file
+}
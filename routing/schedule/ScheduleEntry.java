@@ -16,6 +16,8 @@ public class ScheduleEntry implements Serializable {
 	private double delta;
 	private double duration;
 	private int usageCount;
+	/** the oracle whose entry this is (or null) */
+	private transient ScheduleOracle oracle;
 	
 	/**
 	 * Constructor of new schedule entry
@@ -89,6 +91,17 @@ public class ScheduleEntry implements Serializable {
 	 */
 	public void setDelta(double delta) {
 		this.delta = delta;
+		if (oracle != null) {
+			oracle.entryChanged(this);
+		}
+	}
+
+	/**
+	 * Sets the oracle that is told when the time of this entry changes
+	 * @param oracle The oracle
+	 */
+	void setOracle(ScheduleOracle oracle) {
+		this.oracle = oracle;
 	}
 
 	/**
@@ -4,9 +4,14 @@
  */
 package routing.schedule;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -14,6 +19,10 @@ public class ScheduleOracle implements Serializable{
 	private static final long serialVersionUID = 42L;
 	
 	Map<Integer, List<ScheduleEntry>> schedules;
+	/** search indices of the hosts' entries (built when needed) */
+	private transient Map<Integer, HostIndex> indices;
+	/** number of changes made to the entries */
+	private transient int modCount;
 	
 	public ScheduleOracle() {
 		this.schedules = new HashMap<Integer, List<ScheduleEntry>>();
@@ -36,7 +45,54 @@ public class ScheduleOracle implements Serializable{
 			schedules.put(from, list);
 		}
 
-		list.add(new ScheduleEntry(start, from, via, to, duration));
+		ScheduleEntry se = new ScheduleEntry(start, from, via, to, duration);
+		se.setOracle(this);
+		list.add(se);
+		entryChanged(se);
+	}
+	
+	/**
+	 * Should be called when an entry is added or its time changes. Drops
+	 * the index of the entry's source node and counts the change.
+	 * @param se The entry
+	 */
+	void entryChanged(ScheduleEntry se) {
+		if (indices != null) {
+			indices.remove(se.getFrom());
+		}
+		modCount++;
+	}
+	
+	/**
+	 * Returns the number of changes (added entries and changed entry times)
+	 * made to the schedules. Can be used for checking if results calculated
+	 * from the schedules are still valid.
+	 * @return the number of changes made to the schedules
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+	
+	/**
+	 * Returns the search index of a node's entries
+	 * @param from The source node
+	 * @return The index or null if the node has no entries
+	 */
+	HostIndex getIndex(int from) {
+		if (indices == null) {
+			indices = new HashMap<Integer, HostIndex>();
+		}
+		
+		HostIndex index = indices.get(from);
+		if (index == null) {
+			List<ScheduleEntry> all = schedules.get(from);
+			if (all == null) {
+				return null;
+			}
+			index = new HostIndex(all);
+			indices.put(from, index);
+		}
+		return index;
 	}
 
 	/**
@@ -55,23 +111,16 @@ public class ScheduleOracle implements Serializable{
 	 * from the given node
 	 * @param from The source node
 	 * @param time Time to start
-	 * @return List of reachable nodes 
+	 * @return List of reachable nodes (sorted by the start time)
 	 */
 	public List<ScheduleEntry> getConnected(int from, double time) {
-		List<ScheduleEntry> connected = new ArrayList<ScheduleEntry>();
-		List<ScheduleEntry> all = schedules.get(from);
+		HostIndex index = getIndex(from);
 
-		if (all == null) {
-			return connected;
-		}
-		
-		for (ScheduleEntry s : all) {
-			if (s.getTime() >= time) {
-				connected.add(s);
-			}
+		if (index == null) {
+			return new ArrayList<ScheduleEntry>();
 		}
 		
-		return connected;
+		return index.getConnected(time);
 	}
 	
 	/**
@@ -88,4 +137,169 @@ public class ScheduleOracle implements Serializable{
 		
 		return entries;
 	}
+	
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (List<ScheduleEntry> list : schedules.values()) {
+			for (ScheduleEntry se : list) {
+				se.setOracle(this);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the index of the first value that is equal to or bigger than
+	 * the given value in a sorted array
+	 * @param values The sorted values
+	 * @param value The value to look for
+	 * @return The index (values.length if all values are smaller)
+	 */
+	private static int lowerBound(double[] values, double value) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < value) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Search index of the schedule entries of one node. The entries are
+	 * sorted by their start time. For each destination, the entry with the
+	 * earliest arrival among the entries that start at or after each start
+	 * time is precomputed, so the fastest connection to a destination after
+	 * any time is found with a binary search.
+	 */
+	static class HostIndex {
+		/** all entries sorted by start time */
+		private ScheduleEntry[] entries;
+		/** start times of the sorted entries */
+		private double[] startTimes;
+		/** destinations of the entries */
+		private int[] destinations;
+		/** sorted start times of the entries to each destination */
+		private double[][] destStartTimes;
+		/** for each destination and start time, the entry starting at or
+		 * after that time that arrives first (first added on ties) */
+		private ScheduleEntry[][] fastestAfter;
+		
+		/**
+		 * Creates an index of the entries
+		 * @param all The entries in the order they were added
+		 */
+		private HostIndex(final List<ScheduleEntry> all) {
+			int n = all.size();
+			Integer[] order = new Integer[n];
+			for (int i=0; i<n; i++) {
+				order[i] = i;
+			}
+			/* stable sort -> entries with the same time keep their order */
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer i1, Integer i2) {
+					return Double.compare(all.get(i1).getTime(), 
+							all.get(i2).getTime());
+				}
+			});
+			
+			entries = new ScheduleEntry[n];
+			startTimes = new double[n];
+			Map<Integer, List<Integer>> byDest = 
+				new LinkedHashMap<Integer, List<Integer>>();
+			for (int i=0; i<n; i++) {
+				ScheduleEntry se = all.get(order[i]);
+				entries[i] = se;
+				startTimes[i] = se.getTime();
+				List<Integer> destOrder = byDest.get(se.getTo());
+				if (destOrder == null) {
+					destOrder = new ArrayList<Integer>();
+					byDest.put(se.getTo(), destOrder);
+				}
+				destOrder.add(order[i]);
+			}
+			
+			destinations = new int[byDest.size()];
+			destStartTimes = new double[destinations.length][];
+			fastestAfter = new ScheduleEntry[destinations.length][];
+			int d = 0;
+			for (Map.Entry<Integer, List<Integer>> e : byDest.entrySet()) {
+				List<Integer> destOrder = e.getValue();
+				int m = destOrder.size();
+				double[] starts = new double[m];
+				ScheduleEntry[] fastest = new ScheduleEntry[m];
+				int fastestIndex = -1;
+				
+				for (int i = m - 1; i >= 0; i--) {
+					int index = destOrder.get(i);
+					ScheduleEntry se = all.get(index);
+					starts[i] = se.getTime();
+					if (fastestIndex < 0 || isFaster(se, index, 
+							all.get(fastestIndex), fastestIndex)) {
+						fastestIndex = index;
+					}
+					fastest[i] = all.get(fastestIndex);
+				}
+				
+				destinations[d] = e.getKey();
+				destStartTimes[d] = starts;
+				fastestAfter[d] = fastest;
+				d++;
+			}
+		}
+		
+		private static boolean isFaster(ScheduleEntry se1, int index1, 
+				ScheduleEntry se2, int index2) {
+			double arrival1 = se1.getDestinationTime();
+			double arrival2 = se2.getDestinationTime();
+			return arrival1 < arrival2 || 
+				(arrival1 == arrival2 && index1 < index2);
+		}
+		
+		/**
+		 * Returns the entries that start at or after the given time
+		 * @param time The time
+		 * @return The entries sorted by the start time
+		 */
+		List<ScheduleEntry> getConnected(double time) {
+			int first = lowerBound(startTimes, time);
+			return new ArrayList<ScheduleEntry>(
+					Arrays.asList(entries).subList(first, entries.length));
+		}
+		
+		/**
+		 * Returns the number of destinations of the entries
+		 * @return the number of destinations of the entries
+		 */
+		int getNrofDestinations() {
+			return destinations.length;
+		}
+		
+		/**
+		 * Returns a destination of the entries
+		 * @param i Index of the destination (0...getNrofDestinations()-1)
+		 * @return The destination
+		 */
+		int getDestination(int i) {
+			return destinations[i];
+		}
+		
+		/**
+		 * Returns the entry to a destination that arrives first of the
+		 * entries that start at or after the given time 
+		 * @param i Index of the destination (0...getNrofDestinations()-1)
+		 * @param time The earliest start time
+		 * @return The entry or null if no entry starts late enough
+		 */
+		ScheduleEntry getFastest(int i, double time) {
+			int first = lowerBound(destStartTimes[i], time);
+			return (first < fastestAfter[i].length ? 
+					fastestAfter[i][first] : null);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,1026 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Delivery predictability table for the PRoPHET family of routers.
+ * <P>
+ * The predictabilities are stored in primitive arrays, one slot per known
+ * host. Slots are found by host address either directly from an address
+ * indexed array (small networks) or from an open addressing hash table
+ * (when addresses grow beyond {@link #DENSE_LIMIT}).
+ * </P>
+ * <P>
+ * Aging is lazy: every slot remembers when it was last aged and
+ * <CODE>P = P_old * (GAMMA ^ k)</CODE>, where k is the number of time units
+ * since then, is applied only when the value is read. The result is the
+ * same as aging all values every time, except for rounding. Scaling all
+ * values (see {@link #scaleAll(double)}) is lazy too: the stored values are
+ * multiplied with a common multiplier when they're read, and scaling to zero
+ * only marks the current values as zeroed.
+ * </P>
+ * <P>
+ * Optionally the table can be limited (see {@link #setLimits(int, int)}).
+ * With an exchange limit, a transitive update reads only the peer's top-k
+ * values and the values that the peer has changed since the previous update
+ * from the same peer (every change is stamped with a version number and the
+ * last seen version of each peer is remembered). With a size limit, the
+ * smallest value is evicted when the table grows beyond the limit.
+ * </P>
+ * <P>
+ * Since all values age with the same rate, the order of the values changes
+ * only when a value is changed. The limited tables keep the top-k values in
+ * a bounded min-heap and all values in a min-heap (for eviction), both 
+ * ordered by a time independent rank of the values, and the changed slots 
+ * in a list ordered by version. A change costs O(log n) and a limited 
+ * exchange reads only the top-k and the changed values.
+ * </P>
+ */
+public class DeliveryPredictabilities {
+	/** Largest address (exclusive) that is indexed with an address indexed
+	 * array. Bigger addresses switch the table to hashed indexing. */
+	public static final int DENSE_LIMIT = 1024;
+	/** Initial number of slots */
+	private static final int INIT_CAPACITY = 16;
+	/** Smallest common multiplier of the values. When the multiplier gets
+	 * smaller, it's applied to the stored values. */
+	private static final double MIN_SCALE = 1e-100;
+
+	/** aging constant */
+	private double gamma;
+	/** number of seconds in one aging time unit */
+	private double secondsInTimeUnit;
+
+	/** number of used slots */
+	private int size;
+	/** the hosts of the slots */
+	private DTNHost[] hosts;
+	/** the (possibly not yet aged) predictabilities of the slots */
+	private double[] values;
+	/** times when the values of the slots were last aged */
+	private double[] agedAt;
+	/** versions of the last changes of the slots */
+	private long[] versions;
+	/** version of the latest change in the table */
+	private long version;
+	/** multiplier of all stored values (see {@link #scaleAll(double)}) */
+	private double scale;
+	/** the values of the slots whose version is not newer than this have
+	 * been scaled to zero */
+	private long zeroedVersion;
+
+	/** how many top values are always shared in an exchange (0 = all) */
+	private int exchangeTopK;
+	/** maximum number of slots (0 = no limit) */
+	private int maxSize;
+	/** peer's address -> version of the peer's table at the last exchange */
+	private Map<Integer, Long> peerVersions;
+
+	/** time independent ranks of the slots' values (null if the table is
+	 * not limited). The rank is <CODE>log(P)</CODE> at time zero, so it 
+	 * doesn't change when the value is aged. */
+	private double[] ranks;
+	/** offset of the ranks caused by scaling all values */
+	private double rankOffset;
+	/** slots with the exchangeTopK biggest values (if exchange limited) */
+	private SlotHeap top;
+	/** all slots, smallest value first (if size limited) */
+	private SlotHeap smallest;
+	/** the slot with the latest change (if exchange limited) */
+	private int newest;
+	/** the slot changed previously before each slot (-1 = none) */
+	private int[] older;
+	/** the slot changed next after each slot (-1 = none) */
+	private int[] newer;
+
+	/** address -> slot + 1 (0 = no slot) in dense mode, null in hash mode */
+	private int[] denseIndex;
+	/** hash table of addresses in hash mode (null in dense mode) */
+	private int[] hashKeys;
+	/** slot + 1 of each address in hashKeys (0 = empty bucket) */
+	private int[] hashSlots;
+
+	/** aging time and multiplier of the last aging (cached for reuse) */
+	private double cachedAgedAt = Double.NaN;
+	private double cachedNow = Double.NaN;
+	private double cachedMult;
+
+	/**
+	 * Creates a new, empty, predictability table
+	 * @param gamma The aging constant
+	 * @param secondsInTimeUnit How many seconds one aging time unit is
+	 */
+	public DeliveryPredictabilities(double gamma, double secondsInTimeUnit) {
+		this.gamma = gamma;
+		this.secondsInTimeUnit = secondsInTimeUnit;
+		this.hosts = new DTNHost[INIT_CAPACITY];
+		this.values = new double[INIT_CAPACITY];
+		this.agedAt = new double[INIT_CAPACITY];
+		this.versions = new long[INIT_CAPACITY];
+		this.denseIndex = new int[INIT_CAPACITY];
+		this.size = 0;
+		this.version = 0;
+		this.scale = 1;
+		this.zeroedVersion = -1;
+	}
+
+	/**
+	 * Sets the exchange and size limits of the table
+	 * @param exchangeTopK How many of the biggest values other tables read
+	 * from this table in a transitive update in addition to the values that
+	 * have changed since their previous update from this table. Zero (the
+	 * default) means that all values are read every time.
+	 * @param maxSize Maximum number of values in the table or zero (the
+	 * default) for no limit. The smallest values are evicted first.
+	 */
+	public void setLimits(int exchangeTopK, int maxSize) {
+		this.exchangeTopK = exchangeTopK;
+		this.maxSize = maxSize;
+		this.top = null;
+		this.smallest = null;
+		this.older = null;
+		this.newer = null;
+		if (exchangeTopK <= 0 && maxSize <= 0) {
+			this.ranks = null;
+			return;
+		}
+
+		int capacity = hosts.length;
+		this.ranks = new double[capacity];
+		if (exchangeTopK > 0) {
+			this.top = new SlotHeap(capacity);
+			this.older = new int[capacity];
+			this.newer = new int[capacity];
+			/* link the slots in the order of their versions */
+			Integer[] byVersion = new Integer[size];
+			for (int i=0; i<size; i++) {
+				byVersion[i] = i;
+			}
+			Arrays.sort(byVersion, new Comparator<Integer>() {
+				public int compare(Integer s1, Integer s2) {
+					return Long.compare(versions[s1], versions[s2]);
+				}
+			});
+			this.newest = -1;
+			for (Integer slot : byVersion) {
+				linkAsNewest(slot);
+			}
+		}
+		if (maxSize > 0) {
+			this.smallest = new SlotHeap(capacity);
+		}
+		reorder();
+		trim();
+	}
+
+	/**
+	 * Sets the aging constant. All values are first aged with the old
+	 * constant up to the current time.
+	 * @param gamma The new aging constant
+	 */
+	public void setGamma(double gamma) {
+		if (gamma != this.gamma) {
+			ageAll();
+			this.gamma = gamma;
+			this.cachedAgedAt = Double.NaN;
+			if (ranks != null) {
+				reorder(); /* ranks depend on the aging constant */
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of hosts that have a predictability value
+	 * @return the number of hosts that have a predictability value
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the host of a slot
+	 * @param slot Index of the slot (0...size()-1)
+	 * @return The host of the slot
+	 */
+	public DTNHost getHost(int slot) {
+		return hosts[slot];
+	}
+
+	/**
+	 * Returns the current (aged) predictability of a slot
+	 * @param slot Index of the slot (0...size()-1)
+	 * @return The predictability of the slot's host
+	 */
+	public double getValue(int slot) {
+		age(slot, SimClock.getTime());
+		return values[slot] * scale;
+	}
+
+	/**
+	 * Returns the current predictability for a host or 0 if the host doesn't
+	 * have a value
+	 * @param host The host to look the predictability for
+	 * @return the current predictability
+	 */
+	public double get(DTNHost host) {
+		int slot = findSlot(host.getAddress());
+		if (slot < 0) {
+			return 0;
+		}
+		age(slot, SimClock.getTime());
+		return values[slot] * scale;
+	}
+
+	/**
+	 * Returns a copy of the current predictabilities. Unlike the other
+	 * getters, this doesn't age the stored values, so it doesn't change the
+	 * table (e.g., when it's read for a user interface).
+	 * @return (host, current predictability) tuples in the slot order
+	 */
+	public List<Tuple<DTNHost, Double>> getAll() {
+		double now = SimClock.getTime();
+		List<Tuple<DTNHost, Double>> all =
+			new ArrayList<Tuple<DTNHost, Double>>(size);
+		for (int i=0; i<size; i++) {
+			double value = stored(i) * scale * Math.pow(gamma,
+					(now - agedAt[i]) / secondsInTimeUnit);
+			all.add(new Tuple<DTNHost, Double>(hosts[i], value));
+		}
+		return all;
+	}
+
+	/**
+	 * Sets the predictability of a host
+	 * @param host The host whose predictability is set
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int slot = getOrCreateSlot(host);
+		values[slot] = value / scale;
+		agedAt[slot] = SimClock.getTime();
+		changed(slot);
+		trim();
+	}
+
+	/**
+	 * Updates the predictability of an encountered host.
+	 * <CODE>P(a,b) = P(a,b)_old + (1 - P(a,b)_old) * pEnc</CODE>
+	 * @param host The encountered host
+	 * @param pEnc The encounter predictability (e.g. P_INIT)
+	 * @return The new predictability of the host
+	 */
+	public double encounter(DTNHost host, double pEnc) {
+		double now = SimClock.getTime();
+		int slot = getOrCreateSlot(host);
+		age(slot, now);
+		double oldValue = values[slot] * scale;
+		double newValue = oldValue + (1 - oldValue) * pEnc;
+		values[slot] = newValue / scale;
+		changed(slot);
+		trim();
+		return newValue;
+	}
+
+	/**
+	 * Updates transitive (A->B->C) delivery predictions.
+	 * <CODE>P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * beta
+	 * </CODE>
+	 * @param self The A host (whose predictability is not updated)
+	 * @param pForHost P(a,b)
+	 * @param others The predictabilities of the B host
+	 * @param beta Transitivity scaling constant
+	 */
+	public void updateTransitive(DTNHost self, double pForHost,
+			DeliveryPredictabilities others, double beta) {
+		updateTransitive(self, null, pForHost, others, beta, false);
+	}
+
+	/**
+	 * Updates transitive (A->B->C) delivery predictions from the values of
+	 * the B host that are shared with this table. If the B host's table has
+	 * an exchange limit, only its top values and the values that it has
+	 * changed since the previous update from the same host are used.
+	 * <CODE>P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * beta
+	 * </CODE>
+	 * @param self The A host (whose predictability is not updated)
+	 * @param peer The B host
+	 * @param pForHost P(a,b)
+	 * @param others The predictabilities of the B host
+	 * @param beta Transitivity scaling constant
+	 */
+	public void updateTransitive(DTNHost self, DTNHost peer, double pForHost,
+			DeliveryPredictabilities others, double beta) {
+		updateTransitive(self, peer, pForHost, others, beta, false);
+	}
+
+	/**
+	 * Updates transitive (A->B->C) delivery predictions like PRoPHETv2.
+	 * <CODE>P(a,c) = max(P(a,c)_old, P(a,b) * P(b,c) * beta)</CODE>
+	 * @param self The A host (whose predictability is not updated)
+	 * @param pForHost P(a,b)
+	 * @param others The predictabilities of the B host
+	 * @param beta Transitivity scaling constant
+	 */
+	public void updateTransitiveMax(DTNHost self, double pForHost,
+			DeliveryPredictabilities others, double beta) {
+		updateTransitive(self, null, pForHost, others, beta, true);
+	}
+
+	private void updateTransitive(DTNHost self, DTNHost peer, double pForHost,
+			DeliveryPredictabilities others, double beta, boolean max) {
+		double now = SimClock.getTime();
+
+		if (others.exchangeTopK <= 0) {
+			for (int i=0, n=others.size; i<n; i++) {
+				updateTransitive(self, others, i, now, pForHost, beta, max);
+			}
+			return;
+		}
+
+		long since = Long.MAX_VALUE; // first exchange: only the top values
+		if (peer != null) {
+			Long seen = lastSeenVersion(peer.getAddress());
+			if (seen != null) {
+				since = seen;
+			}
+			peerVersions.put(peer.getAddress(), others.version);
+		}
+
+		SlotHeap othersTop = others.top;
+		for (int i=0, n=othersTop.size; i<n; i++) {
+			updateTransitive(self, others, othersTop.heap[i], now, pForHost,
+					beta, max);
+		}
+		/* values changed after the previous exchange, newest first */
+		for (int s = others.newest; s >= 0 && others.versions[s] > since;
+				s = others.older[s]) {
+			if (!othersTop.contains(s)) {
+				updateTransitive(self, others, s, now, pForHost, beta, max);
+			}
+		}
+	}
+
+	/**
+	 * Updates the transitive predictability of the host of one of the B
+	 * host's slots
+	 * @param self The A host (whose predictability is not updated)
+	 * @param others The predictabilities of the B host
+	 * @param otherSlot The slot in the B host's table
+	 * @param now The current time
+	 * @param pForHost P(a,b)
+	 * @param beta Transitivity scaling constant
+	 * @param max Use the PRoPHETv2 (max) rule
+	 */
+	private void updateTransitive(DTNHost self, DeliveryPredictabilities 
+			others, int otherSlot, double now, double pForHost, double beta,
+			boolean max) {
+		DTNHost c = others.hosts[otherSlot];
+		if (c == self) {
+			return; // don't add yourself
+		}
+		others.age(otherSlot, now);
+		double pOther = others.values[otherSlot] * others.scale;
+
+		int slot = findSlot(c.getAddress());
+		double pOld = 0;
+		if (slot >= 0) {
+			age(slot, now);
+			pOld = values[slot] * scale;
+		}
+
+		double pNew;
+		if (max) {
+			pNew = pForHost * pOther * beta;
+			if (pNew <= pOld) {
+				return;
+			}
+		}
+		else {
+			pNew = pOld + (1 - pOld) * pForHost * pOther * beta;
+		}
+
+		if (slot < 0) {
+			slot = createSlot(c);
+		}
+		values[slot] = pNew / scale;
+		changed(slot);
+		trim();
+	}
+
+	/**
+	 * Returns the version of the given peer's table at the previous exchange
+	 * @param address Address of the peer
+	 * @return The version or null if there has not been an exchange
+	 */
+	private Long lastSeenVersion(int address) {
+		if (peerVersions == null) {
+			peerVersions = new HashMap<Integer, Long>();
+		}
+		return peerVersions.get(address);
+	}
+
+	/**
+	 * Stamps a slot whose value was changed with a new version and updates
+	 * the order of the slots (if the table is limited)
+	 * @param slot The changed slot
+	 */
+	private void changed(int slot) {
+		boolean isNew = (versions[slot] == 0);
+		versions[slot] = ++version;
+		if (ranks == null) {
+			return;
+		}
+
+		double oldRank = ranks[slot];
+		ranks[slot] = rankOf(slot);
+		if (smallest != null) {
+			if (isNew) {
+				smallest.add(slot);
+			} else {
+				smallest.update(slot);
+			}
+		}
+		if (top != null) {
+			if (!isNew) {
+				unlink(slot);
+			}
+			linkAsNewest(slot);
+			if (!top.contains(slot)) {
+				offerTop(slot);
+			}
+			else if (ranks[slot] < oldRank && size > top.size) {
+				/* some other value may be bigger now */
+				top.remove(slot);
+				refillTop();
+			}
+			else {
+				top.update(slot);
+			}
+		}
+	}
+
+	/**
+	 * Returns the time independent rank of a slot's value
+	 * @param slot The slot
+	 * @return The rank
+	 */
+	private double rankOf(int slot) {
+		return Math.log(stored(slot) * scale) - agedAt[slot] * 
+			(Math.log(gamma) / secondsInTimeUnit) - rankOffset;
+	}
+
+	/**
+	 * Returns true if the value of slot a is ranked below the value of
+	 * slot b. Equal values are ordered by their versions.
+	 */
+	private boolean isBelow(int a, int b) {
+		return ranks[a] < ranks[b] || 
+			(ranks[a] == ranks[b] && versions[a] < versions[b]);
+	}
+
+	/**
+	 * Adds a slot that is not in the top values to them if it belongs there
+	 * @param slot The slot
+	 */
+	private void offerTop(int slot) {
+		if (top.size < exchangeTopK) {
+			top.add(slot);
+		}
+		else if (isBelow(top.min(), slot)) {
+			top.remove(top.min());
+			top.add(slot);
+		}
+	}
+
+	/**
+	 * Adds the biggest value that is not in the top values to them. 
+	 * Needed only when a top value gets smaller or is removed, which
+	 * doesn't happen with the normal PRoPHET updates, so a linear search
+	 * is used.
+	 */
+	private void refillTop() {
+		int best = -1;
+		for (int i=0; i<size; i++) {
+			if (!top.contains(i) && (best < 0 || isBelow(best, i))) {
+				best = i;
+			}
+		}
+		if (best >= 0) {
+			top.add(best);
+		}
+	}
+
+	/**
+	 * Recomputes the ranks of all slots and rebuilds the heaps
+	 */
+	private void reorder() {
+		rankOffset = 0;
+		if (top != null) {
+			top.clear();
+		}
+		if (smallest != null) {
+			smallest.clear();
+		}
+		for (int i=0; i<size; i++) {
+			ranks[i] = rankOf(i);
+			if (smallest != null) {
+				smallest.add(i);
+			}
+			if (top != null) {
+				offerTop(i);
+			}
+		}
+	}
+
+	/**
+	 * Evicts the smallest values if the table has more values than its
+	 * size limit allows
+	 */
+	private void trim() {
+		while (maxSize > 0 && size > maxSize) {
+			removeSlot(smallest.min());
+		}
+	}
+
+	/**
+	 * Removes a slot. The last slot is moved in its place.
+	 * @param slot The slot to remove
+	 */
+	private void removeSlot(int slot) {
+		if (smallest != null) {
+			smallest.remove(slot);
+		}
+		boolean wasTop = false;
+		if (top != null) {
+			unlink(slot);
+			if (top.contains(slot)) {
+				top.remove(slot);
+				wasTop = true;
+			}
+		}
+		unindex(hosts[slot].getAddress());
+
+		int last = size - 1;
+		if (slot != last) {
+			hosts[slot] = hosts[last];
+			values[slot] = values[last];
+			agedAt[slot] = agedAt[last];
+			versions[slot] = versions[last];
+			ranks[slot] = ranks[last];
+			reindex(hosts[slot].getAddress(), slot);
+			if (smallest != null) {
+				smallest.move(last, slot);
+			}
+			if (top != null) {
+				top.move(last, slot);
+				moveLink(last, slot);
+			}
+		}
+		hosts[last] = null;
+		size--;
+
+		if (wasTop) {
+			refillTop();
+		}
+	}
+
+	/**
+	 * Adds a slot to the change list as the latest change
+	 * @param slot The slot
+	 */
+	private void linkAsNewest(int slot) {
+		older[slot] = newest;
+		newer[slot] = -1;
+		if (newest >= 0) {
+			newer[newest] = slot;
+		}
+		newest = slot;
+	}
+
+	/**
+	 * Removes a slot from the change list
+	 * @param slot The slot
+	 */
+	private void unlink(int slot) {
+		int o = older[slot];
+		int n = newer[slot];
+		if (o >= 0) {
+			newer[o] = n;
+		}
+		if (n >= 0) {
+			older[n] = o;
+		} else {
+			newest = o;
+		}
+	}
+
+	/**
+	 * Moves a slot's position in the change list to another slot
+	 * @param from The slot in the list
+	 * @param to The slot that takes its place
+	 */
+	private void moveLink(int from, int to) {
+		int o = older[from];
+		int n = newer[from];
+		older[to] = o;
+		newer[to] = n;
+		if (o >= 0) {
+			newer[o] = to;
+		}
+		if (n >= 0) {
+			older[n] = to;
+		} else {
+			newest = to;
+		}
+	}
+
+	/**
+	 * Multiplies all values with the given factor. The factor is applied
+	 * to the common multiplier of the values, so this doesn't touch the
+	 * slots (except when the multiplier gets so small that it's applied to
+	 * the stored values to keep the precision).
+	 * @param factor The factor (zero or positive)
+	 */
+	public void scaleAll(double factor) {
+		if (factor <= 0) {
+			/* all current values are zero, new changes are not */
+			zeroedVersion = version;
+			scale = 1;
+			if (ranks != null) {
+				reorder();
+			}
+			return;
+		}
+
+		scale *= factor; // aging is a multiplication too -> commutes
+		if (ranks != null) {
+			rankOffset += Math.log(factor); // the order doesn't change
+		}
+		if (scale < MIN_SCALE) {
+			for (int i=0; i<size; i++) {
+				values[i] = stored(i) * scale;
+			}
+			scale = 1;
+		}
+	}
+
+	/**
+	 * Returns the stored value of a slot, i.e., the value without the
+	 * common multiplier and the aging that has not been applied yet
+	 * @param slot The slot
+	 * @return The stored value or zero if the value has been scaled to zero
+	 */
+	private double stored(int slot) {
+		return (versions[slot] > zeroedVersion ? values[slot] : 0);
+	}
+
+	/**
+	 * Ages all values up to the current time
+	 */
+	public void ageAll() {
+		double now = SimClock.getTime();
+		for (int i=0; i<size; i++) {
+			age(i, now);
+		}
+	}
+
+	/**
+	 * Ages the value of a slot up to the given time
+	 * @param slot The slot
+	 * @param now The current time
+	 */
+	private void age(int slot, double now) {
+		values[slot] = stored(slot);
+		double last = agedAt[slot];
+		if (last == now) {
+			return;
+		}
+
+		/* values are usually aged in groups that share the aging time */
+		if (last != cachedAgedAt || now != cachedNow) {
+			cachedAgedAt = last;
+			cachedNow = now;
+			cachedMult = Math.pow(gamma, (now - last) / secondsInTimeUnit);
+		}
+
+		values[slot] *= cachedMult;
+		agedAt[slot] = now;
+	}
+
+	/**
+	 * Returns the slot of an address
+	 * @param address The address
+	 * @return The slot or -1 if the address doesn't have a slot
+	 */
+	private int findSlot(int address) {
+		if (denseIndex != null) {
+			return (address < denseIndex.length ? denseIndex[address] : 0) - 1;
+		}
+
+		int mask = hashKeys.length - 1;
+		for (int i = hash(address) & mask; ; i = (i + 1) & mask) {
+			if (hashSlots[i] == 0) {
+				return -1;
+			}
+			if (hashKeys[i] == address) {
+				return hashSlots[i] - 1;
+			}
+		}
+	}
+
+	private int getOrCreateSlot(DTNHost host) {
+		int slot = findSlot(host.getAddress());
+		return (slot >= 0 ? slot : createSlot(host));
+	}
+
+	/**
+	 * Creates a new slot (with value 0 aged at the current time) for a host
+	 * @param host The host
+	 * @return The new slot
+	 */
+	private int createSlot(DTNHost host) {
+		if (size == hosts.length) {
+			int capacity = size * 2;
+			DTNHost[] newHosts = new DTNHost[capacity];
+			double[] newValues = new double[capacity];
+			double[] newAgedAt = new double[capacity];
+			long[] newVersions = new long[capacity];
+			System.arraycopy(hosts, 0, newHosts, 0, size);
+			System.arraycopy(values, 0, newValues, 0, size);
+			System.arraycopy(agedAt, 0, newAgedAt, 0, size);
+			System.arraycopy(versions, 0, newVersions, 0, size);
+			hosts = newHosts;
+			values = newValues;
+			agedAt = newAgedAt;
+			versions = newVersions;
+			if (ranks != null) {
+				ranks = Arrays.copyOf(ranks, capacity);
+			}
+			if (smallest != null) {
+				smallest.grow(capacity);
+			}
+			if (top != null) {
+				top.grow(capacity);
+				older = Arrays.copyOf(older, capacity);
+				newer = Arrays.copyOf(newer, capacity);
+			}
+		}
+
+		int slot = size;
+		index(host.getAddress(), slot);
+		hosts[slot] = host;
+		values[slot] = 0;
+		agedAt[slot] = SimClock.getTime();
+		versions[slot] = 0;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * Adds an address -> slot mapping to the index. Must be called before
+	 * the slot is taken into use (before size is increased).
+	 * @param address The address
+	 * @param slot The slot
+	 */
+	private void index(int address, int slot) {
+		if (denseIndex != null && address >= DENSE_LIMIT) {
+			toHashIndex();
+		}
+
+		if (denseIndex != null) {
+			if (address >= denseIndex.length) {
+				int[] newIndex = new int[Math.min(DENSE_LIMIT,
+						Math.max(address + 1, denseIndex.length * 2))];
+				System.arraycopy(denseIndex, 0, newIndex, 0, denseIndex.length);
+				denseIndex = newIndex;
+			}
+			denseIndex[address] = slot + 1;
+			return;
+		}
+
+		if ((size + 1) * 2 > hashKeys.length) {
+			rehash(hashKeys.length * 2);
+		}
+		putHash(address, slot);
+	}
+
+	/**
+	 * Switches from the address indexed array to the hash table
+	 */
+	private void toHashIndex() {
+		denseIndex = null;
+		int capacity = INIT_CAPACITY;
+		while (capacity < size * 4) {
+			capacity *= 2;
+		}
+		rehash(capacity);
+	}
+
+	private void rehash(int capacity) {
+		hashKeys = new int[capacity];
+		hashSlots = new int[capacity];
+		for (int i=0; i<size; i++) {
+			putHash(hosts[i].getAddress(), i);
+		}
+	}
+
+	/**
+	 * Removes an address from the index
+	 * @param address The address
+	 */
+	private void unindex(int address) {
+		if (denseIndex != null) {
+			denseIndex[address] = 0;
+			return;
+		}
+
+		/* remove the entry and shift the following entries of the probe
+		   sequence back (no tombstones needed with linear probing) */
+		int mask = hashKeys.length - 1;
+		int i = hashBucket(address);
+		for (int j = (i + 1) & mask; hashSlots[j] != 0; j = (j + 1) & mask) {
+			int home = hash(hashKeys[j]) & mask;
+			boolean stays = (i <= j ? (i < home && home <= j) :
+				(i < home || home <= j));
+			if (!stays) {
+				hashKeys[i] = hashKeys[j];
+				hashSlots[i] = hashSlots[j];
+				i = j;
+			}
+		}
+		hashSlots[i] = 0;
+	}
+
+	/**
+	 * Changes the slot of an indexed address
+	 * @param address The address
+	 * @param slot The new slot
+	 */
+	private void reindex(int address, int slot) {
+		if (denseIndex != null) {
+			denseIndex[address] = slot + 1;
+		} else {
+			hashSlots[hashBucket(address)] = slot + 1;
+		}
+	}
+
+	/**
+	 * Returns the hash table bucket of an indexed address
+	 * @param address The address
+	 * @return The bucket
+	 */
+	private int hashBucket(int address) {
+		int mask = hashKeys.length - 1;
+		int i = hash(address) & mask;
+		while (hashSlots[i] == 0 || hashKeys[i] != address) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void putHash(int address, int slot) {
+		int mask = hashKeys.length - 1;
+		int i = hash(address) & mask;
+		while (hashSlots[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		hashKeys[i] = address;
+		hashSlots[i] = slot + 1;
+	}
+
+	private static int hash(int address) {
+		int h = address * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public String toString() {
+		return "DeliveryPredictabilities of " + size + " host(s)";
+	}
+
+	/**
+	 * Indexed binary min-heap of slots ordered by the ranks of their values
+	 */
+	private class SlotHeap {
+		/** the slots in heap order */
+		private int[] heap;
+		/** position of each slot in the heap (-1 = not in the heap) */
+		private int[] pos;
+		/** number of slots in the heap */
+		private int size;
+
+		private SlotHeap(int capacity) {
+			heap = new int[capacity];
+			pos = new int[capacity];
+			Arrays.fill(pos, -1);
+		}
+
+		private void grow(int capacity) {
+			int oldCapacity = pos.length;
+			heap = Arrays.copyOf(heap, capacity);
+			pos = Arrays.copyOf(pos, capacity);
+			Arrays.fill(pos, oldCapacity, capacity, -1);
+		}
+
+		private boolean contains(int slot) {
+			return pos[slot] >= 0;
+		}
+
+		private int min() {
+			return heap[0];
+		}
+
+		private void add(int slot) {
+			heap[size] = slot;
+			pos[slot] = size;
+			size++;
+			siftUp(size - 1);
+		}
+
+		private void remove(int slot) {
+			int i = pos[slot];
+			pos[slot] = -1;
+			size--;
+			if (i < size) {
+				int last = heap[size];
+				heap[i] = last;
+				pos[last] = i;
+				siftDown(i);
+				siftUp(pos[last]);
+			}
+		}
+
+		/** restores the heap order after the rank of a slot changed */
+		private void update(int slot) {
+			siftUp(pos[slot]);
+			siftDown(pos[slot]);
+		}
+
+		/** moves the heap position of a slot to another slot */
+		private void move(int from, int to) {
+			int i = pos[from];
+			pos[from] = -1;
+			pos[to] = i;
+			if (i >= 0) {
+				heap[i] = to;
+			}
+		}
+
+		private void clear() {
+			for (int i=0; i<size; i++) {
+				pos[heap[i]] = -1;
+			}
+			size = 0;
+		}
+
+		private void siftUp(int i) {
+			int slot = heap[i];
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!isBelow(slot, heap[parent])) {
+					break;
+				}
+				heap[i] = heap[parent];
+				pos[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = slot;
+			pos[slot] = i;
+		}
+
+		private void siftDown(int i) {
+			int slot = heap[i];
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && isBelow(heap[child + 1], heap[child])) {
+					child++;
+				}
+				if (!isBelow(heap[child], slot)) {
+					break;
+				}
+				heap[i] = heap[child];
+				pos[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = slot;
+			pos[slot] = i;
+		}
+	}
+}
@@ -13,8 +13,18 @@ import core.*;
  * discovery), scan responses, and data transmission. If scanning is done more 
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
+ * <P>
+ * The continuous power use (base, scanning and transmission) is modeled as a 
+ * piecewise constant rate. The energy level is stored only when the rate 
+ * changes or a discrete amount of energy is used, and otherwise computed from
+ * the rate when it's asked, so the model doesn't need to do anything on
+ * the updates where nothing changes. The time when the energy runs out is 
+ * given by {@link #getDepletionTime()}; routers must be updated at that time 
+ * so that the radio is turned off. While the radio is inactive, no energy 
+ * is used (see {@link #radioInactive()}).
+ * </P>
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel implements NumericModuleCommunicationListener {
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -43,17 +53,36 @@ public class EnergyModel implements ModuleCommunicationListener {
 	public static final String WARMUP_S = "energyWarmup";
 
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of 
-	 * energy left" variable. Value type: double */
+	 * energy left" variable. The value is updated only when the energy 
+	 * consumption rate changes, a discrete amount of energy is used, or the
+	 * energy runs out; use {@link #ENERGY_MODEL_ID} for the exact current 
+	 * value. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
 	
+	/** {@link ModuleCommunicationBus} identifier for the energy model 
+	 * of the host. Value type: EnergyModel */
+	public static final String ENERGY_MODEL_ID = "Energy.model";
+	/** Handle of the {@link #ENERGY_VALUE_ID} key */
+	public static final ModuleCommunicationBus.Key ENERGY_VALUE_KEY =
+		ModuleCommunicationBus.doubleKey(ENERGY_VALUE_ID);
+	/** Handle of the {@link #ENERGY_MODEL_ID} key */
+	public static final ModuleCommunicationBus.Key ENERGY_MODEL_KEY =
+		ModuleCommunicationBus.objectKey(ENERGY_MODEL_ID);
+	
 	//ʼ
 	/** Initial energy levels from the settings */
 	private final double[] initEnergy;
 	private double warmupTime;
 	
-	/** ǰcurrent energy level */
+	/** ǰenergy level at the last update */
 	private double currentEnergy;
 	
+	/** energy usage per second when nothing else is going on */
+	private double baseEnergy;
+	
+	/** current energy usage per second */
+	private double rate;
+	
 	/** ÿɨԴʹenergy usage per scan */
 	private double scanEnergy;
 	
@@ -87,6 +116,7 @@ public class EnergyModel implements ModuleCommunicationListener {
 		this.scanEnergy = s.getDouble(SCAN_ENERGY_S);
 		this.transmitEnergy = s.getDouble(TRANSMIT_ENERGY_S);
 		this.scanResponseEnergy = s.getDouble(SCAN_RSP_ENERGY_S);
+		this.baseEnergy = s.getDouble(BASE_ENERGY_S, 0);
 	
 		if (s.contains(WARMUP_S)) {
 			this.warmupTime = s.getInt(WARMUP_S);
@@ -111,8 +141,10 @@ public class EnergyModel implements ModuleCommunicationListener {
 		this.transmitEnergy = proto.transmitEnergy;
 		this.warmupTime  = proto.warmupTime;
 		this.scanResponseEnergy = proto.scanResponseEnergy;
+		this.baseEnergy = proto.baseEnergy;
 		this.comBus = null;
 		this.lastUpdate = 0;
+		this.rate = 0;
 	}
 	
 	public EnergyModel replicate() {
@@ -143,7 +175,45 @@ public class EnergyModel implements ModuleCommunicationListener {
 	 * @return the current energy level
 	 */
 	public double getEnergy() {
-		return this.currentEnergy;
+		return getEnergyAt(SimClock.getTime());
+	}
+	
+	/**
+	 * Returns the energy level at the given time, assuming that the 
+	 * consumption rate doesn't change after the last update
+	 * @param time The time (not before the last update)
+	 * @return The energy level at the time
+	 */
+	private double getEnergyAt(double time) {
+		double start = Math.max(this.lastUpdate, this.warmupTime);
+		if (this.rate == 0 || time <= start) {
+			return this.currentEnergy;
+		}
+		return Math.max(this.currentEnergy - this.rate * (time - start), 0);
+	}
+	
+	/**
+	 * Returns the simulation time when the energy runs out with the current
+	 * consumption rate
+	 * @return The time when the energy runs out, or Double.MAX_VALUE if 
+	 * the energy doesn't decrease or has already run out
+	 */
+	public double getDepletionTime() {
+		if (this.rate <= 0 || this.currentEnergy <= 0) {
+			return Double.MAX_VALUE;
+		}
+		return Math.max(this.lastUpdate, this.warmupTime) + 
+			this.currentEnergy / this.rate;
+	}
+	
+	/**
+	 * Stores the energy level of the current time as the starting point of 
+	 * the consumption rate
+	 */
+	private void settle() {
+		double simTime = SimClock.getTime();
+		this.currentEnergy = getEnergyAt(simTime);
+		this.lastUpdate = simTime;
 	}
 	
 	/**
@@ -161,12 +231,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 			return; /* model not initialized (via update) yet */
 		}
 		
-		if (amount >= this.currentEnergy) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
-		} else {
-			comBus.updateDouble(ENERGY_VALUE_ID, -amount);
-		}
-		
+		settle();
+		comBus.setDouble(ENERGY_VALUE_KEY,
+				Math.max(this.currentEnergy - amount, 0));
 	}
 	
 	/**
@@ -178,34 +245,62 @@ public class EnergyModel implements ModuleCommunicationListener {
 	}
 	
 	/**
-	 * Reduces the energy reserve for the amount that is used by sending data
-	 * and scanning for the other nodes. 
+	 * Sets the energy consumption rate to match what the interface is 
+	 * doing: sending data and scanning for the other nodes. The energy
+	 * level is stored only if the rate changes, and set to zero (to the 
+	 * combus) when the energy has run out.
+	 * @param iface The network interface whose power use is modeled
+	 * @param comBus The combus of the host
 	 */
 	public void update(NetworkInterface iface, ModuleCommunicationBus comBus) {
-		double simTime = SimClock.getTime();
-		double delta = simTime - this.lastUpdate;
-		
 		if (this.comBus == null) {
 			this.comBus = comBus;
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			this.lastUpdate = SimClock.getTime();
+			this.comBus.addProperty(ENERGY_VALUE_KEY, this.currentEnergy);
+			this.comBus.addProperty(ENERGY_MODEL_KEY, this);
+			this.comBus.subscribe(ENERGY_VALUE_KEY, this);
 		}
 		
-		if (simTime > this.lastUpdate && iface.isTransferring()) {
+		double newRate = this.baseEnergy;
+		if (iface.isTransferring()) {
 			/* sending or receiving data */
-			reduceEnergy(delta * this.transmitEnergy);
+			newRate += this.transmitEnergy;
+		}
+		if (iface.isActive() && iface.getTransmitRange() > 0) {
+			/* one scan per scan interval, but at most one per second */
+			newRate += this.scanEnergy / Math.max(iface.getScanInterval(), 1);
 		}
-		this.lastUpdate = simTime;
 		
-		if (iface.isScanning()) {
-			/* scanning at this update round */
-			if (iface.getTransmitRange() > 0) {
-				if (delta < 1) {
-					reduceEnergy(this.scanEnergy * delta);
-				} else {
-					reduceEnergy(this.scanEnergy);
-				}
-			}
+		if (newRate != this.rate) {
+			settle();
+			this.rate = newRate;
+		}
+		
+		if (this.currentEnergy > 0 && getEnergy() <= 0) {
+			/* ran out of energy since the last update */
+			settle();
+			comBus.setDouble(ENERGY_VALUE_KEY, 0.0);
+		}
+	}
+	
+	/**
+	 * Stops the continuous energy use when the radio has become inactive.
+	 * The energy used until now is stored and the rate is set to zero, so
+	 * the time the radio is inactive (and the host isn't updated) is not
+	 * charged. The next {@link #update(NetworkInterface, 
+	 * ModuleCommunicationBus)} call, after the radio is active again, sets 
+	 * the rate back.
+	 */
+	public void radioInactive() {
+		if (this.comBus == null || this.rate == 0) {
+			return; /* not initialized yet or nothing to stop */
+		}
+		
+		boolean ranOut = this.currentEnergy > 0 && getEnergy() <= 0;
+		settle();
+		this.rate = 0;
+		if (ranOut) {
+			comBus.setDouble(ENERGY_VALUE_KEY, 0.0);
 		}
 	}
 		
@@ -214,8 +309,20 @@ public class EnergyModel implements ModuleCommunicationListener {
 	 * @param key The energy ID
 	 * @param newValue The new energy value
 	 */
+	public void moduleValueChanged(ModuleCommunicationBus.Key key,
+			double newValue) {
+		this.currentEnergy = newValue;
+		this.lastUpdate = SimClock.getTime();
+	}
+
+	/**
+	 * Called by the combus if the energy value is changed to a non-numeric
+	 * value, which is an error
+	 * @param key The energy ID
+	 * @param newValue The new energy value
+	 */
 	public void moduleValueChanged(String key, Object newValue) {
-		this.currentEnergy = (Double)newValue;
+		throw new SimError("Non-numeric energy value " + newValue);
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.List;
+
+/**
+ * Routing info whose child infos are created only when they're asked for
+ * the first time. Used for infos that can have lots of children (e.g.,
+ * one per buffered message) so that user interfaces don't need to create
+ * them unless the subtree is opened.
+ * <P>
+ * The children are created from a list of items that the router copies
+ * from its state when it builds the info. User interfaces ask for the
+ * children in their own thread while the simulation keeps running, so the
+ * children must not be created from the live state of the router. This
+ * way the children also agree with the info text (e.g., the count) that
+ * was created at the same time.
+ * </P>
+ * @param <T> Type of the items the children are created from
+ */
+public class LazyRoutingInfo<T> extends RoutingInfo {
+	/** the items of the children that have not been created yet (or null
+	 * if the children have been created) */
+	private List<T> items;
+
+	/**
+	 * Creates a lazy routing info
+	 * @param infoText The text of the info
+	 * @param items The items whose infos are the children of this info.
+	 * This must be a copy that the router doesn't modify afterwards.
+	 */
+	public LazyRoutingInfo(String infoText, List<T> items) {
+		super(infoText);
+		this.items = items;
+	}
+
+	/**
+	 * Creates the child info of an item. The default implementation uses
+	 * the item's toString() as the info text.
+	 * @param item The item
+	 * @return The child info
+	 */
+	protected RoutingInfo createInfo(T item) {
+		return new RoutingInfo(item);
+	}
+
+	/**
+	 * Creates the child infos by calling {@link #addMoreInfo(RoutingInfo)}
+	 * for the info of every item
+	 */
+	protected void createMoreInfo() {
+		for (T item : items) {
+			addMoreInfo(createInfo(item));
+		}
+	}
+
+	@Override
+	public List<RoutingInfo> getMoreInfo() {
+		if (items != null) {
+			createMoreInfo();
+			items = null;
+		}
+		return super.getMoreInfo();
+	}
+
+	@Override
+	public boolean hasMoreInfo() {
+		return items != null ? items.size() > 0 : super.hasMoreInfo();
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of which holders (e.g. routers) have which messages. Holders are
+ * identified by small integer indices. Every message has a bit set of its
+ * holders and every holder a bit set of its messages, so the holders of a
+ * message and the messages that one holder has but another doesn't are found
+ * without going through all holders or all messages. Message indices are
+ * reused when a message has no holders left.
+ */
+public class MessageHolderRegistry {
+	/** message ID -> message index */
+	private Map<String, Integer> indices;
+	/** message IDs by message index (null for free indices) */
+	private List<String> ids;
+	/** holders of the messages by message index */
+	private List<BitSet> holders;
+	/** messages of the holders by holder index */
+	private List<BitSet> messages;
+	/** free message indices */
+	private List<Integer> freeIndices;
+
+	/**
+	 * Creates a new, empty, registry
+	 */
+	public MessageHolderRegistry() {
+		this.indices = new HashMap<String, Integer>();
+		this.ids = new ArrayList<String>();
+		this.holders = new ArrayList<BitSet>();
+		this.messages = new ArrayList<BitSet>();
+		this.freeIndices = new ArrayList<Integer>();
+	}
+
+	/**
+	 * Registers a new holder
+	 * @return Index of the new holder
+	 */
+	public int addHolder() {
+		messages.add(new BitSet());
+		return messages.size() - 1;
+	}
+
+	/**
+	 * Marks that a holder has a message
+	 * @param id ID of the message
+	 * @param holder Index of the holder
+	 */
+	public void add(String id, int holder) {
+		Integer index = indices.get(id);
+		if (index == null) {
+			if (freeIndices.isEmpty()) {
+				index = ids.size();
+				ids.add(id);
+				holders.add(new BitSet());
+			}
+			else {
+				index = freeIndices.remove(freeIndices.size() - 1);
+				ids.set(index, id);
+			}
+			indices.put(id, index);
+		}
+
+		holders.get(index).set(holder);
+		messages.get(holder).set(index);
+	}
+
+	/**
+	 * Marks that a holder doesn't have a message (anymore)
+	 * @param id ID of the message
+	 * @param holder Index of the holder
+	 */
+	public void remove(String id, int holder) {
+		Integer index = indices.get(id);
+		if (index == null) {
+			return;
+		}
+
+		BitSet messageHolders = holders.get(index);
+		messageHolders.clear(holder);
+		messages.get(holder).clear(index);
+
+		if (messageHolders.isEmpty()) { // free the index for reuse
+			indices.remove(id);
+			ids.set(index, null);
+			freeIndices.add(index);
+		}
+	}
+
+	/**
+	 * Returns the holders of a message
+	 * @param id ID of the message
+	 * @return A copy of the holder index bit set (empty if no holders)
+	 */
+	public BitSet getHolders(String id) {
+		Integer index = indices.get(id);
+		if (index == null) {
+			return new BitSet();
+		}
+		return (BitSet)holders.get(index).clone();
+	}
+
+	/**
+	 * Returns the IDs of the messages that one holder has but the other
+	 * doesn't have
+	 * @param holder Index of the holder whose messages are returned
+	 * @param other Index of the holder whose messages are excluded
+	 * @return IDs of the messages in message index order
+	 */
+	public List<String> getDifference(int holder, int other) {
+		BitSet difference = (BitSet)messages.get(holder).clone();
+		difference.andNot(messages.get(other));
+
+		List<String> result = new ArrayList<String>(difference.cardinality());
+		for (int i = difference.nextSetBit(0); i >= 0;
+				i = difference.nextSetBit(i + 1)) {
+			result.add(ids.get(i));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.DTNSim;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Compact set of message IDs. Every message ID gets a number (shared by
+ * all the replicates of the message and all sets) and a set stores only a
+ * sorted array of the numbers, so no message objects or per entry objects
+ * are kept. Since new message numbers grow with time, new IDs are usually
+ * appended to the end of the array.
+ * <P>
+ * Optionally the IDs are forgotten after the messages have expired (after
+ * their TTL has passed), which keeps the sets from growing without bound in
+ * long simulations. The sets count the references to each message number
+ * and an ID that no set contains any more is dropped from the numbering and
+ * its number is reused, so the shared numbering doesn't grow without bound
+ * either.
+ * </P>
+ */
+public class MessageIdSet {
+	/** Initial size of the arrays */
+	private static final int INIT_CAPACITY = 4;
+
+	/** message ID -> message number */
+	private static Map<String, Integer> numbers;
+	/** message IDs by message number (null for free numbers) */
+	private static String[] ids;
+	/** how many sets contain each message number */
+	private static int[] refCounts;
+	/** stack of the free message numbers below {@link #nextNumber} */
+	private static int[] freeNumbers;
+	/** number of free message numbers in the stack */
+	private static int nrofFree;
+	/** the smallest message number that has never been used */
+	private static int nextNumber;
+
+	static {
+		DTNSim.registerForReset(MessageIdSet.class.getCanonicalName());
+		reset();
+	}
+
+	/** sorted message numbers of the set */
+	private int[] members;
+	/** expiry times of the members' messages */
+	private double[] expiries;
+	/** number of members */
+	private int size;
+	/** are the IDs of expired messages forgotten */
+	private boolean forgetExpired;
+	/** the smallest expiry time of the members */
+	private double nextExpiry;
+
+	/**
+	 * Creates a new, empty, set
+	 * @param forgetExpired If true, IDs of messages are forgotten after the
+	 * messages have expired
+	 */
+	public MessageIdSet(boolean forgetExpired) {
+		this.forgetExpired = forgetExpired;
+		this.members = new int[INIT_CAPACITY];
+		this.expiries = new double[INIT_CAPACITY];
+		this.size = 0;
+		this.nextExpiry = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Adds the ID of a message to the set
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		add(m.getId(), m.getExpiryTime());
+	}
+
+	/**
+	 * Adds a message ID to the set
+	 * @param id The message ID
+	 * @param expiryTime When the message expires (Double.MAX_VALUE if never)
+	 */
+	public void add(String id, double expiryTime) {
+		forgetExpired(); // before numbering; may free this ID's number
+
+		int number = getNumber(id);
+		int i = indexOf(number);
+		if (i >= 0) {
+			expiries[i] = Math.max(expiries[i], expiryTime);
+			return;
+		}
+
+		i = -(i + 1);
+		if (size == members.length) {
+			members = Arrays.copyOf(members, size * 2);
+			expiries = Arrays.copyOf(expiries, size * 2);
+		}
+		System.arraycopy(members, i, members, i + 1, size - i);
+		System.arraycopy(expiries, i, expiries, i + 1, size - i);
+		members[i] = number;
+		expiries[i] = expiryTime;
+		size++;
+		refCounts[number]++;
+		nextExpiry = Math.min(nextExpiry, expiryTime);
+	}
+
+	/**
+	 * Returns true if the set contains the message ID
+	 * @param id The message ID
+	 * @return true if the set contains the ID (and it is not forgotten)
+	 */
+	public boolean contains(String id) {
+		Integer number = numbers.get(id);
+		if (number == null) {
+			return false;
+		}
+
+		int i = indexOf(number);
+		if (i < 0) {
+			return false;
+		}
+		return !(forgetExpired && isExpired(expiries[i]));
+	}
+
+	/**
+	 * Returns the number of IDs in the set
+	 * @return the number of IDs in the set (may include IDs that are about
+	 * to be forgotten)
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the message IDs of the set
+	 * @return The IDs in the order of their message numbers
+	 */
+	public List<String> getIds() {
+		List<String> list = new ArrayList<String>(size);
+		for (int i=0; i<size; i++) {
+			if (!(forgetExpired && isExpired(expiries[i]))) {
+				list.add(ids[members[i]]);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Removes the expired members if expired IDs are forgotten and some
+	 * message has expired
+	 */
+	private void forgetExpired() {
+		if (!forgetExpired || !isExpired(nextExpiry)) {
+			return;
+		}
+
+		int n = 0;
+		nextExpiry = Double.MAX_VALUE;
+		for (int i=0; i<size; i++) {
+			if (!isExpired(expiries[i])) {
+				members[n] = members[i];
+				expiries[n] = expiries[i];
+				nextExpiry = Math.min(nextExpiry, expiries[i]);
+				n++;
+			}
+			else {
+				release(members[i]);
+			}
+		}
+		size = n;
+	}
+
+	/**
+	 * Returns the message number of an ID, numbering the ID if it has no
+	 * number yet. A new number has no references until some set adds it.
+	 * @param id The message ID
+	 * @return The message number
+	 */
+	private static int getNumber(String id) {
+		Integer number = numbers.get(id);
+		if (number != null) {
+			return number;
+		}
+
+		int n;
+		if (nrofFree > 0) {
+			n = freeNumbers[--nrofFree];
+		}
+		else {
+			n = nextNumber++;
+			if (n == ids.length) {
+				ids = Arrays.copyOf(ids, n * 2);
+				refCounts = Arrays.copyOf(refCounts, n * 2);
+			}
+		}
+		ids[n] = id;
+		numbers.put(id, n);
+		return n;
+	}
+
+	/**
+	 * Removes one reference to a message number and frees the number when
+	 * no set contains it any more
+	 * @param number The message number
+	 */
+	private static void release(int number) {
+		if (--refCounts[number] > 0) {
+			return;
+		}
+
+		numbers.remove(ids[number]);
+		ids[number] = null;
+		if (nrofFree == freeNumbers.length) {
+			freeNumbers = Arrays.copyOf(freeNumbers, nrofFree * 2);
+		}
+		freeNumbers[nrofFree++] = number;
+	}
+
+	/**
+	 * Returns the number of message IDs that have a message number, i.e.,
+	 * that some set contains
+	 * @return The number of numbered message IDs
+	 */
+	public static int getNrofNumberedIds() {
+		return numbers.size();
+	}
+
+	private static boolean isExpired(double expiryTime) {
+		return expiryTime < SimClock.getTime();
+	}
+
+	/**
+	 * Returns the index of a message number
+	 * @param number The message number
+	 * @return The index or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(int number) {
+		if (size == 0 || members[size - 1] < number) {
+			return -(size + 1); // the usual case: a new message
+		}
+		return Arrays.binarySearch(members, 0, size, number);
+	}
+
+	/**
+	 * Resets the message numbers
+	 */
+	public static void reset() {
+		numbers = new HashMap<String, Integer>();
+		ids = new String[INIT_CAPACITY];
+		refCounts = new int[INIT_CAPACITY];
+		freeNumbers = new int[INIT_CAPACITY];
+		nrofFree = 0;
+		nextNumber = 0;
+	}
+}
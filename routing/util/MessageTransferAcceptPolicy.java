@@ -14,6 +14,7 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.ModuleCommunicationBus;
+import core.ModuleCommunicationBus.Key;
 import core.Settings;
 
 /**
@@ -109,8 +110,8 @@ public class MessageTransferAcceptPolicy {
 	 * to other nodes, unless it would be delivered to the final destination. */
 	public static final String HOPCOUNT_SPOLICY_S = "hopCountSendPolicy";
 	
-	private ArrayList<Tuple<String,ArithmeticCondition>> recvConditions = null;
-	private ArrayList<Tuple<String,ArithmeticCondition>> sendConditions = null;
+	private ArrayList<Tuple<Key,ArithmeticCondition>> recvConditions = null;
+	private ArrayList<Tuple<Key,ArithmeticCondition>> sendConditions = null;
 	
 	private Range[] toSendPolicy = null;
 	private Range[] fromSendPolicy = null;
@@ -161,11 +162,11 @@ public class MessageTransferAcceptPolicy {
 		int[] nrof = s.getCsvInts(NROF_MCBCS_S);		
 		if (nrof[0] > 0) { /* create lists only if needed */
 			this.recvConditions = 
-				new ArrayList<Tuple<String,ArithmeticCondition>>();
+				new ArrayList<Tuple<Key,ArithmeticCondition>>();
 		}
 		if (nrof[1] > 0) {
 			this.sendConditions = 
-				new ArrayList<Tuple<String,ArithmeticCondition>>();
+				new ArrayList<Tuple<Key,ArithmeticCondition>>();
 		}
 		
 		addConditions(s, MCBACR_S, MCBCVR_S, this.recvConditions,  nrof[0]);
@@ -181,12 +182,13 @@ public class MessageTransferAcceptPolicy {
 	 * @param nrof The number of settings to read
 	 */
 	private void addConditions(Settings s, String cPrefix, String vPrefix,
-			ArrayList<Tuple<String,ArithmeticCondition>> list,
+			ArrayList<Tuple<Key,ArithmeticCondition>> list,
 			int nrof) {
 		for (int i=1; i<=nrof; i++) {
 			ArithmeticCondition ac = s.getCondition(cPrefix + i);
 			String mcbValue = s.getSetting(vPrefix + i);
-			list.add(new Tuple<String, ArithmeticCondition>(mcbValue, ac));
+			list.add(new Tuple<Key,ArithmeticCondition>(
+					ModuleCommunicationBus.objectKey(mcbValue), ac));
 		}
 	}
 	
@@ -200,14 +202,14 @@ public class MessageTransferAcceptPolicy {
 	 */
 	private boolean checkMcbConditions(ModuleCommunicationBus mcb, 
 			boolean receiving) {
-		ArrayList<Tuple<String,ArithmeticCondition>> list = 
+		ArrayList<Tuple<Key,ArithmeticCondition>> list = 
 			(receiving ? this.recvConditions : this.sendConditions);
 		
 		if (list == null) {
 			return true;
 		}
 		
-		for (Tuple<String,ArithmeticCondition> t : list) {
+		for (Tuple<Key,ArithmeticCondition> t : list) {
 			if (!mcb.containsProperty(t.getKey())) {
 				continue; /* no value in the bus; can't fail condition */
 			}
@@ -55,6 +55,14 @@ public class RoutingInfo {
 		return this.moreInfo;
 	}
 	
+	/**
+	 * Returns true if this info has child infos
+	 * @return true if this info has child infos
+	 */
+	public boolean hasMoreInfo() {
+		return this.moreInfo != null && this.moreInfo.size() > 0;
+	}
+	
 	/**
 	 * Returns the info text of this routing info.
 	 * @return The info text
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import routing.ActiveRouter;
+import routing.MessageRouter;
+import core.Connection;
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+
+/**
+ * Tests for the message bookkeeping of ActiveRouter and MessageRouter that
+ * is not visible in the routing results: the final recipient index and
+ * the FIFO sending queue with the connections' send cursors.
+ */
+public class ActiveRouterTest extends AbstractRouterTest {
+
+	@Override
+	public void setUp() throws Exception {
+		ts = new TestSettings(); // no settings left from the other tests
+		ts.putSetting(MessageRouter.MSG_TTL_S, "300");
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S, 
+				""+MessageRouter.Q_MODE_FIFO);
+		setRouterProto(new QueueRouter(ts));
+		super.setUp();
+	}
+	
+	@Override
+	protected void tearDown() throws Exception {
+		/* the settings are shared with the other router tests */
+		ts = new TestSettings();
+		super.tearDown();
+	}
+
+	public void testDestinationIndex() {
+		QueueRouter r = (QueueRouter)h1.getRouter();
+		Message m1 = new Message(h1, h2, msgId1, 1);
+		Message m2 = new Message(h1, h3, msgId2, 1);
+		Message m3 = new Message(h1, h2, msgId3, 1);
+		h1.createNewMessage(m1);
+		h1.createNewMessage(m2);
+		h1.createNewMessage(m3);
+		assertEquals(Arrays.asList(m1, m3), r.messagesFor(h2));
+		assertEquals(Arrays.asList(m2), r.messagesFor(h3));
+		assertTrue(r.messagesFor(h4).isEmpty());
+
+		/* a replaced message moves to the end */
+		Message m1b = m1.replicate();
+		r.replace(m1b);
+		assertEquals(Arrays.asList(m3, m1b), r.messagesFor(h2));
+
+		/* a recipient is forgotten when its last message is removed */
+		h1.deleteMessage(msgId2, false);
+		assertSame(Collections.emptyList(), r.indexFor(h3));
+		h1.deleteMessage(msgId3, false);
+		assertEquals(Arrays.asList(m1b), r.messagesFor(h2));
+		h1.deleteMessage(msgId1, false);
+		assertSame(Collections.emptyList(), r.indexFor(h2));
+
+		h1.createNewMessage(m3);
+		assertEquals(Arrays.asList(m3), r.messagesFor(h2));
+	}
+
+	public void testRequestDeliverableMessages() {
+		h1.createNewMessage(new Message(h1, h3, msgId1, 1));
+		h1.createNewMessage(new Message(h1, h2, msgId2, 1));
+		h1.createNewMessage(new Message(h1, h2, msgId3, 1));
+		/* h2 has already a message with the first ID -> it's refused */
+		h2.createNewMessage(new Message(h2, h4, msgId2, 1));
+		h1.forceConnection(h2, null, true);
+		mc.reset();
+
+		Connection con = h1.getConnections().get(0);
+		assertTrue(h1.requestDeliverableMessages(con));
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId3, mc.getLastMsg().getId());
+		assertEquals(h2, mc.getLastTo());
+
+		/* only messages for the other end are delivered */
+		assertFalse(h3.requestDeliverableMessages(con));
+		assertFalse(mc.next());
+	}
+
+	public void testQueueOrderForAllConnections() {
+		QueueRouter r = (QueueRouter)h1.getRouter();
+		String[] ids = {msgId1, msgId2, msgId3};
+		for (String id : ids) {
+			h1.createNewMessage(new Message(h1, h5, id, 1));
+			clock.advance(1);
+		}
+		h1.forceConnection(h2, null, true);
+		h1.forceConnection(h3, null, true);
+		mc.reset();
+		
+		/* every connection walks the queue in FIFO order */
+		for (String id : ids) {
+			assertEquals(h1.getConnections().get(0), r.tryAll());
+			checkTransferStart(h1, h2, id);
+			assertEquals(h1.getConnections().get(1), r.tryAll());
+			checkTransferStart(h1, h3, id);
+			assertNull(r.tryAll()); // both connections are busy
+			finishTransfers();
+			while (mc.next()) {
+				assertEquals(mc.TYPE_RELAY, mc.getLastType());
+			}
+		}
+		assertNull(r.tryAll()); // the others have all the messages
+		assertFalse(mc.next());
+	}
+	
+	public void testSendCursor() {
+		QueueRouter r = (QueueRouter)h1.getRouter();
+		Message m1 = new Message(h1, h5, msgId1, 1);
+		Message m2 = new Message(h1, h5, msgId2, 1);
+		Message m3 = new Message(h1, h5, msgId3, 1);
+		Message m4 = new Message(h1, h5, msgId4, 1);
+		h1.createNewMessage(m1);
+		h1.createNewMessage(m2);
+		h1.createNewMessage(m3);
+		h1.createNewMessage(m4);
+		/* h2 refuses the messages it already has */
+		h2.createNewMessage(new Message(h2, h5, msgId1, 1));
+		h2.createNewMessage(new Message(h2, h5, msgId2, 1));
+		h1.forceConnection(h2, null, true);
+		Connection con = h1.getConnections().get(0);
+		mc.reset();
+		
+		/* the refused messages are passed */
+		assertEquals(m3, r.tryQueued(con));
+		assertEquals(m3, con.getSendCursor(h1));
+		checkTransferStart(h1, h2, msgId3);
+		
+		/* the connection is busy -> the cursor stays */
+		assertNull(r.tryQueued(con));
+		assertEquals(m3, con.getSendCursor(h1));
+		
+		/* the transfer is done -> the cursor advances */
+		finishTransfers();
+		assertEquals(m4, r.tryQueued(con));
+		assertEquals(m4, con.getSendCursor(h1));
+		
+		/* the end of the queue -> the next pass starts from the head */
+		finishTransfers();
+		assertNull(r.tryQueued(con));
+		assertNull(con.getSendCursor(h1));
+		
+		/* a new message is found from the head of the queue */
+		Message m5 = new Message(h1, h5, msgId5, 1);
+		h1.createNewMessage(m5);
+		mc.reset();
+		assertEquals(m5, r.tryQueued(con));
+		checkTransferStart(h1, h2, msgId5);
+	}
+	
+	public void testSendCursorWhenQueueChanges() {
+		QueueRouter r = (QueueRouter)h1.getRouter();
+		h1.createNewMessage(new Message(h1, h5, msgId1, 1));
+		Message m2 = new Message(h1, h5, msgId2, 1);
+		h1.createNewMessage(m2);
+		h2.createNewMessage(new Message(h2, h5, msgId1, 1));
+		h1.forceConnection(h2, null, true);
+		Connection con = h1.getConnections().get(0);
+		assertEquals(m2, r.tryQueued(con));
+		finishTransfers();
+		
+		/* the cursor's message is removed and new messages are added ->
+		   the walk continues from where the removed message was */
+		h1.deleteMessage(msgId2, false);
+		Message m3 = new Message(h1, h5, msgId3, 1);
+		h1.createNewMessage(m3);
+		Message m4 = new Message(h1, h5, msgId4, 1);
+		h1.createNewMessage(m4);
+		assertEquals(m2, con.getSendCursor(h1));
+		assertEquals(m3, r.tryQueued(con));
+		finishTransfers();
+		
+		/* a replaced message moves to the end of the queue */
+		Message m3b = m3.replicate();
+		r.replace(m3b);
+		h2.deleteMessage(msgId3, false);
+		assertEquals(m4, r.tryQueued(con));
+		finishTransfers();
+		assertEquals(m3b, r.tryQueued(con));
+		assertEquals(m3b, con.getSendCursor(h1));
+	}
+
+	/**
+	 * Advances the clock so that the started transfers are ready and lets 
+	 * the routers finish them
+	 */
+	private void finishTransfers() {
+		clock.advance(1);
+		for (DTNHost h : utils.getAllHosts()) {
+			h.getRouter().update();
+		}
+	}
+
+	/**
+	 * Active router that doesn't start transfers by itself and exposes
+	 * the sending methods and the final recipient index
+	 */
+	private static class QueueRouter extends ActiveRouter {
+		public QueueRouter(Settings s) {
+			super(s);
+		}
+
+		protected QueueRouter(QueueRouter r) {
+			super(r);
+		}
+
+		@Override
+		public QueueRouter replicate() {
+			return new QueueRouter(this);
+		}
+		
+		public Connection tryAll() {
+			return tryAllMessagesToAllConnections();
+		}
+		
+		public Message tryQueued(Connection con) {
+			return tryQueuedMessages(con);
+		}
+
+		public Collection<Message> indexFor(DTNHost to) {
+			return getMessagesFor(to);
+		}
+
+		public List<Message> messagesFor(DTNHost to) {
+			return new ArrayList<Message>(getMessagesFor(to));
+		}
+
+		public void replace(Message m) {
+			addToMessages(m, false);
+		}
+	}
+}
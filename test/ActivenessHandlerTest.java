@@ -70,5 +70,47 @@ public class ActivenessHandlerTest extends TestCase {
 
 	}
 	
+	public void testBackwardsInTime() {
+		clock.setTime(215);
+		assertTrue(ah.isActive());
+		clock.setTime(5);
+		assertTrue(ah.isActive());
+		clock.setTime(50);
+		assertFalse(ah.isActive());
+	}
+	
+	public void testNextChangeTime() {
+		assertEquals(in, ah.getNextChangeTime(0));
+		clock.setTime(in);
+		assertEquals(out, ah.getNextChangeTime(0));
+		clock.setTime(50);
+		assertEquals(100.0, ah.getNextChangeTime(0));
+		assertEquals(90.0, ah.getNextChangeTime(10));
+		clock.setTime(105);
+		assertEquals(110.0, ah.getNextChangeTime(0));
+		assertEquals(200.0, ah.getNextChangeTime(10));
+		clock.setTime(401);
+		assertEquals(Double.MAX_VALUE, ah.getNextChangeTime(0));
+	}
+	
+	public void testActivePeriods() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(ActivenessHandler.ACTIVE_PERIODS_S, "10,20");
+		ActivenessHandler pah = new ActivenessHandler(ts);
+		
+		for (int t=0; t < 100; t++) {
+			clock.setTime(t);
+			boolean active = pah.isActive();
+			double next = pah.getNextChangeTime(0);
+			assertTrue(next > t);
+			for (double u = t; u < next; u += 0.25) {
+				clock.setTime(u);
+				assertEquals("At " + u, active, pah.isActive());
+			}
+			clock.setTime(next);
+			assertTrue("At " + next, active != pah.isActive());
+		}
+	}
+	
 }
 
@@ -0,0 +1,59 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.AliasTable;
+
+/**
+ * Tests for the AliasTable
+ */
+public class AliasTableTest extends TestCase {
+	private static final int NROF_DRAWS = 100000;
+	private Random rng = new Random(1);
+	
+	public void testDistribution() {
+		double[] weights = {1, 0, 3, 6};
+		int[] counts = draw(new AliasTable(weights));
+		
+		assertEquals(0, counts[1]);
+		assertEquals(0.1, counts[0] / (double)NROF_DRAWS, 0.01);
+		assertEquals(0.3, counts[2] / (double)NROF_DRAWS, 0.01);
+		assertEquals(0.6, counts[3] / (double)NROF_DRAWS, 0.01);
+	}
+	
+	public void testSingleAndEqualWeights() {
+		int[] counts = draw(new AliasTable(new double[] {0, 2, 0}));
+		assertEquals(NROF_DRAWS, counts[1]);
+		
+		counts = draw(new AliasTable(new double[] {5, 5}));
+		assertEquals(0.5, counts[0] / (double)NROF_DRAWS, 0.01);
+	}
+	
+	public void testInvalidWeights() {
+		try {
+			new AliasTable(new double[] {0, 0});
+			fail("All zero weights should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new AliasTable(new double[] {1, -1});
+			fail("Negative weights should not be accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	private int[] draw(AliasTable table) {
+		int[] counts = new int[table.size()];
+		for (int i=0; i<NROF_DRAWS; i++) {
+			counts[table.draw(rng)]++;
+		}
+		return counts;
+	}
+}
@@ -24,6 +24,8 @@ public class AllTests {
 		
 		//$JUnit-BEGIN$
 		suite.addTestSuite(WorldTest.class);
+		suite.addTestSuite(EnergyModelTest.class);
+		suite.addTestSuite(ActiveRouterTest.class);
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
@@ -38,15 +40,26 @@ public class AllTests {
 		suite.addTestSuite(ExternalEventsQueueTest.class);
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
+		suite.addTestSuite(MovieReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
 		suite.addTestSuite(ProphetRouterTest.class);
+		suite.addTestSuite(DeliveryPredictabilitiesTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
 		suite.addTestSuite(PointsOfInterestTest.class);
 		suite.addTestSuite(ActivenessHandlerTest.class);
+		suite.addTestSuite(HostPositionStoreTest.class);
+		suite.addTestSuite(PathTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventQueueSchedulerTest.class);
+		suite.addTestSuite(ScheduleDijkstraTest.class);
+		suite.addTestSuite(MessageHolderRegistryTest.class);
+		suite.addTestSuite(MessageIdSetTest.class);
+		suite.addTestSuite(MovementCacheTest.class);
+		suite.addTestSuite(AliasTableTest.class);
+		suite.addTestSuite(TrafficMatrixMessageGeneratorTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		//$JUnit-END$
@@ -202,5 +202,19 @@ public class ConnectionTest extends TestCase {
 		assertEquals(h[1], c[0].getOtherNode(h[0]));
 		assertEquals(h[0], c[0].getOtherNode(h[1]));
 	}
+	
+	public void testSendCursor() {
+		assertNull(c[0].getSendCursor(h[0]));
+		assertNull(c[0].getSendCursor(h[1]));
+		
+		c[0].setSendCursor(h[0], m[0]);
+		c[0].setSendCursor(h[1], m[1]);
+		assertEquals(m[0], c[0].getSendCursor(h[0]));
+		assertEquals(m[1], c[0].getSendCursor(h[1]));
+		
+		c[0].setSendCursor(h[0], null);
+		assertNull(c[0].getSendCursor(h[0]));
+		assertEquals(m[1], c[0].getSendCursor(h[1]));
+	}
 
 }
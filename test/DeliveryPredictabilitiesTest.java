@@ -0,0 +1,294 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.util.DeliveryPredictabilities;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Tests for the delivery predictability table of the PRoPHET routers.
+ */
+public class DeliveryPredictabilitiesTest extends TestCase {
+	private static final double GAMMA = 0.98;
+	private static final double UNIT = 30;
+	private static final double DELTA = 0.0000001;
+	private SimClock clock;
+	private List<DTNHost> hosts;
+	private DeliveryPredictabilities preds;
+	
+	public void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		core.NetworkInterface.reset();
+		DTNHost.reset();
+		TestUtils tu = new TestUtils(null, null, new TestSettings());
+		hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<5; i++) {
+			hosts.add(tu.createHost());
+		}
+		preds = new DeliveryPredictabilities(GAMMA, UNIT);
+	}
+	
+	public void testEncounterAndAging() {
+		DTNHost h1 = hosts.get(1);
+		assertEquals(0.0, preds.get(h1));
+		assertEquals(0.75, preds.encounter(h1, 0.75), DELTA);
+		
+		clock.setTime(3 * UNIT);
+		double aged = 0.75 * Math.pow(GAMMA, 3);
+		assertEquals(aged, preds.get(h1), DELTA);
+		
+		clock.setTime(5 * UNIT); // aging in parts == aging at once
+		assertEquals(0.75 * Math.pow(GAMMA, 5), preds.get(h1), DELTA);
+		
+		double p = preds.get(h1);
+		assertEquals(p + (1-p) * 0.75, preds.encounter(h1, 0.75), DELTA);
+		assertEquals(1, preds.size());
+	}
+	
+	public void testTransitive() {
+		DTNHost a = hosts.get(0);
+		DTNHost b = hosts.get(1);
+		DTNHost c = hosts.get(2);
+		DeliveryPredictabilities bPreds = 
+			new DeliveryPredictabilities(GAMMA, UNIT);
+		bPreds.set(a, 0.5);
+		bPreds.set(c, 0.4);
+		preds.set(c, 0.1);
+		
+		double pab = preds.encounter(b, 0.75);
+		preds.updateTransitive(a, pab, bPreds, 0.25);
+		assertEquals(0.0, preds.get(a)); // no value for self
+		assertEquals(0.1 + 0.9 * pab * 0.4 * 0.25, preds.get(c), DELTA);
+		
+		preds.set(c, 0.01);
+		preds.updateTransitiveMax(a, pab, bPreds, 0.25);
+		assertEquals(pab * 0.4 * 0.25, preds.get(c), DELTA);
+		preds.set(c, 0.9);
+		preds.updateTransitiveMax(a, pab, bPreds, 0.25);
+		assertEquals(0.9, preds.get(c), DELTA);
+	}
+	
+	public void testSetGamma() {
+		DTNHost h1 = hosts.get(1);
+		preds.set(h1, 0.5);
+		clock.setTime(UNIT);
+		preds.setGamma(0.5);
+		clock.setTime(2 * UNIT);
+		assertEquals(0.5 * GAMMA * 0.5, preds.get(h1), DELTA);
+	}
+	
+	public void testSparseExchange() {
+		DTNHost a = hosts.get(0);
+		DTNHost b = hosts.get(1);
+		DeliveryPredictabilities bPreds = 
+			new DeliveryPredictabilities(GAMMA, UNIT);
+		bPreds.setLimits(1, 0);
+		bPreds.set(hosts.get(2), 0.8);
+		bPreds.set(hosts.get(3), 0.4);
+		
+		preds.updateTransitive(a, b, 1.0, bPreds, 1.0);
+		assertEquals(0.8, preds.get(hosts.get(2)), DELTA); // top-1
+		assertEquals(0.0, preds.get(hosts.get(3)), DELTA);
+		
+		bPreds.set(hosts.get(4), 0.2); // changed after the previous exchange
+		preds.updateTransitive(a, b, 1.0, bPreds, 1.0);
+		assertEquals(0.2, preds.get(hosts.get(4)), DELTA);
+		assertEquals(0.0, preds.get(hosts.get(3)), DELTA);
+		
+		preds.updateTransitive(a, b, 1.0, bPreds, 1.0); // no changes
+		assertEquals(0.2, preds.get(hosts.get(4)), DELTA);
+		
+		preds.updateTransitive(a, 1.0, bPreds, 1.0); // unknown peer
+		assertEquals(0.0, preds.get(hosts.get(3)), DELTA);
+	}
+	
+	public void testScaleAll() {
+		/* the values after lazy scaling must match eager scaling */
+		Map<DTNHost, Double> expected = new HashMap<DTNHost, Double>();
+		double[] factors = {0.5, 0.9, 1e-60, 1e-60, 0.3, 0, 0.7, 1};
+		Random rng = new Random(34);
+		for (double factor : factors) {
+			for (int i=0; i<3; i++) {
+				DTNHost h = hosts.get(rng.nextInt(hosts.size()));
+				double p = (expected.containsKey(h) ? expected.get(h) : 0);
+				expected.put(h, p + (1 - p) * 0.75);
+				assertEquals(expected.get(h), preds.encounter(h, 0.75), DELTA);
+			}
+			ageAll(expected, UNIT * rng.nextInt(3));
+			
+			preds.scaleAll(factor);
+			for (Map.Entry<DTNHost, Double> e : expected.entrySet()) {
+				e.setValue(e.getValue() * factor);
+			}
+			for (DTNHost h : hosts) {
+				double p = (expected.containsKey(h) ? expected.get(h) : 0);
+				assertEquals(p, preds.get(h), DELTA);
+			}
+		}
+		
+		/* the scaled values are used in the transitive updates */
+		DeliveryPredictabilities aPreds = 
+			new DeliveryPredictabilities(GAMMA, UNIT);
+		preds.set(hosts.get(2), 0.4);
+		preds.scaleAll(0.5);
+		aPreds.updateTransitive(hosts.get(0), 1.0, preds, 1.0);
+		assertEquals(0.2, aPreds.get(hosts.get(2)), DELTA);
+		preds.scaleAll(0);
+		aPreds.updateTransitiveMax(hosts.get(0), 1.0, preds, 1.0);
+		assertEquals(0.2, aPreds.get(hosts.get(2)), DELTA);
+		assertEquals(0.0, preds.getAll().get(0).getValue(), DELTA);
+	}
+	
+	public void testSizeLimit() {
+		preds.setLimits(0, 2);
+		preds.set(hosts.get(1), 0.5);
+		preds.set(hosts.get(2), 0.1);
+		preds.set(hosts.get(3), 0.3);
+		assertEquals(2, preds.size());
+		assertEquals(0.0, preds.get(hosts.get(2)));
+		assertEquals(0.5, preds.get(hosts.get(1)), DELTA);
+		assertEquals(0.3, preds.get(hosts.get(3)), DELTA);
+		
+		preds.encounter(hosts.get(2), 0.75);
+		assertEquals(2, preds.size());
+		assertEquals(0.0, preds.get(hosts.get(3)));
+		assertEquals(0.75, preds.get(hosts.get(2)), DELTA);
+	}
+	
+	public void testSizeLimitWithChanges() {
+		addHosts(DeliveryPredictabilities.DENSE_LIMIT + 100);
+		int maxSize = 40;
+		preds.setLimits(0, maxSize);
+		Random rng = new Random(1);
+		Map<DTNHost, Double> expected = new HashMap<DTNHost, Double>();
+		
+		for (int i=0; i<2000; i++) {
+			ageAll(expected, rng.nextDouble() * UNIT);
+			DTNHost h = hosts.get(rng.nextInt(hosts.size()));
+			double value = rng.nextDouble();
+			preds.set(h, value);
+			expected.put(h, value);
+			if (expected.size() > maxSize) {
+				expected.remove(smallest(expected));
+			}
+		}
+		
+		assertEquals(maxSize, preds.size());
+		for (DTNHost h : hosts) {
+			Double value = expected.get(h);
+			assertEquals(value == null ? 0.0 : value, preds.get(h), DELTA);
+		}
+	}
+	
+	public void testTopKWithChanges() {
+		addHosts(50);
+		DTNHost a = hosts.get(0);
+		DTNHost b = hosts.get(1);
+		DeliveryPredictabilities bPreds = 
+			new DeliveryPredictabilities(GAMMA, UNIT);
+		bPreds.setLimits(5, 0);
+		Random rng = new Random(2);
+		
+		for (int i=0; i<500; i++) {
+			clock.advance(rng.nextDouble() * UNIT);
+			DTNHost h = hosts.get(2 + rng.nextInt(hosts.size() - 2));
+			if (rng.nextBoolean()) {
+				bPreds.encounter(h, rng.nextDouble());
+			} else {
+				bPreds.set(h, rng.nextDouble()); /* may make a value smaller */
+			}
+		}
+		
+		/* the first exchange reads only the top values */
+		preds.updateTransitive(a, b, 1.0, bPreds, 1.0);
+		assertEquals(topHosts(bPreds, 5), nonZeroHosts(preds));
+		
+		/* the next exchange reads also the changed values */
+		Set<DTNHost> changed = new HashSet<DTNHost>();
+		for (int i=0; i<10; i++) {
+			DTNHost h = hosts.get(2 + rng.nextInt(hosts.size() - 2));
+			bPreds.encounter(h, 0.01);
+			changed.add(h);
+		}
+		Set<DTNHost> expected = nonZeroHosts(preds);
+		expected.addAll(topHosts(bPreds, 5));
+		expected.addAll(changed);
+		preds.updateTransitive(a, b, 1.0, bPreds, 1.0);
+		assertEquals(expected, nonZeroHosts(preds));
+	}
+	
+	private void addHosts(int nrof) {
+		TestUtils tu = new TestUtils(null, null, new TestSettings());
+		while (hosts.size() < nrof) {
+			hosts.add(tu.createHost());
+		}
+	}
+	
+	/** Advances the clock and ages the expected values by the given time */
+	private void ageAll(Map<DTNHost, Double> values, double time) {
+		for (Map.Entry<DTNHost, Double> e : values.entrySet()) {
+			e.setValue(e.getValue() * Math.pow(GAMMA, time / UNIT));
+		}
+		clock.advance(time);
+	}
+	
+	private DTNHost smallest(Map<DTNHost, Double> values) {
+		DTNHost min = null;
+		for (DTNHost h : values.keySet()) {
+			if (min == null || values.get(h) < values.get(min)) {
+				min = h;
+			}
+		}
+		return min;
+	}
+	
+	private Set<DTNHost> topHosts(DeliveryPredictabilities p, int k) {
+		Map<DTNHost, Double> values = new HashMap<DTNHost, Double>();
+		for (int i=0; i<p.size(); i++) {
+			values.put(p.getHost(i), p.getValue(i));
+		}
+		while (values.size() > k) {
+			values.remove(smallest(values));
+		}
+		return values.keySet();
+	}
+	
+	private Set<DTNHost> nonZeroHosts(DeliveryPredictabilities p) {
+		Set<DTNHost> set = new HashSet<DTNHost>();
+		for (int i=0; i<p.size(); i++) {
+			if (p.getValue(i) > 0) {
+				set.add(p.getHost(i));
+			}
+		}
+		return set;
+	}
+	
+	public void testManyHosts() {
+		TestUtils tu = new TestUtils(null, null, new TestSettings());
+		while (hosts.size() <= DeliveryPredictabilities.DENSE_LIMIT + 10) {
+			hosts.add(tu.createHost());
+		}
+		for (int i=0; i<hosts.size(); i++) {
+			preds.set(hosts.get(i), i / 10000.0);
+		}
+		assertEquals(hosts.size(), preds.size());
+		for (int i=0; i<hosts.size(); i++) {
+			assertEquals(i / 10000.0, preds.get(hosts.get(i)), DELTA);
+			assertEquals(hosts.get(i), preds.getHost(i));
+		}
+	}
+}
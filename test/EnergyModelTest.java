@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+import routing.EpidemicRouter;
+import routing.util.EnergyModel;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the energy model: the consumption rate, the energy level and
+ * depletion time computed from it, and that no energy is used while the
+ * radio is inactive.
+ */
+public class EnergyModelTest extends TestCase {
+	/** energy use per second with base energy 1 and scan energy 20 per
+	 * 10 second scan interval */
+	private static final double RATE = 3;
+	private static final double DELTA = 0.00001;
+	/** update interval of the simulated world */
+	private static final double TICK = 0.1;
+
+	private SimClock clock;
+	private DTNHost host;
+	private EnergyModel energy;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		clock = SimClock.getInstance();
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(EnergyModel.INIT_ENERGY_S, "300");
+		ts.putSetting(EnergyModel.BASE_ENERGY_S, "1");
+		ts.putSetting(EnergyModel.SCAN_ENERGY_S, "20");
+		ts.putSetting(EnergyModel.SCAN_RSP_ENERGY_S, "1");
+		ts.putSetting(EnergyModel.TRANSMIT_ENERGY_S, "5");
+		ts.putSetting(NetworkInterface.NET_SUB_NS + "." +
+				NetworkInterface.SCAN_INTERVAL_S, "10");
+		ts.putSetting(NetworkInterface.NET_SUB_NS + ".activeTimes",
+				"0,50, 100,200");
+
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		host = utils.createHost(new Coord(0, 0));
+		host.getInterface(1).setGroupSettings(ts);
+
+		host.update(false);
+		energy = (EnergyModel)host.getComBus().getProperty(
+				EnergyModel.ENERGY_MODEL_KEY);
+	}
+
+	public void testRate() {
+		assertEquals(300, energy.getEnergy(), DELTA);
+		assertEquals(300 / RATE, energy.getDepletionTime(), DELTA);
+
+		/* nothing is stored between the updates but the level decreases */
+		clock.setTime(10);
+		assertEquals(300 - 10 * RATE, energy.getEnergy(), DELTA);
+		host.update(false);
+		assertEquals(300 - 10 * RATE, energy.getEnergy(), DELTA);
+		assertEquals(300 / RATE, energy.getDepletionTime(), DELTA);
+	}
+
+	public void testDiscreteUse() {
+		clock.setTime(20);
+		energy.reduceDiscoveryEnergy();
+		double left = 300 - 20 * RATE - 1;
+		assertEquals(left, energy.getEnergy(), DELTA);
+		assertEquals(left, host.getComBus().getDouble(
+				EnergyModel.ENERGY_VALUE_KEY, -1), DELTA);
+		assertEquals(20 + left / RATE, energy.getDepletionTime(), DELTA);
+
+		clock.setTime(30);
+		assertEquals(left - 10 * RATE, energy.getEnergy(), DELTA);
+	}
+
+	public void testNoUseWhileInactive() {
+		/* active until 50 (inclusive) */
+		assertEquals(50, updateAtNextTime(), DELTA);
+		assertTrue(host.isRadioActive());
+		assertEquals(50 + TICK, updateAtNextTime(), DELTA);
+		assertFalse(host.isRadioActive());
+		double left = 300 - (50 + TICK) * RATE;
+		assertEquals(left, energy.getEnergy(), DELTA);
+		assertEquals(Double.MAX_VALUE, energy.getDepletionTime());
+
+		/* the radio is off until 100 */
+		clock.setTime(80);
+		assertEquals(left, energy.getEnergy(), DELTA);
+		assertEquals(100, updateAtNextTime(), DELTA);
+		assertTrue(host.isRadioActive());
+		assertEquals(left, energy.getEnergy(), DELTA);
+		assertEquals(100 + left / RATE, energy.getDepletionTime(), DELTA);
+
+		clock.setTime(120);
+		assertEquals(left - 20 * RATE, energy.getEnergy(), DELTA);
+
+		/* energy runs out -> the radio turns off for good */
+		assertEquals(100 + left / RATE, updateAtNextTime(), DELTA);
+		assertEquals(0, energy.getEnergy(), DELTA);
+		assertEquals(0, host.getComBus().getDouble(
+				EnergyModel.ENERGY_VALUE_KEY, -1), DELTA);
+		assertFalse(host.isRadioActive());
+		host.update(false);
+		assertEquals(Double.MAX_VALUE, energy.getDepletionTime());
+		clock.setTime(180);
+		assertEquals(0, energy.getEnergy(), DELTA);
+	}
+
+	/**
+	 * Moves the clock to the host's next update time, but at least one
+	 * update interval forward, and updates the host like the world does
+	 * @return The new time
+	 */
+	private double updateAtNextTime() {
+		clock.setTime(Math.max(host.getNextUpdateTime(),
+				SimClock.getTime() + TICK));
+		host.update(false);
+		return SimClock.getTime();
+	}
+}
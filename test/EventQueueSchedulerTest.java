@@ -0,0 +1,80 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.EventQueueScheduler;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the EventQueueScheduler
+ */
+public class EventQueueSchedulerTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private ScheduledUpdatesQueue q1;
+	private ScheduledUpdatesQueue q2;
+	private ScheduledUpdatesQueue q3;
+	private EventQueueScheduler eqs;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		q1 = new ScheduledUpdatesQueue();
+		q2 = new ScheduledUpdatesQueue();
+		q3 = new ScheduledUpdatesQueue();
+		
+		q1.addUpdate(5);
+		q1.addUpdate(10);
+		q2.addUpdate(1);
+		q2.addUpdate(10);
+		q3.addUpdate(7);
+		
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(q1);
+		queues.add(q2);
+		queues.add(q3);
+		eqs = new EventQueueScheduler(queues);
+	}
+	
+	public void testOrder() {
+		assertEquals(1.0, eqs.nextEventsTime());
+		assertEquals(q2, eqs.nextEventQueue());
+		assertEquals(1.0, eqs.nextEvent().getTime());
+		assertEquals(5.0, eqs.nextEvent().getTime());
+		assertEquals(q3, eqs.nextEventQueue());
+		assertEquals(7.0, eqs.nextEvent().getTime());
+		
+		/* same time -> queue that was earlier in the list goes first */
+		assertEquals(q1, eqs.nextEventQueue());
+		assertEquals(10.0, eqs.nextEvent().getTime());
+		assertEquals(q2, eqs.nextEventQueue());
+		assertEquals(10.0, eqs.nextEvent().getTime());
+		
+		assertEquals(MAX, eqs.nextEventsTime());
+		assertEquals(MAX, eqs.nextEvent().getTime());
+	}
+	
+	public void testUpdateQueue() {
+		q3.addUpdate(0.5);
+		assertEquals(1.0, eqs.nextEventsTime()); // not told yet
+		eqs.updateQueue(q3);
+		assertEquals(0.5, eqs.nextEventsTime());
+		assertEquals(q3, eqs.nextEventQueue());
+		assertEquals(0.5, eqs.nextEvent().getTime());
+		
+		q1.addUpdate(2);
+		q3.addUpdate(3);
+		eqs.updateAll();
+		assertEquals(1.0, eqs.nextEvent().getTime());
+		assertEquals(q1, eqs.nextEventQueue());
+		assertEquals(2.0, eqs.nextEvent().getTime());
+		assertEquals(3.0, eqs.nextEvent().getTime());
+		assertEquals(5.0, eqs.nextEvent().getTime());
+	}
+}
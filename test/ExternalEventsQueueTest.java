@@ -9,10 +9,12 @@ import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
 import input.MessageCreateEvent;
+import input.PrefetchingEventsReader;
 import input.StandardEventsReader;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -81,6 +83,67 @@ public class ExternalEventsQueueTest extends TestCase {
 		assertTrue(tmpBinFile.delete()); // make sure all locks are gone
 	}
 	
+	public void testBinaryConversion() throws Exception {
+		File tmpBinFile = File.createTempFile("TempBinTest", 
+				BinaryEventsReader.BINARY_EXT);
+		String binFileName = tmpBinFile.getAbsolutePath();
+		int nrof = BinaryEventsReader.storeToBinaryFile(binFileName,
+				new StandardEventsReader(tempFile));
+		assertEquals(msgTimes.length, nrof);
+		
+		List<ExternalEvent> expected = 
+			new StandardEventsReader(tempFile).readEvents(100);
+		BinaryEventsReader r = new BinaryEventsReader(tmpBinFile);
+		List<ExternalEvent> events = r.readEvents(100);
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), events.get(i).toString());
+		}
+		assertEquals(0, r.readEvents(100).size());
+		r.close();
+		
+		assertTrue(tmpBinFile.delete());
+	}
+	
+	public void testBinaryBlocks() throws Exception {
+		File tmpBinFile = File.createTempFile("TempBinTest", 
+				BinaryEventsReader.BINARY_EXT);
+		String binFileName = tmpBinFile.getAbsolutePath();
+		/* identifiers that are used in several blocks */
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		for (int i=0; i < 2 * BinaryEventsReader.BLOCK_SIZE + 10; i++) {
+			events.add(new MessageCreateEvent(i % 7, i % 5, "M" + (i % 3000),
+					i, 0, i));
+		}
+		BinaryEventsReader.storeToBinaryFile(binFileName, events);
+		
+		BinaryEventsReader r = new BinaryEventsReader(tmpBinFile);
+		List<ExternalEvent> read = r.readEvents(events.size() + 1);
+		assertEquals(events.size(), read.size());
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(events.get(i).toString(), read.get(i).toString());
+		}
+		r.close();
+		
+		assertTrue(tmpBinFile.delete());
+	}
+	
+	public void testPrefetch() {
+		ExternalEventsReader r = new PrefetchingEventsReader(
+				new StandardEventsReader(tempFile), 3);
+		List<ExternalEvent> events = r.readEvents(4); // over batch boundary
+		assertEquals(4, events.size());
+		assertEquals(msgTimes[3], events.get(3).getTime());
+		events = r.readEvents(3);
+		assertEquals(3, events.size());
+		assertEquals(msgTimes[4], events.get(0).getTime());
+		events = r.readEvents(10);
+		assertEquals(3, events.size());
+		assertEquals(msgTimes[9], events.get(2).getTime());
+		assertEquals(0, r.readEvents(10).size());
+		r.close();
+	}
+	
 	
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
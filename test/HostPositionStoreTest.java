@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import core.Coord;
+import core.DTNHost;
+import core.HostPositionStore;
+import core.SimClock;
+
+/**
+ * Tests that hosts moved by the position store follow the same paths as
+ * hosts that move themselves.
+ */
+public class HostPositionStoreTest extends TestCase {
+	private static final double DELTA = 0.00001;
+	private static final double STEP = 0.3;
+	private SimClock clock;
+	private TestUtils utils;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	public void testMove() {
+		DTNHost free = utils.createHost(new PathMovement(), "free");
+		DTNHost stored = utils.createHost(new PathMovement(), "stored");
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(stored);
+		HostPositionStore store = new HostPositionStore(hosts);
+
+		while (clock.getTime() < 72) {
+			free.move(STEP);
+			store.move(STEP);
+			assertEquals(free.getLocation().getX(),
+					stored.getLocation().getX(), DELTA);
+			assertEquals(free.getLocation().getY(),
+					stored.getLocation().getY(), DELTA);
+			clock.advance(STEP);
+		}
+		/* second path ended at the start of the first one */
+		assertEquals(0.0, stored.getLocation().getX(), DELTA);
+		assertEquals(0.0, stored.getLocation().getY(), DELTA);
+	}
+
+	public void testSetLocation() {
+		DTNHost host = utils.createHost(new PathMovement(), "host");
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(host);
+		HostPositionStore store = new HostPositionStore(hosts);
+
+		clock.setTime(6); /* first path starts at 5 */
+		store.move(STEP);
+		host.setLocation(new Coord(5, 5));
+		store.move(STEP);
+		/* moves from the new location towards (10,0) */
+		assertTrue(host.getLocation().getX() > 5);
+		assertTrue(host.getLocation().getY() < 5);
+	}
+
+	/**
+	 * Movement model whose paths go (0,0) -> (10,0) -> (10,7) -> (0,0)
+	 * with speed 1.0 and that waits 5 seconds between the paths
+	 */
+	private static class PathMovement extends MovementModel {
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0);
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public double getNextActivenessChange() {
+			return Double.MAX_VALUE;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(1.0);
+			p.addWaypoint(new Coord(0, 0));
+			p.addWaypoint(new Coord(10, 0));
+			p.addWaypoint(new Coord(10, 7));
+			p.addWaypoint(new Coord(0, 0));
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + 5;
+		}
+
+		@Override
+		public PathMovement replicate() {
+			return new PathMovement();
+		}
+	}
+}
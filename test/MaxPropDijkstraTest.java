@@ -123,6 +123,34 @@ public class MaxPropDijkstraTest extends TestCase {
 		assertEquals( (1-0.625)+(1-0.5), result.get(5));
 	}
 	
+	public void testCachedSearch() {
+		mapping.get(0).updateMeetingProbFor(1);
+		mapping.get(1).updateMeetingProbFor(2);
+		mapping.get(1).updateMeetingProbFor(3); // 1->2: 0.5, 1->3: 0.5
+		mapping.get(3).updateMeetingProbFor(4);
+		
+		targets.add(2);
+		Map<Integer, Double> result = mpd.getCosts(0, targets);
+		assertEquals(1, result.size());
+		assertEquals(0.5, result.get(2), DELTA);
+		
+		targets.add(4); // continues the previous search
+		result = mpd.getCosts(0, targets);
+		assertEquals(0.5, result.get(2), DELTA);
+		assertEquals(0.5, result.get(4), DELTA);
+		
+		mapping.get(1).updateMeetingProbFor(3); // 1->2: 0.25, 1->3: 0.75
+		result = mpd.getCosts(0, targets);
+		assertEquals(0.75, result.get(2), DELTA);
+		assertEquals(0.25, result.get(4), DELTA);
+		
+		/* replaced probability set */
+		mapping.put(3, new MeetingProbabilitySet(
+				MeetingProbabilitySet.INFINITE_SET_SIZE, 1.0));
+		result = mpd.getCosts(0, targets);
+		assertEquals(0.75, result.get(2), DELTA);
+		assertNull(result.get(4));
+	}
 	
 	public void testProbabilitySumsToOne() {
 		double total;
@@ -18,6 +18,8 @@ public class MaxPropRouterTest extends AbstractRouterTest {
 	private MaxPropRouter r1,r2,r3,r4;
 	private static final int NROF_HOSTS = 10;
 	private static final double INVALID_COST = Double.MAX_VALUE;
+	/** exchange and size limits for the routers (zero = no limit) */
+	private int exchangeTopK, maxProbSets;
 	
 	protected void setUp() throws Exception {
 		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
@@ -25,6 +27,10 @@ public class MaxPropRouterTest extends AbstractRouterTest {
 				SimScenario.NROF_GROUPS_S, "1");
 		ts.putSetting(SimScenario.GROUP_NS + "." + 
 				core.SimScenario.NROF_HOSTS_S, "" + NROF_HOSTS);
+		ts.setNameSpace(MaxPropRouter.MAXPROP_NS);
+		ts.putSetting(MaxPropRouter.EXCHANGE_TOP_K_S, ""+exchangeTopK);
+		ts.putSetting(MaxPropRouter.MAX_PROB_SETS_S, ""+maxProbSets);
+		ts.setNameSpace(null);
 		setRouterProto(new MaxPropRouter(ts));
 		super.setUp();
 		
@@ -303,4 +309,62 @@ public class MaxPropRouterTest extends AbstractRouterTest {
 		/* msg path h2->h1->h4 */
 		assertEquals((1-0.75)+(1-0.25), r2.getCost(h2, h4));
 	}
+	public void testExchangeTopK() throws Exception {
+		exchangeTopK = 1;
+		setUp();
+		h1.createNewMessage(new Message(h1, h2, msgId1, 10));
+		
+		meet(h2, h3);
+		meet(h2, h4);
+		/* h2 has the sets of h3 and h4 (the most recent) */
+		
+		meet(h1, h2);
+		/* the first meeting -> only the most recent set is read */
+		assertEquals(0.0, r1.getCost(h4, h2));
+		assertEquals(INVALID_COST, r1.getCost(h3, h2));
+		
+		meet(h2, h5);
+		meet(h2, h6);
+		
+		meet(h1, h2);
+		/* the most recent set and the sets updated since the previous 
+		 * meeting are read, but still not the old set of h3 */
+		assertEquals(0.0, r1.getCost(h5, h2));
+		assertEquals(0.0, r1.getCost(h6, h2));
+		assertEquals(INVALID_COST, r1.getCost(h3, h2));
+	}
+	
+	public void testMaxProbSets() throws Exception {
+		maxProbSets = 2;
+		setUp();
+		h1.createNewMessage(new Message(h1, h5, msgId1, 10));
+		
+		/* h1 meets h5 first, so the others reach h5 through h1 */
+		DTNHost[] met = {h5, h2, h3, h4};
+		for (DTNHost h : met) {
+			meet(h1, h);
+		}
+		/* only the sets of h3 and h4 fit */
+		assertEquals(INVALID_COST, r1.getCost(h2, h5));
+		assertTrue(r1.getCost(h3, h5) < INVALID_COST);
+		assertTrue(r1.getCost(h4, h5) < INVALID_COST);
+		
+		/* h3's set is updated -> h4's set is the oldest one to drop */
+		meet(h1, h3);
+		meet(h1, h2);
+		assertTrue(r1.getCost(h2, h5) < INVALID_COST);
+		assertTrue(r1.getCost(h3, h5) < INVALID_COST);
+		assertEquals(INVALID_COST, r1.getCost(h4, h5));
+	}
+
+	/**
+	 * Advances the clock and lets two hosts meet (without updating them)
+	 * @param from The host that initiates the connection
+	 * @param to The other host
+	 */
+	private void meet(DTNHost from, DTNHost to) {
+		clock.advance(1.0);
+		from.forceConnection(to, null, true);
+		from.forceConnection(to, null, false);
+	}
 }
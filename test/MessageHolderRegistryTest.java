@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.EpidemicOracleRouter;
+import routing.util.MessageHolderRegistry;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests for the message holder registry and its use in
+ * EpidemicOracleRouter
+ */
+public class MessageHolderRegistryTest extends TestCase {
+	private MessageHolderRegistry registry;
+	private int h0;
+	private int h1;
+	private int h2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		registry = new MessageHolderRegistry();
+		h0 = registry.addHolder();
+		h1 = registry.addHolder();
+		h2 = registry.addHolder();
+	}
+
+	public void testHolders() {
+		registry.add("A", h0);
+		registry.add("A", h2);
+		assertEquals(holders(h0, h2), registry.getHolders("A"));
+		assertEquals(new BitSet(), registry.getHolders("B"));
+
+		registry.getHolders("A").clear(); // a copy
+		assertEquals(holders(h0, h2), registry.getHolders("A"));
+
+		registry.remove("A", h0);
+		registry.remove("A", h1); // not a holder
+		registry.remove("B", h1); // unknown message
+		assertEquals(holders(h2), registry.getHolders("A"));
+		registry.remove("A", h2);
+		assertEquals(new BitSet(), registry.getHolders("A"));
+	}
+
+	public void testDifference() {
+		registry.add("A", h0);
+		registry.add("B", h0);
+		registry.add("C", h0);
+		registry.add("B", h1);
+		registry.add("D", h1);
+
+		assertEquals(Arrays.asList("A", "C"), registry.getDifference(h0, h1));
+		assertEquals(Arrays.asList("D"), registry.getDifference(h1, h0));
+		assertEquals(Arrays.asList("A", "B", "C"),
+				registry.getDifference(h0, h2));
+		assertEquals(0, registry.getDifference(h2, h0).size());
+	}
+
+	public void testIndexReuse() {
+		registry.add("A", h0);
+		registry.add("B", h0);
+		registry.add("C", h0);
+		registry.add("B", h1);
+
+		/* B still has a holder -> keeps its index */
+		registry.remove("B", h0);
+		registry.add("D", h0);
+		assertEquals(Arrays.asList("A", "C", "D"),
+				registry.getDifference(h0, h2));
+
+		/* B's index is freed and reused by the next new message */
+		registry.remove("B", h1);
+		registry.add("E", h2);
+		assertEquals(Arrays.asList("E"), registry.getDifference(h2, h0));
+		assertEquals(holders(h2), registry.getHolders("E"));
+		assertEquals(new BitSet(), registry.getHolders("B"));
+		registry.add("E", h0);
+		assertEquals(Arrays.asList("A", "E", "C", "D"),
+				registry.getDifference(h0, h1));
+
+		/* a removed and re-added message is a new message */
+		registry.remove("A", h0);
+		registry.add("A", h1);
+		assertEquals(holders(h1), registry.getHolders("A"));
+		assertEquals(Arrays.asList("A"), registry.getDifference(h1, h0));
+	}
+
+	public void testDeliveryOnlyToHolders() {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		SimClock.reset();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		EpidemicOracleRouter.reset();
+
+		MessageChecker mc = new MessageChecker();
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(mc);
+		TestUtils utils = new TestUtils(null, ml, ts);
+		utils.setMessageRouterProto(new EpidemicOracleRouter(ts));
+		Coord c0 = new Coord(0, 0);
+		DTNHost a = utils.createHost(c0, "a");
+		DTNHost b = utils.createHost(c0, "b");
+		DTNHost c = utils.createHost(c0, "c");
+		DTNHost d = utils.createHost(c0, "d");
+		DTNHost e = utils.createHost(c0, "e");
+
+		/* M1 from a to e spreads to b; c and d have only M2 */
+		a.createNewMessage(new Message(a, e, "M1", 1));
+		c.createNewMessage(new Message(c, a, "M2", 1));
+		a.forceConnection(b, null, true);
+		c.forceConnection(d, null, true);
+		assertTrue(b.getRouter().hasMessage("M1"));
+		assertTrue(d.getRouter().hasMessage("M2"));
+		mc.reset();
+
+		/* b delivers M1 -> the other holder (a) removes the message and the
+		   routers that don't have it aren't touched */
+		b.forceConnection(e, null, true);
+		List<DTNHost> deletedAt = new ArrayList<DTNHost>();
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_DELETE)) {
+				assertEquals("M1", mc.getLastMsg().getId());
+				deletedAt.add(mc.getLastFrom());
+			}
+		}
+		assertEquals(Arrays.asList(a), deletedAt);
+		assertFalse(a.getRouter().hasMessage("M1"));
+		assertTrue(c.getRouter().hasMessage("M2"));
+		assertTrue(d.getRouter().hasMessage("M2"));
+	}
+
+	private static BitSet holders(int... indices) {
+		BitSet set = new BitSet();
+		for (int i : indices) {
+			set.set(i);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+import routing.util.MessageIdSet;
+import core.SimClock;
+
+/**
+ * Tests for the compact message ID set
+ */
+public class MessageIdSetTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+		MessageIdSet.reset();
+	}
+
+	public void testAddAndContains() {
+		MessageIdSet s1 = new MessageIdSet(false);
+		MessageIdSet s2 = new MessageIdSet(false);
+
+		for (int i=0; i<10; i++) {
+			s1.add("M" + i, 100);
+		}
+		s2.add("M5", 100);
+		s2.add("X", 100);
+		s2.add("M5", 200); // already in the set
+
+		assertEquals(10, s1.size());
+		assertEquals(2, s2.size());
+		assertTrue(s1.contains("M0"));
+		assertTrue(s1.contains("M9"));
+		assertFalse(s1.contains("X"));
+		assertFalse(s1.contains("unknown"));
+		assertTrue(s2.contains("M5"));
+		assertFalse(s2.contains("M4"));
+		assertEquals(Arrays.asList("M5", "X"), s2.getIds());
+		assertEquals(11, MessageIdSet.getNrofNumberedIds());
+
+		/* IDs aren't forgotten unless requested */
+		clock.setTime(1000);
+		s1.add("M10", 2000);
+		assertEquals(11, s1.size());
+		assertTrue(s1.contains("M0"));
+	}
+
+	public void testForgetExpired() {
+		MessageIdSet s1 = new MessageIdSet(true);
+		MessageIdSet s2 = new MessageIdSet(true);
+
+		s1.add("A", 10);
+		s1.add("B", 20);
+		s1.add("C", 30);
+		s2.add("B", 20);
+		s2.add("C", 40); // a later replicate of C
+		assertEquals(3, MessageIdSet.getNrofNumberedIds());
+
+		clock.setTime(25);
+		assertFalse(s1.contains("A")); // expired but not yet removed
+		assertFalse(s1.contains("B"));
+		assertTrue(s1.contains("C"));
+		assertEquals(Arrays.asList("C"), s1.getIds());
+		assertEquals(3, s1.size());
+
+		/* adding removes the expired IDs; s2 still refers to B */
+		s1.add("D", 50);
+		assertEquals(2, s1.size());
+		assertEquals(ids("C", "D"), new HashSet<String>(s1.getIds()));
+		assertEquals(3, MessageIdSet.getNrofNumberedIds());
+
+		clock.setTime(35);
+		s2.add("E", 50);
+		assertEquals(ids("C", "E"), new HashSet<String>(s2.getIds()));
+		assertEquals(3, MessageIdSet.getNrofNumberedIds()); // C, D, E
+
+		/* a re-added ID after its number was freed is a new ID */
+		s1.add("A", 100);
+		assertTrue(s1.contains("A"));
+		assertFalse(s2.contains("A"));
+		assertTrue(s1.contains("D"));
+		assertTrue(s2.contains("E"));
+		assertEquals(ids("A", "D"), new HashSet<String>(s1.getIds()));
+		assertEquals(2, s1.size()); // C expired at 30
+	}
+
+	public void testNumberingDoesNotGrow() {
+		MessageIdSet s1 = new MessageIdSet(true);
+		MessageIdSet s2 = new MessageIdSet(true);
+
+		for (int i=0; i<1000; i++) {
+			clock.setTime(i);
+			s1.add("M" + i, i + 10);
+			if (i % 2 == 0) {
+				s2.add("M" + i, i + 10);
+			}
+			assertTrue(s1.contains("M" + i));
+			assertEquals(i % 2 == 0, s2.contains("M" + i));
+			assertTrue(MessageIdSet.getNrofNumberedIds() <= 12);
+		}
+		assertEquals(11, s1.size());
+		assertTrue(s1.contains("M990"));
+		assertFalse(s1.contains("M988"));
+		assertFalse(s2.contains("M989"));
+		assertTrue(s2.contains("M998"));
+	}
+
+	private static HashSet<String> ids(String... ids) {
+		return new HashSet<String>(Arrays.asList(ids));
+	}
+}
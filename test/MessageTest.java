@@ -48,6 +48,20 @@ public class MessageTest extends TestCase {
 
 
 	}
+	
+	@Test
+	public void testGetExpiryTime() {
+		double expiry = msg.getExpiryTime();
+		assertEquals(10 + 9*60.0, expiry);
+		
+		sc.setTime(expiry);
+		assertEquals(1, msg.getTtl());
+		sc.setTime(expiry + 0.1);
+		assertEquals(0, msg.getTtl());
+		
+		msg.setTtl(Message.INFINITE_TTL);
+		assertEquals(Double.MAX_VALUE, msg.getExpiryTime());
+	}
 
 	@Test
 	public void testAddProperty() {
@@ -11,6 +11,8 @@ import org.junit.Test;
 
 import core.ModuleCommunicationBus;
 import core.ModuleCommunicationListener;
+import core.NumericModuleCommunicationListener;
+import core.SimError;
 
 public class ModuleCommunicationBusTest extends TestCase {
 
@@ -103,4 +105,65 @@ public class ModuleCommunicationBusTest extends TestCase {
 		assertEquals(-16.7, b.getDouble(key, -1.0));
 	}	
 
+	@Test
+	public void testTypedKeys() {
+		ModuleCommunicationBus.Key dKey =
+			ModuleCommunicationBus.doubleKey("typedtst.double");
+		ModuleCommunicationBus.Key iKey =
+			ModuleCommunicationBus.intKey("typedtst.int");
+
+		assertSame(dKey, ModuleCommunicationBus.doubleKey("typedtst.double"));
+		assertSame(dKey, ModuleCommunicationBus.getKey("typedtst.double"));
+		assertFalse(b.containsProperty(dKey));
+		assertEquals(-1.0, b.getDouble(dKey, -1.0));
+
+		b.setDouble(dKey, 2.5);
+		b.setInt(iKey, 3);
+		assertEquals(2.5, b.getDouble(dKey, -1.0));
+		assertEquals(3, b.getInt(iKey, -1));
+		assertEquals(4.0, b.updateDouble(dKey, 1.5));
+
+		/* the string methods see the same values */
+		assertEquals(4.0, b.getDouble("typedtst.double", -1.0));
+		assertEquals(3, b.getProperty("typedtst.int"));
+		b.updateProperty("typedtst.int", 5);
+		assertEquals(5, b.getInt(iKey, -1));
+
+		try {
+			ModuleCommunicationBus.intKey("typedtst.double");
+			fail("Registering a key with another type should fail");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
+
+	@Test
+	public void testNumericListener() {
+		ModuleCommunicationBus.Key key =
+			ModuleCommunicationBus.doubleKey("numtst");
+		final double[] notified = {-1};
+		NumericModuleCommunicationListener nmcl =
+			new NumericModuleCommunicationListener() {
+			public void moduleValueChanged(ModuleCommunicationBus.Key k,
+					double newValue) {
+				notified[0] = newValue;
+			}
+			public void moduleValueChanged(String k, Object newValue) {
+				fail("Numeric value should not be boxed");
+			}
+		};
+
+		b.subscribe(key, nmcl);
+		b.subscribe("numtst", mcl);
+		b.setDouble(key, 1.5);
+		assertEquals(1.5, notified[0]);
+		assertEquals("numtst", notifyKey);
+		assertEquals(1.5, notifyValue);
+
+		b.unsubscribe(key, nmcl);
+		b.setDouble(key, 2.5);
+		assertEquals(1.5, notified[0]);
+		assertEquals(2.5, notifyValue);
+	}
+
 }
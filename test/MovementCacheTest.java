@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementCache;
+import movement.MovementModel;
+import movement.Path;
+import movement.RandomWaypoint;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Tests that movement replayed from the movement cache is identical to the
+ * live movement
+ */
+public class MovementCacheTest extends TestCase {
+	private static final String GROUP_NS = "Group";
+	private static final int NROF_HOSTS = 5;
+	private static final double UP_INT = 0.1;
+	private static final double END_TIME = 1000;
+
+	private TestSettings ts;
+	private File cacheDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		cacheDir = File.createTempFile("movementcache", "");
+		assertTrue(cacheDir.delete() && cacheDir.mkdir());
+
+		ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "3");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementCache.CACHE_DIR_S, cacheDir.getPath());
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "200,200");
+		ts.putSetting(GROUP_NS + "." + MovementModel.SPEED, "5,15");
+		ts.putSetting(GROUP_NS + "." + MovementModel.WAIT_TIME, "0,30");
+	}
+
+	protected void tearDown() throws Exception {
+		for (File f : cacheDir.listFiles()) {
+			f.delete();
+		}
+		cacheDir.delete();
+		super.tearDown();
+	}
+
+	public void testReplayEqualsLive() {
+		List<String> live = moveHosts(null);
+		List<String> recorded = moveHosts(MovementCache.RECORD_MODE);
+		assertEquals(1, cacheDir.listFiles().length);
+		List<String> replayed = moveHosts(MovementCache.REPLAY_MODE);
+
+		int nrofPathEnds = 0;
+		for (String entry : live) {
+			if (entry.endsWith("path ended")) {
+				nrofPathEnds++;
+			}
+		}
+		assertTrue(nrofPathEnds > NROF_HOSTS);
+		assertEquals(live, recorded);
+		assertEquals(live, replayed);
+	}
+
+	public void testKeyIncludesMovementSettings() {
+		moveHosts(MovementCache.RECORD_MODE);
+		ts.putSetting(GROUP_NS + "." + MovementModel.SPEED, "5,16");
+		try {
+			moveHosts(MovementCache.REPLAY_MODE);
+			fail("Replayed movement recorded with other settings");
+		} catch (SimError e) {
+			// OK, no recording for the new settings
+		}
+
+		moveHosts(MovementCache.RECORD_MODE);
+		assertEquals(2, cacheDir.listFiles().length);
+	}
+
+	/**
+	 * Moves hosts like the world does and logs their locations at every
+	 * tick and the times when their paths end
+	 * @param cacheMode The movement cache mode or null for no cache
+	 * @return The log
+	 */
+	private List<String> moveHosts(String cacheMode) {
+		String modeSetting = MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementCache.CACHE_MODE_S;
+		ts.putSetting(modeSetting, cacheMode != null ? cacheMode : "");
+		SimClock.reset();
+		SimClock clock = SimClock.getInstance();
+		NetworkInterface.reset();
+		DTNHost.reset();
+		MovementModel.reset();
+
+		MovementCache cache = null;
+		if (cacheMode != null) {
+			cache = new MovementCache(new Settings());
+			cache.startGroup();
+		}
+		MovementModel mmProto = new RandomWaypoint(new Settings(GROUP_NS));
+		if (cache != null) {
+			mmProto = cache.addGroup(mmProto, NROF_HOSTS);
+			cache.open();
+		}
+
+		TestUtils utils = new TestUtils(null, null,
+				new TestSettings(TestUtils.IFACE_NS));
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts.add(utils.createHost(mmProto, null));
+		}
+
+		List<String> log = new ArrayList<String>();
+		boolean[] onPath = new boolean[NROF_HOSTS];
+		while (clock.getTime() < END_TIME) {
+			for (int i=0; i<NROF_HOSTS; i++) {
+				DTNHost h = hosts.get(i);
+				h.move(UP_INT);
+				Path p = h.getPath();
+				if (onPath[i] && p == null) {
+					log.add(clock.getTime() + " " + h + " path ended");
+				}
+				onPath[i] = (p != null);
+				Coord c = h.getLocation();
+				log.add(clock.getTime() + " " + h + " " + c.getX() + "," +
+						c.getY());
+			}
+			clock.advance(UP_INT);
+		}
+
+		if (cache != null) {
+			cache.close();
+		}
+		ts.putSetting(modeSetting, "");
+		return log;
+	}
+}
@@ -0,0 +1,183 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.MovieReader;
+
+import java.io.File;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import report.MovieReport;
+import report.Report;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.SimClock;
+
+/**
+ * Tests recording a movie with {@link MovieReport} and reading it with
+ * {@link MovieReader}
+ */
+public class MovieReportTest extends TestCase implements ConnectionListener {
+	private File outFile;
+	private SimClock clock;
+	private MovieReport mr;
+	private TestUtils utils;
+	private int nrofConnects;
+	private int nrofDisconnects;
+	private double lastEventTime;
+
+	private DTNHost h1, h2, h3;
+	private Coord away = new Coord(1000,1000);
+
+	private final String SET_PREFIX = "MovieReport.";
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		outFile = File.createTempFile("movietest", MovieReader.MOVIE_EXT);
+		outFile.deleteOnExit();
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(SET_PREFIX + Report.OUTPUT_SETTING,
+				outFile.getAbsolutePath());
+		ts.putSetting(SET_PREFIX + MovieReport.KEYFRAME_INTERVAL_S, "2");
+
+		clock = SimClock.getInstance();
+		mr = new MovieReport();
+
+		Vector<ConnectionListener> cl = new Vector<ConnectionListener>();
+		cl.add(mr);
+		utils = new TestUtils(cl, null, ts);
+		h1 = utils.createHost(new Coord(0,0));
+		h2 = utils.createHost(new Coord(1,0));
+		h3 = utils.createHost(away);
+		for (DTNHost h : utils.getAllHosts()) {
+			// TestUtils doesn't set up activeness (needed for radio state)
+			for (NetworkInterface ni : h.getInterfaces()) {
+				ni.setGroupSettings(ts);
+			}
+		}
+	}
+
+	public void testRecordAndReplay() throws Exception {
+		clock.setTime(1);
+		mr.updated(utils.getAllHosts());	// first frame and keyframe
+		clock.setTime(1.5);
+		h1.forceConnection(h2, null, true);
+		clock.setTime(2);
+		h3.setLocation(new Coord(10.06, 20.04));
+		mr.updated(utils.getAllHosts());
+		clock.setTime(2.5);
+		mr.updated(utils.getAllHosts());	// less than frame interval
+		clock.setTime(3);
+		h1.forceConnection(h2, null, false);
+		mr.updated(utils.getAllHosts());	// frame and keyframe
+		mr.done();
+
+		MovieReader movie = new MovieReader(outFile, utils.getAllHosts());
+		movie.addConnectionListener(this);
+		assertEquals(3, movie.getNrofHosts());
+		assertEquals(1.0, movie.getStartTime());
+		assertEquals(3.0, movie.getEndTime());
+		assertEquals(1.0, movie.getTime());
+		assertEquals(0, movie.getNrofConnections(0));
+		assertEquals(away.getX(), movie.getX(2), 0.01);
+
+		assertTrue(movie.advance());
+		assertEquals(2.0, movie.getTime());
+		assertEquals(1, nrofConnects);
+		assertEquals(1.5, lastEventTime);
+		assertEquals(1, movie.getNrofConnections(0));
+		assertEquals(1, movie.getPeer(0, 0));
+		assertEquals(10.1, movie.getX(2), 0.001);
+		assertEquals(20.0, movie.getY(2), 0.001);
+
+		assertTrue(movie.advance());
+		assertEquals(3.0, movie.getTime());
+		assertEquals(1, nrofDisconnects);
+		assertEquals(0, movie.getNrofConnections(1));
+		assertFalse(movie.advance());
+
+		movie.seek(2.7);	// back to the frame of t=2
+		assertEquals(2.0, movie.getTime());
+		assertEquals(2.0, SimClock.getTime());
+		assertEquals(1, movie.getNrofConnections(1));
+		assertEquals(10.1, movie.getX(2), 0.001);
+		assertEquals(1, nrofConnects); // no events when seeking
+
+		movie.seek(0);
+		assertEquals(1.0, movie.getTime());
+		assertEquals(away.getX(), movie.getX(2), 0.01);
+	}
+
+	public void testSegmentedFile() throws Exception {
+		Message m = new Message(h1, h3, "M1", 100);
+		for (int i=1; i<=10; i++) {
+			clock.setTime(i);
+			h3.setLocation(new Coord(i * 3.3, 1000 - i * 7.7));
+			if (i == 4) {
+				h1.forceConnection(h2, null, true);
+				mr.newMessage(m);
+				mr.messageTransferStarted(m, h1, h2);
+			}
+			if (i == 7) {
+				h1.forceConnection(h2, null, false);
+			}
+			mr.updated(utils.getAllHosts());
+		}
+		mr.done();
+
+		/* segments smaller than any value -> every value crosses a segment
+		 * boundary at some point */
+		MovieReader whole = new MovieReader(outFile, utils.getAllHosts());
+		MovieReader segmented = new MovieReader(outFile, utils.getAllHosts(),
+				3);
+		MessageChecker mc = new MessageChecker();
+		segmented.addMessageListener(mc);
+		do {
+			assertEquals(whole.getTime(), segmented.getTime());
+			for (int i=0; i<3; i++) {
+				assertEquals(whole.getX(i), segmented.getX(i));
+				assertEquals(whole.getY(i), segmented.getY(i));
+				assertEquals(whole.getNrofConnections(i),
+						segmented.getNrofConnections(i));
+			}
+		} while (whole.advance() & segmented.advance());
+		assertFalse(whole.hasNext() || segmented.hasNext());
+		assertEquals(10.0, segmented.getEndTime());
+		assertEquals(33.0, segmented.getX(2), 0.1);
+
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_CREATE, mc.getLastType());
+		assertEquals("M1", mc.getLastMsg().getId());
+		assertEquals(h1, mc.getLastMsg().getFrom());
+		assertEquals(h3, mc.getLastMsg().getTo());
+		assertEquals(100, mc.getLastMsg().getSize());
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(h2, mc.getLastTo());
+		assertFalse(mc.next());
+
+		segmented.seek(5);
+		assertEquals(5.0, segmented.getTime());
+		assertEquals(1, segmented.getNrofConnections(0));
+		assertEquals(16.5, segmented.getX(2), 0.1);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		nrofConnects++;
+		lastEventTime = SimClock.getTime();
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		nrofDisconnects++;
+		lastEventTime = SimClock.getTime();
+	}
+}
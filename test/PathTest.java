@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import movement.Path;
+import core.Coord;
+
+/**
+ * Tests for the packed paths and their sharing and pooling
+ */
+public class PathTest extends TestCase {
+
+	public void testWaypoints() {
+		Path p = new Path(2.0);
+		p.addWaypoint(new Coord(1, 2));
+		p.addWaypoint(3, 4);
+		assertEquals(2, p.getNrofWaypoints());
+		assertEquals(new Coord(1, 2), p.getNextWaypoint());
+		assertEquals(2.0, p.getSpeed());
+		Coord c = new Coord(0, 0);
+		assertSame(c, p.getNextWaypoint(c));
+		assertEquals(new Coord(3, 4), c);
+		assertFalse(p.hasNext());
+
+		Path v = new Path();
+		for (int i=0; i<20; i++) {
+			v.addWaypoint(new Coord(i, i), i + 1);
+		}
+		assertEquals(20, v.getCoords().size());
+		for (int i=0; i<20; i++) {
+			assertEquals(new Coord(i, i), v.getNextWaypoint());
+			assertEquals(i + 1.0, v.getSpeed());
+		}
+	}
+
+	public void testShareWaypoints() {
+		Path leg = new Path();
+		leg.addWaypoint(0, 0);
+		leg.addWaypoint(10, 0);
+
+		Path p1 = new Path(1.0);
+		p1.shareWaypoints(leg);
+		Path p2 = new Path(2.0);
+		p2.shareWaypoints(leg);
+		p2.addWaypoint(10, 10); // must not change the others
+
+		assertEquals(2, leg.getNrofWaypoints());
+		assertEquals(2, p1.getNrofWaypoints());
+		assertEquals(3, p2.getNrofWaypoints());
+		p1.getNextWaypoint();
+		assertEquals(1.0, p1.getSpeed());
+		p2.getNextWaypoint();
+		assertEquals(2.0, p2.getSpeed());
+
+		Path copy = new Path(p2);
+		copy.setSpeed(3.0);
+		assertEquals(2.0, p2.getSpeed());
+		assertEquals(new Coord(10, 0), copy.getNextWaypoint());
+	}
+
+	public void testRecycle() {
+		PoolMovement mm = new PoolMovement();
+		Path p1 = mm.getPath();
+		Path shared = new Path(p1);
+		p1.recycle();
+		p1.recycle(); // second recycle does nothing
+
+		Path p2 = mm.getPath();
+		assertSame(p1, p2);
+		assertNotSame(p2, mm.getPath()); // pool is empty again
+		/* reusing the path didn't change the copy */
+		assertEquals(1, shared.getNrofWaypoints());
+		assertEquals(new Coord(1, 1), shared.getNextWaypoint());
+		assertEquals(1, p2.getNrofWaypoints());
+		assertEquals(2.0, p2.getSpeeds().get(0));
+
+		new Path(1.0).recycle(); // not from a pool -> nothing happens
+	}
+
+	/**
+	 * Movement model that gives one waypoint paths from its pool
+	 */
+	private static class PoolMovement extends StationaryMovement {
+		private int nrofPaths = 0;
+
+		public PoolMovement() {
+			super(null);
+		}
+
+		@Override
+		public Path getPath() {
+			nrofPaths++;
+			Path p = newPath(nrofPaths);
+			p.addWaypoint(nrofPaths, nrofPaths);
+			return p;
+		}
+	}
+}
@@ -95,5 +95,59 @@ public class ScheduleDijkstraTest extends TestCase {
 		/* starts directly at 3, early enough for multihop */
 		comparePaths(new int[]{3,12,13,14,20}, d.getShortestPath(3, 20, 40));		
 	}
-
+	
+	public void testChangedSchedules() {
+		oracle.addEntry(40, 3, 10, 5);
+		oracle.addEntry(60, 10, 20, 10);
+		oracle.addEntry(100, 1, 20, 5); /* late but fast */
+		
+		comparePaths(new int[]{1,3,10,20}, d.getShortestPath(1, 20, 0));
+		comparePaths(new int[]{1,3,10,20}, d.getShortestPath(1, 20, 15));
+		/* misses the first hop to 3 */
+		comparePaths(new int[]{1, 20}, d.getShortestPath(1, 20, 30));
+		assertEquals(0, d.getShortestPath(1, 3, 25).size());
+		
+		/* added entries and changed times are noticed */
+		oracle.addEntry(50, 1, 10, 1);
+		comparePaths(new int[]{1,10,20}, d.getShortestPath(1, 20, 30));
+		List<ScheduleEntry> path = d.getShortestPath(1, 10, 0);
+		comparePaths(new int[]{1,3,10}, path);
+		path.get(1).setDelta(20); /* 3->10 leaves at 60 */
+		comparePaths(new int[]{1,10}, d.getShortestPath(1, 10, 0));
+	}
+	
+	public void testCachedPaths() {
+		d = new ScheduleDijkstra(oracle, 100);
+		oracle.addEntry(40, 3, 10, 5);
+		oracle.addEntry(60, 10, 20, 10);
+		oracle.addEntry(100, 1, 20, 5); /* late but fast */
+		
+		comparePaths(new int[]{1,3,10,20}, d.getShortestPath(1, 20, 0));
+		assertEquals(0, d.getNrofCacheHits());
+		/* same bucket, the cached path is still catchable */
+		comparePaths(new int[]{1,3,10,20}, d.getShortestPath(1, 20, 15));
+		comparePaths(new int[]{1,3}, d.getShortestPath(1, 3, 20));
+		assertEquals(2, d.getNrofCacheHits());
+		/* same bucket, misses the first hop to 3 */
+		comparePaths(new int[]{1, 20}, d.getShortestPath(1, 20, 30));
+		assertEquals(2, d.getNrofCacheHits());
+		/* an earlier departure replaces the profile of 30 */
+		assertEquals(0, d.getShortestPath(1, 3, 25).size());
+		comparePaths(new int[]{1, 20}, d.getShortestPath(1, 20, 35));
+		assertEquals(3, d.getNrofCacheHits());
+		
+		/* a changed time clears the cache */
+		List<ScheduleEntry> path = d.getShortestPath(1, 20, 35);
+		assertEquals(4, d.getNrofCacheHits());
+		path.get(0).setDelta(-70); /* 1->20 leaves at 30 */
+		comparePaths(new int[]{1, 20}, d.getShortestPath(1, 20, 30));
+		assertEquals(4, d.getNrofCacheHits());
+		assertEquals(0, d.getShortestPath(1, 20, 35).size());
+		
+		/* so does an added entry */
+		oracle.addEntry(40, 1, 20, 5);
+		comparePaths(new int[]{1, 20}, d.getShortestPath(1, 20, 35));
+		assertEquals(4, d.getNrofCacheHits());
+	}
+	
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.MessageEventGenerator;
+import input.TrafficMatrixMessageGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * Tests for the TrafficMatrixMessageGenerator
+ */
+public class TrafficMatrixMessageGeneratorTest extends TestCase {
+	private static final int NROF_EVENTS = 50000;
+	private static final double DELTA = 0.01;
+	/** pattern of the source and destination in a creation event's text */
+	private static final Pattern PAIR = 
+		Pattern.compile("\\[(\\d+)->(\\d+)\\]");
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.putSetting(SimScenario.SCENARIO_NS + "." +
+				SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(SimScenario.GROUP_NS + "1." +
+				SimScenario.NROF_HOSTS_S, "2");
+		ts.putSetting(SimScenario.GROUP_NS + "2." +
+				SimScenario.NROF_HOSTS_S, "1");
+		ts.setNameSpace("Events1");
+		ts.putSetting(MessageEventGenerator.MESSAGE_SIZE_S, "10");
+		ts.putSetting(MessageEventGenerator.MESSAGE_INTERVAL_S, "1,3");
+		ts.putSetting(MessageEventGenerator.HOST_RANGE_S, "0,3");
+		ts.putSetting(MessageEventGenerator.MESSAGE_ID_PREFIX_S, "M");
+		ts.putSetting(TrafficMatrixMessageGenerator.BATCH_SIZE_S, "100");
+	}
+
+	public void testTrafficMatrix() throws IOException {
+		File matrix = writeMatrix("# from to weight", "", "0 1 1",
+				"1 2 3", "2 0 0", "2 1 6");
+		ts.putSetting(TrafficMatrixMessageGenerator.TRAFFIC_MATRIX_S,
+				matrix.getPath());
+
+		int[][] counts = generate(new TrafficMatrixMessageGenerator(ts));
+		assertEquals(0, counts[2][0]); // zero weight
+		assertEquals(0.1, counts[0][1] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.3, counts[1][2] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.6, counts[2][1] / (double)NROF_EVENTS, DELTA);
+		assertEquals(NROF_EVENTS, counts[0][1] + counts[1][2] + counts[2][1]);
+	}
+
+	public void testInvalidTrafficMatrix() throws IOException {
+		assertInvalid("0 1 1", "1 1 2"); // self pair
+		assertInvalid("0 3 1"); // destination out of the host range
+		assertInvalid("0 1 -1"); // negative weight
+		assertInvalid("0 1"); // missing weight
+		assertInvalid("0 1 0"); // no traffic
+	}
+
+	public void testHotspots() {
+		ts.putSetting(TrafficMatrixMessageGenerator.HOTSPOTS_S, "2");
+		ts.putSetting(TrafficMatrixMessageGenerator.HOTSPOT_WEIGHT_S, "8");
+
+		int[][] counts = generate(new TrafficMatrixMessageGenerator(ts));
+		int[] toCounts = new int[3];
+		for (int from=0; from<3; from++) {
+			for (int to=0; to<3; to++) {
+				toCounts[to] += counts[from][to];
+			}
+		}
+		assertEquals(0.8, toCounts[2] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.1, toCounts[0] / (double)NROF_EVENTS, DELTA);
+		/* sources are uniform among the other hosts */
+		assertEquals(0.4, counts[0][2] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.4, counts[1][2] / (double)NROF_EVENTS, DELTA);
+	}
+
+	public void testGroupMatrix() {
+		/* group 0 = hosts 0 and 1, group 1 = host 2 */
+		ts.putSetting(TrafficMatrixMessageGenerator.GROUP_MATRIX_S,
+				"1, 3, 0, 0");
+
+		int[][] counts = generate(new TrafficMatrixMessageGenerator(ts));
+		assertEquals(0, counts[2][0] + counts[2][1]); // zero weight
+		/* within group 0 the only possible pairs are 0->1 and 1->0 */
+		assertEquals(0.125, counts[0][1] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.125, counts[1][0] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.375, counts[0][2] / (double)NROF_EVENTS, DELTA);
+		assertEquals(0.375, counts[1][2] / (double)NROF_EVENTS, DELTA);
+	}
+
+	public void testGroupIds() {
+		/* both host groups in the same traffic group */
+		ts.putSetting(TrafficMatrixMessageGenerator.GROUP_IDS_S, "g");
+		ts.putSetting(TrafficMatrixMessageGenerator.GROUP_MATRIX_S, "1");
+		ts.setNameSpace(null);
+		ts.putSetting(SimScenario.GROUP_NS + "." + SimScenario.GROUP_ID_S,
+				"g");
+		ts.setNameSpace("Events1");
+
+		int[][] counts = generate(new TrafficMatrixMessageGenerator(ts));
+		for (int from=0; from<3; from++) {
+			for (int to=0; to<3; to++) {
+				if (from != to) {
+					assertEquals(1 / 6.0,
+							counts[from][to] / (double)NROF_EVENTS, DELTA);
+				}
+			}
+		}
+	}
+
+	public void testExactlyOneMode() {
+		try {
+			new TrafficMatrixMessageGenerator(ts);
+			fail("No traffic pattern should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+
+		ts.putSetting(TrafficMatrixMessageGenerator.HOTSPOTS_S, "2");
+		ts.putSetting(TrafficMatrixMessageGenerator.GROUP_MATRIX_S, "1,1,1,1");
+		try {
+			new TrafficMatrixMessageGenerator(ts);
+			fail("Two traffic patterns should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Generates {@link #NROF_EVENTS} events and counts the events of each
+	 * source-destination pair. Also checks that events are in time order
+	 * and no host sends to itself.
+	 * @param gen The generator
+	 * @return Counts of the events by [from][to] address
+	 */
+	private int[][] generate(TrafficMatrixMessageGenerator gen) {
+		int[][] counts = new int[3][3];
+		double lastTime = 0;
+		for (int i=0; i<NROF_EVENTS; i++) {
+			double time = gen.nextEventsTime();
+			ExternalEvent ee = gen.nextEvent();
+			assertEquals(time, ee.getTime(), 0.0);
+			assertTrue(ee.getTime() >= lastTime);
+			lastTime = ee.getTime();
+			Matcher m = PAIR.matcher(ee.toString());
+			assertTrue(m.find());
+			int from = Integer.parseInt(m.group(1));
+			int to = Integer.parseInt(m.group(2));
+			assertTrue("Self pair " + ee, from != to);
+			counts[from][to]++;
+		}
+		return counts;
+	}
+
+	private File writeMatrix(String... lines) throws IOException {
+		File f = File.createTempFile("matrixtest", ".txt");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(f);
+		for (String line : lines) {
+			out.println(line);
+		}
+		out.close();
+		return f;
+	}
+
+	private void assertInvalid(String... lines) throws IOException {
+		ts.putSetting(TrafficMatrixMessageGenerator.TRAFFIC_MATRIX_S,
+				writeMatrix(lines).getPath());
+		try {
+			new TrafficMatrixMessageGenerator(ts);
+			fail("Invalid matrix " + Arrays.asList(lines) +
+					" should not be accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
@@ -4,13 +4,26 @@
  */
 package test;
 
+import input.ConnectionEvent;
 import input.EventQueue;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
+import core.Message;
+import core.MessageListener;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
 import core.SimClock;
@@ -101,7 +114,131 @@ public class WorldTest extends TestCase {
 
 	}
 	
+	public void testWakeUpTimeOfAllInterfaces() {
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(ts));
+		li.add(new TestInterface(ts));
+		DTNHost host = new DTNHost(new ArrayList<MessageListener>(), null,
+				"n", li, new ModuleCommunicationBus(), 
+				new StationaryMovement(new Coord(0, 0)), new PassiveRouter(ts));
+		
+		ts.putSetting(NetworkInterface.NET_SUB_NS + ".activeTimes", "0,50");
+		host.getInterface(1).setGroupSettings(ts);
+		ts.putSetting(NetworkInterface.NET_SUB_NS + ".activeTimes", "0,20");
+		host.getInterface(2).setGroupSettings(ts);
+		
+		/* the second interface changes first */
+		assertEquals(20, host.getWakeUpTime(), TIME_DELTA);
+		SimClock.getInstance().setTime(30);
+		assertEquals(50, host.getWakeUpTime(), TIME_DELTA);
+		SimClock.getInstance().setTime(60);
+		assertEquals(Double.MAX_VALUE, host.getWakeUpTime());
+	}
+	
 
+	public void testSkipQuiescentHosts() {
+		List<String> full = runScenario();
+		int nrofFullUpdates = CountingRouter.nrofUpdates;
+		List<String> skipped = runScenario(World.SKIP_QUIESCENT_S);
+		
+		assertEquals(full, skipped);
+		assertTrue(full.size() > 100);
+		/* the quiescent hosts were left out from the updates */
+		assertTrue(CountingRouter.nrofUpdates < nrofFullUpdates * 3 / 4);
+	}
+	
+	public void testUpdateTouchedHosts() {
+		List<String> all = runScenario(World.UPDATE_ALL_AFTER_EVENT_S);
+		List<String> touched = runScenario();
+		
+		assertEquals(all, touched);
+		/* hosts touched by an event are updated at the event's time */
+		assertTrue(touched.contains("25.5 start M1 h0 h4"));
+		assertTrue(touched.contains("170.5 start M3 h1 h4"));
+		assertTrue(touched.contains("270.5 start M4 h3 h2"));
+		
+		/* same with skipping of quiescent hosts */
+		assertEquals(all, runScenario(World.SKIP_QUIESCENT_S));
+		assertEquals(all, runScenario(World.SKIP_QUIESCENT_S, 
+				World.UPDATE_ALL_AFTER_EVENT_S));
+	}
+	
+	/**
+	 * Runs a small scenario and returns a log of all message and connection
+	 * events and the hosts' states after every update interval. In the
+	 * scenario, hosts 0, 1 and 2, 3 stay at the ends of a 55 meters long
+	 * line and host 4 shuttles between the ends. Connections are created
+	 * by connection events and torn down when hosts move out of range or
+	 * become inactive.
+	 * @param optimizations Names of the (boolean) optimization settings to
+	 * enable
+	 * @return The event log
+	 */
+	private List<String> runScenario(String... optimizations) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." + 
+				World.RANDOMIZE_UPDATES_S, "false");
+		for (String s : optimizations) {
+			ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." + s, "true");
+		}
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(MessageRouter.MSG_TTL_S, "2");
+		ts.putSetting(NetworkInterface.NET_SUB_NS + ".activeTimes", 
+				"0,200, 250,400");
+		
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		CountingRouter.nrofUpdates = 0;
+		
+		EventLog log = new EventLog();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(log);
+		List<MessageListener> ml = new ArrayList<MessageListener>();
+		ml.add(log);
+		TestUtils utils = new TestUtils(cl, ml, ts);
+		utils.setMessageRouterProto(new CountingRouter(ts));
+		
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(utils.createHost(new Coord(0, 0)));
+		hosts.add(utils.createHost(new Coord(5, 0)));
+		hosts.add(utils.createHost(new Coord(50, 0)));
+		hosts.add(utils.createHost(new Coord(55, 0)));
+		hosts.add(utils.createHost(new ShuttleMovement(), null));
+		for (DTNHost h : hosts) {
+			h.getInterface(1).setGroupSettings(ts);
+		}
+		
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new ConnectionEvent(2, 3, null, true, 10.5));
+		events.add(new MessageCreateEvent(0, 3, "M1", 2, 0, 22.5));
+		events.add(new ConnectionEvent(0, 4, null, true, 25.5));
+		events.add(new MessageCreateEvent(2, 1, "M2", 3, 0, 40.5));
+		events.add(new ConnectionEvent(3, 4, null, true, 75.5));
+		events.add(new ConnectionEvent(1, 4, null, true, 158.5));
+		events.add(new MessageCreateEvent(1, 0, "M3", 2, 0, 170.5));
+		events.add(new ConnectionEvent(0, 1, null, true, 171.5));
+		events.add(new ConnectionEvent(2, 3, null, true, 260.5));
+		events.add(new MessageCreateEvent(3, 2, "M4", 2, 0, 270.5));
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(new ListQueue(events));
+		
+		World w = new World(hosts, 100, 100, 1.0, 
+				new ArrayList<UpdateListener>(), true, queues);
+		while (SimClock.getTime() < 400) {
+			w.update();
+			log.addHostStates(hosts);
+		}
+		return log.log;
+	}
+	
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
@@ -145,4 +282,129 @@ public class WorldTest extends TestCase {
 			this.hosts = new ArrayList<DTNHost>();
 		}
 	}
+	
+	/** Logs message and connection events with their times */
+	private static class EventLog implements MessageListener, 
+			ConnectionListener {
+		private List<String> log = new ArrayList<String>();
+		
+		private void add(String event, Object... actors) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(SimClock.getTime()).append(' ').append(event);
+			for (Object o : actors) {
+				sb.append(' ').append(o);
+			}
+			log.add(sb.toString());
+		}
+		
+		/** Logs the locations, messages and connections of the hosts */
+		private void addHostStates(List<DTNHost> hosts) {
+			for (DTNHost h : hosts) {
+				List<String> ids = new ArrayList<String>();
+				for (Message m : h.getMessageCollection()) {
+					ids.add(m.getId());
+				}
+				Collections.sort(ids);
+				add("state", h, h.getLocation(), ids, 
+						h.getConnections().size());
+			}
+		}
+		
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			add("up", host1, host2);
+		}
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			add("down", host1, host2);
+		}
+		public void newMessage(Message m) {
+			add("new", m);
+		}
+		public void messageTransferStarted(Message m, DTNHost from, 
+				DTNHost to) {
+			add("start", m, from, to);
+		}
+		public void messageDeleted(Message m, DTNHost where, 
+				boolean dropped) {
+			add("delete", m, where, dropped);
+		}
+		public void messageTransferAborted(Message m, DTNHost from, 
+				DTNHost to) {
+			add("abort", m, from, to);
+		}
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			add("relay", m, from, to, firstDelivery);
+		}
+	}
+	
+	/** Event queue that returns the events of a (time ordered) list */
+	private static class ListQueue implements EventQueue {
+		private List<ExternalEvent> events;
+		
+		public ListQueue(List<ExternalEvent> events) {
+			this.events = events;
+		}
+		public ExternalEvent nextEvent() {
+			if (events.isEmpty()) {
+				return new ExternalEvent(Double.MAX_VALUE);
+			}
+			return events.remove(0);
+		}
+		public double nextEventsTime() {
+			return events.isEmpty() ? Double.MAX_VALUE : 
+				events.get(0).getTime();
+		}
+	}
+	
+	/**
+	 * Movement model that goes (0,0) -> (60,0) -> (0,0) with speed 1.0 and
+	 * waits 20 seconds before every round trip
+	 */
+	private static class ShuttleMovement extends MovementModel {
+		@Override
+		public Coord getInitialLocation() {
+			return new Coord(0, 0);
+		}
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+		@Override
+		public Path getPath() {
+			Path p = new Path(1.0);
+			p.addWaypoint(new Coord(0, 0));
+			p.addWaypoint(new Coord(60, 0));
+			p.addWaypoint(new Coord(0, 0));
+			return p;
+		}
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + 20;
+		}
+		@Override
+		public ShuttleMovement replicate() {
+			return new ShuttleMovement();
+		}
+	}
+	
+	/** Epidemic router that counts the router updates of all hosts */
+	private static class CountingRouter extends EpidemicRouter {
+		private static int nrofUpdates;
+		
+		public CountingRouter(TestSettings s) {
+			super(s);
+		}
+		private CountingRouter(CountingRouter r) {
+			super(r);
+		}
+		@Override
+		public void update() {
+			nrofUpdates++;
+			super.update();
+		}
+		@Override
+		public CountingRouter replicate() {
+			return new CountingRouter(this);
+		}
+	}
 }
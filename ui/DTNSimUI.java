@@ -92,15 +92,16 @@ public abstract class DTNSimUI {
 			settings = new Settings();
 			this.scen = SimScenario.getInstance();
 
-			// add reports
-			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
+			// add reports (a replay doesn't create any)
+			for (int i=1, n = (isReplay() ? 0 : settings.getInt(NROF_REPORT_S));
+					i<=n; i++){
 				String reportClass = settings.getSetting(REPORT_S + i);
 				addReport((Report)settings.createObject(REPORT_PAC + 
 						reportClass));	
 			}
 
 			double warmupTime = 0;
-			if (settings.contains(MM_WARMUP_S)) {
+			if (settings.contains(MM_WARMUP_S) && !isReplay()) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
 				if (warmupTime > 0) {
 					SimClock c = SimClock.getInstance();
@@ -123,6 +124,16 @@ public abstract class DTNSimUI {
 		}		
 	}
 	
+	/**
+	 * Returns true if the UI replays a recorded simulation instead of
+	 * running it. No reports are created and no movement warmup is run for
+	 * replays.
+	 * @return true if the UI replays a recorded simulation
+	 */
+	protected boolean isReplay() {
+		return false;
+	}
+	
 	/**
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
@@ -130,6 +141,9 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (scen.getMovementCache() != null) {
+			scen.getMovementCache().close();
+		}
 	}
 	
 	/**
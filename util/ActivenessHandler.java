@@ -4,16 +4,18 @@
  */
 package util;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 
 /**
  * Object of this class tell the models when a node belonging
- * to a certain group is active and when not.
+ * to a certain group is active and when not. The active times are stored 
+ * as sorted arrays of start and end times and looked up starting from the
+ * range of the previous query, so checking the activeness is a constant time
+ * operation when the time advances. The same handler can be shared by nodes
+ * that use different time offsets. The time when the activeness changes 
+ * next is given by {@link #getNextChangeTime(int)}.
  */
 public class ActivenessHandler {
 	
@@ -48,26 +50,31 @@ public class ActivenessHandler {
 	 */
 	public static final String ACTIVE_PERIODS_OFFSET_S = "activePeriodsOffset";
 	
-	private Queue<TimeRange> activeTimes;
+	/** start times of the active time ranges (or null if not used) */
+	private double [] starts;
+	/** end times of the active time ranges */
+	private double [] ends;
+	/** index of the range that was used in the previous query */
+	private int curRange;
+	
 	private int [] activePeriods;
 	private int activePeriodsOffset;
-	
-	private TimeRange curRange = null;
+	/** length of the active and inactive period together */
+	private int periodLength;
 	
 	public ActivenessHandler(Settings s) {
-		this.activeTimes = parseActiveTimes(s);
+		parseActiveTimes(s);
 
-		if (activeTimes != null) {
-			this.curRange = activeTimes.poll();
-		} else if (s.contains(ACTIVE_PERIODS_S)){
+		if (starts == null && s.contains(ACTIVE_PERIODS_S)){
 			this.activePeriods = s.getCsvInts(ACTIVE_PERIODS_S, 2);
 			this.activePeriodsOffset = s.getInt(ACTIVE_PERIODS_OFFSET_S, 0);
+			this.periodLength = activePeriods[0] + activePeriods[1];
 		} else {
 			this.activePeriods = null;
 		}
 	}
 	
-	private Queue<TimeRange> parseActiveTimes(Settings s) {
+	private void parseActiveTimes(Settings s) {
 		double [] times;
 		String sName = s.getFullPropertyName(ACTIVE_TIMES_S);
 		
@@ -80,10 +87,12 @@ public class ActivenessHandler {
 			}
 		}
 		else {
-			return null; // no setting -> always active
+			return; // no setting -> always active
 		}
 
-		Queue<TimeRange> timesList = new LinkedList<TimeRange>(); 
+		this.starts = new double[times.length / 2];
+		this.ends = new double[times.length / 2];
+		this.curRange = 0;
 		
 		for (int i=0; i<times.length; i+= 2) {
 			double start = times[i];
@@ -94,11 +103,24 @@ public class ActivenessHandler {
 						" bigger than end time (" + end + ") in setting " + 
 						sName);
 			}
+			if (i > 0 && start < times[i-1]) {
+				throw new SettingsError("Start time (" + start + ") is " + 
+						" smaller than the previous end time (" + times[i-1] + 
+						") in setting " + sName);
+			}
 			
-			timesList.add(new TimeRange(start, end));
+			starts[i/2] = start;
+			ends[i/2] = end;
 		}
-		
-		return timesList;
+	}
+	
+	/**
+	 * Returns true if no active times nor periods are defined, i.e. the node
+	 * is active all the time.
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.starts == null && this.activePeriods == null;
 	}
 	
 	/**
@@ -116,75 +138,79 @@ public class ActivenessHandler {
 	 * @return true if node should be active, false if not
 	 */
 	public boolean isActive(int offset) {
-		if (this.activeTimes == null) {
+		if (this.starts == null) {
 			if (this.activePeriods == null) {
 				return true; // no inactive times nor periods -> always active		
 			} else {
 				/* using active periods mode */
-				int timeIndex = 
-					(SimClock.getIntTime() + this.activePeriodsOffset + offset)% 
-					(this.activePeriods[0] + this.activePeriods[1]);
-				if (timeIndex <= this.activePeriods[0]) {
-					return true;
-				} else {
-					return false;
-				}
+				return getPeriodIndex(offset) <= this.activePeriods[0];
 			}
 		}
 		
-		if (curRange == null) {
-			return false; // out of active times
-		}
-		
 		double time = SimClock.getTime() + offset;
+		int i = findRange(time);
 		
-		if (this.curRange.isOut(time)) { // time for the next time range
-			this.curRange = activeTimes.poll();
-			if (curRange == null) {
-				return false; // out of active times
+		return i < starts.length && starts[i] <= time;
+	}
+	
+	/**
+	 * Returns the simulation time when the activeness (with the given offset)
+	 * changes next. The returned time is never after the change, but it can
+	 * be the last time when the old state still holds.
+	 * @param offset The offset (as in {@link #isActive(int)})
+	 * @return The time of the next change or Double.MAX_VALUE if the 
+	 * activeness doesn't change anymore
+	 */
+	public double getNextChangeTime(int offset) {
+		if (this.starts == null) {
+			if (this.activePeriods == null) {
+				return Double.MAX_VALUE;
+			}
+			int index = getPeriodIndex(offset);
+			/* the integer time is rounded -> next second starts half 
+			   a second before the next integer */
+			double nextSecond = SimClock.getIntTime() + 0.5;
+			if (index <= this.activePeriods[0]) {
+				return nextSecond + activePeriods[0] - index;
+			} else {
+				return nextSecond + periodLength - index - 1;
 			}
 		}
 		
-		return curRange.isInRange(time);
+		double time = SimClock.getTime() + offset;
+		int i = findRange(time);
+		
+		if (i == starts.length) {
+			return Double.MAX_VALUE; // out of active times
+		}
+		return (starts[i] <= time ? ends[i] : starts[i]) - offset;
 	}
-
+	
 	/**
-	 * Class for handling time ranges
+	 * Returns the position of the current time (with an offset) within 
+	 * the active and inactive periods
 	 */
-	private class TimeRange {
-		private double start;
-		private double end;
-		
-		/**
-		 * Constructor.
-		 * @param start The start time
-		 * @param end The end time
-		 */
-		public TimeRange(double start, double end) {
-			this.start = start;
-			this.end = end;
-		}
-		
-		/**
-		 * Returns true if the given time is within start and end time 
-		 * (inclusive).
-		 * @param time The time to check
-		 * @return true if the time is within limits
-		 */
-		public boolean isInRange(double time) {
-			if (time < start || time > end ) {
-				return false; // out of range
-			}
-			return true;			
+	private int getPeriodIndex(int offset) {
+		return (SimClock.getIntTime() + this.activePeriodsOffset + offset) % 
+			this.periodLength;
+	}
+	
+	/**
+	 * Finds the first active time range that doesn't end before the given
+	 * time. The search starts from the range of the previous search.
+	 * @param time The time
+	 * @return Index of the range or the number of ranges if all ranges end
+	 * before the time
+	 */
+	private int findRange(double time) {
+		int i = this.curRange;
+		while (i < ends.length && ends[i] < time) {
+			i++;
 		}
-		
-		/**
-		 * Returns true if given time is bigger than end the end time
-		 * @param time The time to check
-		 * @return true if given time is bigger than end 
-		 */
-		public boolean isOut(double time) {
-			return time > end;
+		while (i > 0 && ends[i-1] >= time) {
+			i--;
 		}
+		this.curRange = i;
+		return i;
 	}
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Random;
+
+/**
+ * Table for drawing indices from a discrete probability distribution in
+ * constant time using Walker's alias method (with Vose's construction).
+ * Building the table takes linear time in the number of weights.
+ */
+public class AliasTable {
+	/** probability of keeping the drawn column (instead of its alias) */
+	private double[] prob;
+	/** alias index of each column */
+	private int[] alias;
+
+	/**
+	 * Creates a new alias table
+	 * @param weights Relative weights of the indices. All weights must be
+	 * non-negative and at least one of them must be positive.
+	 * @throws IllegalArgumentException if the weights are not valid
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double sum = 0;
+
+		for (double w : weights) {
+			if (w < 0 || Double.isNaN(w) || Double.isInfinite(w)) {
+				throw new IllegalArgumentException("Invalid weight " + w);
+			}
+			sum += w;
+		}
+		if (n == 0 || sum <= 0) {
+			throw new IllegalArgumentException("No positive weights");
+		}
+
+		this.prob = new double[n];
+		this.alias = new int[n];
+
+		/* scaled probabilities; the columns with less than one are "small" */
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int nrofSmall = 0;
+		int nrofLarge = 0;
+
+		for (int i=0; i<n; i++) {
+			scaled[i] = weights[i] * n / sum;
+			if (scaled[i] < 1.0) {
+				small[nrofSmall++] = i;
+			}
+			else {
+				large[nrofLarge++] = i;
+			}
+		}
+
+		while (nrofSmall > 0 && nrofLarge > 0) {
+			int s = small[--nrofSmall];
+			int l = large[--nrofLarge];
+
+			prob[s] = scaled[s];
+			alias[s] = l;
+
+			scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+			if (scaled[l] < 1.0) {
+				small[nrofSmall++] = l;
+			}
+			else {
+				large[nrofLarge++] = l;
+			}
+		}
+
+		/* what's left should have probability 1 (modulo rounding errors) */
+		while (nrofLarge > 0) {
+			int l = large[--nrofLarge];
+			prob[l] = 1.0;
+			alias[l] = l;
+		}
+		while (nrofSmall > 0) {
+			int s = small[--nrofSmall];
+			prob[s] = 1.0;
+			alias[s] = s;
+		}
+	}
+
+	/**
+	 * Draws an index with probability proportional to its weight
+	 * @param rng The random number generator to use
+	 * @return The drawn index
+	 */
+	public int draw(Random rng) {
+		int column = rng.nextInt(prob.length);
+		return (rng.nextDouble() < prob[column] ? column : alias[column]);
+	}
+
+	/**
+	 * Returns the number of indices in the table
+	 * @return the number of indices in the table
+	 */
+	public int size() {
+		return prob.length;
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of non-negative integer items (e.g. node indices) ordered
+ * by a double key. The heap knows the position of every item, so the key
+ * of an item that is already in the heap can be changed in logarithmic time.
+ * Items with equal keys are ordered by the item value. The heap can be
+ * cleared and reused without reallocating its arrays.
+ */
+public class IndexedHeap {
+	/** Initial capacity of the arrays */
+	private static final int INIT_CAPACITY = 16;
+
+	/** the items in heap order */
+	private int[] heap;
+	/** number of items in the heap */
+	private int size;
+	/** position of each item in the heap (-1 = not in the heap) */
+	private int[] positions;
+	/** keys of the items (valid only for items in the heap) */
+	private double[] keys;
+
+	/**
+	 * Creates a new, empty, heap
+	 */
+	public IndexedHeap() {
+		this.heap = new int[INIT_CAPACITY];
+		this.positions = new int[INIT_CAPACITY];
+		this.keys = new double[INIT_CAPACITY];
+		Arrays.fill(this.positions, -1);
+		this.size = 0;
+	}
+
+	/**
+	 * Returns true if the heap is empty
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the number of items in the heap
+	 * @return the number of items in the heap
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if the item is in the heap
+	 * @param item The item
+	 * @return true if the item is in the heap
+	 */
+	public boolean contains(int item) {
+		return item < positions.length && positions[item] >= 0;
+	}
+
+	/**
+	 * Adds an item to the heap or, if it is already in the heap, changes
+	 * its key
+	 * @param item The item
+	 * @param key The (new) key of the item
+	 */
+	public void put(int item, double key) {
+		ensureItemCapacity(item);
+		int pos = positions[item];
+		if (pos < 0) {
+			if (size == heap.length) {
+				heap = Arrays.copyOf(heap, size * 2);
+			}
+			pos = size++;
+			heap[pos] = item;
+			positions[item] = pos;
+			keys[item] = key;
+			siftUp(pos);
+		}
+		else {
+			double oldKey = keys[item];
+			keys[item] = key;
+			if (key < oldKey) {
+				siftUp(pos);
+			}
+			else {
+				siftDown(pos);
+			}
+		}
+	}
+
+	/**
+	 * Returns the item with the smallest key without removing it
+	 * @return The item with the smallest key or -1 if the heap is empty
+	 */
+	public int peek() {
+		return (size == 0 ? -1 : heap[0]);
+	}
+
+	/**
+	 * Returns the key of an item in the heap
+	 * @param item The item
+	 * @return The key of the item
+	 */
+	public double getKey(int item) {
+		assert contains(item) : "Item " + item + " is not in the heap";
+		return keys[item];
+	}
+
+	/**
+	 * Removes and returns the item with the smallest key
+	 * @return The item with the smallest key or -1 if the heap is empty
+	 */
+	public int poll() {
+		if (size == 0) {
+			return -1;
+		}
+		int first = heap[0];
+		positions[first] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all items from the heap
+	 */
+	public void clear() {
+		for (int i=0; i<size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void ensureItemCapacity(int item) {
+		if (item >= positions.length) {
+			int capacity = Math.max(item + 1, positions.length * 2);
+			int oldLength = positions.length;
+			positions = Arrays.copyOf(positions, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			Arrays.fill(positions, oldLength, capacity, -1);
+		}
+	}
+
+	/**
+	 * Returns true if the item at heap position i should be before the item
+	 * at position j
+	 */
+	private boolean before(int i, int j) {
+		double ki = keys[heap[i]];
+		double kj = keys[heap[j]];
+		return ki < kj || (ki == kj && heap[i] < heap[j]);
+	}
+
+	private void siftUp(int pos) {
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!before(pos, parent)) {
+				break;
+			}
+			swap(pos, parent);
+			pos = parent;
+		}
+	}
+
+	private void siftDown(int pos) {
+		while (true) {
+			int smallest = pos;
+			int left = 2 * pos + 1;
+			int right = left + 1;
+			if (left < size && before(left, smallest)) {
+				smallest = left;
+			}
+			if (right < size && before(right, smallest)) {
+				smallest = right;
+			}
+			if (smallest == pos) {
+				return;
+			}
+			swap(pos, smallest);
+			pos = smallest;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int tmp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = tmp;
+		positions[heap[i]] = i;
+		positions[heap[j]] = j;
+	}
+}